@@ -0,0 +1,469 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.HttpConnecting;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.NetworkCallback;
+import com.adobe.marketing.mobile.services.NetworkRequest;
+import com.adobe.marketing.mobile.services.Networking;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Schedules the {@code CampaignMessage} asset downloads shared by every {@link
+ * CampaignMessageAssetsDownloader}.
+ *
+ * <p>At most {@link #getMaxConcurrentDownloads()} asset downloads are in flight at a time, the
+ * remaining downloads are queued. Queued downloads for the most recently matched messages are
+ * started first, followed by the other downloads in the order they were scheduled.
+ *
+ * <p>An asset URL is downloaded by one download at a time. Scheduling a URL which is already queued
+ * or in flight adds the message to that download instead of starting a second one, so concurrent
+ * downloads never write to the same {@link CampaignPartialAsset}.
+ */
+class CampaignAssetDownloadScheduler {
+    private static final String SELF_TAG = "CampaignAssetDownloadScheduler";
+    private static final int RECENT_DOWNLOAD_METRICS_LIMIT = 50;
+
+    private final Networking networkService;
+    private final Object schedulerMutex = new Object();
+    private final PriorityQueue<AssetDownload> pendingDownloads = new PriorityQueue<>();
+    private final Map<String, Long> messageMatchTimestamps = new HashMap<>();
+    private final Deque<AssetDownloadMetrics> recentDownloadMetrics = new ArrayDeque<>();
+    private final Map<String, AssetDownload> scheduledDownloads = new HashMap<>();
+    private AssetDownloadListener downloadListener;
+    private int maxConcurrentDownloads;
+    private int activeDownloads = 0;
+    private long scheduledDownloadCount = 0;
+    private boolean isStartingDownloads = false;
+
+    /**
+     * Constructor.
+     *
+     * @param networkService {@link Networking} service used to download the assets
+     * @param maxConcurrentDownloads {@code int} containing the maximum number of asset downloads in
+     *     flight at a time
+     */
+    CampaignAssetDownloadScheduler(
+            final Networking networkService, final int maxConcurrentDownloads) {
+        this.networkService = networkService;
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+    }
+
+    /**
+     * Sets the maximum number of asset downloads in flight at a time.
+     *
+     * <p>Downloads already in flight are not cancelled if the new limit is lower than the number of
+     * active downloads.
+     *
+     * @param maxConcurrentDownloads {@code int} containing the maximum number of asset downloads,
+     *     values lower than 1 are treated as 1
+     */
+    void setMaxConcurrentDownloads(final int maxConcurrentDownloads) {
+        synchronized (schedulerMutex) {
+            this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+        }
+        startPendingDownloads();
+    }
+
+    /**
+     * Returns the maximum number of asset downloads in flight at a time.
+     *
+     * @return {@code int} containing the maximum number of concurrent asset downloads
+     */
+    int getMaxConcurrentDownloads() {
+        synchronized (schedulerMutex) {
+            return maxConcurrentDownloads;
+        }
+    }
+
+    /**
+     * Sets the listener notified whenever an asset download completes.
+     *
+     * @param downloadListener {@link AssetDownloadListener} notified of completed downloads
+     */
+    void setDownloadListener(final AssetDownloadListener downloadListener) {
+        synchronized (schedulerMutex) {
+            this.downloadListener = downloadListener;
+        }
+    }
+
+    /**
+     * Returns whether a download of the asset with the given {@code url} is queued or in flight.
+     *
+     * @param url {@link String} containing the asset URL
+     * @return true if the asset download has not completed yet, false otherwise
+     */
+    boolean isDownloadPending(final String url) {
+        synchronized (schedulerMutex) {
+            return scheduledDownloads.containsKey(url);
+        }
+    }
+
+    /**
+     * Schedules the provided asset {@code networkRequest} for the message with the given {@code
+     * messageId}.
+     *
+     * <p>The {@code callback} is invoked with the {@link HttpConnecting} once the download
+     * completes, or with null if the network is not available. The download slot is released once
+     * the {@code callback} returns, so the {@code callback} must consume and close the connection.
+     *
+     * <p>If a download of the same URL is already queued or in flight, no download is scheduled and
+     * the {@code callback} is not invoked. The message is added to the existing download, which is
+     * prioritized if the message was matched more recently.
+     *
+     * @param networkRequest {@link NetworkRequest} for the asset
+     * @param messageId {@link String} containing the id of the message the asset belongs to
+     * @param callback {@link NetworkCallback} invoked when the download completes
+     * @return true if a download was scheduled, false if the asset is already being downloaded
+     */
+    boolean schedule(
+            final NetworkRequest networkRequest,
+            final String messageId,
+            final NetworkCallback callback) {
+        synchronized (schedulerMutex) {
+            final Long matchTimestamp = messageMatchTimestamps.get(messageId);
+            final long priority = matchTimestamp != null ? matchTimestamp : 0;
+            final AssetDownload scheduledDownload = scheduledDownloads.get(networkRequest.getUrl());
+            if (scheduledDownload != null) {
+                scheduledDownload.messageIds.add(messageId);
+                if (priority > scheduledDownload.priority
+                        && pendingDownloads.remove(scheduledDownload)) {
+                    scheduledDownload.priority = priority;
+                    pendingDownloads.add(scheduledDownload);
+                }
+                Log.trace(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "Asset for message id %s is already being downloaded: %s",
+                        messageId,
+                        networkRequest.getUrl());
+                return false;
+            }
+
+            final AssetDownload assetDownload =
+                    new AssetDownload(
+                            networkRequest,
+                            messageId,
+                            callback,
+                            priority,
+                            scheduledDownloadCount++);
+            scheduledDownloads.put(networkRequest.getUrl(), assetDownload);
+            pendingDownloads.add(assetDownload);
+        }
+        startPendingDownloads();
+        return true;
+    }
+
+    /**
+     * Moves the queued asset downloads of the message with the given {@code messageId} ahead of the
+     * other queued downloads.
+     *
+     * <p>This method should be called when a rule for the message is matched, assets scheduled
+     * later for the same message are prioritized as well.
+     *
+     * @param messageId {@link String} containing the id of the matched message
+     */
+    void prioritize(final String messageId) {
+        synchronized (schedulerMutex) {
+            final long matchTimestamp = System.currentTimeMillis();
+            messageMatchTimestamps.put(messageId, matchTimestamp);
+
+            final List<AssetDownload> prioritizedDownloads = new ArrayList<>();
+            final Iterator<AssetDownload> iterator = pendingDownloads.iterator();
+            while (iterator.hasNext()) {
+                final AssetDownload assetDownload = iterator.next();
+                if (assetDownload.messageIds.contains(messageId)) {
+                    iterator.remove();
+                    assetDownload.priority = matchTimestamp;
+                    prioritizedDownloads.add(assetDownload);
+                }
+            }
+            pendingDownloads.addAll(prioritizedDownloads);
+        }
+    }
+
+    /**
+     * Forgets when the messages which are no longer loaded were matched.
+     *
+     * <p>This method should be called whenever the loaded messages change, so the match timestamps
+     * do not grow with every message ever matched.
+     *
+     * @param loadedMessageIds {@code Collection<String>} containing the ids of the loaded messages
+     */
+    void retainMatchTimestamps(final Collection<String> loadedMessageIds) {
+        synchronized (schedulerMutex) {
+            messageMatchTimestamps.keySet().retainAll(loadedMessageIds);
+        }
+    }
+
+    /**
+     * Cancels the queued and in-flight asset downloads, called when the privacy status is opted
+     * out.
+     *
+     * <p>The callbacks of the cancelled downloads are not invoked, the connection of an in-flight
+     * download is closed once it completes.
+     */
+    void cancelDownloads() {
+        synchronized (schedulerMutex) {
+            for (final AssetDownload assetDownload : scheduledDownloads.values()) {
+                assetDownload.cancelled = true;
+            }
+            pendingDownloads.clear();
+            scheduledDownloads.clear();
+            messageMatchTimestamps.clear();
+        }
+    }
+
+    /**
+     * Returns the number of asset downloads waiting for a download slot.
+     *
+     * @return {@code int} containing the number of queued asset downloads
+     */
+    int getPendingDownloadCount() {
+        synchronized (schedulerMutex) {
+            return pendingDownloads.size();
+        }
+    }
+
+    /**
+     * Returns the number of asset downloads currently in flight.
+     *
+     * @return {@code int} containing the number of active asset downloads
+     */
+    int getActiveDownloadCount() {
+        synchronized (schedulerMutex) {
+            return activeDownloads;
+        }
+    }
+
+    /**
+     * Returns the metrics of the most recently completed asset downloads, oldest first.
+     *
+     * @return {@code List<AssetDownloadMetrics>} containing the recent asset download metrics
+     */
+    List<AssetDownloadMetrics> getRecentDownloadMetrics() {
+        synchronized (schedulerMutex) {
+            return new ArrayList<>(recentDownloadMetrics);
+        }
+    }
+
+    /**
+     * Starts queued asset downloads until the concurrency limit is reached.
+     *
+     * <p>Only one thread starts downloads at a time, a download completing synchronously on the
+     * starting thread releases its slot and lets the loop continue instead of recursing.
+     */
+    private void startPendingDownloads() {
+        synchronized (schedulerMutex) {
+            if (isStartingDownloads) {
+                return;
+            }
+            isStartingDownloads = true;
+        }
+
+        boolean startedAll = false;
+        try {
+            while (true) {
+                final AssetDownload assetDownload;
+                synchronized (schedulerMutex) {
+                    if (activeDownloads >= maxConcurrentDownloads || pendingDownloads.isEmpty()) {
+                        // reset along with the check, so a download scheduled meanwhile is started
+                        isStartingDownloads = false;
+                        startedAll = true;
+                        return;
+                    }
+                    assetDownload = pendingDownloads.poll();
+                    activeDownloads++;
+                }
+
+                startDownload(assetDownload);
+            }
+        } finally {
+            if (!startedAll) {
+                synchronized (schedulerMutex) {
+                    isStartingDownloads = false;
+                }
+            }
+        }
+    }
+
+    private void startDownload(final AssetDownload assetDownload) {
+        assetDownload.startTimestamp = System.currentTimeMillis();
+        try {
+            networkService.connectAsync(
+                    assetDownload.networkRequest,
+                    connection -> completeDownload(assetDownload, connection));
+        } catch (final RuntimeException exception) {
+            Log.warning(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Unable to start asset download for message id %s (%s): %s",
+                    assetDownload.messageId,
+                    exception.getLocalizedMessage(),
+                    assetDownload.networkRequest.getUrl());
+            completeDownload(assetDownload, null);
+        }
+    }
+
+    private void completeDownload(
+            final AssetDownload assetDownload, final HttpConnecting connection) {
+        final boolean cancelled;
+        synchronized (schedulerMutex) {
+            // a failing connectAsync may already have invoked the callback
+            if (assetDownload.completed) {
+                return;
+            }
+            assetDownload.completed = true;
+            cancelled = assetDownload.cancelled;
+        }
+
+        try {
+            if (!cancelled) {
+                assetDownload.callback.call(connection);
+            } else if (connection != null) {
+                connection.close();
+            }
+        } finally {
+            onDownloadCompleted(assetDownload);
+        }
+    }
+
+    private void onDownloadCompleted(final AssetDownload assetDownload) {
+        final AssetDownloadMetrics metrics =
+                new AssetDownloadMetrics(
+                        assetDownload.networkRequest.getUrl(),
+                        assetDownload.messageId,
+                        assetDownload.startTimestamp - assetDownload.scheduleTimestamp,
+                        System.currentTimeMillis() - assetDownload.startTimestamp);
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Asset download for message id %s completed, queued for %d ms, transferred in %d"
+                        + " ms: %s",
+                metrics.getMessageId(),
+                metrics.getQueueTimeMillis(),
+                metrics.getTransferTimeMillis(),
+                metrics.getUrl());
+
+        final AssetDownloadListener listener;
+        synchronized (schedulerMutex) {
+            activeDownloads--;
+            // a cancelled download may have been scheduled again meanwhile
+            if (scheduledDownloads.get(metrics.getUrl()) == assetDownload) {
+                scheduledDownloads.remove(metrics.getUrl());
+            }
+            recentDownloadMetrics.addLast(metrics);
+            if (recentDownloadMetrics.size() > RECENT_DOWNLOAD_METRICS_LIMIT) {
+                recentDownloadMetrics.removeFirst();
+            }
+            listener = downloadListener;
+        }
+
+        if (listener != null) {
+            listener.onAssetDownloadCompleted(metrics.getUrl());
+        }
+        startPendingDownloads();
+    }
+
+    /** Listener notified when an asset download completes. */
+    interface AssetDownloadListener {
+        /**
+         * Called after the download callback of the asset with the given {@code url} returned.
+         *
+         * @param url {@link String} containing the asset URL
+         */
+        void onAssetDownloadCompleted(String url);
+    }
+
+    /** Queue time and transfer time of a completed asset download. */
+    static final class AssetDownloadMetrics {
+        private final String url;
+        private final String messageId;
+        private final long queueTimeMillis;
+        private final long transferTimeMillis;
+
+        AssetDownloadMetrics(
+                final String url,
+                final String messageId,
+                final long queueTimeMillis,
+                final long transferTimeMillis) {
+            this.url = url;
+            this.messageId = messageId;
+            this.queueTimeMillis = queueTimeMillis;
+            this.transferTimeMillis = transferTimeMillis;
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        String getMessageId() {
+            return messageId;
+        }
+
+        long getQueueTimeMillis() {
+            return queueTimeMillis;
+        }
+
+        long getTransferTimeMillis() {
+            return transferTimeMillis;
+        }
+    }
+
+    private static final class AssetDownload implements Comparable<AssetDownload> {
+        private final NetworkRequest networkRequest;
+        private final String messageId;
+        private final Set<String> messageIds = new HashSet<>();
+        private final NetworkCallback callback;
+        private final long sequenceNumber;
+        private final long scheduleTimestamp;
+        private long priority;
+        private long startTimestamp;
+        private boolean completed = false;
+        private boolean cancelled = false;
+
+        AssetDownload(
+                final NetworkRequest networkRequest,
+                final String messageId,
+                final NetworkCallback callback,
+                final long priority,
+                final long sequenceNumber) {
+            this.networkRequest = networkRequest;
+            this.messageId = messageId;
+            this.messageIds.add(messageId);
+            this.callback = callback;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.scheduleTimestamp = System.currentTimeMillis();
+        }
+
+        @Override
+        public int compareTo(final AssetDownload other) {
+            // most recently matched messages first, then in scheduling order
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
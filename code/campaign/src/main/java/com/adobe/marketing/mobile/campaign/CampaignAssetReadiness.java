@@ -0,0 +1,372 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks whether the remote assets of the loaded {@code CampaignMessage}s are cached.
+ *
+ * <p>A message is ready once each of its asset arrays has one of its remote candidates in the
+ * {@link CampaignAssetStore}. Bundled fallbacks and other entries which are not downloaded are
+ * ignored, an asset array without remote candidates does not delay the message. Callers can wait,
+ * with a bounded timeout, for the pending asset downloads of a message to complete before it is
+ * shown. The number of messages shown with ready and with cold assets is recorded. A {@link
+ * MessageSettledListener} is notified once the last pending download of a message completes.
+ */
+class CampaignAssetReadiness implements CampaignAssetDownloadScheduler.AssetDownloadListener {
+    private static final String SELF_TAG = "CampaignAssetReadiness";
+
+    private final CacheService cacheService;
+    private final CampaignAssetDownloadScheduler downloadScheduler;
+    private final Object readinessMutex = new Object();
+    private final List<ReadinessWaiter> readinessWaiters = new ArrayList<>();
+    private final ScheduledExecutorService timeoutExecutor;
+    private Map<String, List<List<String>>> messageAssets = new HashMap<>();
+    private MessageSettledListener settledListener;
+    private int readyDisplayCount = 0;
+    private int coldDisplayCount = 0;
+    private int skippedDisplayCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheService {@link CacheService} containing the cached assets
+     * @param downloadScheduler {@link CampaignAssetDownloadScheduler} downloading the assets
+     * @param timeoutExecutor {@link ScheduledExecutorService} ending the waits which timed out
+     */
+    CampaignAssetReadiness(
+            final CacheService cacheService,
+            final CampaignAssetDownloadScheduler downloadScheduler,
+            final ScheduledExecutorService timeoutExecutor) {
+        this.cacheService = cacheService;
+        this.downloadScheduler = downloadScheduler;
+        this.timeoutExecutor = timeoutExecutor;
+        downloadScheduler.setDownloadListener(this);
+    }
+
+    /**
+     * Replaces the asset arrays of the loaded messages.
+     *
+     * <p>Only the downloadable candidates of each asset array are kept.
+     *
+     * @param messageAssetArrays {@code Map<String, List<List<String>>>} containing the asset arrays
+     *     of every loaded message, keyed by message id
+     */
+    void setMessageAssets(final Map<String, List<List<String>>> messageAssetArrays) {
+        final Map<String, List<List<String>>> remoteAssets = new HashMap<>();
+        for (final Map.Entry<String, List<List<String>>> entry : messageAssetArrays.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+
+            final List<List<String>> remoteAssetArrays = new ArrayList<>();
+            for (final List<String> assetArray : entry.getValue()) {
+                final List<String> remoteCandidates = new ArrayList<>();
+                if (assetArray != null) {
+                    for (final String asset : assetArray) {
+                        if (CampaignMessageAssetsDownloader.isDownloadable(asset)) {
+                            remoteCandidates.add(asset);
+                        }
+                    }
+                }
+                if (!remoteCandidates.isEmpty()) {
+                    remoteAssetArrays.add(remoteCandidates);
+                }
+            }
+            remoteAssets.put(entry.getKey(), remoteAssetArrays);
+        }
+
+        synchronized (readinessMutex) {
+            this.messageAssets = remoteAssets;
+        }
+        resolveCompletedWaiters();
+    }
+
+    /**
+     * Returns whether each asset array of the message with the given {@code messageId} has a cached
+     * remote candidate.
+     *
+     * @param messageId {@link String} containing the message id
+     * @return true if the message assets are cached or the message has no remote assets, false
+     *     otherwise
+     */
+    boolean isMessageReady(final String messageId) {
+        final List<List<String>> assetArrays = getMessageAssets(messageId);
+        if (assetArrays == null) {
+            return true;
+        }
+
+        for (final List<String> assetArray : assetArrays) {
+            if (!isAssetArrayReady(assetArray)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invokes the {@code callback} once the message with the given {@code messageId} is ready, its
+     * pending asset downloads completed or the {@code timeoutMillis} elapsed, whichever happens
+     * first.
+     *
+     * <p>The {@code callback} is invoked on the calling thread if there is nothing to wait for,
+     * otherwise on the thread completing the last download or the {@link #timeoutExecutor} thread.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param timeoutMillis {@code long} containing the maximum time to wait in milliseconds
+     * @param callback {@link ReadinessCallback} invoked with the readiness of the message
+     */
+    void whenMessageReady(
+            final String messageId, final long timeoutMillis, final ReadinessCallback callback) {
+        if (isMessageReady(messageId)) {
+            callback.call(true);
+            return;
+        }
+
+        if (timeoutMillis <= 0 || !hasPendingDownloads(messageId)) {
+            callback.call(false);
+            return;
+        }
+
+        Log.debug(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "whenMessageReady - Waiting up to %d ms for the assets of message id %s.",
+                timeoutMillis,
+                messageId);
+        final ReadinessWaiter readinessWaiter = new ReadinessWaiter(messageId, callback);
+        synchronized (readinessMutex) {
+            readinessWaiters.add(readinessWaiter);
+        }
+        try {
+            timeoutExecutor.schedule(
+                    () -> resolveWaiter(readinessWaiter), timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "whenMessageReady - Unable to schedule the wait timeout (%s), not waiting for"
+                            + " the assets of message id %s.",
+                    exception.getLocalizedMessage(),
+                    messageId);
+            resolveWaiter(readinessWaiter);
+            return;
+        }
+
+        // the last download may have completed before the waiter was added
+        resolveCompletedWaiters();
+    }
+
+    /**
+     * Sets the listener notified once a message has no pending asset downloads left.
+     *
+     * @param settledListener {@link MessageSettledListener} to be notified, or null
+     */
+    void setMessageSettledListener(final MessageSettledListener settledListener) {
+        synchronized (readinessMutex) {
+            this.settledListener = settledListener;
+        }
+    }
+
+    /**
+     * Returns whether a remote candidate of an asset array which is not ready yet is still being
+     * downloaded for the message with the given {@code messageId}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @return true if an asset download the message waits for is pending, false otherwise
+     */
+    boolean hasPendingDownloads(final String messageId) {
+        final List<List<String>> assetArrays = getMessageAssets(messageId);
+        if (assetArrays == null) {
+            return false;
+        }
+
+        for (final List<String> assetArray : assetArrays) {
+            if (isAssetArrayReady(assetArray)) {
+                continue;
+            }
+            for (final String assetUrl : assetArray) {
+                if (downloadScheduler.isDownloadPending(assetUrl)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onAssetDownloadCompleted(final String url) {
+        resolveCompletedWaiters();
+
+        final MessageSettledListener listener;
+        final List<String> settledMessageIds = new ArrayList<>();
+        synchronized (readinessMutex) {
+            listener = settledListener;
+            if (listener == null) {
+                return;
+            }
+            for (final Map.Entry<String, List<List<String>>> entry : messageAssets.entrySet()) {
+                for (final List<String> assetArray : entry.getValue()) {
+                    if (assetArray.contains(url)) {
+                        settledMessageIds.add(entry.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (final String messageId : settledMessageIds) {
+            if (!hasPendingDownloads(messageId)) {
+                listener.onMessageAssetsSettled(messageId);
+            }
+        }
+    }
+
+    /**
+     * Records that a message was shown.
+     *
+     * @param ready {@code boolean} indicating whether the message assets were ready
+     */
+    void recordMessageDisplayed(final boolean ready) {
+        synchronized (readinessMutex) {
+            if (ready) {
+                readyDisplayCount++;
+            } else {
+                coldDisplayCount++;
+            }
+        }
+    }
+
+    /** Records that a message was not shown because its assets were not ready. */
+    void recordMessageSkipped() {
+        synchronized (readinessMutex) {
+            skippedDisplayCount++;
+        }
+    }
+
+    /**
+     * Returns the number of messages shown with all of their assets cached.
+     *
+     * @return {@code int} containing the number of messages shown with ready assets
+     */
+    int getReadyDisplayCount() {
+        synchronized (readinessMutex) {
+            return readyDisplayCount;
+        }
+    }
+
+    /**
+     * Returns the number of messages shown before all of their assets were cached.
+     *
+     * @return {@code int} containing the number of messages shown with cold assets
+     */
+    int getColdDisplayCount() {
+        synchronized (readinessMutex) {
+            return coldDisplayCount;
+        }
+    }
+
+    /**
+     * Returns the number of messages not shown because their assets were not cached.
+     *
+     * @return {@code int} containing the number of skipped messages
+     */
+    int getSkippedDisplayCount() {
+        synchronized (readinessMutex) {
+            return skippedDisplayCount;
+        }
+    }
+
+    private List<List<String>> getMessageAssets(final String messageId) {
+        synchronized (readinessMutex) {
+            return messageAssets.get(messageId);
+        }
+    }
+
+    private boolean isAssetArrayReady(final List<String> assetArray) {
+        if (cacheService == null) {
+            return false;
+        }
+
+        for (final String assetUrl : assetArray) {
+            if (cacheService.get(CampaignAssetStore.ASSET_CACHE, assetUrl) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resolveCompletedWaiters() {
+        final List<ReadinessWaiter> waiters;
+        synchronized (readinessMutex) {
+            if (readinessWaiters.isEmpty()) {
+                return;
+            }
+            waiters = new ArrayList<>(readinessWaiters);
+        }
+
+        for (final ReadinessWaiter waiter : waiters) {
+            if (!hasPendingDownloads(waiter.messageId)) {
+                resolveWaiter(waiter);
+            }
+        }
+    }
+
+    private void resolveWaiter(final ReadinessWaiter waiter) {
+        synchronized (readinessMutex) {
+            // the waiter is resolved once, either when ready or when timed out
+            if (!readinessWaiters.remove(waiter)) {
+                return;
+            }
+        }
+        waiter.callback.call(isMessageReady(waiter.messageId));
+    }
+
+    /** Callback invoked with the readiness of a message. */
+    interface ReadinessCallback {
+        /**
+         * Called when the message is ready or waiting for it ended.
+         *
+         * @param ready {@code boolean} indicating whether the message assets are cached
+         */
+        void call(boolean ready);
+    }
+
+    /** Listener notified once the asset downloads of a message are no longer pending. */
+    interface MessageSettledListener {
+        /**
+         * Called when the last pending asset download of the message completed.
+         *
+         * @param messageId {@link String} containing the message id
+         */
+        void onMessageAssetsSettled(String messageId);
+    }
+
+    private static final class ReadinessWaiter {
+        private final String messageId;
+        private final ReadinessCallback callback;
+
+        ReadinessWaiter(final String messageId, final ReadinessCallback callback) {
+            this.messageId = messageId;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,899 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.NamedCollection;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Shared store for the remote assets of {@code CampaignMessage}s.
+ *
+ * <p>Each asset is cached once in {@link #ASSET_CACHE}, keyed by its URL, and referenced by every
+ * message using it. The references are tracked for each rules partition kept in the cache, so
+ * switching back to a cached partition finds its assets. The references are persisted in the
+ * Campaign {@link NamedCollection} and an asset is removed from the cache once no message of any
+ * retained partition references it anymore.
+ *
+ * <p>The size and last access time of every cached asset are tracked as well. Once the cached
+ * assets and message caches exceed {@link #getMaxCacheBytes()}, the least recently shown assets are
+ * evicted first, whether a loaded message references them or not. Evicted assets are downloaded
+ * again with the next rules download, messages shown meanwhile use their alternatives or bundled
+ * fallbacks.
+ *
+ * <p>Assets cached for a single message, like bundled fallback assets, are stored in the message
+ * cache {@link #MESSAGE_CACHE}/{@code messageId}. A manifest of these assets and their sizes is
+ * persisted so the caches of messages which are no longer loaded are removed without scanning the
+ * cache directory. Message caches count towards the budget but are not evicted. The digest of the
+ * asset definition each message's bundled fallbacks were cached for is persisted as well, so they
+ * are only cached again when the definition changes.
+ *
+ * <p>Changes are persisted in batches. The first change schedules a write {@value
+ * CampaignConstants#ASSET_STORE_PERSIST_DELAY_MILLIS} ms later, which writes every map changed in
+ * the meantime, so caching or showing several assets does not serialize the maps for each asset.
+ */
+class CampaignAssetStore {
+    private static final String SELF_TAG = "CampaignAssetStore";
+    private static final String USAGE_SIZE_KEY = "size";
+    private static final String USAGE_LAST_ACCESS_KEY = "lastAccess";
+    // references persisted before they were tracked per partition, replaced by the first update
+    private static final String LEGACY_PARTITION = "";
+
+    /** Name of the cache containing the shared message assets. */
+    static final String ASSET_CACHE =
+            CampaignConstants.CACHE_BASE_DIR + File.separator + CampaignConstants.ASSET_CACHE_DIR;
+
+    /** Name of the cache containing the message caches, each cache is named after its message. */
+    static final String MESSAGE_CACHE =
+            CampaignConstants.CACHE_BASE_DIR + File.separator + CampaignConstants.MESSAGE_CACHE_DIR;
+
+    private final CacheService cacheService;
+    private final NamedCollection campaignNamedCollection;
+    private final ScheduledExecutorService persistExecutor;
+    // asset URLs of every message, keyed by partition and message id
+    private Map<String, Map<String, List<String>>> partitionReferences = null;
+    // ordered from least to most recently shown
+    private LinkedHashMap<String, AssetUsage> assetUsage = null;
+    private Map<String, Map<String, Long>> messageCacheManifest = null;
+    private Map<String, String> bundledFallbackDigests = null;
+    private long maxCacheBytes = CampaignConstants.DEFAULT_ASSET_CACHE_MAX_BYTES;
+    private int evictionCount = 0;
+    private long assetGeneration = 0;
+    private boolean assetReferencesChanged = false;
+    private boolean assetUsageChanged = false;
+    private boolean messageCacheManifestChanged = false;
+    private boolean bundledFallbackDigestsChanged = false;
+    private boolean persistScheduled = false;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheService {@link CacheService} containing the cached assets
+     * @param campaignNamedCollection {@link NamedCollection} used to persist the asset references
+     */
+    CampaignAssetStore(
+            final CacheService cacheService, final NamedCollection campaignNamedCollection) {
+        this(cacheService, campaignNamedCollection, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cacheService {@link CacheService} containing the cached assets
+     * @param campaignNamedCollection {@link NamedCollection} used to persist the asset references
+     * @param persistExecutor {@link ScheduledExecutorService} running the batched writes, if null
+     *     every change is persisted immediately
+     */
+    CampaignAssetStore(
+            final CacheService cacheService,
+            final NamedCollection campaignNamedCollection,
+            final ScheduledExecutorService persistExecutor) {
+        this.cacheService = cacheService;
+        this.campaignNamedCollection = campaignNamedCollection;
+        this.persistExecutor = persistExecutor;
+    }
+
+    /**
+     * Replaces the asset references of the rules {@code partition} with the assets of the provided
+     * messages.
+     *
+     * <p>Assets which were referenced before but are not referenced by any message of a retained
+     * partition are removed from the cache.
+     *
+     * @param partition {@link String} containing the name of the rules cache the messages were
+     *     loaded from
+     * @param messageAssets {@code Map<String, List<String>>} containing the asset URLs of every
+     *     loaded message, keyed by message id
+     * @see #removePartition(String)
+     */
+    synchronized void updateReferences(
+            final String partition, final Map<String, List<String>> messageAssets) {
+        final Set<String> previousAssetUrls = getReferencedAssetUrls();
+        final Map<String, Map<String, List<String>>> references = getPartitionReferences();
+        references.remove(LEGACY_PARTITION);
+        references.put(partition, new HashMap<>(messageAssets));
+        assetReferencesChanged = true;
+        removeUnreferencedAssets(previousAssetUrls);
+        schedulePersist();
+    }
+
+    /**
+     * Removes the asset references of a rules {@code partition} which was removed from the cache,
+     * along with the assets and message caches no other retained partition uses.
+     *
+     * @param partition {@link String} containing the name of the removed rules cache
+     */
+    synchronized void removePartition(final String partition) {
+        final Set<String> previousAssetUrls = getReferencedAssetUrls();
+        if (getPartitionReferences().remove(partition) == null) {
+            return;
+        }
+
+        assetReferencesChanged = true;
+        removeUnreferencedAssets(previousAssetUrls);
+        clearUnreferencedMessageCaches();
+    }
+
+    /**
+     * Records an asset which was added to the message cache of the message with the given {@code
+     * messageId}.
+     *
+     * <p>The message cache counts towards the cache budget, the least recently shown assets are
+     * evicted if it is exceeded.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param assetKey {@link String} containing the cache key of the asset
+     * @param sizeBytes {@code long} containing the size of the cached asset in bytes
+     */
+    synchronized void recordMessageAssetCached(
+            final String messageId, final String assetKey, final long sizeBytes) {
+        final Map<String, Map<String, Long>> manifest = getMessageCacheManifest();
+        Map<String, Long> assetSizes = manifest.get(messageId);
+        if (assetSizes == null) {
+            assetSizes = new HashMap<>();
+            manifest.put(messageId, assetSizes);
+        }
+
+        final Long previousSize = assetSizes.put(assetKey, sizeBytes);
+        if (previousSize == null || previousSize != sizeBytes) {
+            messageCacheManifestChanged = true;
+            if (evictLeastRecentlyShownAssets()) {
+                assetUsageChanged = true;
+            }
+            schedulePersist();
+        }
+    }
+
+    /**
+     * Returns whether the asset with the given {@code assetKey} was added to the message cache of
+     * the message with the given {@code messageId}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param assetKey {@link String} containing the cache key of the asset
+     * @return true if the asset is tracked by the message cache manifest, false otherwise
+     */
+    synchronized boolean isMessageAssetCached(final String messageId, final String assetKey) {
+        final Map<String, Long> assetSizes = getMessageCacheManifest().get(messageId);
+        return assetSizes != null && assetSizes.containsKey(assetKey);
+    }
+
+    /**
+     * Returns whether the bundled fallbacks of the message with the given {@code messageId} were
+     * cached for the asset definition with the given {@code assetsDigest}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param assetsDigest {@link String} containing the digest of the message asset arrays
+     * @return true if the bundled fallbacks were cached, false otherwise
+     * @see CampaignBundledFallbacks
+     */
+    synchronized boolean hasBundledFallbacks(final String messageId, final String assetsDigest) {
+        return assetsDigest != null
+                && assetsDigest.equals(getBundledFallbackDigests().get(messageId));
+    }
+
+    /**
+     * Records that the bundled fallbacks of the message with the given {@code messageId} were
+     * cached for the asset definition with the given {@code assetsDigest}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param assetsDigest {@link String} containing the digest of the message asset arrays
+     */
+    synchronized void recordBundledFallbacksCached(
+            final String messageId, final String assetsDigest) {
+        if (!assetsDigest.equals(getBundledFallbackDigests().put(messageId, assetsDigest))) {
+            bundledFallbackDigestsChanged = true;
+            schedulePersist();
+        }
+    }
+
+    /**
+     * Removes the message caches of the messages which are not loaded in any retained rules
+     * partition.
+     *
+     * @see #updateReferences(String, Map)
+     */
+    synchronized void clearUnreferencedMessageCaches() {
+        final Set<String> retainedMessageIds = getReferencedMessageIds();
+        final Iterator<Map.Entry<String, Map<String, Long>>> iterator =
+                getMessageCacheManifest().entrySet().iterator();
+        boolean updated = false;
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Map<String, Long>> entry = iterator.next();
+            if (retainedMessageIds.contains(entry.getKey())) {
+                continue;
+            }
+
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "clearUnreferencedMessageCaches - Removing cached assets for message id %s.",
+                    entry.getKey());
+            final String messageCacheName = MESSAGE_CACHE + File.separator + entry.getKey();
+            for (final String assetKey : entry.getValue().keySet()) {
+                cacheService.remove(messageCacheName, assetKey);
+            }
+            iterator.remove();
+            updated = true;
+        }
+
+        if (updated) {
+            messageCacheManifestChanged = true;
+        }
+
+        if (getBundledFallbackDigests().keySet().retainAll(retainedMessageIds)) {
+            bundledFallbackDigestsChanged = true;
+        }
+        schedulePersist();
+    }
+
+    /**
+     * Returns the ids of the messages loaded in any retained rules partition.
+     *
+     * @return {@code Set<String>} containing the message ids
+     */
+    synchronized Set<String> getReferencedMessageIds() {
+        final Set<String> messageIds = new HashSet<>();
+        for (final Map<String, List<String>> messageAssets : getPartitionReferences().values()) {
+            messageIds.addAll(messageAssets.keySet());
+        }
+        return messageIds;
+    }
+
+    /**
+     * Returns whether message caches written before the message cache manifest was introduced may
+     * still exist.
+     *
+     * <p>These message caches are not tracked by the manifest and have to be removed by scanning
+     * the cache directory once.
+     *
+     * @return true if untracked message caches may exist, false otherwise
+     * @see #markUntrackedMessageCachesCleared()
+     */
+    synchronized boolean hasUntrackedMessageCaches() {
+        return campaignNamedCollection == null
+                || !campaignNamedCollection.getBoolean(
+                        CampaignConstants
+                                .CAMPAIGN_NAMED_COLLECTION_UNTRACKED_MESSAGE_CACHES_CLEARED_KEY,
+                        false);
+    }
+
+    /** Records that the message caches not tracked by the message cache manifest were removed. */
+    synchronized void markUntrackedMessageCachesCleared() {
+        if (campaignNamedCollection != null) {
+            campaignNamedCollection.setBoolean(
+                    CampaignConstants
+                            .CAMPAIGN_NAMED_COLLECTION_UNTRACKED_MESSAGE_CACHES_CLEARED_KEY,
+                    true);
+        }
+    }
+
+    /**
+     * Records the size of an asset which was added to the cache and evicts the least recently shown
+     * assets if the cache exceeds its budget.
+     *
+     * @param assetUrl {@link String} containing the asset URL
+     * @param sizeBytes {@code long} containing the size of the cached asset in bytes
+     */
+    synchronized void recordAssetCached(final String assetUrl, final long sizeBytes) {
+        final Map<String, AssetUsage> usage = getAssetUsage();
+        usage.remove(assetUrl);
+        usage.put(assetUrl, new AssetUsage(sizeBytes, System.currentTimeMillis()));
+        evictLeastRecentlyShownAssets();
+        assetUsageChanged = true;
+        schedulePersist();
+    }
+
+    /**
+     * Records that the cached assets with the given {@code assetUrls} were shown in a message.
+     *
+     * @param assetUrls {@code Collection<String>} containing the URLs of the shown assets
+     */
+    synchronized void recordAssetsShown(final Collection<String> assetUrls) {
+        final Map<String, AssetUsage> usage = getAssetUsage();
+        final long accessTimestamp = System.currentTimeMillis();
+        boolean updated = false;
+        for (final String assetUrl : assetUrls) {
+            final AssetUsage currentUsage = usage.remove(assetUrl);
+            if (currentUsage != null) {
+                usage.put(assetUrl, new AssetUsage(currentUsage.sizeBytes, accessTimestamp));
+                updated = true;
+            }
+        }
+
+        if (updated) {
+            assetUsageChanged = true;
+            schedulePersist();
+        }
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the cached assets and evicts the least recently
+     * shown assets if the cache exceeds the new budget.
+     *
+     * @param maxCacheBytes {@code long} containing the asset cache budget in bytes
+     */
+    synchronized void setMaxCacheBytes(final long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+        if (evictLeastRecentlyShownAssets()) {
+            assetUsageChanged = true;
+            schedulePersist();
+        }
+    }
+
+    /**
+     * Writes the changes which were not persisted yet to the Campaign {@link NamedCollection}.
+     *
+     * <p>Called by the scheduled batched write, may be called to persist the changes right away.
+     */
+    synchronized void flush() {
+        persistScheduled = false;
+        if (assetReferencesChanged) {
+            assetReferencesChanged = false;
+            persistAssetReferences();
+        }
+        if (assetUsageChanged) {
+            assetUsageChanged = false;
+            persistAssetUsage();
+        }
+        if (messageCacheManifestChanged) {
+            messageCacheManifestChanged = false;
+            persistMessageCacheManifest();
+        }
+        if (bundledFallbackDigestsChanged) {
+            bundledFallbackDigestsChanged = false;
+            persistBundledFallbackDigests();
+        }
+    }
+
+    /**
+     * Forgets the in-memory asset references, usage, message cache manifest and bundled fallback
+     * digests without persisting pending changes, called when the Campaign data is cleared.
+     *
+     * <p>They are read again from the Campaign {@link NamedCollection} when next needed.
+     */
+    synchronized void clear() {
+        partitionReferences = null;
+        assetUsage = null;
+        messageCacheManifest = null;
+        bundledFallbackDigests = null;
+        assetReferencesChanged = false;
+        assetUsageChanged = false;
+        messageCacheManifestChanged = false;
+        bundledFallbackDigestsChanged = false;
+        // asset maps resolved before the data was cleared are outdated
+        assetGeneration++;
+    }
+
+    /**
+     * Returns the maximum number of bytes used by the cached assets.
+     *
+     * @return {@code long} containing the asset cache budget in bytes
+     */
+    synchronized long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
+    /**
+     * Returns the number of bytes currently used by the cached assets and the message caches.
+     *
+     * @return {@code long} containing the size of the cached assets in bytes
+     */
+    synchronized long getCacheUsageBytes() {
+        long usageBytes = 0;
+        for (final AssetUsage usage : getAssetUsage().values()) {
+            usageBytes += usage.sizeBytes;
+        }
+        for (final Map<String, Long> assetSizes : getMessageCacheManifest().values()) {
+            for (final Long sizeBytes : assetSizes.values()) {
+                usageBytes += sizeBytes;
+            }
+        }
+        return usageBytes;
+    }
+
+    /**
+     * Returns the number of assets evicted to keep the cache within its budget since this store was
+     * created.
+     *
+     * @return {@code int} containing the number of evicted assets
+     */
+    synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns a counter incremented whenever an asset is removed from {@link #ASSET_CACHE}.
+     *
+     * <p>Asset maps resolved at an older generation may reference removed assets.
+     *
+     * @return {@code long} containing the asset generation
+     */
+    synchronized long getAssetGeneration() {
+        return assetGeneration;
+    }
+
+    /**
+     * Returns the number of messages of the retained rules partitions referencing the asset with
+     * the given {@code assetUrl}.
+     *
+     * @param assetUrl {@link String} containing the asset URL
+     * @return {@code int} containing the number of messages referencing the asset
+     */
+    synchronized int getReferenceCount(final String assetUrl) {
+        final Set<String> messageIds = new HashSet<>();
+        for (final Map<String, List<String>> messageAssets : getPartitionReferences().values()) {
+            for (final Map.Entry<String, List<String>> entry : messageAssets.entrySet()) {
+                if (entry.getValue().contains(assetUrl)) {
+                    messageIds.add(entry.getKey());
+                }
+            }
+        }
+        return messageIds.size();
+    }
+
+    private Set<String> getReferencedAssetUrls() {
+        final Set<String> assetUrls = new HashSet<>();
+        for (final Map<String, List<String>> messageAssets : getPartitionReferences().values()) {
+            for (final List<String> messageAssetUrls : messageAssets.values()) {
+                assetUrls.addAll(messageAssetUrls);
+            }
+        }
+        return assetUrls;
+    }
+
+    /**
+     * Removes the cached assets which were referenced before or have a tracked usage but are not
+     * referenced by any message of a retained rules partition anymore.
+     *
+     * @param previousAssetUrls {@code Set<String>} containing the asset URLs referenced before
+     */
+    private void removeUnreferencedAssets(final Set<String> previousAssetUrls) {
+        final Set<String> referencedAssetUrls = getReferencedAssetUrls();
+        for (final String assetUrl : previousAssetUrls) {
+            if (!referencedAssetUrls.contains(assetUrl)) {
+                Log.trace(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "removeUnreferencedAssets - Removing unreferenced asset (%s).",
+                        assetUrl);
+                cacheService.remove(ASSET_CACHE, assetUrl);
+                assetGeneration++;
+            }
+        }
+
+        final Map<String, AssetUsage> usage = getAssetUsage();
+        if (usage.keySet().retainAll(referencedAssetUrls)) {
+            assetUsageChanged = true;
+        }
+    }
+
+    /**
+     * Evicts the least recently shown assets until the cached assets and message caches fit within
+     * {@link #maxCacheBytes}.
+     *
+     * <p>Evicted assets stay referenced by their messages and are downloaded again with the next
+     * rules download. Message caches are not evicted, so they may still exceed {@code
+     * maxCacheBytes} once every asset was evicted.
+     *
+     * @return true if an asset was evicted, false otherwise
+     */
+    private boolean evictLeastRecentlyShownAssets() {
+        long usageBytes = getCacheUsageBytes();
+        if (usageBytes <= maxCacheBytes) {
+            return false;
+        }
+
+        boolean evicted = false;
+        final Iterator<Map.Entry<String, AssetUsage>> iterator = assetUsage.entrySet().iterator();
+        while (iterator.hasNext() && usageBytes > maxCacheBytes) {
+            final Map.Entry<String, AssetUsage> entry = iterator.next();
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "evictLeastRecentlyShownAssets - Asset cache exceeds %d bytes, evicting asset"
+                            + " (%s).",
+                    maxCacheBytes,
+                    entry.getKey());
+            cacheService.remove(ASSET_CACHE, entry.getKey());
+            assetGeneration++;
+            iterator.remove();
+            usageBytes -= entry.getValue().sizeBytes;
+            evictionCount++;
+            evicted = true;
+        }
+
+        if (usageBytes > maxCacheBytes) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "evictLeastRecentlyShownAssets - Message caches use %d bytes, exceeding the %d"
+                            + " bytes asset cache size.",
+                    usageBytes,
+                    maxCacheBytes);
+        }
+        return evicted;
+    }
+
+    /**
+     * Persists the changes right away if there is no {@link #persistExecutor}, otherwise schedules
+     * a batched write unless one is already scheduled.
+     */
+    private void schedulePersist() {
+        if (persistExecutor == null) {
+            flush();
+            return;
+        }
+
+        if (persistScheduled) {
+            return;
+        }
+
+        try {
+            persistExecutor.schedule(
+                    this::flush,
+                    CampaignConstants.ASSET_STORE_PERSIST_DELAY_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            persistScheduled = true;
+        } catch (final RejectedExecutionException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "schedulePersist - Unable to schedule the asset store write (%s).",
+                    exception.getLocalizedMessage());
+            flush();
+        }
+    }
+
+    private Map<String, Map<String, List<String>>> getPartitionReferences() {
+        if (partitionReferences != null) {
+            return partitionReferences;
+        }
+
+        partitionReferences = new HashMap<>();
+        if (campaignNamedCollection == null) {
+            return partitionReferences;
+        }
+
+        try {
+            final JSONObject storedReferences =
+                    new JSONObject(
+                            campaignNamedCollection.getString(
+                                    CampaignConstants
+                                            .CAMPAIGN_NAMED_COLLECTION_ASSET_REFERENCES_KEY,
+                                    "{}"));
+            final Iterator<String> keys = storedReferences.keys();
+            while (keys.hasNext()) {
+                final String key = keys.next();
+                final JSONObject storedMessageAssets = storedReferences.optJSONObject(key);
+                if (storedMessageAssets != null) {
+                    partitionReferences.put(key, readMessageAssets(storedMessageAssets));
+                } else {
+                    // references stored before partitions were tracked map assets to messages
+                    addLegacyReferences(key, storedReferences.getJSONArray(key));
+                }
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "getPartitionReferences - Ignoring invalid stored asset references (%s).",
+                    exception.getLocalizedMessage());
+        }
+        return partitionReferences;
+    }
+
+    private static Map<String, List<String>> readMessageAssets(final JSONObject storedMessageAssets)
+            throws JSONException {
+        final Map<String, List<String>> messageAssets = new HashMap<>();
+        final Iterator<String> messageIds = storedMessageAssets.keys();
+        while (messageIds.hasNext()) {
+            final String messageId = messageIds.next();
+            final JSONArray storedAssetUrls = storedMessageAssets.getJSONArray(messageId);
+            final List<String> assetUrls = new ArrayList<>();
+            for (int i = 0; i < storedAssetUrls.length(); i++) {
+                assetUrls.add(storedAssetUrls.getString(i));
+            }
+            messageAssets.put(messageId, assetUrls);
+        }
+        return messageAssets;
+    }
+
+    private void addLegacyReferences(final String assetUrl, final JSONArray storedMessageIds)
+            throws JSONException {
+        Map<String, List<String>> messageAssets = partitionReferences.get(LEGACY_PARTITION);
+        if (messageAssets == null) {
+            messageAssets = new HashMap<>();
+            partitionReferences.put(LEGACY_PARTITION, messageAssets);
+        }
+        for (int i = 0; i < storedMessageIds.length(); i++) {
+            final String messageId = storedMessageIds.getString(i);
+            List<String> assetUrls = messageAssets.get(messageId);
+            if (assetUrls == null) {
+                assetUrls = new ArrayList<>();
+                messageAssets.put(messageId, assetUrls);
+            }
+            assetUrls.add(assetUrl);
+        }
+    }
+
+    private Map<String, Map<String, Long>> getMessageCacheManifest() {
+        if (messageCacheManifest != null) {
+            return messageCacheManifest;
+        }
+
+        messageCacheManifest = new HashMap<>();
+        if (campaignNamedCollection == null) {
+            return messageCacheManifest;
+        }
+
+        try {
+            final JSONObject storedManifest =
+                    new JSONObject(
+                            campaignNamedCollection.getString(
+                                    CampaignConstants
+                                            .CAMPAIGN_NAMED_COLLECTION_MESSAGE_CACHE_MANIFEST_KEY,
+                                    "{}"));
+            final Iterator<String> messageIds = storedManifest.keys();
+            while (messageIds.hasNext()) {
+                final String messageId = messageIds.next();
+                final Map<String, Long> assetSizes = new HashMap<>();
+                final JSONArray storedAssetKeys = storedManifest.optJSONArray(messageId);
+                if (storedAssetKeys != null) {
+                    // manifests stored without sizes only list the asset keys
+                    for (int i = 0; i < storedAssetKeys.length(); i++) {
+                        assetSizes.put(storedAssetKeys.getString(i), 0L);
+                    }
+                } else {
+                    final JSONObject storedAssetSizes = storedManifest.getJSONObject(messageId);
+                    final Iterator<String> assetKeys = storedAssetSizes.keys();
+                    while (assetKeys.hasNext()) {
+                        final String assetKey = assetKeys.next();
+                        assetSizes.put(assetKey, storedAssetSizes.getLong(assetKey));
+                    }
+                }
+                messageCacheManifest.put(messageId, assetSizes);
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "getMessageCacheManifest - Ignoring invalid stored message cache manifest"
+                            + " (%s).",
+                    exception.getLocalizedMessage());
+        }
+        return messageCacheManifest;
+    }
+
+    private Map<String, String> getBundledFallbackDigests() {
+        if (bundledFallbackDigests != null) {
+            return bundledFallbackDigests;
+        }
+
+        bundledFallbackDigests = new HashMap<>();
+        if (campaignNamedCollection == null) {
+            return bundledFallbackDigests;
+        }
+
+        try {
+            final JSONObject storedDigests =
+                    new JSONObject(
+                            campaignNamedCollection.getString(
+                                    CampaignConstants
+                                            .CAMPAIGN_NAMED_COLLECTION_BUNDLED_FALLBACK_DIGESTS_KEY,
+                                    "{}"));
+            final Iterator<String> messageIds = storedDigests.keys();
+            while (messageIds.hasNext()) {
+                final String messageId = messageIds.next();
+                bundledFallbackDigests.put(messageId, storedDigests.getString(messageId));
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "getBundledFallbackDigests - Ignoring invalid stored bundled fallback digests"
+                            + " (%s).",
+                    exception.getLocalizedMessage());
+        }
+        return bundledFallbackDigests;
+    }
+
+    private void persistBundledFallbackDigests() {
+        if (campaignNamedCollection == null) {
+            return;
+        }
+
+        campaignNamedCollection.setString(
+                CampaignConstants.CAMPAIGN_NAMED_COLLECTION_BUNDLED_FALLBACK_DIGESTS_KEY,
+                new JSONObject(getBundledFallbackDigests()).toString());
+    }
+
+    private void persistMessageCacheManifest() {
+        if (campaignNamedCollection == null) {
+            return;
+        }
+
+        final JSONObject storedManifest = new JSONObject();
+        try {
+            for (final Map.Entry<String, Map<String, Long>> entry :
+                    getMessageCacheManifest().entrySet()) {
+                storedManifest.put(entry.getKey(), new JSONObject(entry.getValue()));
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "persistMessageCacheManifest - Unable to store message cache manifest (%s).",
+                    exception.getLocalizedMessage());
+            return;
+        }
+        campaignNamedCollection.setString(
+                CampaignConstants.CAMPAIGN_NAMED_COLLECTION_MESSAGE_CACHE_MANIFEST_KEY,
+                storedManifest.toString());
+    }
+
+    private Map<String, AssetUsage> getAssetUsage() {
+        if (assetUsage != null) {
+            return assetUsage;
+        }
+
+        assetUsage = new LinkedHashMap<>();
+        if (campaignNamedCollection == null) {
+            return assetUsage;
+        }
+
+        try {
+            final JSONObject storedUsage =
+                    new JSONObject(
+                            campaignNamedCollection.getString(
+                                    CampaignConstants.CAMPAIGN_NAMED_COLLECTION_ASSET_USAGE_KEY,
+                                    "{}"));
+            final List<Map.Entry<String, AssetUsage>> storedEntries = new ArrayList<>();
+            final Iterator<String> assetUrls = storedUsage.keys();
+            while (assetUrls.hasNext()) {
+                final String assetUrl = assetUrls.next();
+                final JSONObject usage = storedUsage.getJSONObject(assetUrl);
+                storedEntries.add(
+                        new AbstractMap.SimpleEntry<>(
+                                assetUrl,
+                                new AssetUsage(
+                                        usage.getLong(USAGE_SIZE_KEY),
+                                        usage.getLong(USAGE_LAST_ACCESS_KEY))));
+            }
+
+            // restore the least to most recently shown order
+            Collections.sort(
+                    storedEntries,
+                    (first, second) ->
+                            Long.compare(
+                                    first.getValue().lastAccessTimestamp,
+                                    second.getValue().lastAccessTimestamp));
+            for (final Map.Entry<String, AssetUsage> entry : storedEntries) {
+                assetUsage.put(entry.getKey(), entry.getValue());
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "getAssetUsage - Ignoring invalid stored asset usage (%s).",
+                    exception.getLocalizedMessage());
+        }
+        return assetUsage;
+    }
+
+    private void persistAssetUsage() {
+        if (campaignNamedCollection == null) {
+            return;
+        }
+
+        final JSONObject storedUsage = new JSONObject();
+        try {
+            for (final Map.Entry<String, AssetUsage> entry : assetUsage.entrySet()) {
+                final JSONObject usage = new JSONObject();
+                usage.put(USAGE_SIZE_KEY, entry.getValue().sizeBytes);
+                usage.put(USAGE_LAST_ACCESS_KEY, entry.getValue().lastAccessTimestamp);
+                storedUsage.put(entry.getKey(), usage);
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "persistAssetUsage - Unable to store asset usage (%s).",
+                    exception.getLocalizedMessage());
+            return;
+        }
+        campaignNamedCollection.setString(
+                CampaignConstants.CAMPAIGN_NAMED_COLLECTION_ASSET_USAGE_KEY,
+                storedUsage.toString());
+    }
+
+    private void persistAssetReferences() {
+        if (campaignNamedCollection == null) {
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "persistAssetReferences - Campaign Named Collection is null, cannot store"
+                            + " asset references.");
+            return;
+        }
+
+        final JSONObject storedReferences = new JSONObject();
+        try {
+            for (final Map.Entry<String, Map<String, List<String>>> partition :
+                    partitionReferences.entrySet()) {
+                final JSONObject storedMessageAssets = new JSONObject();
+                for (final Map.Entry<String, List<String>> entry :
+                        partition.getValue().entrySet()) {
+                    storedMessageAssets.put(entry.getKey(), new JSONArray(entry.getValue()));
+                }
+                storedReferences.put(partition.getKey(), storedMessageAssets);
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "persistAssetReferences - Unable to store asset references (%s).",
+                    exception.getLocalizedMessage());
+            return;
+        }
+        campaignNamedCollection.setString(
+                CampaignConstants.CAMPAIGN_NAMED_COLLECTION_ASSET_REFERENCES_KEY,
+                storedReferences.toString());
+    }
+
+    private static final class AssetUsage {
+        private final long sizeBytes;
+        private final long lastAccessTimestamp;
+
+        AssetUsage(final long sizeBytes, final long lastAccessTimestamp) {
+            this.sizeBytes = sizeBytes;
+            this.lastAccessTimestamp = lastAccessTimestamp;
+        }
+    }
+}
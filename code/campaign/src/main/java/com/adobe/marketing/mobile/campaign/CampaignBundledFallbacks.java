@@ -0,0 +1,192 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import android.content.Context;
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+import com.adobe.marketing.mobile.services.AppContextService;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.ServiceProvider;
+import com.adobe.marketing.mobile.services.caching.CacheEntry;
+import com.adobe.marketing.mobile.services.caching.CacheExpiry;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+import com.adobe.marketing.mobile.util.UrlUtils;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Caches the bundled fallback assets of {@code FullScreenMessage}s.
+ *
+ * <p>The last entry of a message asset array may name an asset bundled with the application, used
+ * when none of the remote assets is cached. Bundled fallbacks are copied to the message cache
+ * {@link CampaignAssetStore#MESSAGE_CACHE}/{@code messageId} once per message asset definition,
+ * right after the rules are registered, so showing the message does not read the application
+ * assets.
+ */
+final class CampaignBundledFallbacks {
+    private static final String SELF_TAG = "CampaignBundledFallbacks";
+
+    private CampaignBundledFallbacks() {}
+
+    /**
+     * Returns the message cache key of the bundled fallback for the provided {@code
+     * remoteAssetUrl}.
+     *
+     * @param remoteAssetUrl {@link String} containing the first entry of the asset array
+     * @return {@link String} containing the {@code remoteAssetUrl}, prefixed with {@value
+     *     CampaignConstants#LOCAL_ASSET_URI} if it is not a valid URL
+     */
+    static String getCacheKey(final String remoteAssetUrl) {
+        return !UrlUtils.isValidUrl(remoteAssetUrl)
+                ? CampaignConstants.LOCAL_ASSET_URI + remoteAssetUrl
+                : remoteAssetUrl;
+    }
+
+    /**
+     * Returns whether the provided {@code assetArray} ends with a bundled asset.
+     *
+     * @param assetArray {@code List<String>} containing the asset candidates
+     * @return true if the last asset candidate is not a URL, false otherwise
+     */
+    static boolean hasBundledFallback(final List<String> assetArray) {
+        return assetArray != null
+                && !assetArray.isEmpty()
+                && !UrlUtils.isValidUrl(assetArray.get(assetArray.size() - 1));
+    }
+
+    /**
+     * Caches the bundled fallbacks of the message with the given {@code messageId}, unless they
+     * were already cached for the same {@code assetArrays}.
+     *
+     * @param cacheService {@link CacheService} containing the message caches
+     * @param assetStore {@link CampaignAssetStore} tracking the message caches
+     * @param messageId {@link String} containing the message id
+     * @param assetArrays {@code List<List<String>>} containing the asset arrays of the message
+     */
+    static void cacheMessageFallbacks(
+            final CacheService cacheService,
+            final CampaignAssetStore assetStore,
+            final String messageId,
+            final List<List<String>> assetArrays) {
+        if (cacheService == null || assetStore == null || assetArrays == null) {
+            return;
+        }
+
+        final String assetsDigest = StringEncoder.sha2hash(assetArrays.toString());
+        if (assetStore.hasBundledFallbacks(messageId, assetsDigest)) {
+            return;
+        }
+
+        boolean cached = true;
+        for (final List<String> assetArray : assetArrays) {
+            if (!hasBundledFallback(assetArray)) {
+                continue;
+            }
+
+            final String cacheKey = cacheFallback(cacheService, assetStore, messageId, assetArray);
+            cached &= cacheKey != null && assetStore.isMessageAssetCached(messageId, cacheKey);
+        }
+
+        // fallbacks which failed to be cached are cached again with the next rules registration
+        if (cached) {
+            assetStore.recordBundledFallbacksCached(messageId, assetsDigest);
+        }
+    }
+
+    /**
+     * Copies the bundled fallback of the provided {@code assetArray} to the message cache.
+     *
+     * @param cacheService {@link CacheService} containing the message caches
+     * @param assetStore {@link CampaignAssetStore} tracking the message caches, may be null
+     * @param messageId {@link String} containing the message id
+     * @param assetArray {@code List<String>} containing the asset candidates
+     * @return {@link String} containing the cache key of the fallback, or null if the bundled asset
+     *     could not be read
+     */
+    static String cacheFallback(
+            final CacheService cacheService,
+            final CampaignAssetStore assetStore,
+            final String messageId,
+            final List<String> assetArray) {
+        final AppContextService appContextService =
+                ServiceProvider.getInstance().getAppContextService();
+        final Context applicationContext =
+                appContextService != null ? appContextService.getApplicationContext() : null;
+        if (applicationContext == null) {
+            return null;
+        }
+
+        final String bundledFileName = assetArray.get(assetArray.size() - 1);
+        final String cacheKey = getCacheKey(assetArray.get(0));
+        final boolean isCached;
+        final long sizeBytes;
+        try (CountingInputStream bundledFile =
+                new CountingInputStream(applicationContext.getAssets().open(bundledFileName))) {
+            isCached =
+                    cacheService.set(
+                            CampaignAssetStore.MESSAGE_CACHE + File.separator + messageId,
+                            cacheKey,
+                            new CacheEntry(bundledFile, CacheExpiry.never(), null));
+            sizeBytes = bundledFile.count;
+        } catch (final IOException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "cacheFallback - Exception occurred reading bundled asset: %s.",
+                    exception.getMessage());
+            return null;
+        }
+
+        if (isCached && assetStore != null) {
+            assetStore.recordMessageAssetCached(messageId, cacheKey, sizeBytes);
+        }
+        return cacheKey;
+    }
+
+    /** Counts the bytes read from a bundled asset while it is cached. */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length)
+                throws IOException {
+            final int bytesRead = super.read(buffer, offset, length);
+            if (bytesRead > 0) {
+                count += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(final long byteCount) throws IOException {
+            final long skipped = super.skip(byteCount);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -25,6 +25,8 @@ final class CampaignConstants {
     static final String LOG_TAG = "Campaign";
     static final String EXTENSION_NAME = "com.adobe.module.campaign";
     static final String RULE_ENGINE_NAME = EXTENSION_NAME + ".rulesengine";
+    static final String EVENT_SOURCE_MESSAGE_ASSETS_READY =
+            "com.adobe.eventSource.campaign.messageAssetsReady";
     static final String FRIENDLY_NAME = "Campaign";
     static final String DEPRECATED_1X_HIT_DATABASE_FILENAME = "ADBMobileCampaign.sqlite";
 
@@ -33,6 +35,21 @@ final class CampaignConstants {
     static final String CAMPAIGN_NAMED_COLLECTION_EXPERIENCE_CLOUD_ID_KEY = "ExperienceCloudId";
     static final String CAMPAIGN_NAMED_COLLECTION_REGISTRATION_TIMESTAMP_KEY =
             "CampaignRegistrationTimestamp";
+    static final String CAMPAIGN_NAMED_COLLECTION_RULES_PARTITIONS_KEY = "CampaignRulesPartitions";
+    static final String CAMPAIGN_NAMED_COLLECTION_ASSET_REFERENCES_KEY = "CampaignAssetReferences";
+    static final String CAMPAIGN_NAMED_COLLECTION_ASSET_USAGE_KEY = "CampaignAssetUsage";
+    static final String CAMPAIGN_NAMED_COLLECTION_MESSAGE_CACHE_MANIFEST_KEY =
+            "CampaignMessageCacheManifest";
+    static final String CAMPAIGN_NAMED_COLLECTION_UNTRACKED_MESSAGE_CACHES_CLEARED_KEY =
+            "CampaignUntrackedMessageCachesCleared";
+    static final String CAMPAIGN_NAMED_COLLECTION_BUNDLED_FALLBACK_DIGESTS_KEY =
+            "CampaignBundledFallbackDigests";
+    static final String CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_ATTEMPTS_KEY =
+            "CampaignHitRetryAttempts";
+    static final String CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_NOT_BEFORE_KEY =
+            "CampaignHitRetryNotBefore";
+    static final String CAMPAIGN_NAMED_COLLECTION_RECENT_TRACKING_KEYS_KEY =
+            "CampaignRecentTrackingKeys";
 
     // acp campaign datastore file
     static final String ACP_CAMPAIGN_DATASTORE_NAME = "CampaignDataStore";
@@ -40,6 +57,8 @@ final class CampaignConstants {
     static final String AEPSDK_CACHE_BASE_DIR = "aepsdkcache";
     static final String CACHE_BASE_DIR = "campaign";
     static final String MESSAGE_CACHE_DIR = "messages";
+    static final String ASSET_CACHE_DIR = "assets";
+    static final String PARTIAL_ASSET_CACHE_DIR = "partialAssets";
     static final String ZIP_HANDLE = "campaign_rules.zip";
     static final String LOCAL_ASSET_URI = "file:///android_asset/";
 
@@ -70,12 +89,33 @@ final class CampaignConstants {
 
     static final String RULES_CACHE_FOLDER = "campaignRules";
     static final String RULES_JSON_FILE_NAME = "rules.json";
+    static final String RULES_SNAPSHOT_FILE_NAME = "rules.snapshot";
+    static final String RULES_DELTA_JSON_FILE_NAME = "delta.json";
+    static final String RULES_BUNDLE_TYPE_DELTA = "delta";
+    static final String RULES_BUNDLE_DIGEST_KEY = "bundleDigest";
+    static final int RULES_CACHE_PARTITION_LIMIT = 3;
 
     static final String CAMPAIGN_REGISTRATION_URL =
             "https://%s/rest/head/mobileAppV5/%s/subscriptions/%s";
     static final String CAMPAIGN_RULES_DOWNLOAD_URL = "https://%s/%s/%s/%s/rules.zip";
     static final String CAMPAIGN_TRACKING_URL = "https://%s/r/?id=%s,%s,%s&mcId=%s";
     static final int CAMPAIGN_TIMEOUT_DEFAULT = 5;
+    static final int DEFAULT_ASSET_DOWNLOAD_CONCURRENCY = 4;
+    static final long DEFAULT_ASSET_CACHE_MAX_BYTES = 50L * 1024 * 1024;
+    static final long ASSET_STORE_PERSIST_DELAY_MILLIS = 2000;
+    static final String ASSET_READINESS_POLICY_WAIT = "wait";
+    static final String ASSET_READINESS_POLICY_FALLBACK = "fallback";
+    static final String ASSET_READINESS_POLICY_SKIP = "skip";
+    static final long DEFAULT_ASSET_READINESS_TIMEOUT_MILLIS = 2000;
+    static final int MESSAGE_DISPLAY_CACHE_MAX_ENTRIES = 10;
+    static final int HIT_RETRY_BASE_INTERVAL_SECONDS = 5;
+    static final int HIT_RETRY_MAX_INTERVAL_SECONDS = 600;
+    static final int HIT_RETRY_MIN_INTERVAL_SECONDS = 1;
+    static final int HIT_RETRY_AFTER_MAX_SECONDS = 3600;
+    static final int HIT_BURST_SIZE = 5;
+    static final int REGISTRATION_SUPERSEDE_SCAN_LIMIT = 100;
+    static final long TRACKING_DUPLICATE_WINDOW_MILLIS = 600000;
+    static final int TRACKING_RECENT_KEYS_LIMIT = 100;
 
     static final String CAMPAIGN_PUSH_PLATFORM = "pushPlatform";
     static final String EXPERIENCE_CLOUD_ID = "marketingCloudId";
@@ -89,21 +129,31 @@ final class CampaignConstants {
 
     static final String MESSAGE_TRIGGERED_ACTION_VALUE = "7";
     static final String CHARSET_UTF_8 = "UTF-8";
+    static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    static final int HTTP_TOO_MANY_REQUESTS = 429;
     static final String HTTP_HEADER_KEY_ACCEPT = "Accept";
     static final String HTTP_HEADER_KEY_CONNECTION = "connection";
     static final String HTTP_HEADER_KEY_CONTENT_TYPE = "Content-Type";
     static final String HTTP_HEADER_CONTENT_TYPE_JSON_APPLICATION = "application/json";
+    static final String HTTP_HEADER_CONNECTION_KEEP_ALIVE = "keep-alive";
     static final String HTTP_HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
     static final String HTTP_HEADER_LAST_MODIFIED = "Last-Modified";
     static final String HTTP_HEADER_IF_NONE_MATCH = "If-None-Match";
     static final String HTTP_HEADER_IF_RANGE = "If-Range";
+    static final String HTTP_HEADER_RETRY_AFTER = "Retry-After";
+    static final String HTTP_HEADER_RANGE = "Range";
+    static final String HTTP_HEADER_CONTENT_RANGE = "Content-Range";
+    static final String HTTP_HEADER_CONTENT_LENGTH = "Content-Length";
     static final String HTTP_HEADER_ETAG = "Etag";
+    static final String HTTP_HEADER_BUNDLE_VERSION = "X-Campaign-Bundle-Version";
+    static final String HTTP_HEADER_BUNDLE_TYPE = "X-Campaign-Bundle-Type";
     static final ArrayList<Integer> recoverableNetworkErrorCodes =
             new ArrayList(
                     Arrays.asList(
                             HttpURLConnection.HTTP_CLIENT_TIMEOUT,
                             HttpURLConnection.HTTP_GATEWAY_TIMEOUT,
-                            HttpURLConnection.HTTP_UNAVAILABLE));
+                            HttpURLConnection.HTTP_UNAVAILABLE,
+                            HTTP_TOO_MANY_REQUESTS));
 
     // cache service metadata
     static final String METADATA_PATH = "pathToFile";
@@ -125,6 +175,9 @@ final class CampaignConstants {
         static final String URL = "url";
         static final String PAYLOAD = "payload";
         static final String TIMEOUT = "timeout";
+        // prefix of the flat encoding version 1: "CH1:<timeout>:<url length>:<url><payload>"
+        static final String ENCODING_V1_PREFIX = "CH1:";
+        static final char ENCODING_SEPARATOR = ':';
 
         private CampaignHit() {}
     }
@@ -156,6 +209,7 @@ final class CampaignConstants {
             static final String TRACK_INFO_KEY_BROADLOG_ID = "broadlogId";
             static final String TRACK_INFO_KEY_DELIVERY_ID = "deliveryId";
             static final String TRACK_INFO_KEY_ACTION = "action";
+            static final String ASSETS_READY_WAIT_ID = "assetsreadywaitid";
 
             private Campaign() {}
         }
@@ -172,6 +226,14 @@ final class CampaignConstants {
             static final String CAMPAIGN_TIMEOUT = "campaign.timeout";
             static final String CAMPAIGN_REGISTRATION_DELAY_KEY = "campaign.registrationDelay";
             static final String CAMPAIGN_REGISTRATION_PAUSED_KEY = "campaign.registrationPaused";
+            static final String CAMPAIGN_ASSET_DOWNLOAD_CONCURRENCY_KEY =
+                    "campaign.assetDownloadConcurrency";
+            static final String CAMPAIGN_ASSET_CACHE_MAX_BYTES_KEY = "campaign.assetCacheMaxBytes";
+            static final String CAMPAIGN_OPTIMIZE_IMAGE_ASSETS_KEY = "campaign.optimizeImageAssets";
+            static final String CAMPAIGN_ASSET_READINESS_POLICY_KEY =
+                    "campaign.assetReadinessPolicy";
+            static final String CAMPAIGN_ASSET_READINESS_TIMEOUT_KEY =
+                    "campaign.assetReadinessTimeout";
 
             private Configuration() {}
         }
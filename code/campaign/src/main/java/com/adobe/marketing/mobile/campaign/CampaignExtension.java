@@ -29,7 +29,6 @@ import com.adobe.marketing.mobile.SharedStateResult;
 import com.adobe.marketing.mobile.SharedStateStatus;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRulesEngine;
 import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
-import com.adobe.marketing.mobile.launch.rulesengine.download.RulesLoadResult;
 import com.adobe.marketing.mobile.services.DataEntity;
 import com.adobe.marketing.mobile.services.DataQueue;
 import com.adobe.marketing.mobile.services.DataQueuing;
@@ -38,16 +37,15 @@ import com.adobe.marketing.mobile.services.Log;
 import com.adobe.marketing.mobile.services.NamedCollection;
 import com.adobe.marketing.mobile.services.PersistentHitQueue;
 import com.adobe.marketing.mobile.services.ServiceProvider;
-import com.adobe.marketing.mobile.services.caching.CacheResult;
 import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.util.DataReader;
 import com.adobe.marketing.mobile.util.MapUtils;
-import com.adobe.marketing.mobile.util.StreamUtils;
 import com.adobe.marketing.mobile.util.StringUtils;
 import java.io.File;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import org.json.JSONObject;
 
@@ -60,6 +58,7 @@ import org.json.JSONObject;
  * <ul>
  *   <li>{@link EventType#CAMPAIGN} - {@link EventSource#REQUEST_CONTENT}
  *   <li>{@code EventType.CAMPAIGN} - {@link EventSource#REQUEST_IDENTITY}
+ *   <li>{@code EventType.CAMPAIGN} - {@value CampaignConstants#EVENT_SOURCE_MESSAGE_ASSETS_READY}
  *   <li>{@link EventType#CONFIGURATION} - {@link EventSource#RESPONSE_CONTENT}
  *   <li>{@link EventType#GENERIC_DATA} - {@link EventSource#OS}
  *   <li>{@link EventType#HUB} - {@link EventSource#SHARED_STATE}
@@ -70,11 +69,14 @@ import org.json.JSONObject;
  *
  * <ul>
  *   <li>{@link EventType#CAMPAIGN} - {@code EventSource.RESPONSE_CONTENT}
+ *   <li>{@code EventType.CAMPAIGN} - {@value CampaignConstants#EVENT_SOURCE_MESSAGE_ASSETS_READY},
+ *       handled by the {@code CampaignExtension} itself
  * </ul>
  */
 public class CampaignExtension extends Extension {
     private static final String DATA_FOR_MESSAGE_REQUEST_EVENT_NAME = "DataForMessageRequest";
     private static final String INTERNAL_GENERIC_DATA_EVENT_NAME = "InternalGenericDataEvent";
+    private static final String MESSAGE_ASSETS_READY_EVENT_NAME = "MessageAssetsReady";
     private static final String CLICKED_STRING_VALUE = "2";
     private static final String VIEWED_STRING_VALUE = "1";
     private final String SELF_TAG = "CampaignExtension";
@@ -84,10 +86,15 @@ public class CampaignExtension extends Extension {
     private final CacheService cacheService;
     private final CampaignRulesDownloader campaignRulesDownloader;
     private final CampaignState campaignState;
+    private final CampaignTrackingDeduplicator trackingDeduplicator;
+    private final CampaignRetryPolicy retryPolicy;
+    private final Map<String, AwaitingMessage> messagesAwaitingAssets = new HashMap<>();
     private final DataStoring dataStoreService;
     private String linkageFields;
     private boolean hasCachedRulesLoaded = false;
     private boolean hasToDownloadRules = true;
+    private long evaluatedEventCount = 0;
+    private long skippedEventCount = 0;
 
     /**
      * Constructor.
@@ -119,11 +126,17 @@ public class CampaignExtension extends Extension {
                 ServiceProvider.getInstance().getDataQueueService();
         final DataQueue campaignDataQueue =
                 campaignDataQueueService.getDataQueue(CampaignConstants.EXTENSION_NAME);
+        retryPolicy = new CampaignRetryPolicy(getNamedCollection(), new Random());
         campaignPersistentHitQueue =
-                new PersistentHitQueue(campaignDataQueue, new CampaignHitProcessor());
+                new PersistentHitQueue(
+                        campaignDataQueue,
+                        new CampaignHitProcessor(retryPolicy, campaignDataQueue));
 
         // initialize the campaign state
         campaignState = new CampaignState();
+
+        // initialize the tracking hit deduplicator
+        trackingDeduplicator = new CampaignTrackingDeduplicator(getNamedCollection());
     }
 
     /**
@@ -161,11 +174,15 @@ public class CampaignExtension extends Extension {
         // use passed in campaign rules downloader
         this.campaignRulesDownloader = campaignRulesDownloader;
 
-        // use passed in persistent hit queue
+        // use passed in persistent hit queue, its retry policy is not accessible
         this.campaignPersistentHitQueue = persistentHitQueue;
+        this.retryPolicy = null;
 
         // use passed in campaign state
         this.campaignState = campaignState;
+
+        // initialize the tracking hit deduplicator
+        this.trackingDeduplicator = new CampaignTrackingDeduplicator(getNamedCollection());
     }
 
     @Override
@@ -199,6 +216,10 @@ public class CampaignExtension extends Extension {
                         EventType.CAMPAIGN,
                         EventSource.REQUEST_RESET,
                         this::handleLinkageFieldsEvent);
+        getApi().registerEventListener(
+                        EventType.CAMPAIGN,
+                        CampaignConstants.EVENT_SOURCE_MESSAGE_ASSETS_READY,
+                        this::handleMessageAssetsReadyEvent);
         getApi().registerEventListener(
                         EventType.CONFIGURATION,
                         EventSource.RESPONSE_CONTENT,
@@ -259,12 +280,51 @@ public class CampaignExtension extends Extension {
      * Processes all events dispatched to the {@code EventHub} to determine if any rules are
      * matched.
      *
+     * <p>Events which cannot match any of the registered rules, as determined by the {@link
+     * CampaignRulesEventIndex} of the rules, are skipped without being evaluated by the {@code
+     * LaunchRulesEngine}.
+     *
      * @param event incoming {@link Event} object to be processed
      */
     void handleWildcardEvents(final Event event) {
+        final CampaignRulesEventIndex rulesEventIndex =
+                campaignRulesDownloader.getRulesEventIndex();
+        if (rulesEventIndex != null && !rulesEventIndex.mayMatch(event)) {
+            skippedEventCount++;
+            return;
+        }
+
+        evaluatedEventCount++;
         campaignRulesEngine.processEvent(event);
     }
 
+    /**
+     * Returns the number of events evaluated by the Campaign {@code LaunchRulesEngine}.
+     *
+     * @return {@code long} containing the evaluated event count
+     */
+    long getEvaluatedEventCount() {
+        return evaluatedEventCount;
+    }
+
+    /**
+     * Returns the number of events skipped because they could not match any Campaign rule.
+     *
+     * @return {@code long} containing the skipped event count
+     */
+    long getSkippedEventCount() {
+        return skippedEventCount;
+    }
+
+    /**
+     * Returns the number of message tracking hits dropped because they were already queued.
+     *
+     * @return {@code long} containing the suppressed tracking hit count
+     */
+    long getSuppressedTrackingHitCount() {
+        return trackingDeduplicator.getSuppressedCount();
+    }
+
     /**
      * Handles Rule Engine Response Content events which are dispatched when a event matches a rule
      * in the Campaign {@link LaunchRulesEngine}. This handler will attempt to show a {@link
@@ -319,6 +379,9 @@ public class CampaignExtension extends Extension {
             return;
         }
 
+        // the message may be shown again, download its pending assets first
+        campaignRulesDownloader.prioritizeMessageAssets(id);
+
         try {
             final CampaignMessage triggeredMessage =
                     CampaignMessage.createMessageObject(
@@ -332,7 +395,8 @@ public class CampaignExtension extends Extension {
                 return;
             }
 
-            triggeredMessage.showMessage();
+            triggeredMessage.setTriggerTimestamp(event.getTimestamp());
+            showMessageWhenAssetsReady(id, triggeredMessage);
         } catch (final CampaignMessageRequiredFieldMissingException ex) {
             Log.error(
                     CampaignConstants.LOG_TAG,
@@ -342,6 +406,93 @@ public class CampaignExtension extends Extension {
         }
     }
 
+    /**
+     * Shows the provided {@code message} according to the configured asset readiness policy.
+     *
+     * <ul>
+     *   <li>{@value CampaignConstants#ASSET_READINESS_POLICY_WAIT}: waits for the pending asset
+     *       downloads of the message, up to the configured timeout, before showing it. The message
+     *       is shown when the dispatched {@code MessageAssetsReady} event is handled, so it is not
+     *       shown on the thread which completed the download or the wait. The event only carries a
+     *       random wait id, the message itself stays in the extension.
+     *   <li>{@value CampaignConstants#ASSET_READINESS_POLICY_SKIP}: does not show the message if
+     *       its assets are not cached.
+     *   <li>{@value CampaignConstants#ASSET_READINESS_POLICY_FALLBACK}: shows the message right
+     *       away, using the bundled fallback assets for the ones not cached.
+     * </ul>
+     *
+     * @param messageId {@link String} containing the message id
+     * @param message {@link CampaignMessage} to be shown
+     */
+    private void showMessageWhenAssetsReady(final String messageId, final CampaignMessage message) {
+        final CampaignAssetReadiness assetReadiness = campaignRulesDownloader.getAssetReadiness();
+        if (assetReadiness == null || !message.shouldDownloadAssets()) {
+            message.showMessage();
+            return;
+        }
+
+        final String policy = campaignState.getAssetReadinessPolicy();
+        final boolean ready = assetReadiness.isMessageReady(messageId);
+        if (!ready && CampaignConstants.ASSET_READINESS_POLICY_WAIT.equals(policy)) {
+            final String waitId = UUID.randomUUID().toString();
+            messagesAwaitingAssets.put(waitId, new AwaitingMessage(messageId, message));
+            assetReadiness.whenMessageReady(
+                    messageId,
+                    campaignState.getAssetReadinessTimeoutMillis(),
+                    assetsReady -> dispatchMessageAssetsReady(waitId));
+            return;
+        }
+
+        if (!ready && CampaignConstants.ASSET_READINESS_POLICY_SKIP.equals(policy)) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "showMessageWhenAssetsReady - Assets of message id %s are not cached, the"
+                            + " message will not be shown.",
+                    messageId);
+            assetReadiness.recordMessageSkipped();
+            return;
+        }
+
+        assetReadiness.recordMessageDisplayed(ready);
+        message.showMessage();
+    }
+
+    /**
+     * Shows the message which was waiting for its assets, once the {@code MessageAssetsReady} event
+     * dispatched by {@link #dispatchMessageAssetsReady(String)} is handled.
+     *
+     * <p>Events with an unknown wait id are ignored, and the readiness of the message is checked
+     * again rather than read from the event.
+     *
+     * @param event incoming {@link Event} object to be processed
+     */
+    void handleMessageAssetsReadyEvent(final Event event) {
+        final String waitId =
+                DataReader.optString(
+                        event.getEventData(),
+                        CampaignConstants.EventDataKeys.Campaign.ASSETS_READY_WAIT_ID,
+                        null);
+        final AwaitingMessage awaitingMessage =
+                waitId != null ? messagesAwaitingAssets.remove(waitId) : null;
+        if (awaitingMessage == null) {
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "handleMessageAssetsReadyEvent - No message waiting for assets with wait id"
+                            + " (%s).",
+                    waitId);
+            return;
+        }
+
+        final CampaignAssetReadiness assetReadiness = campaignRulesDownloader.getAssetReadiness();
+        if (assetReadiness != null) {
+            assetReadiness.recordMessageDisplayed(
+                    assetReadiness.isMessageReady(awaitingMessage.messageId));
+        }
+        awaitingMessage.message.showMessage();
+    }
+
     /**
      * Stores {@code Identity} and {@code Configuration} information.
      *
@@ -397,31 +548,18 @@ public class CampaignExtension extends Extension {
         }
 
         setCampaignState(event);
-
-        // attempt to load cached rules on the first configuration event received
+        campaignRulesDownloader.setAssetDownloadConcurrency(
+                campaignState.getAssetDownloadConcurrency());
+        campaignRulesDownloader.setAssetCacheMaxBytes(campaignState.getAssetCacheMaxBytes());
+        campaignRulesDownloader.setImageAssetOptimizationEnabled(
+                campaignState.getOptimizeImageAssets());
+
+        // attempt to load cached rules on the first configuration event received. the rules are
+        // loaded on a worker thread, events received before they are registered are evaluated by
+        // the rules engine once the rules are registered.
         if (!hasCachedRulesLoaded) {
-            final CacheResult cachedRulesZip =
-                    cacheService.get(
-                            CampaignConstants.CACHE_BASE_DIR
-                                    + File.separator
-                                    + CampaignConstants.RULES_CACHE_FOLDER,
-                            CampaignConstants.ZIP_HANDLE);
-            if (cachedRulesZip != null) {
-                final CacheResult cacheRulesJson =
-                        cacheService.get(
-                                CampaignConstants.CACHE_BASE_DIR
-                                        + File.separator
-                                        + CampaignConstants.RULES_CACHE_FOLDER,
-                                CampaignConstants.RULES_JSON_FILE_NAME);
-                if (cacheRulesJson != null) {
-                    final RulesLoadResult cachedRules =
-                            new RulesLoadResult(
-                                    StreamUtils.readAsString(cacheRulesJson.getData()),
-                                    RulesLoadResult.Reason.SUCCESS);
-                    campaignRulesDownloader.registerRules(cachedRules);
-                    hasCachedRulesLoaded = true;
-                }
-            }
+            campaignRulesDownloader.loadCachedRulesAsync();
+            hasCachedRulesLoaded = true;
         }
 
         final MobilePrivacyStatus privacyStatus = campaignState.getMobilePrivacyStatus();
@@ -454,8 +592,10 @@ public class CampaignExtension extends Extension {
      *
      * <ul>
      *   <li>Clears stored {@link #linkageFields}.
+     *   <li>Drops the messages waiting for their assets.
      *   <li>Unregisters previously registered rules.
      *   <li>Clears directory containing any previously cached rules.
+     *   <li>Cancels the message asset downloads and clears the cached message assets.
      *   <li>Clears the Campaign data store.
      * </ul>
      */
@@ -467,12 +607,20 @@ public class CampaignExtension extends Extension {
 
         linkageFields = "";
 
-        // unregister campaign rules
+        // drop the messages waiting for their assets
+        messagesAwaitingAssets.clear();
+
+        // unregister campaign rules, including any cached rules which are still loading
+        campaignRulesDownloader.cancelCachedRulesLoad();
         campaignRulesEngine.replaceRules(null);
 
         // clear cached rules
         clearRulesCacheDirectory();
 
+        // cancel the asset downloads first, so no asset is cached after the caches are cleared
+        campaignRulesDownloader.cancelAssetDownloads();
+        clearAssetCacheDirectories();
+
         // clear the datastore
         clearCampaignNamedCollection();
     }
@@ -548,6 +696,12 @@ public class CampaignExtension extends Extension {
 
         dispatchMessageEvent(action, deliveryId);
 
+        // drop tracking hits already queued for a re-opened notification or a replayed event
+        if (trackingDeduplicator.isDuplicate(
+                broadlogId, deliveryId, action, event.getTimestamp())) {
+            return;
+        }
+
         final String url =
                 buildTrackingUrl(
                         campaignState.getCampaignServer(),
@@ -556,7 +710,9 @@ public class CampaignExtension extends Extension {
                         action,
                         campaignState.getExperienceCloudId());
 
-        processRequest(url, "", campaignState, event);
+        if (processRequest(url, "", campaignState, event)) {
+            trackingDeduplicator.recordQueued(broadlogId, deliveryId, action, event.getTimestamp());
+        }
     }
 
     /**
@@ -738,24 +894,34 @@ public class CampaignExtension extends Extension {
                             + " campaign rules.");
             return;
         }
-        clearRulesCacheDirectory();
+        // register any cached rules for these linkage fields while they are revalidated
+        campaignRulesDownloader.activateRulesPartition(this.linkageFields, false);
         triggerRulesDownload();
     }
 
     /** Clears the rules cache directory. */
     void clearRulesCacheDirectory() {
-        final File rulesCacheDir =
-                new File(
-                        ServiceProvider.getInstance()
-                                        .getDeviceInfoService()
-                                        .getApplicationCacheDir()
-                                + File.separator
-                                + CampaignConstants.AEPSDK_CACHE_BASE_DIR
-                                + File.separator
-                                + CampaignConstants.CACHE_BASE_DIR
-                                + File.separator
-                                + CampaignConstants.RULES_CACHE_FOLDER);
-        Utils.cleanDirectory(rulesCacheDir);
+        Utils.cleanDirectory(getCampaignCacheDirectory(CampaignConstants.RULES_CACHE_FOLDER));
+    }
+
+    /**
+     * Clears the cached message assets, the partially downloaded assets and the per-message caches.
+     */
+    void clearAssetCacheDirectories() {
+        Utils.cleanDirectory(getCampaignCacheDirectory(CampaignConstants.ASSET_CACHE_DIR));
+        Utils.cleanDirectory(getCampaignCacheDirectory(CampaignConstants.PARTIAL_ASSET_CACHE_DIR));
+        Utils.cleanDirectory(getCampaignCacheDirectory(CampaignConstants.MESSAGE_CACHE_DIR));
+    }
+
+    private File getCampaignCacheDirectory(final String folder) {
+        return new File(
+                ServiceProvider.getInstance().getDeviceInfoService().getApplicationCacheDir()
+                        + File.separator
+                        + CampaignConstants.AEPSDK_CACHE_BASE_DIR
+                        + File.separator
+                        + CampaignConstants.CACHE_BASE_DIR
+                        + File.separator
+                        + folder);
     }
 
     /**
@@ -786,6 +952,28 @@ public class CampaignExtension extends Extension {
         extensionApi.dispatch(messageEvent);
     }
 
+    /**
+     * Invokes the extension api dispatch function to dispatch a {@code EventType.CAMPAIGN}, {@value
+     * CampaignConstants#EVENT_SOURCE_MESSAGE_ASSETS_READY} event once waiting for the assets of a
+     * message ended.
+     *
+     * @param waitId {@link String} containing the wait id of the message
+     */
+    private void dispatchMessageAssetsReady(final String waitId) {
+        final Map<String, Object> eventData = new HashMap<>();
+        eventData.put(CampaignConstants.EventDataKeys.Campaign.ASSETS_READY_WAIT_ID, waitId);
+
+        final Event assetsReadyEvent =
+                new Event.Builder(
+                                MESSAGE_ASSETS_READY_EVENT_NAME,
+                                EventType.CAMPAIGN,
+                                CampaignConstants.EVENT_SOURCE_MESSAGE_ASSETS_READY)
+                        .setEventData(eventData)
+                        .build();
+
+        extensionApi.dispatch(assetsReadyEvent);
+    }
+
     /**
      * Invokes the extension api dispatch function to dispatch {@code EventType.GENERIC_DATA},
      * {@code EventSource.OS} event with the provided message info.
@@ -825,6 +1013,37 @@ public class CampaignExtension extends Extension {
         return linkageFields;
     }
 
+    /**
+     * Returns the name of the rules cache containing the html files of the registered messages.
+     *
+     * @return {@link String} containing the rules cache name
+     * @see CampaignRulesDownloader#getRegisteredRulesCache()
+     */
+    String getRulesCacheName() {
+        return campaignRulesDownloader.getRegisteredRulesCache();
+    }
+
+    /**
+     * Returns the {@code CampaignAssetStore} containing the remote assets of the loaded messages.
+     *
+     * @return {@link CampaignAssetStore} used to cache message assets
+     * @see CampaignRulesDownloader#getAssetStore()
+     */
+    CampaignAssetStore getAssetStore() {
+        return campaignRulesDownloader.getAssetStore();
+    }
+
+    /**
+     * Returns the {@code CampaignMessageDisplayCache} holding the content of recently shown
+     * messages.
+     *
+     * @return {@link CampaignMessageDisplayCache} used to show messages without reading the cache
+     * @see CampaignRulesDownloader#getMessageDisplayCache()
+     */
+    CampaignMessageDisplayCache getMessageDisplayCache() {
+        return campaignRulesDownloader.getMessageDisplayCache();
+    }
+
     // ========================================================================
     // private methods
     // ========================================================================
@@ -833,15 +1052,13 @@ public class CampaignExtension extends Extension {
      * Processes campaign request reset event then queues the event.
      *
      * <p>This event has no data but is used as a signal that the SDK should clear any persisted
-     * linkage fields and personalized rules and subsequently download generic rules.
+     * linkage fields and personalized rules and subsequently download generic rules. Cached generic
+     * rules are registered while the generic rules are downloaded.
      */
     private void handleResetLinkageFields() {
         linkageFields = "";
 
-        campaignRulesEngine.replaceRules(new ArrayList<>());
-
-        clearRulesCacheDirectory();
-
+        campaignRulesDownloader.activateRulesPartition(linkageFields, true);
         triggerRulesDownload();
     }
 
@@ -999,8 +1216,9 @@ public class CampaignExtension extends Extension {
      *     configuration
      * @param event {@link Event} which triggered the queuing of the {@code Campaign} registration
      *     request
+     * @return {@code boolean} indicating whether the request was queued
      */
-    private void processRequest(
+    private boolean processRequest(
             final String url,
             final String payload,
             final CampaignState campaignState,
@@ -1009,24 +1227,35 @@ public class CampaignExtension extends Extension {
         // and if it is a registration request, determine if it should be sent.
         if (!StringUtils.isNullOrEmpty(payload)
                 && !shouldSendRegistrationRequest(campaignState, event.getTimestamp())) {
-            return;
+            return false;
         }
 
         // create a data entity and add it to the data queue
         final CampaignHit campaignHit =
                 new CampaignHit(url, payload, campaignState.getCampaignTimeout());
-        final DataEntity dataEntity = new DataEntity(campaignHit.toString());
+        final DataEntity dataEntity = new DataEntity(campaignHit.encode());
         Log.debug(
                 CampaignConstants.LOG_TAG,
                 SELF_TAG,
                 "processRequest - Campaign Request Queued with url (%s) and body (%s)",
                 url,
                 payload);
-        campaignPersistentHitQueue.queue(dataEntity);
+        return campaignPersistentHitQueue.queue(dataEntity);
     }
 
-    /** Clears the {@code CampaignExtension}'s {@link NamedCollection}. */
+    /**
+     * Clears the {@code CampaignExtension}'s {@link NamedCollection} and the in-memory state
+     * persisted in it.
+     */
     private void clearCampaignNamedCollection() {
+        trackingDeduplicator.clear();
+        if (retryPolicy != null) {
+            retryPolicy.clear();
+        }
+        final CampaignAssetStore assetStore = getAssetStore();
+        if (assetStore != null) {
+            assetStore.clear();
+        }
         final NamedCollection campaignNamedCollection = getNamedCollection();
 
         if (campaignNamedCollection == null) {
@@ -1163,4 +1392,15 @@ public class CampaignExtension extends Extension {
                 registrationDelay);
         return false;
     }
+
+    /** Message waiting for its assets before being shown. */
+    private static final class AwaitingMessage {
+        private final String messageId;
+        private final CampaignMessage message;
+
+        AwaitingMessage(final String messageId, final CampaignMessage message) {
+            this.messageId = messageId;
+            this.message = message;
+        }
+    }
 }
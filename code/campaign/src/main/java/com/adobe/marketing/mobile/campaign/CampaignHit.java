@@ -33,6 +33,96 @@ public class CampaignHit {
         return !StringUtils.isNullOrEmpty(payload) ? HttpMethod.POST : HttpMethod.GET;
     }
 
+    /**
+     * Encodes this hit for storage in the hit queue.
+     *
+     * <p>The flat encoding is {@value CampaignConstants.CampaignHit#ENCODING_V1_PREFIX} followed by
+     * the timeout, the length of the url, the url and the payload, and can be decoded without
+     * parsing JSON. A null payload is encoded as an empty payload.
+     *
+     * @return {@link String} containing the encoded hit
+     * @see #decode(String)
+     */
+    String encode() {
+        final String encodedUrl = url != null ? url : "";
+        final String encodedPayload = payload != null ? payload : "";
+        return new StringBuilder(
+                        CampaignConstants.CampaignHit.ENCODING_V1_PREFIX.length()
+                                + encodedUrl.length()
+                                + encodedPayload.length()
+                                + 16)
+                .append(CampaignConstants.CampaignHit.ENCODING_V1_PREFIX)
+                .append(timeout)
+                .append(CampaignConstants.CampaignHit.ENCODING_SEPARATOR)
+                .append(encodedUrl.length())
+                .append(CampaignConstants.CampaignHit.ENCODING_SEPARATOR)
+                .append(encodedUrl)
+                .append(encodedPayload)
+                .toString();
+    }
+
+    /**
+     * Decodes a hit encoded by {@link #encode()}.
+     *
+     * @param data {@link String} containing the encoded hit
+     * @return {@link CampaignHit} decoded from {@code data}, or null if {@code data} is not a valid
+     *     flat encoded hit
+     */
+    static CampaignHit decode(final String data) {
+        if (data == null || !data.startsWith(CampaignConstants.CampaignHit.ENCODING_V1_PREFIX)) {
+            return null;
+        }
+
+        final int timeoutStart = CampaignConstants.CampaignHit.ENCODING_V1_PREFIX.length();
+        final int timeoutEnd =
+                data.indexOf(CampaignConstants.CampaignHit.ENCODING_SEPARATOR, timeoutStart);
+        final int urlLengthEnd =
+                timeoutEnd < 0
+                        ? -1
+                        : data.indexOf(
+                                CampaignConstants.CampaignHit.ENCODING_SEPARATOR, timeoutEnd + 1);
+        if (urlLengthEnd < 0) {
+            return null;
+        }
+
+        final int timeout = parseInt(data, timeoutStart, timeoutEnd);
+        final int urlLength = parseInt(data, timeoutEnd + 1, urlLengthEnd);
+        final int urlStart = urlLengthEnd + 1;
+        if (timeout < 0 || urlLength < 0 || urlLength > data.length() - urlStart) {
+            return null;
+        }
+
+        return new CampaignHit(
+                data.substring(urlStart, urlStart + urlLength),
+                data.substring(urlStart + urlLength),
+                timeout);
+    }
+
+    /**
+     * Parses the non-negative decimal number between {@code start} and {@code end} without
+     * allocating a substring.
+     *
+     * @param data {@link String} containing the encoded hit
+     * @param start {@code int} containing the index of the first digit
+     * @param end {@code int} containing the index after the last digit
+     * @return {@code int} containing the parsed number, or -1 if it is empty or invalid
+     */
+    private static int parseInt(final String data, final int start, final int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final char digit = data.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
     @Override
     public String toString() {
         final Map<String, Object> dataMap =
@@ -13,32 +13,87 @@ package com.adobe.marketing.mobile.campaign;
 
 import androidx.annotation.NonNull;
 import com.adobe.marketing.mobile.services.DataEntity;
+import com.adobe.marketing.mobile.services.DataQueue;
 import com.adobe.marketing.mobile.services.HitProcessing;
 import com.adobe.marketing.mobile.services.HitProcessingResult;
+import com.adobe.marketing.mobile.services.HttpConnecting;
+import com.adobe.marketing.mobile.services.HttpMethod;
 import com.adobe.marketing.mobile.services.Log;
 import com.adobe.marketing.mobile.services.NamedCollection;
 import com.adobe.marketing.mobile.services.NetworkRequest;
 import com.adobe.marketing.mobile.services.Networking;
 import com.adobe.marketing.mobile.services.ServiceProvider;
 import com.adobe.marketing.mobile.util.StringUtils;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
 /**
  * Implements {@code HitProcessing} and aids in the necessary tasks to send network requests for the
  * Campaign Extension.
+ *
+ * <p>Hits are sent over persistent connections. Every response body is read to the end before the
+ * connection is closed, so the underlying socket can be reused by the next hit. The time taken to
+ * send the most recent hits is recorded.
+ *
+ * <p>Failed hits are retried after the interval computed by the {@link CampaignRetryPolicy} of the
+ * queue.
+ *
+ * <p>Tracking hits queued after the hit being processed are sent along with it in a pipelined
+ * burst. The result of a hit sent ahead is kept until the queue reaches it, however long the hits
+ * before it are retried, and the hit is completed without being sent again.
+ *
+ * <p>A registration hit is dropped when a newer registration for the same Campaign server and
+ * property is queued after it, only the latest registration is sent.
  */
 class CampaignHitProcessor implements HitProcessing {
-    private static final int RETRY_INTERVAL = 30;
+    private static final int DRAIN_BUFFER_SIZE = 1024;
+    private static final int RECENT_HIT_LATENCIES_LIMIT = 50;
     private final String SELF_TAG = "CampaignHitProcessor";
+    private final Deque<Long> recentHitLatencies = new ArrayDeque<>();
+    private final CampaignRetryPolicy retryPolicy;
+    private final DataQueue dataQueue;
+    private final Object burstMutex = new Object();
+    private final Map<String, BurstHit> burstHits = new HashMap<>();
+    private int pipelinedHitCount = 0;
+    private int supersededRegistrationCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param retryPolicy {@link CampaignRetryPolicy} computing the retry interval of failed hits
+     */
+    CampaignHitProcessor(final CampaignRetryPolicy retryPolicy) {
+        this(retryPolicy, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param retryPolicy {@link CampaignRetryPolicy} computing the retry interval of failed hits
+     * @param dataQueue {@link DataQueue} of the hits, used to send the queued tracking hits in a
+     *     burst, or null to send every hit one at a time
+     */
+    CampaignHitProcessor(final CampaignRetryPolicy retryPolicy, final DataQueue dataQueue) {
+        this.retryPolicy = retryPolicy;
+        this.dataQueue = dataQueue;
+    }
 
     @Override
     public int retryInterval(@NonNull final DataEntity dataEntity) {
-        return RETRY_INTERVAL;
+        return retryPolicy.nextRetryIntervalSeconds();
     }
 
     /**
@@ -58,14 +113,20 @@ class CampaignHitProcessor implements HitProcessing {
      *
      * <p>If the {@code NetworkService.HttpConnecting} connection contains a response code that is
      * recoverable ({@link HttpURLConnection#HTTP_CLIENT_TIMEOUT}, {@link
-     * HttpURLConnection#HTTP_UNAVAILABLE}, or {@link HttpURLConnection#HTTP_GATEWAY_TIMEOUT}) this
-     * method will return {@code boolean} true and the {@code hit} will be retried later.
+     * HttpURLConnection#HTTP_UNAVAILABLE}, {@link HttpURLConnection#HTTP_GATEWAY_TIMEOUT}, or
+     * {@value CampaignConstants#HTTP_TOO_MANY_REQUESTS}) this method will return {@code boolean}
+     * true and the {@code hit} will be retried later, honoring the {@value
+     * CampaignConstants#HTTP_HEADER_RETRY_AFTER} header of the response.
      *
      * <p>If the {@code NetworkService.HttpConnecting} contains a {@link HttpURLConnection#HTTP_OK}
      * response code, or any additional response code not considered to be a recoverable network
      * error, then this method will return {@code boolean} false. The {@code hit} will be considered
      * processed and will not be retried.
      *
+     * <p>This method does not wait for the response, the {@code hitProcessingResult} is completed
+     * from the network callback. The hit is bounded by its own {@link CampaignHit#timeout}, used as
+     * the connect and read timeout of the request, and several hits may be in flight at once.
+     *
      * @param dataEntity {@link DataEntity} instance to be processed
      * @param hitProcessingResult {@link HitProcessingResult} containing the status of the hit
      *     processing
@@ -96,16 +157,16 @@ class CampaignHitProcessor implements HitProcessing {
             return;
         }
 
-        final Map<String, String> headers =
-                new HashMap<String, String>() {
-                    {
-                        put(CampaignConstants.HTTP_HEADER_KEY_CONNECTION, "close");
-                        put(
-                                CampaignConstants.HTTP_HEADER_KEY_CONTENT_TYPE,
-                                CampaignConstants.HTTP_HEADER_CONTENT_TYPE_JSON_APPLICATION);
-                        put(CampaignConstants.HTTP_HEADER_KEY_ACCEPT, "*/*");
-                    }
-                };
+        // hits already sent ahead as part of a burst are not sent again
+        if (completeFromBurst(dataEntity, hitProcessingResult)) {
+            return;
+        }
+
+        if (isSupersededRegistration(dataEntity, campaignHit)) {
+            hitProcessingResult.complete(true);
+            return;
+        }
+
         final Networking networkService = ServiceProvider.getInstance().getNetworkService();
         if (networkService == null) {
             Log.warning(
@@ -116,6 +177,48 @@ class CampaignHitProcessor implements HitProcessing {
             hitProcessingResult.complete(false);
             return;
         }
+
+        // burst hits are registered before the hit is sent, the queue may process the next hit
+        // as soon as this one completes
+        final Map<String, BurstHit> queuedBurstHits = registerBurstHits(dataEntity, campaignHit);
+        sendHit(networkService, campaignHit, true, hitProcessingResult);
+        for (final Map.Entry<String, BurstHit> entry : queuedBurstHits.entrySet()) {
+            sendHit(
+                    networkService,
+                    entry.getValue().campaignHit,
+                    false,
+                    processed -> onBurstHitCompleted(entry.getKey(), entry.getValue(), processed));
+        }
+    }
+
+    /**
+     * Sends the provided {@code campaignHit} and completes the {@code hitProcessingResult} with
+     * whether the hit was processed.
+     *
+     * @param networkService {@link Networking} used to send the hit
+     * @param campaignHit {@link CampaignHit} to be sent
+     * @param updateRetryPolicy {@code boolean} indicating whether the response updates the {@link
+     *     CampaignRetryPolicy}, false for hits sent ahead of the queue
+     * @param hitProcessingResult {@link HitProcessingResult} completed once the response is
+     *     received
+     */
+    private void sendHit(
+            final Networking networkService,
+            final CampaignHit campaignHit,
+            final boolean updateRetryPolicy,
+            final HitProcessingResult hitProcessingResult) {
+        final Map<String, String> headers =
+                new HashMap<String, String>() {
+                    {
+                        put(
+                                CampaignConstants.HTTP_HEADER_KEY_CONNECTION,
+                                CampaignConstants.HTTP_HEADER_CONNECTION_KEEP_ALIVE);
+                        put(
+                                CampaignConstants.HTTP_HEADER_KEY_CONTENT_TYPE,
+                                CampaignConstants.HTTP_HEADER_CONTENT_TYPE_JSON_APPLICATION);
+                        put(CampaignConstants.HTTP_HEADER_KEY_ACCEPT, "*/*");
+                    }
+                };
         final NetworkRequest networkRequest =
                 new NetworkRequest(
                         campaignHit.url,
@@ -125,10 +228,11 @@ class CampaignHitProcessor implements HitProcessing {
                         campaignHit.timeout,
                         campaignHit.timeout);
 
-        final CountDownLatch latch = new CountDownLatch(1);
+        final long requestStartMillis = System.currentTimeMillis();
         networkService.connectAsync(
                 networkRequest,
                 connection -> {
+                    recordHitLatency(System.currentTimeMillis() - requestStartMillis);
                     if (connection == null
                             || (connection.getResponseCode()
                                     == CampaignConstants.INVALID_CONNECTION_RESPONSE_CODE)) {
@@ -138,6 +242,10 @@ class CampaignHitProcessor implements HitProcessing {
                                 "processHit - Could not process a Campaign network request because"
                                         + " the connection was null or response code was invalid."
                                         + " Retrying the request.");
+                        if (updateRetryPolicy) {
+                            retryPolicy.recordFailure(-1);
+                        }
+                        drainAndClose(connection);
                         hitProcessingResult.complete(false);
                     } else if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
                         Log.debug(
@@ -146,8 +254,11 @@ class CampaignHitProcessor implements HitProcessing {
                                 "processHit - Request was sent to (%s)",
                                 campaignHit.url);
                         updateTimestampInNamedCollection(System.currentTimeMillis());
+                        if (updateRetryPolicy) {
+                            retryPolicy.recordSuccess();
+                        }
+                        drainAndClose(connection);
                         hitProcessingResult.complete(true);
-                        connection.close();
                     } else if (!CampaignConstants.recoverableNetworkErrorCodes.contains(
                             connection.getResponseCode())) {
                         Log.debug(
@@ -155,26 +266,392 @@ class CampaignHitProcessor implements HitProcessing {
                                 SELF_TAG,
                                 "processHit - Unrecoverable network error while processing"
                                         + " requests. Discarding request.");
+                        // the server is reachable, the next failure starts a new backoff
+                        if (updateRetryPolicy) {
+                            retryPolicy.recordSuccess();
+                        }
+                        drainAndClose(connection);
                         hitProcessingResult.complete(true);
-                        connection.close();
                     } else {
                         Log.debug(
                                 CampaignConstants.LOG_TAG,
                                 SELF_TAG,
                                 "processHit - Recoverable network error while processing requests,"
                                         + " will retry.");
+                        if (updateRetryPolicy) {
+                            retryPolicy.recordFailure(getRetryAfterSeconds(connection));
+                        }
+                        drainAndClose(connection);
                         hitProcessingResult.complete(false);
                     }
-                    latch.countDown();
                 });
+    }
+
+    /**
+     * Completes the {@code hitProcessingResult} of a hit already sent ahead as part of a burst.
+     *
+     * <p>A hit whose burst send is still in flight is completed once its response is received. A
+     * hit whose burst send failed is sent again by the caller.
+     *
+     * @param dataEntity {@link DataEntity} processed by the queue
+     * @param hitProcessingResult {@link HitProcessingResult} of the hit
+     * @return true if the hit was sent as part of a burst and needs no further processing
+     */
+    private boolean completeFromBurst(
+            final DataEntity dataEntity, final HitProcessingResult hitProcessingResult) {
+        final BurstHit burstHit;
+        synchronized (burstMutex) {
+            removeDequeuedBurstHits();
+            burstHit = burstHits.get(dataEntity.getUniqueIdentifier());
+            if (burstHit == null) {
+                return false;
+            }
+
+            if (burstHit.processed == null) {
+                burstHit.waitingResult = hitProcessingResult;
+                return true;
+            }
+            burstHits.remove(dataEntity.getUniqueIdentifier());
+        }
+
+        if (!burstHit.processed) {
+            return false;
+        }
+        hitProcessingResult.complete(true);
+        return true;
+    }
+
+    /**
+     * Registers the tracking hits queued right after the provided {@code headHit} to be sent along
+     * with it.
+     *
+     * <p>Only {@link HttpMethod#GET} tracking hits sent to the same host as the {@code headHit} are
+     * sent in a burst, up to {@value CampaignConstants#HIT_BURST_SIZE} hits. The burst stops at the
+     * first queued hit which is not a tracking hit, so hits are not sent ahead of it. Other hits
+     * are sent one at a time.
+     *
+     * @param headEntity {@link DataEntity} at the head of the queue
+     * @param headHit {@link CampaignHit} at the head of the queue
+     * @return {@code Map<String, BurstHit>} containing the hits to be sent, keyed by entity id
+     */
+    private Map<String, BurstHit> registerBurstHits(
+            final DataEntity headEntity, final CampaignHit headHit) {
+        final Map<String, BurstHit> queuedBurstHits = new LinkedHashMap<>();
+        final String host = getBurstHost(headHit);
+        if (dataQueue == null || host == null) {
+            return queuedBurstHits;
+        }
+
+        final List<DataEntity> queuedEntities = dataQueue.peek(CampaignConstants.HIT_BURST_SIZE);
+        if (queuedEntities == null) {
+            return queuedBurstHits;
+        }
+
+        synchronized (burstMutex) {
+            for (final DataEntity queuedEntity : queuedEntities) {
+                if (queuedEntity == null
+                        || headEntity
+                                .getUniqueIdentifier()
+                                .equals(queuedEntity.getUniqueIdentifier())) {
+                    continue;
+                }
+
+                final CampaignHit queuedHit = Utils.campaignHitFromDataEntity(queuedEntity);
+                if (queuedHit == null || !host.equals(getBurstHost(queuedHit))) {
+                    break;
+                }
+
+                if (burstHits.containsKey(queuedEntity.getUniqueIdentifier())) {
+                    continue;
+                }
+                final BurstHit burstHit = new BurstHit(queuedHit);
+                burstHits.put(queuedEntity.getUniqueIdentifier(), burstHit);
+                queuedBurstHits.put(queuedEntity.getUniqueIdentifier(), burstHit);
+            }
+            pipelinedHitCount += queuedBurstHits.size();
+        }
+
+        if (!queuedBurstHits.isEmpty()) {
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "registerBurstHits - Sending %d queued tracking hit(s) along with the current"
+                            + " hit.",
+                    queuedBurstHits.size());
+        }
+        return queuedBurstHits;
+    }
+
+    private void onBurstHitCompleted(
+            final String entityId, final BurstHit burstHit, final boolean processed) {
+        final HitProcessingResult waitingResult;
+        synchronized (burstMutex) {
+            burstHit.processed = processed;
+            waitingResult = burstHit.waitingResult;
+            if (waitingResult != null) {
+                burstHits.remove(entityId);
+            }
+        }
+
+        if (waitingResult == null) {
+            return;
+        }
+
+        // the queue reached the hit while it was in flight
+        final Networking networkService = ServiceProvider.getInstance().getNetworkService();
+        if (processed) {
+            waitingResult.complete(true);
+        } else if (networkService == null) {
+            waitingResult.complete(false);
+        } else {
+            sendHit(networkService, burstHit.campaignHit, true, waitingResult);
+        }
+    }
+
+    /**
+     * Drops the burst hits which are no longer queued, for example after the queue was cleared.
+     *
+     * <p>Burst hits are registered among the first {@value CampaignConstants#HIT_BURST_SIZE} queued
+     * hits and the queue only removes hits from its head, so a burst hit still queued is always
+     * among the first {@value CampaignConstants#HIT_BURST_SIZE} queued hits.
+     */
+    private void removeDequeuedBurstHits() {
+        if (burstHits.isEmpty() || dataQueue == null) {
+            return;
+        }
+
+        final List<DataEntity> queuedEntities = dataQueue.peek(CampaignConstants.HIT_BURST_SIZE);
+        final Set<String> queuedEntityIds = new HashSet<>();
+        if (queuedEntities != null) {
+            for (final DataEntity queuedEntity : queuedEntities) {
+                if (queuedEntity != null) {
+                    queuedEntityIds.add(queuedEntity.getUniqueIdentifier());
+                }
+            }
+        }
+        burstHits.keySet().retainAll(queuedEntityIds);
+    }
+
+    /**
+     * Returns whether a newer registration hit for the same Campaign server and property is queued
+     * after the provided registration {@code campaignHit}.
+     *
+     * <p>The {@code DataQueue} cannot remove entries other than its head, so a superseded
+     * registration is dropped once it reaches the head of the queue. Up to {@value
+     * CampaignConstants#REGISTRATION_SUPERSEDE_SCAN_LIMIT} queued hits are checked.
+     *
+     * @param headEntity {@link DataEntity} being processed
+     * @param headHit {@link CampaignHit} created from the {@code headEntity}
+     * @return {@code boolean} indicating whether the hit should be dropped
+     */
+    private boolean isSupersededRegistration(
+            final DataEntity headEntity, final CampaignHit headHit) {
+        final String registrationKey = getRegistrationKey(headHit);
+        if (dataQueue == null || registrationKey == null) {
+            return false;
+        }
+
+        final List<DataEntity> queuedEntities =
+                dataQueue.peek(CampaignConstants.REGISTRATION_SUPERSEDE_SCAN_LIMIT);
+        if (queuedEntities == null) {
+            return false;
+        }
+
+        boolean headFound = false;
+        for (final DataEntity queuedEntity : queuedEntities) {
+            if (queuedEntity == null) {
+                continue;
+            }
+
+            if (!headFound) {
+                headFound =
+                        headEntity.getUniqueIdentifier().equals(queuedEntity.getUniqueIdentifier());
+                continue;
+            }
+
+            final CampaignHit queuedHit = Utils.campaignHitFromDataEntity(queuedEntity);
+            if (queuedHit != null && registrationKey.equals(getRegistrationKey(queuedHit))) {
+                synchronized (burstMutex) {
+                    supersededRegistrationCount++;
+                }
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "processHit - Dropping registration hit (%s), a newer registration is"
+                                + " queued.",
+                        headHit.url);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the Campaign server and property the provided registration {@code campaignHit} is
+     * sent to.
+     *
+     * @param campaignHit {@link CampaignHit} to be sent
+     * @return {@link String} containing the registration url without the Experience Cloud Id, or
+     *     null if the hit is not a registration hit
+     */
+    private static String getRegistrationKey(final CampaignHit campaignHit) {
+        if (campaignHit.getHttpCommand() != HttpMethod.POST || campaignHit.url == null) {
+            return null;
+        }
+
+        // the Experience Cloud Id is the last path segment of the registration url
+        final int experienceCloudIdStart = campaignHit.url.lastIndexOf('/');
+        return experienceCloudIdStart > 0
+                ? campaignHit.url.substring(0, experienceCloudIdStart)
+                : campaignHit.url;
+    }
+
+    /**
+     * Returns the host of the provided tracking {@code campaignHit}.
+     *
+     * @param campaignHit {@link CampaignHit} to be sent
+     * @return {@link String} containing the host, or null if the hit cannot be sent in a burst
+     */
+    private static String getBurstHost(final CampaignHit campaignHit) {
+        if (campaignHit.getHttpCommand() != HttpMethod.GET) {
+            return null;
+        }
+
         try {
-            latch.await((CampaignConstants.CAMPAIGN_TIMEOUT_DEFAULT + 1), TimeUnit.SECONDS);
-        } catch (final InterruptedException e) {
-            Log.warning(
+            return new URI(campaignHit.url).getHost();
+        } catch (final URISyntaxException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of hits sent ahead of the queue as part of a burst.
+     *
+     * @return {@code int} containing the number of pipelined hits
+     */
+    int getPipelinedHitCount() {
+        synchronized (burstMutex) {
+            return pipelinedHitCount;
+        }
+    }
+
+    /**
+     * Returns the number of registration hits dropped because a newer registration was queued.
+     *
+     * @return {@code int} containing the number of superseded registration hits
+     */
+    int getSupersededRegistrationCount() {
+        synchronized (burstMutex) {
+            return supersededRegistrationCount;
+        }
+    }
+
+    /**
+     * Returns the {@code CampaignRetryPolicy} computing the retry interval of failed hits.
+     *
+     * @return {@link CampaignRetryPolicy} of this processor
+     */
+    CampaignRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Returns the time taken to send the most recent hits, oldest first.
+     *
+     * @return {@code List<Long>} containing the recent hit latencies in milliseconds
+     */
+    List<Long> getRecentHitLatencies() {
+        synchronized (recentHitLatencies) {
+            return new ArrayList<>(recentHitLatencies);
+        }
+    }
+
+    /**
+     * Records the time between a hit being sent and its response being received.
+     *
+     * @param latencyMillis {@code long} containing the hit latency in milliseconds
+     */
+    private void recordHitLatency(final long latencyMillis) {
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "processHit - Hit response received after %d ms.",
+                latencyMillis);
+        synchronized (recentHitLatencies) {
+            recentHitLatencies.addLast(latencyMillis);
+            if (recentHitLatencies.size() > RECENT_HIT_LATENCIES_LIMIT) {
+                recentHitLatencies.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Returns the delay requested by the server through the {@value
+     * CampaignConstants#HTTP_HEADER_RETRY_AFTER} header of a {@link
+     * HttpURLConnection#HTTP_UNAVAILABLE} or {@value CampaignConstants#HTTP_TOO_MANY_REQUESTS}
+     * response.
+     *
+     * @param connection {@link HttpConnecting} containing the response
+     * @return {@code long} containing the delay in seconds, or -1 if none was requested
+     */
+    private long getRetryAfterSeconds(final HttpConnecting connection) {
+        final int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_UNAVAILABLE
+                && responseCode != CampaignConstants.HTTP_TOO_MANY_REQUESTS) {
+            return -1;
+        }
+
+        return CampaignRetryPolicy.parseRetryAfter(
+                connection.getResponsePropertyValue(CampaignConstants.HTTP_HEADER_RETRY_AFTER),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Reads the response and error bodies of the provided {@code connection} to the end and closes
+     * it.
+     *
+     * <p>A connection whose response was not fully read cannot be returned to the connection pool
+     * and is discarded instead. Connections are closed before the hit processing completes, so the
+     * next hit can reuse them.
+     *
+     * @param connection {@link HttpConnecting} to be closed, may be null
+     */
+    private void drainAndClose(final HttpConnecting connection) {
+        if (connection == null) {
+            return;
+        }
+
+        drain(connection.getInputStream());
+        drain(connection.getErrorStream());
+        connection.close();
+    }
+
+    private void drain(final InputStream inputStream) {
+        if (inputStream == null) {
+            return;
+        }
+
+        final byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+        try {
+            while (inputStream.read(buffer) != -1) {
+                // discard the response content
+            }
+        } catch (final IOException exception) {
+            Log.trace(
                     CampaignConstants.LOG_TAG,
                     SELF_TAG,
-                    "processHit - exception occurred while waiting for connectAsync latch: %s",
-                    e.getMessage());
+                    "drain - Unable to read the response content: %s",
+                    exception.getMessage());
+        } finally {
+            try {
+                inputStream.close();
+            } catch (final IOException exception) {
+                Log.trace(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "drain - Unable to close the response stream: %s",
+                        exception.getMessage());
+            }
         }
     }
 
@@ -209,4 +686,15 @@ class CampaignHitProcessor implements HitProcessing {
         campaignNamedCollection.setLong(
                 CampaignConstants.CAMPAIGN_NAMED_COLLECTION_REGISTRATION_TIMESTAMP_KEY, timestamp);
     }
+
+    /** Tracking hit sent ahead of the queue. */
+    private static final class BurstHit {
+        private final CampaignHit campaignHit;
+        private Boolean processed;
+        private HitProcessingResult waitingResult;
+
+        BurstHit(final CampaignHit campaignHit) {
+            this.campaignHit = campaignHit;
+        }
+    }
 }
@@ -0,0 +1,329 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import com.adobe.marketing.mobile.services.DeviceInforming;
+import com.adobe.marketing.mobile.services.Log;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Optimizes downloaded {@code CampaignMessage} image assets before they are cached.
+ *
+ * <p>When enabled, images larger than the device display are downscaled to fit the display in
+ * either orientation and re-encoded as WebP. The optimized image only replaces the downloaded one
+ * if it is smaller. Images which already fit the display are kept as downloaded, so they are not
+ * re-encoded with a lossy format, and animated GIF images are never optimized. The asset is still
+ * cached under its original URL so it is resolved by the message like any other asset.
+ */
+class CampaignImageAssetOptimizer {
+    private static final String SELF_TAG = "CampaignImageAssetOptimizer";
+    private static final String IMAGE_MIME_TYPE_PREFIX = "image/";
+    private static final String GIF_MIME_TYPE = "image/gif";
+    private static final String OPTIMIZED_FILE_EXTENSION = ".optimized";
+    private static final int COMPRESS_QUALITY = 80;
+    private static final int RECENT_REPORTS_LIMIT = 50;
+
+    private final DeviceInforming deviceInfoService;
+    private final Deque<ImageOptimizationReport> recentReports = new ArrayDeque<>();
+    private volatile boolean enabled = false;
+
+    /**
+     * Constructor.
+     *
+     * @param deviceInfoService {@link DeviceInforming} service providing the display bounds
+     */
+    CampaignImageAssetOptimizer(final DeviceInforming deviceInfoService) {
+        this.deviceInfoService = deviceInfoService;
+    }
+
+    /**
+     * Enables or disables the optimization of image assets.
+     *
+     * @param enabled {@code boolean} indicating whether image assets should be optimized
+     */
+    void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns whether image assets are optimized.
+     *
+     * @return {@code boolean} indicating whether image assets are optimized
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Downscales and re-encodes the image contained in the provided {@code assetFile} in place.
+     *
+     * @param assetFile {@link File} containing the completely downloaded asset
+     * @param url {@link String} containing the asset URL
+     * @return true if the {@code assetFile} was replaced with an optimized image, false otherwise
+     */
+    boolean optimize(final File assetFile, final String url) {
+        if (!enabled || deviceInfoService == null) {
+            return false;
+        }
+
+        final DeviceInforming.DisplayInformation displayInformation =
+                deviceInfoService.getDisplayInformation();
+        if (displayInformation == null
+                || displayInformation.getWidthPixels() <= 0
+                || displayInformation.getHeightPixels() <= 0) {
+            return false;
+        }
+
+        final BitmapFactory.Options boundsOptions = new BitmapFactory.Options();
+        boundsOptions.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(assetFile.getPath(), boundsOptions);
+        final String mimeType = boundsOptions.outMimeType;
+        final int originalWidth = boundsOptions.outWidth;
+        final int originalHeight = boundsOptions.outHeight;
+        if (mimeType == null
+                || !mimeType.startsWith(IMAGE_MIME_TYPE_PREFIX)
+                || GIF_MIME_TYPE.equals(mimeType)
+                || originalWidth <= 0
+                || originalHeight <= 0) {
+            return false;
+        }
+
+        // fit the image within the display regardless of the display orientation
+        final int displayLongSide =
+                Math.max(displayInformation.getWidthPixels(), displayInformation.getHeightPixels());
+        final int displayShortSide =
+                Math.min(displayInformation.getWidthPixels(), displayInformation.getHeightPixels());
+        final float scale =
+                Math.min(
+                        1f,
+                        Math.min(
+                                displayLongSide / (float) Math.max(originalWidth, originalHeight),
+                                displayShortSide
+                                        / (float) Math.min(originalWidth, originalHeight)));
+        final int targetWidth = Math.max(1, Math.round(originalWidth * scale));
+        final int targetHeight = Math.max(1, Math.round(originalHeight * scale));
+        if (targetWidth >= originalWidth && targetHeight >= originalHeight) {
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Image asset %dx%d fits the display, kept as downloaded: %s",
+                    originalWidth,
+                    originalHeight,
+                    url);
+            return false;
+        }
+
+        final long decodeStartTimestamp = System.currentTimeMillis();
+        final BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+        decodeOptions.inSampleSize =
+                calculateSampleSize(originalWidth, originalHeight, targetWidth, targetHeight);
+        Bitmap bitmap = BitmapFactory.decodeFile(assetFile.getPath(), decodeOptions);
+        if (bitmap == null) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "optimize - Unable to decode image asset: %s",
+                    url);
+            return false;
+        }
+        if (bitmap.getWidth() > targetWidth || bitmap.getHeight() > targetHeight) {
+            final Bitmap scaledBitmap =
+                    Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
+            if (scaledBitmap != null && scaledBitmap != bitmap) {
+                bitmap.recycle();
+                bitmap = scaledBitmap;
+            }
+        }
+        final int optimizedWidth = bitmap.getWidth();
+        final int optimizedHeight = bitmap.getHeight();
+        final long decodeTimeMillis = System.currentTimeMillis() - decodeStartTimestamp;
+
+        final long encodeStartTimestamp = System.currentTimeMillis();
+        final File optimizedFile = new File(assetFile.getPath() + OPTIMIZED_FILE_EXTENSION);
+        boolean encoded;
+        try (OutputStream outputStream = new FileOutputStream(optimizedFile)) {
+            encoded = bitmap.compress(getCompressFormat(), COMPRESS_QUALITY, outputStream);
+        } catch (final IOException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "optimize - Unable to encode image asset %s (%s).",
+                    url,
+                    exception.getLocalizedMessage());
+            encoded = false;
+        } finally {
+            bitmap.recycle();
+        }
+        final long encodeTimeMillis = System.currentTimeMillis() - encodeStartTimestamp;
+
+        final long originalBytes = assetFile.length();
+        final long encodedBytes = encoded ? optimizedFile.length() : 0;
+        final boolean optimized =
+                encodedBytes > 0
+                        && encodedBytes < originalBytes
+                        && optimizedFile.renameTo(assetFile);
+        if (!optimized && optimizedFile.exists() && !optimizedFile.delete()) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "optimize - Unable to delete %s.",
+                    optimizedFile);
+        }
+
+        final ImageOptimizationReport report =
+                new ImageOptimizationReport(
+                        url,
+                        originalWidth,
+                        originalHeight,
+                        optimized ? optimizedWidth : originalWidth,
+                        optimized ? optimizedHeight : originalHeight,
+                        originalBytes,
+                        optimized ? encodedBytes : originalBytes,
+                        decodeTimeMillis,
+                        encodeTimeMillis);
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Image asset %s from %dx%d (%d bytes) to %dx%d (%d bytes), decoded in %d ms,"
+                        + " encoded in %d ms: %s",
+                optimized ? "optimized" : "kept",
+                report.getOriginalWidth(),
+                report.getOriginalHeight(),
+                report.getOriginalBytes(),
+                report.getOptimizedWidth(),
+                report.getOptimizedHeight(),
+                report.getOptimizedBytes(),
+                report.getDecodeTimeMillis(),
+                report.getEncodeTimeMillis(),
+                url);
+        synchronized (recentReports) {
+            recentReports.addLast(report);
+            if (recentReports.size() > RECENT_REPORTS_LIMIT) {
+                recentReports.removeFirst();
+            }
+        }
+        return optimized;
+    }
+
+    /**
+     * Returns the reports of the most recently processed image assets, oldest first.
+     *
+     * @return {@code List<ImageOptimizationReport>} containing the recent image optimization
+     *     reports
+     */
+    List<ImageOptimizationReport> getRecentReports() {
+        synchronized (recentReports) {
+            return new ArrayList<>(recentReports);
+        }
+    }
+
+    /**
+     * Returns the largest power of two sample size which decodes the image at or above the target
+     * size.
+     */
+    private static int calculateSampleSize(
+            final int width, final int height, final int targetWidth, final int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth
+                && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat getCompressFormat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+    }
+
+    /** Dimensions, sizes and timings of a processed image asset. */
+    static final class ImageOptimizationReport {
+        private final String url;
+        private final int originalWidth;
+        private final int originalHeight;
+        private final int optimizedWidth;
+        private final int optimizedHeight;
+        private final long originalBytes;
+        private final long optimizedBytes;
+        private final long decodeTimeMillis;
+        private final long encodeTimeMillis;
+
+        ImageOptimizationReport(
+                final String url,
+                final int originalWidth,
+                final int originalHeight,
+                final int optimizedWidth,
+                final int optimizedHeight,
+                final long originalBytes,
+                final long optimizedBytes,
+                final long decodeTimeMillis,
+                final long encodeTimeMillis) {
+            this.url = url;
+            this.originalWidth = originalWidth;
+            this.originalHeight = originalHeight;
+            this.optimizedWidth = optimizedWidth;
+            this.optimizedHeight = optimizedHeight;
+            this.originalBytes = originalBytes;
+            this.optimizedBytes = optimizedBytes;
+            this.decodeTimeMillis = decodeTimeMillis;
+            this.encodeTimeMillis = encodeTimeMillis;
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        int getOriginalWidth() {
+            return originalWidth;
+        }
+
+        int getOriginalHeight() {
+            return originalHeight;
+        }
+
+        int getOptimizedWidth() {
+            return optimizedWidth;
+        }
+
+        int getOptimizedHeight() {
+            return optimizedHeight;
+        }
+
+        long getOriginalBytes() {
+            return originalBytes;
+        }
+
+        long getOptimizedBytes() {
+            return optimizedBytes;
+        }
+
+        long getDecodeTimeMillis() {
+            return decodeTimeMillis;
+        }
+
+        long getEncodeTimeMillis() {
+            return encodeTimeMillis;
+        }
+    }
+}
@@ -43,6 +43,7 @@ abstract class CampaignMessage {
     protected final String messageId;
     // package-private members
     final CampaignExtension parentModule;
+    private long triggerTimestamp = 0;
 
     /**
      * Constructor.
@@ -229,6 +230,24 @@ abstract class CampaignMessage {
      */
     abstract void showMessage();
 
+    /**
+     * Sets the time at which the rule of this message was triggered.
+     *
+     * @param triggerTimestamp {@code long} containing the trigger time in milliseconds since epoch
+     */
+    void setTriggerTimestamp(final long triggerTimestamp) {
+        this.triggerTimestamp = triggerTimestamp;
+    }
+
+    /**
+     * Returns the time at which the rule of this message was triggered.
+     *
+     * @return {@code long} containing the trigger time in milliseconds since epoch, or 0 if unknown
+     */
+    long getTriggerTimestamp() {
+        return triggerTimestamp;
+    }
+
     /**
      * Generates a {@code Map} with message data for a "message triggered" event and passes it to
      * the parent {@code CampaignExtension} for dispatch.
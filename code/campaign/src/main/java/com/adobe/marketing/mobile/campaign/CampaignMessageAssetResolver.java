@@ -0,0 +1,119 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.caching.CacheService;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the asset arrays of a {@code FullScreenMessage} into the cache containing each asset.
+ *
+ * <p>Every asset array lists the remote asset URL first, followed by alternative remote URLs and
+ * optionally a bundled fallback. The first candidate found in the {@link
+ * CampaignAssetStore#ASSET_CACHE} is used. The message cache is only checked once no candidate is
+ * in the {@link CampaignAssetStore#ASSET_CACHE}, since bundled fallbacks are cached there under the
+ * remote asset URL. Otherwise the bundled fallback is used.
+ */
+final class CampaignMessageAssetResolver {
+    private CampaignMessageAssetResolver() {}
+
+    /**
+     * Resolves the provided {@code assetArrays} of the message with the given {@code messageId}.
+     *
+     * @param cacheService {@link CacheService} containing the cached assets
+     * @param assetStore {@link CampaignAssetStore} containing the remote assets, may be null
+     * @param messageId {@link String} containing the message id
+     * @param assetArrays {@code List<List<String>>} containing the asset arrays of the message
+     * @param readBundledAssets {@code boolean} indicating whether bundled fallbacks missing from
+     *     the message cache are read from the application assets
+     * @return {@link CampaignMessageDisplayCache.ResolvedAssets} containing the asset URLs and the
+     *     caches containing them, or null if a bundled fallback is not cached and {@code
+     *     readBundledAssets} is false
+     */
+    static CampaignMessageDisplayCache.ResolvedAssets resolve(
+            final CacheService cacheService,
+            final CampaignAssetStore assetStore,
+            final String messageId,
+            final List<List<String>> assetArrays,
+            final boolean readBundledAssets) {
+        // assets removed while resolving bump the generation, the result is then outdated
+        final long assetGeneration = assetStore != null ? assetStore.getAssetGeneration() : 0;
+        final Map<String, String> cachedImagesMap = new HashMap<>();
+        final Map<String, String> fallbackImagesMap = new HashMap<>();
+        final List<String> storedAssets = new ArrayList<>();
+        final String cacheName = CampaignAssetStore.MESSAGE_CACHE + File.separator + messageId;
+        boolean resolvedFromAssetStore = true;
+
+        for (final List<String> currentAssetArray : assetArrays) {
+            if (currentAssetArray == null || currentAssetArray.isEmpty()) {
+                continue;
+            }
+
+            final String remoteAssetUrl = currentAssetArray.get(0);
+            String assetCacheLocation = null;
+
+            // loop through our assets to see if we have any of them in cache. remote assets are
+            // resolved through the shared asset store first, so a bundled fallback cached under the
+            // remote asset URL does not shadow a downloaded alternative.
+            for (final String currentAsset : currentAssetArray) {
+                if (cacheService.get(CampaignAssetStore.ASSET_CACHE, currentAsset) != null) {
+                    assetCacheLocation = CampaignAssetStore.ASSET_CACHE;
+                    storedAssets.add(currentAsset);
+                    break;
+                }
+            }
+
+            if (assetCacheLocation == null) {
+                for (final String currentAsset : currentAssetArray) {
+                    if (cacheService.get(cacheName, currentAsset) != null) {
+                        assetCacheLocation = cacheName;
+                        resolvedFromAssetStore = false;
+                        break;
+                    }
+                }
+            }
+
+            if (assetCacheLocation != null) {
+                cachedImagesMap.put(remoteAssetUrl, assetCacheLocation);
+                continue;
+            }
+
+            // none of the remote assets is cached, use the bundled fallback if there is one
+            resolvedFromAssetStore = false;
+            if (CampaignBundledFallbacks.hasBundledFallback(currentAssetArray)) {
+                // bundled fallbacks are cached once the rules are registered, they are only read
+                // from the application assets here if that failed
+                String fallbackCacheKey = CampaignBundledFallbacks.getCacheKey(remoteAssetUrl);
+                if (fallbackCacheKey.equals(remoteAssetUrl)
+                        || cacheService.get(cacheName, fallbackCacheKey) == null) {
+                    if (!readBundledAssets) {
+                        return null;
+                    }
+                    fallbackCacheKey =
+                            CampaignBundledFallbacks.cacheFallback(
+                                    cacheService, assetStore, messageId, currentAssetArray);
+                }
+                if (fallbackCacheKey != null) {
+                    fallbackImagesMap.put(fallbackCacheKey, cacheName);
+                }
+            }
+        }
+        cachedImagesMap.putAll(fallbackImagesMap);
+
+        return new CampaignMessageDisplayCache.ResolvedAssets(
+                cachedImagesMap, storedAssets, assetGeneration, resolvedFromAssetStore);
+    }
+}
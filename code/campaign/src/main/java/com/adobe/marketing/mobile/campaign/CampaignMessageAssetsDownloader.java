@@ -24,12 +24,19 @@ import com.adobe.marketing.mobile.services.caching.CacheResult;
 import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.util.UrlUtils;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-/** Assists in downloading and caching assets for {@code CampaignMessage}s. */
+/**
+ * Assists in downloading and caching assets for {@code CampaignMessage}s.
+ *
+ * <p>The assets are cached in the shared {@link CampaignAssetStore#ASSET_CACHE}, so an asset used
+ * by several messages is stored once.
+ */
 class CampaignMessageAssetsDownloader {
     private static final String SELF_TAG = "CampaignMessageAssetsDownloader";
     private final List<String> assetsCollection;
@@ -37,6 +44,10 @@ class CampaignMessageAssetsDownloader {
     private final DeviceInforming deviceInfoService;
     private final CacheService cacheService;
     private final String messageId;
+    private final CampaignAssetDownloadScheduler downloadScheduler;
+    private final CampaignImageAssetOptimizer imageAssetOptimizer;
+    private final CampaignAssetStore assetStore;
+    private final File partialAssetDir;
     private File assetDir;
 
     /**
@@ -44,46 +55,99 @@ class CampaignMessageAssetsDownloader {
      *
      * @param assets {@code ArrayList<String>} of assets to download and cache
      * @param parentMessageId {@link String} containing the message Id of the requesting message
-     *     used as a cache subdirectory
      */
     CampaignMessageAssetsDownloader(final List<String> assets, final String parentMessageId) {
+        this(assets, parentMessageId, null, null, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param assets {@code ArrayList<String>} of assets to download and cache
+     * @param parentMessageId {@link String} containing the message Id of the requesting message,
+     *     used to prioritize its downloads
+     * @param downloadScheduler {@link CampaignAssetDownloadScheduler} shared by the message asset
+     *     downloaders, if null a scheduler is created for this downloader
+     * @param imageAssetOptimizer {@link CampaignImageAssetOptimizer} applied to downloaded image
+     *     assets before they are cached, may be null
+     * @param assetStore {@link CampaignAssetStore} tracking the size of the cached assets, may be
+     *     null
+     */
+    CampaignMessageAssetsDownloader(
+            final List<String> assets,
+            final String parentMessageId,
+            final CampaignAssetDownloadScheduler downloadScheduler,
+            final CampaignImageAssetOptimizer imageAssetOptimizer,
+            final CampaignAssetStore assetStore) {
         this.assetsCollection = assets;
         this.networkService = ServiceProvider.getInstance().getNetworkService();
         this.deviceInfoService = ServiceProvider.getInstance().getDeviceInfoService();
         this.cacheService = ServiceProvider.getInstance().getCacheService();
         this.messageId = parentMessageId;
-        createMessageAssetCacheDirectory();
+        this.downloadScheduler =
+                downloadScheduler != null
+                        ? downloadScheduler
+                        : new CampaignAssetDownloadScheduler(
+                                networkService,
+                                CampaignConstants.DEFAULT_ASSET_DOWNLOAD_CONCURRENCY);
+        this.imageAssetOptimizer = imageAssetOptimizer;
+        this.assetStore = assetStore;
+        this.partialAssetDir = CampaignPartialAsset.getPartialAssetDirectory();
+        createAssetCacheDirectory();
     }
 
     /**
      * Downloads and caches assets for a {@code CampaignMessage}.
      *
-     * <p>Loops through {@link #assetsCollection} downloads and caches the collection of assets.
+     * <p>Loops through {@link #assetsCollection} downloads and caches the collection of assets. The
+     * downloads are queued on the {@link CampaignAssetDownloadScheduler}.
+     *
+     * <p>Assets are first downloaded to a {@link CampaignPartialAsset} and only cached once
+     * completely downloaded. An interrupted download is resumed from the downloaded bytes on the
+     * next attempt.
      *
-     * <p>Attempts to purge assets that have previously been cached but are for messages that are no
-     * longer active.
+     * <p>Assets which are no longer used by any message are purged by the {@link
+     * CampaignAssetStore}.
      */
     void downloadAssetCollection() {
         final ArrayList<String> assetsToRetain = new ArrayList<>();
 
         if (assetsCollection != null && !assetsCollection.isEmpty()) {
             for (final String currentAsset : assetsCollection) {
-                if (assetIsDownloadable(currentAsset)) {
+                if (isDownloadable(currentAsset)) {
                     assetsToRetain.add(currentAsset);
                 }
             }
         }
 
-        // clear old assets
-        Utils.clearCachedAssetsNotInList(assetDir, assetsToRetain);
+        if (partialAssetDir == null) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "downloadAssetCollection - Cannot download assets for message id %s, cache"
+                            + " directory is not available.",
+                    messageId);
+            return;
+        }
 
         // download assets within the assets to retain list
         for (final String url : assetsToRetain) {
-            // 304 - Not Modified support
-            final CacheResult cachedAsset =
-                    cacheService.get(assetDir + File.separator + messageId, url);
-            final Map<String, String> requestProperties =
-                    Utils.extractHeadersFromCache(cachedAsset);
+            final CampaignPartialAsset partialAsset =
+                    new CampaignPartialAsset(partialAssetDir, url);
+            Map<String, String> requestProperties = partialAsset.getResumeHeaders();
+            if (!requestProperties.isEmpty()) {
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "downloadAssetCollection - Resuming asset download after %d bytes: %s",
+                        partialAsset.getDownloadedBytes(),
+                        url);
+            } else {
+                // 304 - Not Modified support
+                final CacheResult cachedAsset =
+                        cacheService.get(CampaignAssetStore.ASSET_CACHE, url);
+                requestProperties = Utils.extractHeadersFromCache(cachedAsset);
+            }
             final NetworkRequest networkRequest =
                     new NetworkRequest(
                             url,
@@ -92,8 +156,9 @@ class CampaignMessageAssetsDownloader {
                             requestProperties,
                             CampaignConstants.CAMPAIGN_TIMEOUT_DEFAULT,
                             CampaignConstants.CAMPAIGN_TIMEOUT_DEFAULT);
-            networkService.connectAsync(
+            downloadScheduler.schedule(
                     networkRequest,
+                    messageId,
                     connection -> {
                         if (connection == null) {
                             Log.warning(
@@ -112,7 +177,19 @@ class CampaignMessageAssetsDownloader {
                                     url);
                             connection.close();
                             return;
-                        } else if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                        } else if (connection.getResponseCode()
+                                == CampaignConstants.HTTP_RANGE_NOT_SATISFIABLE) {
+                            Log.debug(
+                                    CampaignConstants.LOG_TAG,
+                                    SELF_TAG,
+                                    "downloadAssetCollection - Cannot resume asset download,"
+                                            + " discarding partial asset from URL: %s",
+                                    url);
+                            partialAsset.discard();
+                            connection.close();
+                            return;
+                        } else if (connection.getResponseCode() != HttpURLConnection.HTTP_OK
+                                && connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
                             Log.debug(
                                     CampaignConstants.LOG_TAG,
                                     SELF_TAG,
@@ -122,24 +199,40 @@ class CampaignMessageAssetsDownloader {
                             connection.close();
                             return;
                         }
-                        cacheAssetData(connection, url, messageId);
+
+                        if (!partialAsset.write(connection)) {
+                            Log.debug(
+                                    CampaignConstants.LOG_TAG,
+                                    SELF_TAG,
+                                    "downloadAssetCollection - Asset download incomplete, it will"
+                                            + " be resumed on the next attempt: %s",
+                                    url);
+                            connection.close();
+                            return;
+                        }
+                        cacheAssetData(connection, partialAsset, url);
                         connection.close();
                     });
         }
     }
 
     /**
-     * Caches the provided {@code InputStream} contained in the {@code HttpConnecting} from the
-     * given asset URL.
+     * Caches the completely downloaded {@code partialAsset} from the given asset URL and discards
+     * the partial file.
      *
-     * @param connection {@link HttpConnecting} containing the downloaded remote asset data.
-     * @param key {@code String} The asset download URL. Used to name the cache folder.
-     * @param messageId {@code String} The id of the message
+     * <p>Image assets are optimized with the {@link CampaignImageAssetOptimizer} before they are
+     * cached.
+     *
+     * @param connection {@link HttpConnecting} containing the response metadata of the asset.
+     * @param partialAsset {@link CampaignPartialAsset} containing the downloaded asset data.
+     * @param key {@code String} The asset download URL. Used as the cache key.
      */
     private void cacheAssetData(
-            final HttpConnecting connection, final String key, final String messageId) {
-        // create message asset cache directory if needed
-        if (!createDirectoryIfNeeded(messageId)) {
+            final HttpConnecting connection,
+            final CampaignPartialAsset partialAsset,
+            final String key) {
+        // create asset cache directory if needed
+        if (!createDirectoryIfNeeded()) {
             Log.debug(
                     CampaignConstants.LOG_TAG,
                     SELF_TAG,
@@ -155,16 +248,30 @@ class CampaignMessageAssetsDownloader {
                 "cacheAssetData - Caching asset %s for message id %s.",
                 key,
                 messageId);
+        if (imageAssetOptimizer != null) {
+            imageAssetOptimizer.optimize(partialAsset.getDataFile(), key);
+        }
+
         final Map<String, String> metadata = Utils.extractMetadataFromResponse(connection);
-        final String assetStoragePath =
-                CampaignConstants.CACHE_BASE_DIR
-                        + File.separator
-                        + CampaignConstants.MESSAGE_CACHE_DIR
-                        + File.separator
-                        + messageId;
-        final CacheEntry cacheEntry =
-                new CacheEntry(connection.getInputStream(), CacheExpiry.never(), metadata);
-        cacheService.set(assetStoragePath, key, cacheEntry);
+        final long assetSizeBytes = partialAsset.getDownloadedBytes();
+        final InputStream assetData = partialAsset.open();
+        if (assetData != null) {
+            try {
+                final CacheEntry cacheEntry =
+                        new CacheEntry(assetData, CacheExpiry.never(), metadata);
+                if (cacheService.set(CampaignAssetStore.ASSET_CACHE, key, cacheEntry)
+                        && assetStore != null) {
+                    assetStore.recordAssetCached(key, assetSizeBytes);
+                }
+            } finally {
+                try {
+                    assetData.close();
+                } catch (final IOException ignored) {
+                    // nothing to do
+                }
+            }
+        }
+        partialAsset.discard();
     }
 
     /**
@@ -176,18 +283,18 @@ class CampaignMessageAssetsDownloader {
      * @param assetPath {@link String} containing the asset path to check
      * @return {@code boolean} indicating whether the provided asset is downloadable
      */
-    private boolean assetIsDownloadable(final String assetPath) {
+    static boolean isDownloadable(final String assetPath) {
         return UrlUtils.isValidUrl(assetPath)
                 && (assetPath.startsWith("http") || assetPath.startsWith("https"));
     }
 
     /**
-     * Creates assets cache directory for a {@code CampaignMessage}.
+     * Creates the shared assets cache directory for {@code CampaignMessage}s.
      *
      * <p>This method checks if the cache directory already exists in which case no new directory is
      * created for assets.
      */
-    private void createMessageAssetCacheDirectory() {
+    private void createAssetCacheDirectory() {
         try {
             assetDir =
                     new File(
@@ -197,20 +304,20 @@ class CampaignMessageAssetsDownloader {
                                     + File.separator
                                     + CampaignConstants.CACHE_BASE_DIR
                                     + File.separator
-                                    + CampaignConstants.MESSAGE_CACHE_DIR);
+                                    + CampaignConstants.ASSET_CACHE_DIR);
 
             if (!assetDir.exists() && !assetDir.mkdirs()) {
                 Log.warning(
                         CampaignConstants.LOG_TAG,
                         SELF_TAG,
-                        "createMessageAssetCacheDirectory - Unable to create directory for caching"
+                        "createAssetCacheDirectory - Unable to create directory for caching"
                                 + " message assets");
             }
         } catch (final Exception ex) {
             Log.warning(
                     CampaignConstants.LOG_TAG,
                     SELF_TAG,
-                    "createMessageAssetCacheDirectory - An unexpected error occurred while managing"
+                    "createAssetCacheDirectory - An unexpected error occurred while managing"
                             + " assets cache directory: \n"
                             + " %s",
                     ex);
@@ -218,24 +325,11 @@ class CampaignMessageAssetsDownloader {
     }
 
     /**
-     * Creates assets cache directory for a {@code CampaignMessage}.
+     * Creates the shared assets cache directory if it does not exist.
      *
-     * <p>This method checks if the cache directory already exists in which case no new directory is
-     * created for assets.
-     *
-     * @param messageId {@code String} The id of the message
-     * @return {@code boolean} if true, the asset cache directory for the message id was created
-     *     successfully
+     * @return {@code boolean} if true, the asset cache directory exists or was created successfully
      */
-    private boolean createDirectoryIfNeeded(final String messageId) {
-        if (!assetDir.exists()) {
-            return false;
-        }
-
-        final File cacheDirectory = new File(assetDir + File.separator + messageId);
-        if (!cacheDirectory.exists()) {
-            return cacheDirectory.mkdir();
-        }
-        return true;
+    private boolean createDirectoryIfNeeded() {
+        return assetDir != null && (assetDir.exists() || assetDir.mkdirs());
     }
 }
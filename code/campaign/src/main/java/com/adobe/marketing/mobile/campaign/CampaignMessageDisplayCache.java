@@ -0,0 +1,341 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.Log;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of the html content and resolved asset maps of shown {@code
+ * FullScreenMessage}s.
+ *
+ * <p>Entries are keyed by message id and rules bundle version, the least recently used entry is
+ * dropped once {@link #getMaxEntries()} is reached. Registering a new rules bundle invalidates
+ * every entry. An asset map is only kept while no asset was removed from the {@link
+ * CampaignAssetStore} since it was resolved.
+ *
+ * <p>Asset maps precomputed for the registered messages before they are shown are kept apart from
+ * the least recently used entries, so they do not evict the content of shown messages. They are
+ * bounded by the number of messages in the registered rules bundle.
+ *
+ * <p>The time between a message rule being triggered and the message being shown is recorded for
+ * the most recently shown messages.
+ */
+class CampaignMessageDisplayCache {
+    private static final String SELF_TAG = "CampaignMessageDisplayCache";
+    private static final int RECENT_SHOW_LATENCIES_LIMIT = 50;
+
+    private final int maxEntries;
+    private final Deque<ShowLatency> recentShowLatencies = new ArrayDeque<>();
+    private final LinkedHashMap<String, DisplayEntry> entries;
+    private final Map<String, ResolvedAssets> precomputedAssets = new HashMap<>();
+    private int bundleVersion = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries {@code int} containing the maximum number of cached messages
+     */
+    CampaignMessageDisplayCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries =
+                new LinkedHashMap<String, DisplayEntry>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            final Map.Entry<String, DisplayEntry> eldest) {
+                        return size() > CampaignMessageDisplayCache.this.maxEntries;
+                    }
+                };
+    }
+
+    /**
+     * Returns the maximum number of cached messages.
+     *
+     * @return {@code int} containing the maximum number of entries
+     */
+    int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the version of the currently registered rules bundle.
+     *
+     * <p>Callers read the version before loading the message content, content loaded for an older
+     * bundle is not cached.
+     *
+     * @return {@code int} containing the rules bundle version
+     */
+    synchronized int getBundleVersion() {
+        return bundleVersion;
+    }
+
+    /** Drops every entry, called when a new rules bundle is registered. */
+    synchronized void invalidate() {
+        bundleVersion++;
+        entries.clear();
+        precomputedAssets.clear();
+    }
+
+    /**
+     * Returns the cached html content of the message with the given {@code messageId}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param bundleVersion {@code int} containing the rules bundle version of the message
+     * @return {@link String} containing the html content, or null if it is not cached
+     */
+    synchronized String getHtmlContent(final String messageId, final int bundleVersion) {
+        final DisplayEntry entry = entries.get(getKey(messageId, bundleVersion));
+        if (entry == null || entry.htmlContent == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.htmlContent;
+    }
+
+    /**
+     * Caches the html content of the message with the given {@code messageId}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param bundleVersion {@code int} containing the rules bundle version the content was read
+     *     from
+     * @param htmlContent {@link String} containing the html content
+     */
+    synchronized void putHtmlContent(
+            final String messageId, final int bundleVersion, final String htmlContent) {
+        final DisplayEntry entry = getOrCreateEntry(messageId, bundleVersion);
+        if (entry != null) {
+            entry.htmlContent = htmlContent;
+        }
+    }
+
+    /**
+     * Returns the cached or precomputed asset map of the message with the given {@code messageId}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param bundleVersion {@code int} containing the rules bundle version of the message
+     * @param assetGeneration {@code long} containing the current {@link
+     *     CampaignAssetStore#getAssetGeneration()}
+     * @return {@link ResolvedAssets} containing the asset map, or null if it is not cached or
+     *     outdated
+     */
+    synchronized ResolvedAssets getResolvedAssets(
+            final String messageId, final int bundleVersion, final long assetGeneration) {
+        final String key = getKey(messageId, bundleVersion);
+        final DisplayEntry entry = entries.get(key);
+        ResolvedAssets resolvedAssets = entry != null ? entry.resolvedAssets : null;
+        if (resolvedAssets == null) {
+            resolvedAssets = precomputedAssets.get(key);
+        }
+        if (resolvedAssets == null || resolvedAssets.assetGeneration != assetGeneration) {
+            // a precomputed map is outdated once an asset was removed
+            if (resolvedAssets != null && resolvedAssets == precomputedAssets.get(key)) {
+                precomputedAssets.remove(key);
+            }
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return resolvedAssets;
+    }
+
+    /**
+     * Caches the asset map of the message with the given {@code messageId}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param bundleVersion {@code int} containing the rules bundle version of the message
+     * @param resolvedAssets {@link ResolvedAssets} containing the resolved asset map
+     */
+    synchronized void putResolvedAssets(
+            final String messageId, final int bundleVersion, final ResolvedAssets resolvedAssets) {
+        final DisplayEntry entry = getOrCreateEntry(messageId, bundleVersion);
+        if (entry != null) {
+            entry.resolvedAssets = resolvedAssets;
+        }
+    }
+
+    /**
+     * Keeps the asset map precomputed for the message with the given {@code messageId} until the
+     * next rules bundle is registered.
+     *
+     * <p>Only complete asset maps are kept, maps using bundled fallbacks are resolved again when
+     * the message is shown since their remote assets may be downloaded by then. Precomputed maps
+     * are not counted against {@link #getMaxEntries()}.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param bundleVersion {@code int} containing the rules bundle version of the message
+     * @param resolvedAssets {@link ResolvedAssets} containing the resolved asset map
+     */
+    synchronized void putPrecomputedAssets(
+            final String messageId, final int bundleVersion, final ResolvedAssets resolvedAssets) {
+        if (bundleVersion != this.bundleVersion || !resolvedAssets.isComplete()) {
+            return;
+        }
+        precomputedAssets.put(getKey(messageId, bundleVersion), resolvedAssets);
+    }
+
+    /**
+     * Returns the number of lookups served from memory.
+     *
+     * @return {@code int} containing the number of cache hits
+     */
+    synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which had to read from the disk cache.
+     *
+     * @return {@code int} containing the number of cache misses
+     */
+    synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Records the time between the rule of the message with the given {@code messageId} being
+     * triggered and the message being shown.
+     *
+     * @param messageId {@link String} containing the message id
+     * @param latencyMillis {@code long} containing the trigger to show latency in milliseconds
+     * @param assetMapCached {@code boolean} indicating whether the asset map was resolved before
+     *     the message was triggered
+     */
+    void recordShowLatency(
+            final String messageId, final long latencyMillis, final boolean assetMapCached) {
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Message %s shown %d ms after being triggered (asset map %s).",
+                messageId,
+                latencyMillis,
+                assetMapCached ? "cached" : "resolved at show time");
+        synchronized (recentShowLatencies) {
+            recentShowLatencies.addLast(new ShowLatency(messageId, latencyMillis, assetMapCached));
+            if (recentShowLatencies.size() > RECENT_SHOW_LATENCIES_LIMIT) {
+                recentShowLatencies.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Returns the trigger to show latencies of the most recently shown messages, oldest first.
+     *
+     * @return {@code List<ShowLatency>} containing the recent show latencies
+     */
+    List<ShowLatency> getRecentShowLatencies() {
+        synchronized (recentShowLatencies) {
+            return new ArrayList<>(recentShowLatencies);
+        }
+    }
+
+    private DisplayEntry getOrCreateEntry(final String messageId, final int bundleVersion) {
+        // content read from a previous rules bundle is outdated
+        if (bundleVersion != this.bundleVersion) {
+            return null;
+        }
+
+        final String key = getKey(messageId, bundleVersion);
+        DisplayEntry entry = entries.get(key);
+        if (entry == null) {
+            entry = new DisplayEntry();
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static String getKey(final String messageId, final int bundleVersion) {
+        return bundleVersion + ":" + messageId;
+    }
+
+    /** Asset map resolved from the {@link CampaignAssetStore} for a message. */
+    static final class ResolvedAssets {
+        private final Map<String, String> assetMap;
+        private final List<String> storedAssets;
+        private final long assetGeneration;
+        private final boolean complete;
+
+        /**
+         * Constructor.
+         *
+         * @param assetMap {@code Map<String, String>} containing the asset URLs and their caches
+         * @param storedAssets {@code List<String>} containing the assets resolved from the {@link
+         *     CampaignAssetStore}
+         * @param assetGeneration {@code long} containing the {@link
+         *     CampaignAssetStore#getAssetGeneration()} the assets were resolved at
+         * @param complete {@code boolean} indicating whether every asset was resolved from the
+         *     {@link CampaignAssetStore}
+         */
+        ResolvedAssets(
+                final Map<String, String> assetMap,
+                final List<String> storedAssets,
+                final long assetGeneration,
+                final boolean complete) {
+            this.assetMap = Collections.unmodifiableMap(new HashMap<>(assetMap));
+            this.storedAssets = Collections.unmodifiableList(new ArrayList<>(storedAssets));
+            this.assetGeneration = assetGeneration;
+            this.complete = complete;
+        }
+
+        Map<String, String> getAssetMap() {
+            return assetMap;
+        }
+
+        List<String> getStoredAssets() {
+            return storedAssets;
+        }
+
+        boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /** Time between a message rule being triggered and the message being shown. */
+    static final class ShowLatency {
+        private final String messageId;
+        private final long latencyMillis;
+        private final boolean assetMapCached;
+
+        ShowLatency(
+                final String messageId, final long latencyMillis, final boolean assetMapCached) {
+            this.messageId = messageId;
+            this.latencyMillis = latencyMillis;
+            this.assetMapCached = assetMapCached;
+        }
+
+        String getMessageId() {
+            return messageId;
+        }
+
+        long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        boolean isAssetMapCached() {
+            return assetMapCached;
+        }
+    }
+
+    private static final class DisplayEntry {
+        private String htmlContent;
+        private ResolvedAssets resolvedAssets;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
+import com.adobe.marketing.mobile.services.DeviceInforming;
+import com.adobe.marketing.mobile.services.HttpConnecting;
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.ServiceProvider;
+import com.adobe.marketing.mobile.util.StreamUtils;
+import com.adobe.marketing.mobile.util.StringUtils;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Partially downloaded {@code CampaignMessage} asset.
+ *
+ * <p>Asset downloads are written to a partial file in {@value
+ * CampaignConstants#PARTIAL_ASSET_CACHE_DIR} together with the validator ({@value
+ * CampaignConstants#HTTP_HEADER_ETAG} or {@value CampaignConstants#HTTP_HEADER_LAST_MODIFIED}) of
+ * the response. If a download is interrupted, the next download of the asset requests the missing
+ * bytes with {@value CampaignConstants#HTTP_HEADER_RANGE} and {@value
+ * CampaignConstants#HTTP_HEADER_IF_RANGE}. The partial file is only moved to the asset cache once
+ * the download completed.
+ */
+final class CampaignPartialAsset {
+    private static final String SELF_TAG = "CampaignPartialAsset";
+    private static final String VALIDATOR_FILE_EXTENSION = ".validator";
+    private static final String RANGE_FORMAT = "bytes=%d-";
+    private static final String CONTENT_RANGE_PREFIX_FORMAT = "bytes %d-";
+    private static final String CONTENT_RANGE_LENGTH_SEPARATOR = "/";
+    private static final long UNKNOWN_LENGTH = -1;
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final int STREAM_BUFFER_SIZE = 4096;
+
+    private final File dataFile;
+    private final File validatorFile;
+
+    /**
+     * Constructor.
+     *
+     * @param partialAssetDir {@link File} containing the partial assets directory
+     * @param url {@link String} containing the asset URL
+     */
+    CampaignPartialAsset(final File partialAssetDir, final String url) {
+        final String fileName = StringEncoder.sha2hash(url);
+        this.dataFile = new File(partialAssetDir, fileName);
+        this.validatorFile = new File(partialAssetDir, fileName + VALIDATOR_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the directory containing the partially downloaded assets.
+     *
+     * @return {@link File} containing the partial assets directory, or null if the application
+     *     cache directory is not available
+     */
+    static File getPartialAssetDirectory() {
+        final DeviceInforming deviceInfoService =
+                ServiceProvider.getInstance().getDeviceInfoService();
+        if (deviceInfoService == null || deviceInfoService.getApplicationCacheDir() == null) {
+            return null;
+        }
+
+        return new File(
+                deviceInfoService.getApplicationCacheDir()
+                        + File.separator
+                        + CampaignConstants.AEPSDK_CACHE_BASE_DIR
+                        + File.separator
+                        + CampaignConstants.CACHE_BASE_DIR
+                        + File.separator
+                        + CampaignConstants.PARTIAL_ASSET_CACHE_DIR);
+    }
+
+    /**
+     * Returns the number of bytes downloaded so far.
+     *
+     * @return {@code long} containing the length of the partial file
+     */
+    long getDownloadedBytes() {
+        return dataFile.exists() ? dataFile.length() : 0;
+    }
+
+    /**
+     * Returns the partial file containing the downloaded bytes.
+     *
+     * @return {@link File} containing the downloaded asset data
+     */
+    File getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Returns the request headers needed to resume this download.
+     *
+     * @return {@code Map<String, String>} containing the {@value
+     *     CampaignConstants#HTTP_HEADER_RANGE} and {@value CampaignConstants#HTTP_HEADER_IF_RANGE}
+     *     headers, or an empty map if the download cannot be resumed
+     */
+    Map<String, String> getResumeHeaders() {
+        final Map<String, String> headers = new HashMap<>();
+        final long downloadedBytes = getDownloadedBytes();
+        final String validator = readValidator();
+        if (downloadedBytes == 0 || StringUtils.isNullOrEmpty(validator)) {
+            return headers;
+        }
+
+        headers.put(
+                CampaignConstants.HTTP_HEADER_RANGE, String.format(RANGE_FORMAT, downloadedBytes));
+        headers.put(CampaignConstants.HTTP_HEADER_IF_RANGE, validator);
+        return headers;
+    }
+
+    /**
+     * Writes the body of the provided {@code connection} to the partial file.
+     *
+     * <p>A {@link HttpURLConnection#HTTP_PARTIAL} response is appended to the partial file if its
+     * content range starts at the end of the partial file. A {@link HttpURLConnection#HTTP_OK}
+     * response replaces the partial file.
+     *
+     * <p>The download is only complete if the length of the partial file matches the complete
+     * length of the {@value CampaignConstants#HTTP_HEADER_CONTENT_RANGE} or the {@value
+     * CampaignConstants#HTTP_HEADER_CONTENT_LENGTH} of the response, when the response has one. A
+     * shorter partial file is kept so the download can be resumed.
+     *
+     * @param connection {@link HttpConnecting} containing the asset response
+     * @return true if the complete response body was written, false otherwise
+     */
+    boolean write(final HttpConnecting connection) {
+        final File partialAssetDir = dataFile.getParentFile();
+        if (partialAssetDir == null || (!partialAssetDir.exists() && !partialAssetDir.mkdirs())) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "write - Unable to create the partial assets directory.");
+            return false;
+        }
+
+        final boolean append;
+        final long expectedLength;
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            final String contentRange =
+                    connection.getResponsePropertyValue(
+                            CampaignConstants.HTTP_HEADER_CONTENT_RANGE);
+            final String expectedPrefix =
+                    String.format(CONTENT_RANGE_PREFIX_FORMAT, getDownloadedBytes());
+            if (contentRange == null || !contentRange.startsWith(expectedPrefix)) {
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "write - Unexpected content range (%s), discarding partial asset.",
+                        contentRange);
+                discard();
+                return false;
+            }
+            append = true;
+            expectedLength = getCompleteLength(contentRange);
+        } else {
+            append = false;
+            expectedLength =
+                    parseLength(
+                            connection.getResponsePropertyValue(
+                                    CampaignConstants.HTTP_HEADER_CONTENT_LENGTH));
+            writeValidator(getValidator(connection));
+        }
+
+        final InputStream inputStream = connection.getInputStream();
+        if (inputStream == null) {
+            return false;
+        }
+
+        try (OutputStream outputStream = new FileOutputStream(dataFile, append)) {
+            final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, bytesRead);
+            }
+        } catch (final IOException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "write - Asset download interrupted after %d bytes (%s).",
+                    getDownloadedBytes(),
+                    exception.getLocalizedMessage());
+            return false;
+        } finally {
+            try {
+                inputStream.close();
+            } catch (final IOException ignored) {
+                // nothing to do
+            }
+        }
+
+        final long downloadedBytes = getDownloadedBytes();
+        if (expectedLength == UNKNOWN_LENGTH || downloadedBytes == expectedLength) {
+            return true;
+        }
+
+        Log.debug(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "write - Asset download has %d bytes, expected %d bytes.",
+                downloadedBytes,
+                expectedLength);
+        if (downloadedBytes > expectedLength) {
+            discard();
+        }
+        return false;
+    }
+
+    /**
+     * Opens the downloaded asset for reading.
+     *
+     * @return {@link InputStream} of the partial file, or null if it cannot be opened
+     */
+    InputStream open() {
+        try {
+            return new FileInputStream(dataFile);
+        } catch (final IOException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "open - Unable to open partial asset (%s).",
+                    exception.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /** Deletes the partial file and its validator. */
+    void discard() {
+        if (dataFile.exists() && !dataFile.delete()) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "discard - Unable to delete %s.",
+                    dataFile);
+        }
+        if (validatorFile.exists() && !validatorFile.delete()) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "discard - Unable to delete %s.",
+                    validatorFile);
+        }
+    }
+
+    /**
+     * Returns the validator to use in a {@value CampaignConstants#HTTP_HEADER_IF_RANGE} header for
+     * the provided {@code connection}.
+     *
+     * <p>Weak entity tags cannot be used for range requests, the {@value
+     * CampaignConstants#HTTP_HEADER_LAST_MODIFIED} date is used instead.
+     *
+     * @param connection {@link HttpConnecting} containing the asset response
+     * @return {@link String} containing the validator, or null if the response has none
+     */
+    private static String getValidator(final HttpConnecting connection) {
+        final String eTag = connection.getResponsePropertyValue(CampaignConstants.HTTP_HEADER_ETAG);
+        if (!StringUtils.isNullOrEmpty(eTag) && !eTag.startsWith(WEAK_ETAG_PREFIX)) {
+            return eTag;
+        }
+        return connection.getResponsePropertyValue(CampaignConstants.HTTP_HEADER_LAST_MODIFIED);
+    }
+
+    /**
+     * Returns the complete length of the asset from the provided {@code contentRange}.
+     *
+     * @param contentRange {@link String} containing a {@value
+     *     CampaignConstants#HTTP_HEADER_CONTENT_RANGE} value, e.g. {@code bytes 100-199/200}
+     * @return {@code long} containing the complete length, or {@value #UNKNOWN_LENGTH} if it is not
+     *     known
+     */
+    private static long getCompleteLength(final String contentRange) {
+        final int separatorIndex = contentRange.lastIndexOf(CONTENT_RANGE_LENGTH_SEPARATOR);
+        if (separatorIndex < 0) {
+            return UNKNOWN_LENGTH;
+        }
+        return parseLength(contentRange.substring(separatorIndex + 1));
+    }
+
+    private static long parseLength(final String length) {
+        if (StringUtils.isNullOrEmpty(length)) {
+            return UNKNOWN_LENGTH;
+        }
+
+        try {
+            final long parsedLength = Long.parseLong(length.trim());
+            return parsedLength >= 0 ? parsedLength : UNKNOWN_LENGTH;
+        } catch (final NumberFormatException exception) {
+            // e.g. an unknown complete length "*"
+            return UNKNOWN_LENGTH;
+        }
+    }
+
+    private String readValidator() {
+        if (!validatorFile.exists()) {
+            return null;
+        }
+
+        try (InputStream inputStream = new FileInputStream(validatorFile)) {
+            return StreamUtils.readAsString(inputStream);
+        } catch (final IOException exception) {
+            return null;
+        }
+    }
+
+    private void writeValidator(final String validator) {
+        if (StringUtils.isNullOrEmpty(validator)) {
+            if (validatorFile.exists()) {
+                validatorFile.delete();
+            }
+            return;
+        }
+
+        try (OutputStream outputStream = new FileOutputStream(validatorFile)) {
+            outputStream.write(validator.getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "writeValidator - Unable to store the asset validator (%s).",
+                    exception.getLocalizedMessage());
+        }
+    }
+}
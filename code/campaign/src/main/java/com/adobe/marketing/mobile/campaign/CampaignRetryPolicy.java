@@ -0,0 +1,214 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.NamedCollection;
+import com.adobe.marketing.mobile.util.StringUtils;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Computes the retry interval of the hits of a {@code PersistentHitQueue}.
+ *
+ * <p>The interval grows exponentially with the number of consecutive failed attempts, from {@value
+ * CampaignConstants#HIT_RETRY_BASE_INTERVAL_SECONDS} seconds up to {@value
+ * CampaignConstants#HIT_RETRY_MAX_INTERVAL_SECONDS} seconds, and a random interval between {@value
+ * CampaignConstants#HIT_RETRY_MIN_INTERVAL_SECONDS} second and that bound is used so devices do not
+ * retry in lock-step. A {@value CampaignConstants#HTTP_HEADER_RETRY_AFTER} returned by the server
+ * takes precedence. The retry state is persisted in the Campaign {@link NamedCollection} and reset
+ * once a hit is sent.
+ */
+class CampaignRetryPolicy {
+    private static final String SELF_TAG = "CampaignRetryPolicy";
+    private static final String RETRY_AFTER_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+    private static final int MAX_BACKOFF_EXPONENT = 30;
+    private static final int RETRY_SCHEDULE_LIMIT = 50;
+
+    private final NamedCollection campaignNamedCollection;
+    private final Random random;
+    private final Deque<Integer> retrySchedule = new ArrayDeque<>();
+    private long failedAttempts;
+    private long retryNotBeforeMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param campaignNamedCollection {@link NamedCollection} persisting the retry state, may be
+     *     null
+     * @param random {@link Random} used to jitter the retry intervals
+     */
+    CampaignRetryPolicy(final NamedCollection campaignNamedCollection, final Random random) {
+        this.campaignNamedCollection = campaignNamedCollection;
+        this.random = random;
+        if (campaignNamedCollection != null) {
+            failedAttempts =
+                    campaignNamedCollection.getLong(
+                            CampaignConstants.CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_ATTEMPTS_KEY, 0);
+            retryNotBeforeMillis =
+                    campaignNamedCollection.getLong(
+                            CampaignConstants.CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_NOT_BEFORE_KEY,
+                            0);
+        }
+    }
+
+    /** Resets the retry state, called once a hit reached the server. */
+    synchronized void recordSuccess() {
+        if (failedAttempts == 0 && retryNotBeforeMillis == 0) {
+            return;
+        }
+
+        failedAttempts = 0;
+        retryNotBeforeMillis = 0;
+        if (campaignNamedCollection != null) {
+            campaignNamedCollection.remove(
+                    CampaignConstants.CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_ATTEMPTS_KEY);
+            campaignNamedCollection.remove(
+                    CampaignConstants.CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_NOT_BEFORE_KEY);
+        }
+    }
+
+    /**
+     * Forgets the in-memory retry state and the recent retry intervals, called when the Campaign
+     * data is cleared.
+     */
+    synchronized void clear() {
+        failedAttempts = 0;
+        retryNotBeforeMillis = 0;
+        retrySchedule.clear();
+    }
+
+    /**
+     * Records a failed attempt to send a hit.
+     *
+     * @param retryAfterSeconds {@code long} containing the delay requested by the server in
+     *     seconds, or a negative value if none was requested
+     */
+    synchronized void recordFailure(final long retryAfterSeconds) {
+        failedAttempts++;
+        retryNotBeforeMillis =
+                retryAfterSeconds > 0
+                        ? System.currentTimeMillis()
+                                + Math.min(
+                                                retryAfterSeconds,
+                                                CampaignConstants.HIT_RETRY_AFTER_MAX_SECONDS)
+                                        * 1000
+                        : 0;
+        if (campaignNamedCollection != null) {
+            campaignNamedCollection.setLong(
+                    CampaignConstants.CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_ATTEMPTS_KEY,
+                    failedAttempts);
+            campaignNamedCollection.setLong(
+                    CampaignConstants.CAMPAIGN_NAMED_COLLECTION_HIT_RETRY_NOT_BEFORE_KEY,
+                    retryNotBeforeMillis);
+        }
+    }
+
+    /**
+     * Returns the interval to wait before the failed hit is sent again.
+     *
+     * @return {@code int} containing the retry interval in seconds
+     */
+    synchronized int nextRetryIntervalSeconds() {
+        final long remainingRetryAfterMillis = retryNotBeforeMillis - System.currentTimeMillis();
+        final int retryInterval;
+        if (remainingRetryAfterMillis > 0) {
+            retryInterval = (int) ((remainingRetryAfterMillis + 999) / 1000);
+        } else {
+            final int exponent =
+                    (int) Math.min(Math.max(failedAttempts - 1, 0), MAX_BACKOFF_EXPONENT);
+            final long backoffBound =
+                    Math.min(
+                            (long) CampaignConstants.HIT_RETRY_BASE_INTERVAL_SECONDS << exponent,
+                            CampaignConstants.HIT_RETRY_MAX_INTERVAL_SECONDS);
+            retryInterval =
+                    Math.max(
+                            random.nextInt((int) backoffBound + 1),
+                            CampaignConstants.HIT_RETRY_MIN_INTERVAL_SECONDS);
+        }
+
+        Log.debug(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "nextRetryIntervalSeconds - Retrying hit in %d seconds after %d failed attempt(s).",
+                retryInterval,
+                failedAttempts);
+        retrySchedule.addLast(retryInterval);
+        if (retrySchedule.size() > RETRY_SCHEDULE_LIMIT) {
+            retrySchedule.removeFirst();
+        }
+        return retryInterval;
+    }
+
+    /**
+     * Returns the number of consecutive failed attempts to send a hit.
+     *
+     * @return {@code long} containing the number of failed attempts
+     */
+    synchronized long getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    /**
+     * Returns the most recent retry intervals, oldest first.
+     *
+     * @return {@code List<Integer>} containing the retry intervals in seconds
+     */
+    synchronized List<Integer> getRetrySchedule() {
+        return new ArrayList<>(retrySchedule);
+    }
+
+    /**
+     * Parses the value of a {@value CampaignConstants#HTTP_HEADER_RETRY_AFTER} response header.
+     *
+     * @param retryAfter {@link String} containing either a delay in seconds or an HTTP date
+     * @param currentTimeMillis {@code long} containing the current time in milliseconds
+     * @return {@code long} containing the delay in seconds, or -1 if the value is missing or
+     *     invalid
+     */
+    static long parseRetryAfter(final String retryAfter, final long currentTimeMillis) {
+        if (StringUtils.isNullOrEmpty(retryAfter)) {
+            return -1;
+        }
+
+        final String value = retryAfter.trim();
+        try {
+            final long delaySeconds = Long.parseLong(value);
+            return delaySeconds >= 0 ? delaySeconds : -1;
+        } catch (final NumberFormatException ignored) {
+            // not a delay in seconds, try an HTTP date
+        }
+
+        try {
+            final SimpleDateFormat dateFormat =
+                    new SimpleDateFormat(RETRY_AFTER_DATE_FORMAT, Locale.US);
+            final Date retryDate = dateFormat.parse(value);
+            return retryDate != null
+                    ? Math.max((retryDate.getTime() - currentTimeMillis + 999) / 1000, 0)
+                    : -1;
+        } catch (final ParseException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "parseRetryAfter - Invalid Retry-After value (%s).",
+                    value);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.Log;
+import java.util.HashSet;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Represents the {@value CampaignConstants#RULES_DELTA_JSON_FILE_NAME} of a differential Campaign
+ * rules bundle.
+ *
+ * <p>A rules delta contains the rules for every added or changed message and the ids of the removed
+ * messages:
+ *
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "rules": [ ...added or changed rules... ],
+ *   "removed": [ ...removed message ids... ]
+ * }
+ * </pre>
+ *
+ * Messages are identified by the ids of the rule consequences.
+ */
+final class CampaignRulesDelta {
+    private static final String SELF_TAG = "CampaignRulesDelta";
+    private static final String RULES_KEY = "rules";
+    private static final String REMOVED_KEY = "removed";
+    private static final String CONSEQUENCES_KEY = "consequences";
+    private static final String CONSEQUENCE_ID_KEY = "id";
+    private static final String CONSEQUENCE_DETAIL_KEY = "detail";
+    private static final String CONSEQUENCE_DETAIL_HTML_KEY = "html";
+
+    private final JSONArray rules;
+    private final Set<String> updatedMessageIds;
+    private final Set<String> removedMessageIds;
+
+    private CampaignRulesDelta(final JSONArray rules, final Set<String> removedMessageIds) {
+        this.rules = rules;
+        this.removedMessageIds = removedMessageIds;
+        this.updatedMessageIds = getMessageIds(rules);
+    }
+
+    /**
+     * Creates a {@code CampaignRulesDelta} from the provided {@code deltaJsonString}.
+     *
+     * @param deltaJsonString {@link String} containing the rules delta JSON
+     * @return {@link CampaignRulesDelta} object, or null if {@code deltaJsonString} is not a valid
+     *     rules delta
+     */
+    static CampaignRulesDelta fromJsonString(final String deltaJsonString) {
+        try {
+            final JSONObject deltaJson = new JSONObject(deltaJsonString);
+            final JSONArray rules = deltaJson.optJSONArray(RULES_KEY);
+            final JSONArray removed = deltaJson.optJSONArray(REMOVED_KEY);
+
+            final Set<String> removedMessageIds = new HashSet<>();
+            if (removed != null) {
+                for (int i = 0; i < removed.length(); i++) {
+                    removedMessageIds.add(removed.getString(i));
+                }
+            }
+
+            return new CampaignRulesDelta(
+                    rules != null ? rules : new JSONArray(), removedMessageIds);
+        } catch (final JSONException | NullPointerException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Invalid rules delta (%s).",
+                    exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the ids of the messages added or changed by this rules delta.
+     *
+     * @return {@code Set<String>} containing the added or changed message ids
+     */
+    Set<String> getUpdatedMessageIds() {
+        return updatedMessageIds;
+    }
+
+    /**
+     * Returns the ids of the messages removed by this rules delta.
+     *
+     * @return {@code Set<String>} containing the removed message ids
+     */
+    Set<String> getRemovedMessageIds() {
+        return removedMessageIds;
+    }
+
+    /**
+     * Applies this rules delta to the provided {@code rulesJsonString}.
+     *
+     * <p>Every rule with a consequence for an added, changed or removed message is dropped from
+     * {@code rulesJsonString} and the rules contained in this delta are appended. The html files
+     * referenced only by dropped rules are added to {@code obsoleteFiles}.
+     *
+     * @param rulesJsonString {@link String} containing the currently cached rules JSON
+     * @param obsoleteFiles {@code Set<String>} populated with the html files no longer referenced
+     *     by the patched rules
+     * @return {@link JSONObject} containing the patched rules JSON, or null if {@code
+     *     rulesJsonString} could not be patched
+     */
+    JSONObject apply(final String rulesJsonString, final Set<String> obsoleteFiles) {
+        try {
+            final JSONObject rulesJson = new JSONObject(rulesJsonString);
+            final JSONArray cachedRules = rulesJson.getJSONArray(RULES_KEY);
+            final JSONArray patchedRules = new JSONArray();
+            final Set<String> droppedFiles = new HashSet<>();
+
+            for (int i = 0; i < cachedRules.length(); i++) {
+                final JSONObject rule = cachedRules.getJSONObject(i);
+                if (isDropped(rule)) {
+                    droppedFiles.addAll(getHtmlFiles(rule));
+                } else {
+                    patchedRules.put(rule);
+                }
+            }
+            for (int i = 0; i < rules.length(); i++) {
+                patchedRules.put(rules.getJSONObject(i));
+            }
+
+            for (int i = 0; i < patchedRules.length(); i++) {
+                droppedFiles.removeAll(getHtmlFiles(patchedRules.getJSONObject(i)));
+            }
+            obsoleteFiles.addAll(droppedFiles);
+
+            rulesJson.put(RULES_KEY, patchedRules);
+            return rulesJson;
+        } catch (final JSONException | NullPointerException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Unable to apply rules delta to cached rules (%s).",
+                    exception.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isDropped(final JSONObject rule) {
+        for (final String messageId : getMessageIds(rule)) {
+            if (updatedMessageIds.contains(messageId) || removedMessageIds.contains(messageId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> getMessageIds(final JSONArray rules) {
+        final Set<String> messageIds = new HashSet<>();
+        for (int i = 0; i < rules.length(); i++) {
+            final JSONObject rule = rules.optJSONObject(i);
+            if (rule != null) {
+                messageIds.addAll(getMessageIds(rule));
+            }
+        }
+        return messageIds;
+    }
+
+    private static Set<String> getMessageIds(final JSONObject rule) {
+        final Set<String> messageIds = new HashSet<>();
+        final JSONArray consequences = rule.optJSONArray(CONSEQUENCES_KEY);
+        if (consequences == null) {
+            return messageIds;
+        }
+        for (int i = 0; i < consequences.length(); i++) {
+            final JSONObject consequence = consequences.optJSONObject(i);
+            final String messageId =
+                    consequence == null ? "" : consequence.optString(CONSEQUENCE_ID_KEY);
+            if (!messageId.isEmpty()) {
+                messageIds.add(messageId);
+            }
+        }
+        return messageIds;
+    }
+
+    private static Set<String> getHtmlFiles(final JSONObject rule) {
+        final Set<String> htmlFiles = new HashSet<>();
+        final JSONArray consequences = rule.optJSONArray(CONSEQUENCES_KEY);
+        if (consequences == null) {
+            return htmlFiles;
+        }
+        for (int i = 0; i < consequences.length(); i++) {
+            final JSONObject consequence = consequences.optJSONObject(i);
+            final JSONObject detail =
+                    consequence == null ? null : consequence.optJSONObject(CONSEQUENCE_DETAIL_KEY);
+            final String htmlFile =
+                    detail == null ? "" : detail.optString(CONSEQUENCE_DETAIL_HTML_KEY);
+            if (!htmlFile.isEmpty()) {
+                htmlFiles.add(htmlFile);
+            }
+        }
+        return htmlFiles;
+    }
+}
@@ -11,6 +11,7 @@
 
 package com.adobe.marketing.mobile.campaign;
 
+import androidx.annotation.VisibleForTesting;
 import com.adobe.marketing.mobile.ExtensionApi;
 import com.adobe.marketing.mobile.internal.util.StringEncoder;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
@@ -32,36 +33,121 @@ import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.util.DataReader;
 import com.adobe.marketing.mobile.util.StreamUtils;
 import com.adobe.marketing.mobile.util.StringUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 class CampaignRulesDownloader {
     private static final String SELF_TAG = "CampaignRulesDownloader";
-    private static final String TEMP_RULES_DIR = "campaign_temp";
+    private static final int STREAM_BUFFER_SIZE = 4096;
+    private static final String BUNDLE_TEMP_FILE_PREFIX = "campaignRules";
+    private static final int ANY_RULES_GENERATION = -1;
+    private static final String BUNDLE_DIGEST_ALGORITHM = "SHA-256";
+    private static final String ASSET_TASK_THREAD_NAME = "CampaignAssetTasks";
+    private static final String RULES_CACHE =
+            CampaignConstants.CACHE_BASE_DIR
+                    + File.separator
+                    + CampaignConstants.RULES_CACHE_FOLDER;
     private final ExtensionApi extensionApi;
     private final LaunchRulesEngine campaignRulesEngine;
     private final NamedCollection campaignNamedCollection;
     private final CacheService cacheService;
     private final Networking networkService;
     private CampaignMessageAssetsDownloader campaignMessageAssetsDownloader;
+    private final CampaignAssetDownloadScheduler assetDownloadScheduler;
+    private final CampaignImageAssetOptimizer imageAssetOptimizer;
+    private final CampaignAssetStore assetStore;
+    private final CampaignAssetReadiness assetReadiness;
+    private final CampaignMessageDisplayCache messageDisplayCache =
+            new CampaignMessageDisplayCache(CampaignConstants.MESSAGE_DISPLAY_CACHE_MAX_ENTRIES);
+    private final Executor cachedRulesExecutor;
+    private final ScheduledExecutorService assetTaskExecutor;
+    private final Object rulesRegistrationLock = new Object();
+    private final Object assetSyncLock = new Object();
+    private final Object messageAssetArraysLock = new Object();
+    private Map<String, List<List<String>>> registeredMessageAssetArrays = new HashMap<>();
+    private int registeredAssetArraysVersion = 0;
+    private int rulesGeneration = 0;
+    private boolean rulesRegistered = false;
+    private String registeredRulesCache = RULES_CACHE;
+    private CampaignRulesEventIndex rulesEventIndex = null;
+    private long cachedRulesRequestTimestamp = 0;
+    private long rulesLiveDurationMillis = -1;
+    private long lastBundleBytesWritten = 0;
+    private long lastBundleApplyDurationMillis = 0;
+    private int unchangedBundleCount = 0;
+    private final Object rulesDownloadLock = new Object();
+    private final Object bundleExtractionLock = new Object();
+    private String inFlightDownloadKey = null;
+    private int rulesDownloadId = 0;
+    private int coalescedDownloadCount = 0;
 
     CampaignRulesDownloader(
             final ExtensionApi extensionApi,
             final LaunchRulesEngine campaignRulesEngine,
             final NamedCollection campaignNamedCollection,
             final CacheService cacheService) {
+        this(
+                extensionApi,
+                campaignRulesEngine,
+                campaignNamedCollection,
+                cacheService,
+                Executors.newSingleThreadExecutor());
+    }
+
+    @VisibleForTesting
+    CampaignRulesDownloader(
+            final ExtensionApi extensionApi,
+            final LaunchRulesEngine campaignRulesEngine,
+            final NamedCollection campaignNamedCollection,
+            final CacheService cacheService,
+            final Executor cachedRulesExecutor) {
         this.extensionApi = extensionApi;
         this.campaignRulesEngine = campaignRulesEngine;
         this.campaignNamedCollection = campaignNamedCollection;
         this.cacheService = cacheService;
+        this.cachedRulesExecutor = cachedRulesExecutor;
         this.networkService = ServiceProvider.getInstance().getNetworkService();
+        this.assetDownloadScheduler =
+                new CampaignAssetDownloadScheduler(
+                        networkService, CampaignConstants.DEFAULT_ASSET_DOWNLOAD_CONCURRENCY);
+        this.imageAssetOptimizer =
+                new CampaignImageAssetOptimizer(
+                        ServiceProvider.getInstance().getDeviceInfoService());
+        this.assetTaskExecutor = createAssetTaskExecutor();
+        this.assetStore =
+                new CampaignAssetStore(cacheService, campaignNamedCollection, assetTaskExecutor);
+        this.assetReadiness =
+                new CampaignAssetReadiness(cacheService, assetDownloadScheduler, assetTaskExecutor);
+        this.assetReadiness.setMessageSettledListener(this::precomputeAssetMap);
     }
 
     /**
@@ -73,6 +159,11 @@ class CampaignRulesDownloader {
      *
      * <p>If the given {@code url} is null or empty no rules download happens.
      *
+     * <p>Only one rules download is in flight at a time. A request for the same {@code url} and
+     * {@code linkageFields} as the in-flight download is coalesced into it, while a request for a
+     * different {@code url} or {@code linkageFields} supersedes it and the superseded response is
+     * discarded without being extracted.
+     *
      * @param url {@link String} containing Campaign rules download URL
      * @param linkageFields {@link String} containing optional linkage fields to include when
      *     downloading Campaign rules
@@ -96,16 +187,45 @@ class CampaignRulesDownloader {
             return;
         }
 
+        final String downloadKey = url + "|" + (linkageFields == null ? "" : linkageFields);
+        final int downloadId;
+        synchronized (rulesDownloadLock) {
+            if (downloadKey.equals(inFlightDownloadKey)) {
+                coalescedDownloadCount++;
+                Log.trace(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "loadRulesFromUrl - Rules download from %s is already in progress, request"
+                                + " coalesced (%d coalesced so far).",
+                        url,
+                        coalescedDownloadCount);
+                return;
+            }
+            inFlightDownloadKey = downloadKey;
+            downloadId = ++rulesDownloadId;
+        }
+
         // 304 - Not Modified support
         Map<String, String> requestProperties = new HashMap<>();
         final CacheResult cachedRules =
-                cacheService.get(
-                        CampaignConstants.CACHE_BASE_DIR
-                                + File.separator
-                                + CampaignConstants.RULES_CACHE_FOLDER,
-                        CampaignConstants.ZIP_HANDLE);
+                cacheService.get(getRulesCacheName(linkageFields), CampaignConstants.ZIP_HANDLE);
+        String cachedBundleVersion = null;
         if (cachedRules != null) {
             requestProperties = Utils.extractHeadersFromCache(cachedRules);
+            cachedBundleVersion =
+                    cachedRules.getMetadata() == null
+                            ? null
+                            : cachedRules
+                                    .getMetadata()
+                                    .get(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION);
+        }
+
+        // differential rules bundle support, only offered for bundles with a server provided
+        // version
+        final boolean deltaRequested = !StringUtils.isNullOrEmpty(cachedBundleVersion);
+        if (deltaRequested) {
+            requestProperties.put(
+                    CampaignConstants.HTTP_HEADER_BUNDLE_VERSION, cachedBundleVersion);
         }
 
         if (!StringUtils.isNullOrEmpty(linkageFields)) {
@@ -130,12 +250,55 @@ class CampaignRulesDownloader {
                                 "loadRulesFromUrl - No internet connection. Unable to download"
                                         + " rules.",
                                 url);
+                        completeRulesDownload(downloadId);
                         return;
                     }
-                    onRulesDownloaded(url, httpConnecting);
+
+                    synchronized (bundleExtractionLock) {
+                        if (isRulesDownloadSuperseded(downloadId)) {
+                            Log.debug(
+                                    CampaignConstants.LOG_TAG,
+                                    SELF_TAG,
+                                    "loadRulesFromUrl - Discarding rules downloaded from %s, the"
+                                            + " download was superseded.",
+                                    url);
+                            httpConnecting.close();
+                            return;
+                        }
+                        onRulesDownloaded(
+                                url, linkageFields, downloadId, deltaRequested, httpConnecting);
+                    }
+                    completeRulesDownload(downloadId);
                 });
     }
 
+    /**
+     * Checks if a newer rules download was started after the download with the provided {@code
+     * downloadId}.
+     *
+     * @param downloadId {@code int} containing the rules download id
+     * @return true if the rules download was superseded, false otherwise
+     */
+    private boolean isRulesDownloadSuperseded(final int downloadId) {
+        synchronized (rulesDownloadLock) {
+            return downloadId != rulesDownloadId;
+        }
+    }
+
+    /**
+     * Marks the rules download with the provided {@code downloadId} as complete so that new
+     * requests for the same url and linkage fields start a new download.
+     *
+     * @param downloadId {@code int} containing the rules download id
+     */
+    private void completeRulesDownload(final int downloadId) {
+        synchronized (rulesDownloadLock) {
+            if (downloadId == rulesDownloadId) {
+                inFlightDownloadKey = null;
+            }
+        }
+    }
+
     /**
      * Invoked when rules have finished downloading.
      *
@@ -147,26 +310,93 @@ class CampaignRulesDownloader {
      *   <li>Register downloaded rules with the {@code CampaignRulesEngine}.
      * </ul>
      *
+     * <p>If the response contains a differential rules bundle, the cached rules are patched with
+     * the bundle contents and remote assets are only downloaded for the added or changed messages.
+     * If the cached rules cannot be patched, the complete rules bundle is requested.
+     *
+     * @param url {@link String} containing Campaign rules download URL
+     * @param linkageFields {@link String} containing the linkage fields used for the request
+     * @param downloadId {@code int} containing the rules download id
+     * @param deltaRequested true if a differential rules bundle was requested
      * @param connection {@link HttpConnecting} containing the downloaded Campaign rules
      * @see #updateUrlInNamedCollection(String)
      * @see LaunchRulesEngine#replaceRules(List)
      * @see #cacheRemoteAssets(List)
      */
-    private void onRulesDownloaded(final String url, final HttpConnecting connection) {
+    private void onRulesDownloaded(
+            final String url,
+            final String linkageFields,
+            final int downloadId,
+            final boolean deltaRequested,
+            final HttpConnecting connection) {
         // process the downloaded bundle
-        RulesLoadResult rulesLoadResult;
+        final long bundleReceivedTimestamp = System.currentTimeMillis();
+        final String rulesCache = getRulesCacheName(linkageFields);
+        final ExtractedRules extractedRules;
+        Set<String> updatedMessageIds = null;
         switch (connection.getResponseCode()) {
             case HttpURLConnection.HTTP_OK:
-                rulesLoadResult =
-                        extractRules(
-                                url,
-                                connection.getInputStream(),
-                                Utils.extractMetadataFromResponse(connection));
+                final Map<String, String> metadata = Utils.extractMetadataFromResponse(connection);
+                final String bundleVersion =
+                        connection.getResponsePropertyValue(
+                                CampaignConstants.HTTP_HEADER_BUNDLE_VERSION);
+                if (!StringUtils.isNullOrEmpty(bundleVersion)) {
+                    metadata.put(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION, bundleVersion);
+                }
+
+                if (CampaignConstants.RULES_BUNDLE_TYPE_DELTA.equals(
+                        connection.getResponsePropertyValue(
+                                CampaignConstants.HTTP_HEADER_BUNDLE_TYPE))) {
+                    if (!deltaRequested) {
+                        Log.debug(
+                                CampaignConstants.LOG_TAG,
+                                SELF_TAG,
+                                "Ignoring differential rules bundle from %s, no cached rules"
+                                        + " bundle to apply it to.",
+                                url);
+                        connection.close();
+                        return;
+                    }
+
+                    updatedMessageIds = new HashSet<>();
+                    extractedRules =
+                            extractRulesDelta(
+                                    url,
+                                    rulesCache,
+                                    connection.getInputStream(),
+                                    metadata,
+                                    updatedMessageIds);
+                    connection.close();
+                    if (extractedRules.loadResult.getReason() != RulesLoadResult.Reason.SUCCESS) {
+                        // the cached bundle is no longer usable as a delta base, request the
+                        // complete rules bundle instead
+                        cacheService.remove(rulesCache, CampaignConstants.ZIP_HANDLE);
+                        completeRulesDownload(downloadId);
+                        loadRulesFromUrl(url, linkageFields);
+                        return;
+                    }
+                } else {
+                    extractedRules =
+                            extractRules(url, rulesCache, connection.getInputStream(), metadata);
+                    connection.close();
+                }
+
+                if (extractedRules.loadResult.getReason() == RulesLoadResult.Reason.NOT_MODIFIED) {
+                    Log.trace(
+                            CampaignConstants.LOG_TAG,
+                            SELF_TAG,
+                            "Rules bundle from %s is identical to the cached rules bundle. Will"
+                                    + " not re-register rules.",
+                            url);
+                    updateUrlInNamedCollection(url);
+                    unchangedBundleCount++;
+                    return;
+                }
+
                 // save remotes url in Campaign Named Collection
-                if (rulesLoadResult.getReason() == RulesLoadResult.Reason.SUCCESS) {
+                if (extractedRules.loadResult.getReason() == RulesLoadResult.Reason.SUCCESS) {
                     updateUrlInNamedCollection(url);
                 }
-                connection.close();
                 break;
             case HttpURLConnection.HTTP_NOT_MODIFIED:
                 Log.trace(
@@ -188,24 +418,478 @@ class CampaignRulesDownloader {
         }
 
         // register rules
-        registerRules(rulesLoadResult);
+        registerRules(
+                extractedRules.loadResult,
+                extractedRules.rulesJson,
+                rulesCache,
+                ANY_RULES_GENERATION,
+                updatedMessageIds);
+
+        lastBundleApplyDurationMillis = System.currentTimeMillis() - bundleReceivedTimestamp;
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Applied rules bundle from %s in %d ms (%d bytes written to cache).",
+                url,
+                lastBundleApplyDurationMillis,
+                lastBundleBytesWritten);
+    }
+
+    /**
+     * Loads the cached Campaign rules on the cached rules worker thread and registers them with the
+     * {@code CampaignRulesEngine}.
+     *
+     * <p>Events processed by the {@code CampaignRulesEngine} before any rules are registered are
+     * held by the rules engine and evaluated once the rules are registered. The cached rules are
+     * not registered if newer rules are registered or {@link #cancelCachedRulesLoad()} is called
+     * before the cached rules are loaded.
+     *
+     * <p>The time between this call and the first rules registration is logged and available from
+     * {@link #getRulesLiveDurationMillis()}.
+     *
+     * @return {@link Future} completed with true if cached rules were registered, false otherwise
+     * @see #loadCachedRules()
+     */
+    Future<Boolean> loadCachedRulesAsync() {
+        final int generation;
+        synchronized (rulesRegistrationLock) {
+            generation = rulesGeneration;
+            cachedRulesRequestTimestamp = System.currentTimeMillis();
+            rulesLiveDurationMillis = -1;
+        }
+
+        final FutureTask<Boolean> cachedRulesTask =
+                new FutureTask<>(() -> loadCachedRules(RULES_CACHE, generation));
+        cachedRulesExecutor.execute(cachedRulesTask);
+        return cachedRulesTask;
+    }
+
+    /**
+     * Prevents any pending cached rules load from registering its rules with the {@code
+     * CampaignRulesEngine}.
+     *
+     * @see #loadCachedRulesAsync()
+     */
+    void cancelCachedRulesLoad() {
+        synchronized (rulesRegistrationLock) {
+            rulesGeneration++;
+        }
+    }
+
+    /**
+     * Cancels the queued and in-flight message asset downloads, so they do not cache any asset
+     * after the privacy status is opted out.
+     *
+     * @see CampaignAssetDownloadScheduler#cancelDownloads()
+     */
+    void cancelAssetDownloads() {
+        assetDownloadScheduler.cancelDownloads();
+    }
+
+    /**
+     * Returns the name of the rules cache used for the provided {@code linkageFields}.
+     *
+     * <p>Rules downloaded without linkage fields are cached in the {@value
+     * CampaignConstants#RULES_CACHE_FOLDER} folder. Personalized rules are cached in a partition of
+     * that folder named after the hash of the {@code linkageFields}.
+     *
+     * @param linkageFields {@link String} containing the base64 encoded linkage fields
+     * @return {@link String} containing the rules cache name
+     */
+    static String getRulesCacheName(final String linkageFields) {
+        if (StringUtils.isNullOrEmpty(linkageFields)) {
+            return RULES_CACHE;
+        }
+        return RULES_CACHE + File.separator + StringEncoder.sha2hash(linkageFields);
+    }
+
+    /**
+     * Returns the name of the rules cache containing the currently registered rules and the html
+     * files of their messages.
+     *
+     * @return {@link String} containing the rules cache name
+     * @see #getRulesCacheName(String)
+     */
+    String getRegisteredRulesCache() {
+        synchronized (rulesRegistrationLock) {
+            return registeredRulesCache;
+        }
+    }
+
+    /**
+     * Switches to the rules cache partition for the provided {@code linkageFields} and registers
+     * its cached rules with the {@code CampaignRulesEngine}.
+     *
+     * <p>The cached rules are loaded on the cached rules worker thread, like {@link
+     * #loadCachedRulesAsync()}. Any cached rules load still pending for the previous partition is
+     * cancelled, and the cached rules are not registered if newer rules are registered before they
+     * are loaded.
+     *
+     * <p>The {@value CampaignConstants#RULES_CACHE_PARTITION_LIMIT} most recently used personalized
+     * rules partitions are kept in the cache so that switching back to a recent identity does not
+     * require a full rules and assets download. Less recently used partitions are removed from the
+     * cache, along with the assets and message caches only their messages use.
+     *
+     * <p>If the partition has no usable cached rules, its cached rules bundle metadata is removed
+     * so that the next rules download is not a conditional request, and if {@code
+     * unregisterWhenUncached} is true the registered rules are removed from the {@code
+     * CampaignRulesEngine}.
+     *
+     * @param linkageFields {@link String} containing the base64 encoded linkage fields
+     * @param unregisterWhenUncached {@code boolean} indicating whether the registered rules are
+     *     removed if the partition has no cached rules
+     * @return {@link Future} completed with true if cached rules were registered for {@code
+     *     linkageFields}, false otherwise
+     */
+    Future<Boolean> activateRulesPartition(
+            final String linkageFields, final boolean unregisterWhenUncached) {
+        final int generation;
+        synchronized (rulesRegistrationLock) {
+            generation = ++rulesGeneration;
+        }
+
+        final FutureTask<Boolean> partitionTask =
+                new FutureTask<>(
+                        () ->
+                                loadRulesPartition(
+                                        linkageFields, generation, unregisterWhenUncached));
+        cachedRulesExecutor.execute(partitionTask);
+        return partitionTask;
+    }
+
+    private boolean loadRulesPartition(
+            final String linkageFields,
+            final int expectedGeneration,
+            final boolean unregisterWhenUncached) {
+        final String rulesCache = getRulesCacheName(linkageFields);
+        if (!RULES_CACHE.equals(rulesCache)) {
+            updateRulesPartitions(StringEncoder.sha2hash(linkageFields));
+        }
+
+        synchronized (rulesRegistrationLock) {
+            // a newer activation or download superseded this one before it started
+            if (expectedGeneration != rulesGeneration) {
+                return false;
+            }
+        }
+
+        if (loadCachedRules(rulesCache, expectedGeneration)) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "activateRulesPartition - Registered cached rules from %s.",
+                    rulesCache);
+            return true;
+        }
+
+        synchronized (rulesRegistrationLock) {
+            // newer rules were registered while the partition was loading
+            if (expectedGeneration != rulesGeneration) {
+                return false;
+            }
+
+            cacheService.remove(rulesCache, CampaignConstants.ZIP_HANDLE);
+            if (unregisterWhenUncached) {
+                rulesRegistered = false;
+                campaignRulesEngine.replaceRules(new ArrayList<>());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the provided personalized rules {@code partition} as the most recently used and removes
+     * the least recently used partitions exceeding {@value
+     * CampaignConstants#RULES_CACHE_PARTITION_LIMIT} from the cache.
+     *
+     * @param partition {@link String} containing the rules partition name
+     */
+    private void updateRulesPartitions(final String partition) {
+        if (campaignNamedCollection == null) {
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "updateRulesPartitions - Campaign Named Collection is null, cannot store"
+                            + " rules partitions.");
+            return;
+        }
+
+        final List<String> partitions = new ArrayList<>();
+        try {
+            final JSONArray storedPartitions =
+                    new JSONArray(
+                            campaignNamedCollection.getString(
+                                    CampaignConstants
+                                            .CAMPAIGN_NAMED_COLLECTION_RULES_PARTITIONS_KEY,
+                                    "[]"));
+            for (int i = 0; i < storedPartitions.length(); i++) {
+                partitions.add(storedPartitions.getString(i));
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "updateRulesPartitions - Ignoring invalid stored rules partitions (%s).",
+                    exception.getLocalizedMessage());
+        }
+
+        partitions.remove(partition);
+        partitions.add(0, partition);
+        while (partitions.size() > CampaignConstants.RULES_CACHE_PARTITION_LIMIT) {
+            final String evictedPartition = partitions.remove(partitions.size() - 1);
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "updateRulesPartitions - Removing least recently used rules partition (%s).",
+                    evictedPartition);
+            Utils.cleanDirectory(
+                    new File(
+                            ServiceProvider.getInstance()
+                                            .getDeviceInfoService()
+                                            .getApplicationCacheDir()
+                                    + File.separator
+                                    + CampaignConstants.AEPSDK_CACHE_BASE_DIR
+                                    + File.separator
+                                    + RULES_CACHE
+                                    + File.separator
+                                    + evictedPartition));
+            assetStore.removePartition(RULES_CACHE + File.separator + evictedPartition);
+        }
+
+        campaignNamedCollection.setString(
+                CampaignConstants.CAMPAIGN_NAMED_COLLECTION_RULES_PARTITIONS_KEY,
+                new JSONArray(partitions).toString());
+    }
+
+    /**
+     * Sets the maximum number of message asset downloads in flight at a time.
+     *
+     * @param maxConcurrentDownloads {@code int} containing the maximum number of concurrent asset
+     *     downloads
+     * @see CampaignAssetDownloadScheduler#setMaxConcurrentDownloads(int)
+     */
+    void setAssetDownloadConcurrency(final int maxConcurrentDownloads) {
+        assetDownloadScheduler.setMaxConcurrentDownloads(maxConcurrentDownloads);
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the cached message assets.
+     *
+     * @param maxCacheBytes {@code long} containing the asset cache budget in bytes
+     * @see CampaignAssetStore#setMaxCacheBytes(long)
+     */
+    void setAssetCacheMaxBytes(final long maxCacheBytes) {
+        assetStore.setMaxCacheBytes(maxCacheBytes);
+    }
+
+    /**
+     * Enables or disables the optimization of downloaded image assets.
+     *
+     * @param enabled {@code boolean} indicating whether image assets should be optimized
+     * @see CampaignImageAssetOptimizer
+     */
+    void setImageAssetOptimizationEnabled(final boolean enabled) {
+        imageAssetOptimizer.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the {@code CampaignImageAssetOptimizer} applied to downloaded image assets.
+     *
+     * @return {@link CampaignImageAssetOptimizer} used to optimize image assets
+     */
+    CampaignImageAssetOptimizer getImageAssetOptimizer() {
+        return imageAssetOptimizer;
+    }
+
+    /**
+     * Moves the queued asset downloads of the message with the given {@code messageId} ahead of the
+     * other queued asset downloads.
+     *
+     * @param messageId {@link String} containing the id of the message whose rule was matched
+     * @see CampaignAssetDownloadScheduler#prioritize(String)
+     */
+    void prioritizeMessageAssets(final String messageId) {
+        assetDownloadScheduler.prioritize(messageId);
+    }
+
+    /**
+     * Returns the {@code CampaignAssetStore} containing the assets of the loaded messages.
+     *
+     * @return {@link CampaignAssetStore} used to cache message assets
+     */
+    CampaignAssetStore getAssetStore() {
+        return assetStore;
+    }
+
+    /**
+     * Returns the {@code CampaignAssetReadiness} tracking the cached assets of the loaded messages.
+     *
+     * @return {@link CampaignAssetReadiness} used to gate the display of messages on their assets
+     */
+    CampaignAssetReadiness getAssetReadiness() {
+        return assetReadiness;
+    }
+
+    /**
+     * Returns the {@code CampaignMessageDisplayCache} holding the content of recently shown
+     * messages.
+     *
+     * @return {@link CampaignMessageDisplayCache} invalidated whenever rules are registered
+     */
+    CampaignMessageDisplayCache getMessageDisplayCache() {
+        return messageDisplayCache;
+    }
+
+    /**
+     * Returns the {@code CampaignAssetDownloadScheduler} shared by the message asset downloaders.
+     *
+     * @return {@link CampaignAssetDownloadScheduler} used to download message assets
+     */
+    CampaignAssetDownloadScheduler getAssetDownloadScheduler() {
+        return assetDownloadScheduler;
+    }
+
+    /**
+     * Returns the {@code CampaignRulesEventIndex} built from the currently registered rules.
+     *
+     * @return {@link CampaignRulesEventIndex} for the registered rules, or null if no rules have
+     *     been registered yet or their conditions could not be indexed
+     */
+    CampaignRulesEventIndex getRulesEventIndex() {
+        synchronized (rulesRegistrationLock) {
+            return rulesEventIndex;
+        }
+    }
+
+    /**
+     * Loads the cached Campaign rules and registers them with the {@code CampaignRulesEngine}.
+     *
+     * <p>The rules are read with a single read of the cached {@value
+     * CampaignConstants#RULES_JSON_FILE_NAME}, which is cached minified when the rules bundle is
+     * extracted.
+     *
+     * @return true if cached rules were found and registered, false otherwise
+     * @see #registerRules(RulesLoadResult)
+     */
+    boolean loadCachedRules() {
+        return loadCachedRules(RULES_CACHE, ANY_RULES_GENERATION);
+    }
+
+    private boolean loadCachedRules(final String rulesCache, final int expectedGeneration) {
+        final long startTimestamp = System.currentTimeMillis();
+        final CacheResult cachedRulesZip =
+                cacheService.get(rulesCache, CampaignConstants.ZIP_HANDLE);
+        if (cachedRulesZip == null) {
+            Log.trace(CampaignConstants.LOG_TAG, SELF_TAG, "No cached rules bundle found.");
+            return false;
+        }
+
+        final CacheResult cachedRulesJson =
+                cacheService.get(rulesCache, CampaignConstants.RULES_JSON_FILE_NAME);
+        if (cachedRulesJson == null) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Cached rules bundle does not contain %s.",
+                    CampaignConstants.RULES_JSON_FILE_NAME);
+            return false;
+        }
+        final String rulesJsonString = StreamUtils.readAsString(cachedRulesJson.getData());
+
+        if (!registerRules(
+                new RulesLoadResult(rulesJsonString, RulesLoadResult.Reason.SUCCESS),
+                null,
+                rulesCache,
+                expectedGeneration,
+                null)) {
+            return false;
+        }
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Loaded cached rules in %d ms.",
+                System.currentTimeMillis() - startTimestamp);
+        return true;
     }
 
     void registerRules(final RulesLoadResult rulesLoadResult) {
-        if (rulesLoadResult.getData() != null) {
-            final List<LaunchRule> campaignRules =
-                    JSONRulesParser.parse(rulesLoadResult.getData(), extensionApi);
-            if (campaignRules != null) {
+        registerRules(rulesLoadResult, null, RULES_CACHE, ANY_RULES_GENERATION, null);
+    }
+
+    private boolean registerRules(
+            final RulesLoadResult rulesLoadResult,
+            final JSONObject rulesJson,
+            final String rulesCache,
+            final int expectedGeneration,
+            final Set<String> updatedMessageIds) {
+        if (rulesLoadResult.getData() == null) {
+            return false;
+        }
+
+        final List<LaunchRule> campaignRules =
+                JSONRulesParser.parse(rulesLoadResult.getData(), extensionApi);
+        if (campaignRules == null) {
+            return false;
+        }
+        // the rules JSON parsed while the bundle was extracted is reused to index the rule
+        // conditions, the rules engine only accepts the rules JSON string
+        final CampaignRulesEventIndex campaignRulesEventIndex =
+                rulesJson != null
+                        ? CampaignRulesEventIndex.fromJson(rulesJson)
+                        : CampaignRulesEventIndex.fromJsonString(rulesLoadResult.getData());
+
+        final int registeredGeneration;
+        synchronized (rulesRegistrationLock) {
+            if (expectedGeneration != ANY_RULES_GENERATION
+                    && expectedGeneration != rulesGeneration) {
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "Cached rules were not registered, rules changed while they were"
+                                + " loading.");
+                return false;
+            }
+            registeredGeneration = ++rulesGeneration;
+            rulesRegistered = true;
+            registeredRulesCache = rulesCache;
+            messageDisplayCache.invalidate();
+
+            Log.trace(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Registering %s Campaign rule(s).",
+                    campaignRules.size());
+            campaignRulesEngine.replaceRules(campaignRules);
+            rulesEventIndex = campaignRulesEventIndex;
+
+            if (cachedRulesRequestTimestamp > 0) {
+                rulesLiveDurationMillis = System.currentTimeMillis() - cachedRulesRequestTimestamp;
+                cachedRulesRequestTimestamp = 0;
                 Log.trace(
                         CampaignConstants.LOG_TAG,
                         SELF_TAG,
-                        "Registering %s Campaign rule(s).",
-                        campaignRules.size());
-                campaignRulesEngine.replaceRules(campaignRules);
-                // cache any image assets present in each rule consequence
-                cacheRemoteAssets(campaignRules);
+                        "Campaign rules are live %d ms after configuration was received.",
+                        rulesLiveDurationMillis);
             }
         }
+
+        // cache any image assets present in each rule consequence. Asset syncs run one at a time
+        // and only for the live rules, a sync for rules replaced in the meantime would remove the
+        // message caches of the newer rules.
+        synchronized (assetSyncLock) {
+            synchronized (rulesRegistrationLock) {
+                if (registeredGeneration != rulesGeneration) {
+                    Log.debug(
+                            CampaignConstants.LOG_TAG,
+                            SELF_TAG,
+                            "Remote assets were not cached, rules changed while they were"
+                                    + " registered.");
+                    return true;
+                }
+            }
+            cacheRemoteAssets(campaignRules, rulesCache, updatedMessageIds);
+        }
+        return true;
     }
 
     /**
@@ -215,13 +899,38 @@ class CampaignRulesDownloader {
      * CampaignConstants#MESSAGE_CONSEQUENCE_MESSAGE_TYPE} consequence or if the consequence Id is
      * not valid, no asset is downloaded for it.
      *
-     * <p>This method also cleans up any cached files it has on disk for messages which are no
-     * longer loaded.
+     * <p>Assets shared by several messages are downloaded once into the {@link CampaignAssetStore},
+     * which also removes the assets no longer used by any message of a cached rules partition. This
+     * method also cleans up the message caches of messages which are no longer loaded in any cached
+     * partition and caches the bundled fallback assets of the loaded messages. The asset map of
+     * every loaded message is built into the {@link CampaignMessageDisplayCache} once its asset
+     * downloads complete.
      *
      * @param campaignRules {@code List<LaunchRule>} of rules retrieved from the Campaign instance
-     * @see Utils#clearCachedAssetsNotInList(File, List)
+     * @see CampaignAssetStore#updateReferences(String, Map)
+     * @see CampaignAssetStore#clearUnreferencedMessageCaches()
+     * @see CampaignBundledFallbacks#cacheMessageFallbacks(CacheService, CampaignAssetStore, String,
+     *     List)
      */
     void cacheRemoteAssets(final List<LaunchRule> campaignRules) {
+        cacheRemoteAssets(campaignRules, getRegisteredRulesCache(), null);
+    }
+
+    /**
+     * Parses the provided {@code List} of consequence Maps and downloads remote assets for the
+     * messages contained in {@code updatedMessageIds}.
+     *
+     * @param campaignRules {@code List<LaunchRule>} of rules retrieved from the Campaign instance
+     * @param rulesCache {@link String} containing the name of the rules cache the rules were loaded
+     *     from
+     * @param updatedMessageIds {@code Set<String>} containing the ids of the messages whose assets
+     *     should be downloaded, or null to download the assets of every message
+     * @see #cacheRemoteAssets(List)
+     */
+    private void cacheRemoteAssets(
+            final List<LaunchRule> campaignRules,
+            final String rulesCache,
+            final Set<String> updatedMessageIds) {
         if (campaignRules == null || campaignRules.isEmpty()) {
             Log.debug(
                     CampaignConstants.LOG_TAG,
@@ -230,8 +939,10 @@ class CampaignRulesDownloader {
                             + " empty.");
             return;
         }
-        // generate a list of loaded message ids so we can clear cached files we no longer need
-        final ArrayList<String> loadedMessageIds = new ArrayList<>();
+        final int bundleVersion = messageDisplayCache.getBundleVersion();
+        // every loaded message is listed so we can clear cached files we no longer need
+        final Map<String, List<String>> loadedMessageAssets = new LinkedHashMap<>();
+        final Map<String, List<List<String>>> loadedMessageAssetArrays = new LinkedHashMap<>();
 
         for (final LaunchRule rule : campaignRules) {
             for (final RuleConsequence consequence : rule.getConsequenceList()) {
@@ -253,9 +964,13 @@ class CampaignRulesDownloader {
 
                 final String consequenceId = consequence.getId();
                 if (!StringUtils.isNullOrEmpty(consequenceId)) {
-                    loadedMessageIds.add(consequenceId);
+                    final List<List<String>> assetArrays = getAssetArrays(details);
+                    if (assetArrays != null) {
+                        loadedMessageAssetArrays.put(consequenceId, assetArrays);
+                    }
                     final List<String> assetUrls = createAssetUrlList(details);
                     if (assetUrls == null || assetUrls.isEmpty()) {
+                        loadedMessageAssets.put(consequenceId, new ArrayList<>());
                         Log.debug(
                                 CampaignConstants.LOG_TAG,
                                 SELF_TAG,
@@ -264,9 +979,7 @@ class CampaignRulesDownloader {
                                 consequence.getId());
                         break;
                     }
-                    campaignMessageAssetsDownloader =
-                            new CampaignMessageAssetsDownloader(assetUrls, consequenceId);
-                    campaignMessageAssetsDownloader.downloadAssetCollection();
+                    loadedMessageAssets.put(consequenceId, assetUrls);
                 } else {
                     Log.debug(
                             CampaignConstants.LOG_TAG,
@@ -276,16 +989,103 @@ class CampaignRulesDownloader {
             }
         }
 
-        final File messageCacheDir =
-                new File(
-                        ServiceProvider.getInstance()
-                                        .getDeviceInfoService()
-                                        .getApplicationCacheDir()
-                                + File.separator
-                                + CampaignConstants.CACHE_BASE_DIR
-                                + File.separator
-                                + CampaignConstants.MESSAGE_CACHE_DIR);
-        Utils.clearCachedAssetsNotInList(messageCacheDir, loadedMessageIds);
+        // assets no longer used by any message of a cached partition are removed from the store
+        assetStore.updateReferences(rulesCache, loadedMessageAssets);
+        assetReadiness.setMessageAssets(loadedMessageAssetArrays);
+        assetDownloadScheduler.retainMatchTimestamps(loadedMessageAssets.keySet());
+
+        // an asset shared by several messages is downloaded once, for the first message using it
+        final Set<String> scheduledAssetUrls = new HashSet<>();
+        for (final Map.Entry<String, List<String>> entry : loadedMessageAssets.entrySet()) {
+            final String messageId = entry.getKey();
+            if (updatedMessageIds != null && !updatedMessageIds.contains(messageId)) {
+                continue;
+            }
+
+            final List<String> assetUrls = new ArrayList<>();
+            for (final String assetUrl : entry.getValue()) {
+                if (scheduledAssetUrls.add(assetUrl)) {
+                    assetUrls.add(assetUrl);
+                }
+            }
+            if (assetUrls.isEmpty()) {
+                continue;
+            }
+            campaignMessageAssetsDownloader =
+                    new CampaignMessageAssetsDownloader(
+                            assetUrls,
+                            messageId,
+                            assetDownloadScheduler,
+                            imageAssetOptimizer,
+                            assetStore);
+            campaignMessageAssetsDownloader.downloadAssetCollection();
+        }
+
+        // message caches written before the manifest was introduced are swept once
+        if (assetStore.hasUntrackedMessageCaches()) {
+            final File messageCacheDir =
+                    new File(
+                            ServiceProvider.getInstance()
+                                            .getDeviceInfoService()
+                                            .getApplicationCacheDir()
+                                    + File.separator
+                                    + CampaignConstants.AEPSDK_CACHE_BASE_DIR
+                                    + File.separator
+                                    + CampaignAssetStore.MESSAGE_CACHE);
+            Utils.clearCachedMessagesNotInList(
+                    messageCacheDir, assetStore.getReferencedMessageIds());
+            assetStore.markUntrackedMessageCachesCleared();
+        }
+        assetStore.clearUnreferencedMessageCaches();
+
+        // bundled fallbacks are cached now so showing a message does not read application assets
+        for (final Map.Entry<String, List<List<String>>> entry :
+                loadedMessageAssetArrays.entrySet()) {
+            CampaignBundledFallbacks.cacheMessageFallbacks(
+                    cacheService, assetStore, entry.getKey(), entry.getValue());
+        }
+
+        // asset maps of messages still downloading are built once their downloads complete
+        synchronized (messageAssetArraysLock) {
+            registeredMessageAssetArrays = loadedMessageAssetArrays;
+            registeredAssetArraysVersion = bundleVersion;
+        }
+        for (final String messageId : loadedMessageAssetArrays.keySet()) {
+            if (!assetReadiness.hasPendingDownloads(messageId)) {
+                precomputeAssetMap(messageId);
+            }
+        }
+    }
+
+    /**
+     * Builds the asset map of the message with the given {@code messageId} into the {@link
+     * CampaignMessageDisplayCache}, so showing the message does not resolve its assets.
+     *
+     * <p>Bundled fallbacks are cached when the rules are registered, they are not read again here.
+     * Asset maps using a fallback are not kept, they are resolved again when the message is shown.
+     *
+     * @param messageId {@link String} containing the message id
+     * @see CampaignMessageAssetResolver#resolve(CacheService, CampaignAssetStore, String, List,
+     *     boolean)
+     */
+    private void precomputeAssetMap(final String messageId) {
+        final List<List<String>> assetArrays;
+        final int bundleVersion;
+        synchronized (messageAssetArraysLock) {
+            assetArrays = registeredMessageAssetArrays.get(messageId);
+            bundleVersion = registeredAssetArraysVersion;
+        }
+        if (cacheService == null || assetArrays == null) {
+            return;
+        }
+
+        // messages whose bundled fallbacks failed to be cached are resolved when shown
+        final CampaignMessageDisplayCache.ResolvedAssets resolvedAssets =
+                CampaignMessageAssetResolver.resolve(
+                        cacheService, assetStore, messageId, assetArrays, false);
+        if (resolvedAssets != null) {
+            messageDisplayCache.putPrecomputedAssets(messageId, bundleVersion, resolvedAssets);
+        }
     }
 
     /**
@@ -293,12 +1093,29 @@ class CampaignRulesDownloader {
      * RulesDownloadResult} with rules. if successful. If the extraction is unsuccessful, returns a
      * {@code RulesDownloadResult} with the error reason.
      *
+     * <p>The bundle is first copied to a temporary file while a {@value BUNDLE_DIGEST_ALGORITHM}
+     * digest of it is computed. If the digest matches the one cached in the {@value
+     * CampaignConstants#ZIP_HANDLE} metadata, the cached bundle is identical and is not rewritten,
+     * only its response {@code metadata} is refreshed. A {@code RulesLoadResult} with {@link
+     * RulesLoadResult.Reason#NOT_MODIFIED} is returned if its rules are already registered,
+     * otherwise the cached rules are returned.
+     *
+     * <p>Otherwise the zip entries are read from the temporary file and each entry is written once
+     * into the {@link CacheService}. The {@value CampaignConstants#RULES_JSON_FILE_NAME} content is
+     * retained in memory while it is being cached so it does not need to be read back from the
+     * cache. The {@value CampaignConstants#ZIP_HANDLE} entry of the previous bundle is removed
+     * before the first entry is written and, once all entries are cached, a new one containing the
+     * response {@code metadata} and the bundle digest is cached to support conditional rules
+     * requests.
+     *
      * @param key the key that will be used for e
+     * @param rulesCache the name of the rules cache the bundle is extracted into
      * @param zipContentStream the zip stream that will need to be processed
      * @param metadata any metadata associated with the zipContentStream
      */
-    private RulesLoadResult extractRules(
+    private ExtractedRules extractRules(
             final String key,
+            final String rulesCache,
             final InputStream zipContentStream,
             final Map<String, String> metadata) {
 
@@ -307,39 +1124,472 @@ class CampaignRulesDownloader {
                     CampaignConstants.LOG_TAG,
                     CampaignConstants.CACHE_BASE_DIR,
                     "Zip content stream is null");
-            return new RulesLoadResult(null, RulesLoadResult.Reason.NO_DATA);
+            return new ExtractedRules(RulesLoadResult.Reason.NO_DATA);
+        }
+
+        final MessageDigest bundleDigest = createBundleDigest();
+        if (bundleDigest == null) {
+            return cacheRulesBundle(key, rulesCache, zipContentStream, metadata);
+        }
+
+        final File bundleFile = bufferRulesBundle(zipContentStream, bundleDigest);
+        if (bundleFile == null) {
+            return new ExtractedRules(RulesLoadResult.Reason.ZIP_EXTRACTION_FAILED);
+        }
+
+        try {
+            final String downloadedBundleDigest = toHexString(bundleDigest.digest());
+            final boolean identicalBundle =
+                    downloadedBundleDigest.equals(getCachedBundleDigest(rulesCache));
+            metadata.put(CampaignConstants.RULES_BUNDLE_DIGEST_KEY, downloadedBundleDigest);
+            if (identicalBundle) {
+                final ExtractedRules cachedRules =
+                        reuseCachedRulesBundle(key, rulesCache, metadata);
+                if (cachedRules != null) {
+                    return cachedRules;
+                }
+            }
+
+            try (final InputStream bundleInputStream = new FileInputStream(bundleFile)) {
+                return cacheRulesBundle(key, rulesCache, bundleInputStream, metadata);
+            }
+        } catch (final IOException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Failed to read buffered rules bundle from source %s (%s).",
+                    key,
+                    exception.getLocalizedMessage());
+            return new ExtractedRules(RulesLoadResult.Reason.ZIP_EXTRACTION_FAILED);
+        } finally {
+            if (!bundleFile.delete()) {
+                Log.trace(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "Unable to delete buffered rules bundle (%s).",
+                        bundleFile.getName());
+            }
+        }
+    }
+
+    /**
+     * Caches every entry of the rules bundle contained in {@code zipContentStream}, replacing the
+     * previously cached bundle.
+     *
+     * @param key the key that will be used for e
+     * @param rulesCache the name of the rules cache the bundle is extracted into
+     * @param zipContentStream the zip stream that will need to be processed
+     * @param metadata any metadata associated with the zipContentStream
+     * @return {@link ExtractedRules} containing the bundle rules if successful, or the error reason
+     *     otherwise
+     */
+    private ExtractedRules cacheRulesBundle(
+            final String key,
+            final String rulesCache,
+            final InputStream zipContentStream,
+            final Map<String, String> metadata) {
+        // the cached bundle is incomplete once any new entry is cached, so an interrupted
+        // extraction is never loaded as a complete bundle. The rules snapshot cached by previous
+        // versions is no longer read.
+        cacheService.remove(rulesCache, CampaignConstants.ZIP_HANDLE);
+        cacheService.remove(rulesCache, CampaignConstants.RULES_SNAPSHOT_FILE_NAME);
+
+        final ExtractedBundle extractedBundle =
+                cacheZipEntries(
+                        rulesCache,
+                        zipContentStream,
+                        metadata,
+                        CampaignConstants.RULES_JSON_FILE_NAME,
+                        true);
+        if (extractedBundle == null) {
+            return new ExtractedRules(RulesLoadResult.Reason.ZIP_EXTRACTION_FAILED);
         }
 
-        // Attempt to create a temporary directory for copying the zipContentStream
-        final File tempDirectory = getTemporaryDirectory(key);
-        if (!tempDirectory.exists() && !tempDirectory.mkdirs()) {
+        if (extractedBundle.retainedFileContent == null) {
             Log.debug(
                     CampaignConstants.LOG_TAG,
                     SELF_TAG,
-                    "Cannot access application cache directory to create temp dir.");
-            return new RulesLoadResult(null, RulesLoadResult.Reason.CANNOT_CREATE_TEMP_DIR);
+                    "Rules response zip from source %s does not contain %s.",
+                    key,
+                    CampaignConstants.RULES_JSON_FILE_NAME);
+            return new ExtractedRules(RulesLoadResult.Reason.NO_DATA);
+        }
+
+        return completeBundleExtraction(
+                key,
+                rulesCache,
+                extractedBundle.retainedFileContent,
+                extractedBundle.retainedJson,
+                extractedBundle,
+                metadata);
+    }
+
+    /**
+     * Keeps the cached rules bundle, which is identical to the downloaded one, and refreshes the
+     * response {@code metadata} cached in its {@value CampaignConstants#ZIP_HANDLE}.
+     *
+     * @param key the key that will be used for e
+     * @param rulesCache the name of the rules cache containing the identical bundle
+     * @param metadata the metadata associated with the downloaded bundle
+     * @return {@link ExtractedRules} with {@link RulesLoadResult.Reason#NOT_MODIFIED} if the cached
+     *     rules are registered, containing the cached rules if they are not, or null if the cached
+     *     rules cannot be read and the bundle has to be cached again
+     */
+    private ExtractedRules reuseCachedRulesBundle(
+            final String key, final String rulesCache, final Map<String, String> metadata) {
+        final boolean registered = hasRegisteredRules(rulesCache);
+        String rulesJsonString = null;
+        if (!registered) {
+            final CacheResult cachedRulesJson =
+                    cacheService.get(rulesCache, CampaignConstants.RULES_JSON_FILE_NAME);
+            if (cachedRulesJson != null) {
+                rulesJsonString = StreamUtils.readAsString(cachedRulesJson.getData());
+            }
+            if (rulesJsonString == null) {
+                return null;
+            }
+        }
+
+        cacheRulesFile(
+                rulesCache,
+                CampaignConstants.ZIP_HANDLE,
+                new ByteArrayInputStream(new byte[0]),
+                metadata);
+        lastBundleBytesWritten = 0;
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Rules bundle %s is identical to the cached rules bundle, keeping the cached"
+                        + " files.",
+                key);
+        return registered
+                ? new ExtractedRules(RulesLoadResult.Reason.NOT_MODIFIED)
+                : new ExtractedRules(
+                        new RulesLoadResult(rulesJsonString, RulesLoadResult.Reason.SUCCESS), null);
+    }
+
+    /**
+     * Copies {@code zipContentStream} to a temporary file in the application cache directory while
+     * updating {@code bundleDigest}, so the bundle can be compared with the cached one before any
+     * cached file is replaced.
+     *
+     * @param zipContentStream the zip stream that will need to be processed
+     * @param bundleDigest {@link MessageDigest} updated with the bundle content
+     * @return the temporary {@link File} containing the bundle, or null if it could not be written
+     */
+    private File bufferRulesBundle(
+            final InputStream zipContentStream, final MessageDigest bundleDigest) {
+        File bundleFile = null;
+        try {
+            bundleFile =
+                    File.createTempFile(
+                            BUNDLE_TEMP_FILE_PREFIX,
+                            null,
+                            ServiceProvider.getInstance()
+                                    .getDeviceInfoService()
+                                    .getApplicationCacheDir());
+            try (final InputStream digestInputStream =
+                            new DigestInputStream(zipContentStream, bundleDigest);
+                    final OutputStream bundleOutputStream = new FileOutputStream(bundleFile)) {
+                final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = digestInputStream.read(buffer)) != -1) {
+                    bundleOutputStream.write(buffer, 0, bytesRead);
+                }
+            }
+            return bundleFile;
+        } catch (final IOException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Failed to buffer rules response zip (%s).",
+                    exception.getLocalizedMessage());
+            if (bundleFile != null && !bundleFile.delete()) {
+                Log.trace(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "Unable to delete buffered rules bundle (%s).",
+                        bundleFile.getName());
+            }
+            return null;
+        }
+    }
+
+    private String getCachedBundleDigest(final String rulesCache) {
+        final CacheResult cachedRulesZip =
+                cacheService.get(rulesCache, CampaignConstants.ZIP_HANDLE);
+        if (cachedRulesZip == null || cachedRulesZip.getMetadata() == null) {
+            return null;
+        }
+        return cachedRulesZip.getMetadata().get(CampaignConstants.RULES_BUNDLE_DIGEST_KEY);
+    }
+
+    /**
+     * Creates the single thread {@link ScheduledExecutorService} running the delayed asset tasks,
+     * such as the batched asset store writes and the asset readiness wait timeouts.
+     *
+     * <p>Its thread is a daemon thread so it does not keep the application process alive.
+     *
+     * @return the asset task {@code ScheduledExecutorService}
+     */
+    private static ScheduledExecutorService createAssetTaskExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    final Thread thread = new Thread(runnable, ASSET_TASK_THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private static MessageDigest createBundleDigest() {
+        try {
+            return MessageDigest.getInstance(BUNDLE_DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Unable to compute rules bundle digest (%s).",
+                    exception.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    private static String toHexString(final byte[] bytes) {
+        final StringBuilder hexString = new StringBuilder();
+        for (final byte b : bytes) {
+            hexString.append(String.format("%02x", b));
+        }
+        return hexString.toString();
+    }
+
+    private boolean hasRegisteredRules(final String rulesCache) {
+        synchronized (rulesRegistrationLock) {
+            return rulesRegistered && rulesCache.equals(registeredRulesCache);
+        }
+    }
+
+    /**
+     * Responsible for reading and extracting the differential rules bundle contained in {@code
+     * zipContentStream} and applying it to the cached {@value
+     * CampaignConstants#RULES_JSON_FILE_NAME}.
+     *
+     * <p>The html files contained in the bundle are cached, the html files only referenced by
+     * removed or replaced rules are removed from the cache and the patched rules are cached.
+     *
+     * @param key the key that will be used for e
+     * @param rulesCache the name of the rules cache containing the rules the bundle is applied to
+     * @param zipContentStream the zip stream that will need to be processed
+     * @param metadata any metadata associated with the zipContentStream
+     * @param updatedMessageIds {@code Set<String>} populated with the ids of the messages added or
+     *     changed by the differential rules bundle
+     * @return {@link ExtractedRules} containing the patched rules if successful, or the error
+     *     reason otherwise
+     * @see CampaignRulesDelta
+     */
+    private ExtractedRules extractRulesDelta(
+            final String key,
+            final String rulesCache,
+            final InputStream zipContentStream,
+            final Map<String, String> metadata,
+            final Set<String> updatedMessageIds) {
+        if (zipContentStream == null) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    CampaignConstants.CACHE_BASE_DIR,
+                    "Zip content stream is null");
+            return new ExtractedRules(RulesLoadResult.Reason.NO_DATA);
         }
 
-        // Copy the content of zipContentStream into the previously created temporary folder
-        if (!FileUtils.readInputStreamIntoFile(getZipFileHandle(key), zipContentStream, false)) {
+        // the cached bundle is incomplete once any new entry is cached, so an interrupted
+        // extraction is never loaded as a complete bundle. The rules snapshot cached by previous
+        // versions is no longer read.
+        cacheService.remove(rulesCache, CampaignConstants.ZIP_HANDLE);
+        cacheService.remove(rulesCache, CampaignConstants.RULES_SNAPSHOT_FILE_NAME);
+
+        final MessageDigest bundleDigest = createBundleDigest();
+        final ExtractedBundle extractedBundle =
+                cacheZipEntries(
+                        rulesCache,
+                        bundleDigest == null
+                                ? zipContentStream
+                                : new DigestInputStream(zipContentStream, bundleDigest),
+                        metadata,
+                        CampaignConstants.RULES_DELTA_JSON_FILE_NAME,
+                        false);
+        if (extractedBundle == null) {
+            return new ExtractedRules(RulesLoadResult.Reason.ZIP_EXTRACTION_FAILED);
+        }
+
+        final CampaignRulesDelta rulesDelta =
+                extractedBundle.retainedFileContent == null
+                        ? null
+                        : CampaignRulesDelta.fromJsonString(extractedBundle.retainedFileContent);
+        final CacheResult cachedRulesJson =
+                cacheService.get(rulesCache, CampaignConstants.RULES_JSON_FILE_NAME);
+        if (rulesDelta == null || cachedRulesJson == null) {
             Log.debug(
                     CampaignConstants.LOG_TAG,
                     SELF_TAG,
-                    "Couldn't extract zip contents to temp directory.");
-            return new RulesLoadResult(null, RulesLoadResult.Reason.CANNOT_STORE_IN_TEMP_DIR);
+                    "Unable to apply differential rules bundle from source %s.",
+                    key);
+            return new ExtractedRules(RulesLoadResult.Reason.NO_DATA);
+        }
+
+        final Set<String> obsoleteFiles = new HashSet<>();
+        final JSONObject rulesJson =
+                rulesDelta.apply(
+                        StreamUtils.readAsString(cachedRulesJson.getData()), obsoleteFiles);
+        if (rulesJson == null) {
+            return new ExtractedRules(RulesLoadResult.Reason.NO_DATA);
         }
+        final String rulesJsonString = rulesJson.toString();
 
-        // Extract the rules zip
-        if (!FileUtils.extractFromZip(getZipFileHandle(key), tempDirectory.getPath())) {
+        final byte[] rulesJsonBytes = rulesJsonString.getBytes(StandardCharsets.UTF_8);
+        extractedBundle.cached =
+                cacheRulesFile(
+                                rulesCache,
+                                CampaignConstants.RULES_JSON_FILE_NAME,
+                                new ByteArrayInputStream(rulesJsonBytes),
+                                metadata)
+                        && extractedBundle.cached;
+        extractedBundle.bytesWritten += rulesJsonBytes.length;
+        for (final String obsoleteFile : obsoleteFiles) {
+            cacheService.remove(rulesCache, obsoleteFile);
+        }
+
+        if (bundleDigest != null) {
+            metadata.put(
+                    CampaignConstants.RULES_BUNDLE_DIGEST_KEY, toHexString(bundleDigest.digest()));
+        }
+
+        updatedMessageIds.addAll(rulesDelta.getUpdatedMessageIds());
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Applied differential rules bundle from %s (%d message(s) updated, %d removed).",
+                key,
+                rulesDelta.getUpdatedMessageIds().size(),
+                rulesDelta.getRemovedMessageIds().size());
+        return completeBundleExtraction(
+                key, rulesCache, rulesJsonString, rulesJson, extractedBundle, metadata);
+    }
+
+    /**
+     * Caches each file contained in {@code zipContentStream}.
+     *
+     * <p>The content of the {@code retainedFileName} entry is kept in memory and returned in the
+     * {@link ExtractedBundle}. It is only cached if {@code cacheRetainedFile} is true.
+     *
+     * @param rulesCache the name of the rules cache the files are cached in
+     * @param zipContentStream the zip stream that will need to be processed
+     * @param metadata any metadata associated with the zipContentStream
+     * @param retainedFileName the name of the file whose content should be retained
+     * @param cacheRetainedFile true if {@code retainedFileName} should also be cached
+     * @return {@link ExtractedBundle} describing the cached files, or null if the zip could not be
+     *     read
+     */
+    private ExtractedBundle cacheZipEntries(
+            final String rulesCache,
+            final InputStream zipContentStream,
+            final Map<String, String> metadata,
+            final String retainedFileName,
+            final boolean cacheRetainedFile) {
+        final ExtractedBundle extractedBundle = new ExtractedBundle();
+        try (final ZipInputStream zipInputStream = new ZipInputStream(zipContentStream)) {
+            ZipEntry zipEntry = zipInputStream.getNextEntry();
+            if (zipEntry == null) {
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "Failed to extract rules response zip, zip file was invalid.");
+                return null;
+            }
+
+            while (zipEntry != null) {
+                // cached files are keyed by file name, any directory in the entry path is ignored
+                final String fileName = new File(zipEntry.getName()).getName();
+                if (!zipEntry.isDirectory() && !StringUtils.isNullOrEmpty(fileName)) {
+                    final EntryInputStream entryInputStream = new EntryInputStream(zipInputStream);
+                    boolean fileCached = true;
+                    if (retainedFileName.equals(fileName)) {
+                        extractedBundle.retainedFileContent =
+                                new String(readFully(entryInputStream), StandardCharsets.UTF_8);
+                        if (cacheRetainedFile) {
+                            // cached minified so loading the cached rules parses less input, the
+                            // parsed rules are kept to index the rule conditions
+                            extractedBundle.retainedJson =
+                                    parseJson(extractedBundle.retainedFileContent);
+                            final byte[] fileBytes =
+                                    (extractedBundle.retainedJson != null
+                                                    ? extractedBundle.retainedJson.toString()
+                                                    : extractedBundle.retainedFileContent)
+                                            .getBytes(StandardCharsets.UTF_8);
+                            fileCached =
+                                    cacheRulesFile(
+                                            rulesCache,
+                                            fileName,
+                                            new ByteArrayInputStream(fileBytes),
+                                            metadata);
+                            extractedBundle.fileCount++;
+                            extractedBundle.bytesWritten += fileBytes.length;
+                        }
+                    } else {
+                        fileCached =
+                                cacheRulesFile(rulesCache, fileName, entryInputStream, metadata);
+                        extractedBundle.fileCount++;
+                        extractedBundle.bytesWritten += entryInputStream.getBytesRead();
+                    }
+                    extractedBundle.cached = extractedBundle.cached && fileCached;
+                }
+                zipInputStream.closeEntry();
+                zipEntry = zipInputStream.getNextEntry();
+            }
+
+            // consume the remainder of the bundle (zip central directory) so any digest computed
+            // over zipContentStream covers the complete bundle
+            final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            while (zipContentStream.read(buffer) != -1) {
+                // discard
+            }
+        } catch (final IOException exception) {
             Log.debug(
                     CampaignConstants.LOG_TAG,
                     SELF_TAG,
-                    "Failed to extract rules response zip into temp dir.");
-            return new RulesLoadResult(null, RulesLoadResult.Reason.ZIP_EXTRACTION_FAILED);
+                    "Failed to extract rules response zip (%s).",
+                    exception.getLocalizedMessage());
+            return null;
         }
+        return extractedBundle;
+    }
 
-        // Cache the extracted contents
-        final boolean cached = cacheExtractedFiles(tempDirectory, metadata);
+    /**
+     * Caches the {@value CampaignConstants#ZIP_HANDLE} once every file of a rules bundle has been
+     * cached.
+     *
+     * @param key the key that will be used for e
+     * @param rulesCache the name of the rules cache the bundle was extracted into
+     * @param rulesJsonString the rules JSON of the extracted bundle
+     * @param rulesJson the parsed {@code rulesJsonString}, or null if it was not parsed
+     * @param extractedBundle the {@link ExtractedBundle} describing the cached files
+     * @param metadata any metadata associated with the rules bundle
+     * @return {@link ExtractedRules} containing {@code rulesJsonString} and {@code rulesJson}
+     */
+    private ExtractedRules completeBundleExtraction(
+            final String key,
+            final String rulesCache,
+            final String rulesJsonString,
+            final JSONObject rulesJson,
+            final ExtractedBundle extractedBundle,
+            final Map<String, String> metadata) {
+        // the zip handle only holds the response metadata used for conditional requests and is
+        // cached last so its presence indicates a completely extracted bundle
+        final boolean cached =
+                extractedBundle.cached
+                        && cacheRulesFile(
+                                rulesCache,
+                                CampaignConstants.ZIP_HANDLE,
+                                new ByteArrayInputStream(new byte[0]),
+                                metadata);
         if (!cached) {
             Log.debug(
                     CampaignConstants.LOG_TAG,
@@ -348,28 +1598,31 @@ class CampaignRulesDownloader {
                     key);
         }
 
-        // Delete the temporary directory created for processing
-        deleteTemporaryDirectory(key);
-
-        final CacheResult cachedRulesJson =
-                cacheService.get(
-                        CampaignConstants.CACHE_BASE_DIR
-                                + File.separator
-                                + CampaignConstants.RULES_CACHE_FOLDER,
-                        CampaignConstants.RULES_JSON_FILE_NAME);
-        final String rulesJsonString = StreamUtils.readAsString(cachedRulesJson.getData());
-        return new RulesLoadResult(rulesJsonString, RulesLoadResult.Reason.SUCCESS);
+        lastBundleBytesWritten = extractedBundle.bytesWritten;
+        Log.trace(
+                CampaignConstants.LOG_TAG,
+                SELF_TAG,
+                "Extracted %d file(s) (%d bytes) from rules bundle %s.",
+                extractedBundle.fileCount,
+                extractedBundle.bytesWritten,
+                key);
+        return new ExtractedRules(
+                new RulesLoadResult(rulesJsonString, RulesLoadResult.Reason.SUCCESS), rulesJson);
     }
 
-    private List<String> createAssetUrlList(final Map<String, Object> detailMap) {
+    @SuppressWarnings("unchecked")
+    private List<List<String>> getAssetArrays(final Map<String, Object> detailMap) {
         if (detailMap == null) {
             return null;
         }
-        final List<List<String>> assets =
-                (List<List<String>>)
-                        detailMap.get(
-                                CampaignConstants.EventDataKeys.RuleEngine
-                                        .MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS);
+        return (List<List<String>>)
+                detailMap.get(
+                        CampaignConstants.EventDataKeys.RuleEngine
+                                .MESSAGE_CONSEQUENCE_DETAIL_KEY_REMOTE_ASSETS);
+    }
+
+    private List<String> createAssetUrlList(final Map<String, Object> detailMap) {
+        final List<List<String>> assets = getAssetArrays(detailMap);
         if (assets == null || assets.isEmpty()) {
             return null;
         }
@@ -380,58 +1633,41 @@ class CampaignRulesDownloader {
         return assetsToDownload;
     }
 
-    private File getTemporaryDirectory(final String tag) {
-        final String hash = StringEncoder.sha2hash(tag);
-        final String tempDir =
-                ServiceProvider.getInstance()
-                                .getDeviceInfoService()
-                                .getApplicationCacheDir()
-                                .getPath()
-                        + File.separator
-                        + TEMP_RULES_DIR
-                        + File.separator
-                        + hash;
-        return new File(tempDir);
-    }
-
-    private File getZipFileHandle(final String tag) {
-        return new File(
-                getTemporaryDirectory(tag).getPath()
-                        + File.separator
-                        + CampaignConstants.ZIP_HANDLE);
+    private boolean cacheRulesFile(
+            final String rulesCache,
+            final String fileName,
+            final InputStream fileContentStream,
+            final Map<String, String> metadata) {
+        Log.trace(CampaignConstants.LOG_TAG, SELF_TAG, "Caching file (%s)", fileName);
+        return cacheService.set(
+                rulesCache,
+                fileName,
+                new CacheEntry(fileContentStream, CacheExpiry.never(), metadata));
     }
 
-    private void deleteTemporaryDirectory(final String tag) {
-        if (StringUtils.isNullOrEmpty(tag)) return;
-        FileUtils.deleteFile(getTemporaryDirectory(tag), true);
+    /**
+     * Parses the provided {@code jsonString}.
+     *
+     * @param jsonString the JSON object to be parsed
+     * @return the parsed {@link JSONObject}, or null if {@code jsonString} is not a valid JSON
+     *     object
+     */
+    private static JSONObject parseJson(final String jsonString) {
+        try {
+            return new JSONObject(jsonString);
+        } catch (final JSONException exception) {
+            return null;
+        }
     }
 
-    private boolean cacheExtractedFiles(
-            final File tempDirectory, final Map<String, String> metadata) {
-        final File[] filesList = tempDirectory.listFiles();
-        if (filesList == null) {
-            return false;
-        }
-        for (final File fileEntry : filesList) {
-            if (fileEntry.isDirectory()) {
-                cacheExtractedFiles(fileEntry, metadata);
-            } else {
-                try {
-                    final String fileName = fileEntry.getName();
-                    Log.trace(CampaignConstants.LOG_TAG, SELF_TAG, "Caching file (%s)", fileName);
-                    cacheService.set(
-                            CampaignConstants.CACHE_BASE_DIR
-                                    + File.separator
-                                    + CampaignConstants.RULES_CACHE_FOLDER,
-                            fileName,
-                            new CacheEntry(
-                                    new FileInputStream(fileEntry), CacheExpiry.never(), metadata));
-                } catch (final FileNotFoundException exception) {
-                    return false;
-                }
-            }
+    private static byte[] readFully(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, bytesRead);
         }
-        return true;
+        return outputStream.toByteArray();
     }
 
     /**
@@ -473,4 +1709,130 @@ class CampaignRulesDownloader {
                     CampaignConstants.CAMPAIGN_NAMED_COLLECTION_REMOTES_URL_KEY, url);
         }
     }
+
+    /**
+     * Returns the time between the last {@link #loadCachedRulesAsync()} call and the first rules
+     * registration that followed it.
+     *
+     * @return {@code long} containing the duration in milliseconds, or -1 if no rules have been
+     *     registered yet
+     */
+    long getRulesLiveDurationMillis() {
+        synchronized (rulesRegistrationLock) {
+            return rulesLiveDurationMillis;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to the cache while extracting the last downloaded rules
+     * bundle.
+     *
+     * @return {@code long} containing the bytes written for the last extracted rules bundle
+     */
+    long getLastBundleBytesWritten() {
+        return lastBundleBytesWritten;
+    }
+
+    /**
+     * Returns the time taken to apply the last downloaded rules bundle, from receiving the rules
+     * response until the rules were registered.
+     *
+     * @return {@code long} containing the last bundle apply duration in milliseconds
+     */
+    long getLastBundleApplyDurationMillis() {
+        return lastBundleApplyDurationMillis;
+    }
+
+    /**
+     * Returns the number of downloaded rules bundles which were identical to the cached rules
+     * bundle and were not registered again.
+     *
+     * @return {@code int} containing the number of unchanged rules bundles
+     */
+    int getUnchangedBundleCount() {
+        return unchangedBundleCount;
+    }
+
+    /**
+     * Returns the number of rules download requests which were coalesced into an in-flight rules
+     * download for the same url and linkage fields.
+     *
+     * @return {@code int} containing the number of coalesced rules download requests
+     */
+    int getCoalescedDownloadCount() {
+        synchronized (rulesDownloadLock) {
+            return coalescedDownloadCount;
+        }
+    }
+
+    /** Describes the files cached while extracting a rules bundle. */
+    private static final class ExtractedBundle {
+        private String retainedFileContent = null;
+        private JSONObject retainedJson = null;
+        private boolean cached = true;
+        private int fileCount = 0;
+        private long bytesWritten = 0;
+    }
+
+    /**
+     * Describes the rules extracted from a downloaded rules bundle.
+     *
+     * <p>The parsed rules JSON is kept when it was parsed during the extraction, so it is not
+     * parsed again to index the rule conditions.
+     */
+    private static final class ExtractedRules {
+        private final RulesLoadResult loadResult;
+        private final JSONObject rulesJson;
+
+        ExtractedRules(final RulesLoadResult.Reason reason) {
+            this(new RulesLoadResult(null, reason), null);
+        }
+
+        ExtractedRules(final RulesLoadResult loadResult, final JSONObject rulesJson) {
+            this.loadResult = loadResult;
+            this.rulesJson = rulesJson;
+        }
+    }
+
+    /**
+     * {@link FilterInputStream} used to hand a single zip entry to the {@link CacheService}.
+     *
+     * <p>Closing this stream does not close the underlying {@link ZipInputStream} so the remaining
+     * entries can still be read. The number of bytes read from the entry is tracked.
+     */
+    private static final class EntryInputStream extends FilterInputStream {
+        private long bytesRead = 0;
+
+        EntryInputStream(final InputStream zipInputStream) {
+            super(zipInputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result != -1) {
+                bytesRead++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length)
+                throws IOException {
+            final int result = super.read(buffer, offset, length);
+            if (result > 0) {
+                bytesRead += result;
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            // the zip input stream is closed once all entries are extracted
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+    }
 }
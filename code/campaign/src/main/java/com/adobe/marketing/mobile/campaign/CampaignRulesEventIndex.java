@@ -0,0 +1,351 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.Event;
+import com.adobe.marketing.mobile.EventSource;
+import com.adobe.marketing.mobile.EventType;
+import com.adobe.marketing.mobile.services.Log;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Index of the event types, event sources and top level event data keys referenced by the
+ * conditions of the registered Campaign rules.
+ *
+ * <p>The index is used to discard events which cannot match any rule before they are evaluated by
+ * the {@code LaunchRulesEngine}. It is conservative: a condition which cannot be resolved from the
+ * event alone (e.g. shared state, historical or negated conditions) is assumed to match, so an
+ * event is only discarded when no rule could possibly match it.
+ */
+final class CampaignRulesEventIndex {
+    private static final String SELF_TAG = "CampaignRulesEventIndex";
+    private static final String RULES_KEY = "rules";
+    private static final String CONDITION_KEY = "condition";
+    private static final String CONDITION_TYPE_KEY = "type";
+    private static final String CONDITION_DEFINITION_KEY = "definition";
+    private static final String CONDITION_TYPE_GROUP = "group";
+    private static final String CONDITION_TYPE_MATCHER = "matcher";
+    private static final String GROUP_LOGIC_KEY = "logic";
+    private static final String GROUP_CONDITIONS_KEY = "conditions";
+    private static final String GROUP_LOGIC_AND = "and";
+    private static final String GROUP_LOGIC_OR = "or";
+    private static final String MATCHER_KEY = "key";
+    private static final String MATCHER_TYPE_KEY = "matcher";
+    private static final String MATCHER_VALUES_KEY = "values";
+    private static final String MATCHER_EQUALS = "eq";
+    private static final String EVENT_TYPE_KEY = "~type";
+    private static final String EVENT_SOURCE_KEY = "~source";
+    private static final String SPECIAL_KEY_PREFIX = "~";
+    private static final String DATA_KEY_SEPARATOR = ".";
+
+    // matchers which can only be satisfied if the key is present in the event data
+    private static final Set<String> KEY_REQUIRED_MATCHERS =
+            new HashSet<>(Arrays.asList("eq", "gt", "ge", "lt", "le", "co", "sw", "ew", "ex"));
+
+    private static final EventFilter MATCH_ANY =
+            new EventFilter() {
+                @Override
+                boolean mayMatch(final Event event, final Map<String, Object> eventData) {
+                    return true;
+                }
+            };
+
+    private final List<EventFilter> ruleFilters;
+    private final Set<String> eventTypes = new HashSet<>();
+    private final Set<String> eventSources = new HashSet<>();
+    private final Set<String> dataKeys = new HashSet<>();
+
+    private CampaignRulesEventIndex() {
+        this.ruleFilters = new ArrayList<>();
+    }
+
+    /**
+     * Creates a {@code CampaignRulesEventIndex} from the provided {@code rulesJsonString}.
+     *
+     * @param rulesJsonString {@link String} containing the rules JSON
+     * @return {@link CampaignRulesEventIndex} object, or null if {@code rulesJsonString} is not a
+     *     valid rules JSON
+     * @see #fromJson(JSONObject)
+     */
+    static CampaignRulesEventIndex fromJsonString(final String rulesJsonString) {
+        try {
+            return fromJson(new JSONObject(rulesJsonString));
+        } catch (final JSONException | NullPointerException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Unable to index rules conditions (%s).",
+                    exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates a {@code CampaignRulesEventIndex} from the provided, already parsed, {@code
+     * rulesJson}.
+     *
+     * @param rulesJson {@link JSONObject} containing the rules JSON
+     * @return {@link CampaignRulesEventIndex} object, or null if {@code rulesJson} is not a valid
+     *     rules JSON
+     */
+    static CampaignRulesEventIndex fromJson(final JSONObject rulesJson) {
+        try {
+            final JSONArray rules = rulesJson.getJSONArray(RULES_KEY);
+            final CampaignRulesEventIndex rulesEventIndex = new CampaignRulesEventIndex();
+            for (int i = 0; i < rules.length(); i++) {
+                rulesEventIndex.ruleFilters.add(
+                        rulesEventIndex.compile(
+                                rules.getJSONObject(i).optJSONObject(CONDITION_KEY)));
+            }
+            return rulesEventIndex;
+        } catch (final JSONException | NullPointerException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "Unable to index rules conditions (%s).",
+                    exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Determines whether the provided {@code event} may match any of the indexed rules.
+     *
+     * <p>{@link EventType#RULES_ENGINE} {@link EventSource#REQUEST_RESET} events are always
+     * considered a match, they are needed by the {@code LaunchRulesEngine} to process the events it
+     * queued before the first rules were registered.
+     *
+     * @param event {@link Event} to be checked
+     * @return false if {@code event} cannot match any rule, true otherwise
+     */
+    boolean mayMatch(final Event event) {
+        if (EventType.RULES_ENGINE.equalsIgnoreCase(event.getType())
+                && EventSource.REQUEST_RESET.equalsIgnoreCase(event.getSource())) {
+            return true;
+        }
+
+        final Map<String, Object> eventData = event.getEventData();
+        for (final EventFilter ruleFilter : ruleFilters) {
+            if (ruleFilter.mayMatch(event, eventData)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the event types referenced by the indexed rule conditions.
+     *
+     * @return {@code Set<String>} containing the lower case event types
+     */
+    Set<String> getEventTypes() {
+        return eventTypes;
+    }
+
+    /**
+     * Returns the event sources referenced by the indexed rule conditions.
+     *
+     * @return {@code Set<String>} containing the lower case event sources
+     */
+    Set<String> getEventSources() {
+        return eventSources;
+    }
+
+    /**
+     * Returns the event data keys referenced by the indexed rule conditions.
+     *
+     * @return {@code Set<String>} containing the event data keys
+     */
+    Set<String> getDataKeys() {
+        return dataKeys;
+    }
+
+    private EventFilter compile(final JSONObject condition) throws JSONException {
+        if (condition == null) {
+            return MATCH_ANY;
+        }
+
+        final String conditionType = condition.optString(CONDITION_TYPE_KEY);
+        final JSONObject definition = condition.optJSONObject(CONDITION_DEFINITION_KEY);
+        if (definition == null) {
+            return MATCH_ANY;
+        }
+
+        if (CONDITION_TYPE_GROUP.equals(conditionType)) {
+            return compileGroup(definition);
+        }
+        if (CONDITION_TYPE_MATCHER.equals(conditionType)) {
+            return compileMatcher(definition);
+        }
+        return MATCH_ANY;
+    }
+
+    private EventFilter compileGroup(final JSONObject definition) throws JSONException {
+        final String logic = definition.optString(GROUP_LOGIC_KEY);
+        final JSONArray conditions = definition.optJSONArray(GROUP_CONDITIONS_KEY);
+        if (conditions == null || conditions.length() == 0) {
+            return MATCH_ANY;
+        }
+
+        final List<EventFilter> filters = new ArrayList<>();
+        if (GROUP_LOGIC_AND.equals(logic)) {
+            for (int i = 0; i < conditions.length(); i++) {
+                final EventFilter filter = compile(conditions.optJSONObject(i));
+                if (filter != MATCH_ANY) {
+                    filters.add(filter);
+                }
+            }
+            return filters.isEmpty() ? MATCH_ANY : new AllOfFilter(filters);
+        }
+        if (GROUP_LOGIC_OR.equals(logic)) {
+            for (int i = 0; i < conditions.length(); i++) {
+                final EventFilter filter = compile(conditions.optJSONObject(i));
+                if (filter == MATCH_ANY) {
+                    return MATCH_ANY;
+                }
+                filters.add(filter);
+            }
+            return new AnyOfFilter(filters);
+        }
+        return MATCH_ANY;
+    }
+
+    private EventFilter compileMatcher(final JSONObject definition) throws JSONException {
+        final String key = definition.optString(MATCHER_KEY);
+        final String matcher = definition.optString(MATCHER_TYPE_KEY);
+        if (key.isEmpty() || !KEY_REQUIRED_MATCHERS.contains(matcher)) {
+            return MATCH_ANY;
+        }
+
+        if (EVENT_TYPE_KEY.equals(key) || EVENT_SOURCE_KEY.equals(key)) {
+            final JSONArray values = definition.optJSONArray(MATCHER_VALUES_KEY);
+            if (!MATCHER_EQUALS.equals(matcher) || values == null || values.length() == 0) {
+                return MATCH_ANY;
+            }
+
+            final Set<String> expectedValues = new HashSet<>();
+            for (int i = 0; i < values.length(); i++) {
+                final Object value = values.get(i);
+                if (!(value instanceof String)) {
+                    return MATCH_ANY;
+                }
+                expectedValues.add(((String) value).toLowerCase(Locale.ROOT));
+            }
+
+            final boolean matchesType = EVENT_TYPE_KEY.equals(key);
+            (matchesType ? eventTypes : eventSources).addAll(expectedValues);
+            return new EventIdentityFilter(matchesType, expectedValues);
+        }
+
+        if (key.startsWith(SPECIAL_KEY_PREFIX)) {
+            return MATCH_ANY;
+        }
+
+        // a flattened key such as "a.b.c" may be resolved from any of the top level keys "a",
+        // "a.b" or "a.b.c"
+        final Set<String> candidateKeys = new HashSet<>();
+        int separatorIndex = key.indexOf(DATA_KEY_SEPARATOR);
+        while (separatorIndex > 0) {
+            candidateKeys.add(key.substring(0, separatorIndex));
+            separatorIndex = key.indexOf(DATA_KEY_SEPARATOR, separatorIndex + 1);
+        }
+        candidateKeys.add(key);
+        dataKeys.add(key);
+        return new DataKeyFilter(candidateKeys);
+    }
+
+    private abstract static class EventFilter {
+        abstract boolean mayMatch(final Event event, final Map<String, Object> eventData);
+    }
+
+    private static final class AllOfFilter extends EventFilter {
+        private final List<EventFilter> filters;
+
+        AllOfFilter(final List<EventFilter> filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        boolean mayMatch(final Event event, final Map<String, Object> eventData) {
+            for (final EventFilter filter : filters) {
+                if (!filter.mayMatch(event, eventData)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class AnyOfFilter extends EventFilter {
+        private final List<EventFilter> filters;
+
+        AnyOfFilter(final List<EventFilter> filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        boolean mayMatch(final Event event, final Map<String, Object> eventData) {
+            for (final EventFilter filter : filters) {
+                if (filter.mayMatch(event, eventData)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class EventIdentityFilter extends EventFilter {
+        private final boolean matchesType;
+        private final Set<String> expectedValues;
+
+        EventIdentityFilter(final boolean matchesType, final Set<String> expectedValues) {
+            this.matchesType = matchesType;
+            this.expectedValues = expectedValues;
+        }
+
+        @Override
+        boolean mayMatch(final Event event, final Map<String, Object> eventData) {
+            final String value = matchesType ? event.getType() : event.getSource();
+            return value != null && expectedValues.contains(value.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static final class DataKeyFilter extends EventFilter {
+        private final Set<String> candidateKeys;
+
+        DataKeyFilter(final Set<String> candidateKeys) {
+            this.candidateKeys = candidateKeys;
+        }
+
+        @Override
+        boolean mayMatch(final Event event, final Map<String, Object> eventData) {
+            if (eventData == null) {
+                return false;
+            }
+            for (final String candidateKey : candidateKeys) {
+                if (eventData.containsKey(candidateKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -29,6 +29,12 @@ final class CampaignState {
     private int timeout;
     private int campaignRegistrationDelayDays;
     private boolean campaignRegistrationPaused = false;
+    private int assetDownloadConcurrency = CampaignConstants.DEFAULT_ASSET_DOWNLOAD_CONCURRENCY;
+    private boolean optimizeImageAssets = false;
+    private long assetCacheMaxBytes = CampaignConstants.DEFAULT_ASSET_CACHE_MAX_BYTES;
+    private String assetReadinessPolicy = CampaignConstants.ASSET_READINESS_POLICY_FALLBACK;
+    private long assetReadinessTimeoutMillis =
+            CampaignConstants.DEFAULT_ASSET_READINESS_TIMEOUT_MILLIS;
 
     // ----------- Identity properties -----------
     private String experienceCloudId;
@@ -109,6 +115,51 @@ final class CampaignState {
         return this.campaignRegistrationPaused;
     }
 
+    /**
+     * Get the maximum number of concurrent message asset downloads.
+     *
+     * @return {@code int} containing the configured asset download concurrency.
+     */
+    int getAssetDownloadConcurrency() {
+        return this.assetDownloadConcurrency;
+    }
+
+    /**
+     * Get the maximum number of bytes used by the cached message assets.
+     *
+     * @return {@code long} containing the configured asset cache budget.
+     */
+    long getAssetCacheMaxBytes() {
+        return this.assetCacheMaxBytes;
+    }
+
+    /**
+     * Get whether downloaded image assets should be optimized for the device display.
+     *
+     * @return {@code boolean} containing the configured image asset optimization status.
+     */
+    boolean getOptimizeImageAssets() {
+        return this.optimizeImageAssets;
+    }
+
+    /**
+     * Get how a message is shown when its remote assets are not cached yet.
+     *
+     * @return {@link String} containing the configured asset readiness policy.
+     */
+    String getAssetReadinessPolicy() {
+        return this.assetReadinessPolicy;
+    }
+
+    /**
+     * Get the maximum time to wait for the remote assets of a message before showing it.
+     *
+     * @return {@code long} containing the configured asset readiness timeout in milliseconds.
+     */
+    long getAssetReadinessTimeoutMillis() {
+        return this.assetReadinessTimeoutMillis;
+    }
+
     /**
      * Get this Experience Cloud Id.
      *
@@ -261,6 +312,36 @@ final class CampaignState {
                         CampaignConstants.EventDataKeys.Configuration
                                 .CAMPAIGN_REGISTRATION_PAUSED_KEY,
                         false);
+        this.assetDownloadConcurrency =
+                DataReader.optInt(
+                        configState,
+                        CampaignConstants.EventDataKeys.Configuration
+                                .CAMPAIGN_ASSET_DOWNLOAD_CONCURRENCY_KEY,
+                        CampaignConstants.DEFAULT_ASSET_DOWNLOAD_CONCURRENCY);
+        this.assetCacheMaxBytes =
+                DataReader.optLong(
+                        configState,
+                        CampaignConstants.EventDataKeys.Configuration
+                                .CAMPAIGN_ASSET_CACHE_MAX_BYTES_KEY,
+                        CampaignConstants.DEFAULT_ASSET_CACHE_MAX_BYTES);
+        this.optimizeImageAssets =
+                DataReader.optBoolean(
+                        configState,
+                        CampaignConstants.EventDataKeys.Configuration
+                                .CAMPAIGN_OPTIMIZE_IMAGE_ASSETS_KEY,
+                        false);
+        this.assetReadinessPolicy =
+                DataReader.optString(
+                        configState,
+                        CampaignConstants.EventDataKeys.Configuration
+                                .CAMPAIGN_ASSET_READINESS_POLICY_KEY,
+                        CampaignConstants.ASSET_READINESS_POLICY_FALLBACK);
+        this.assetReadinessTimeoutMillis =
+                DataReader.optLong(
+                        configState,
+                        CampaignConstants.EventDataKeys.Configuration
+                                .CAMPAIGN_ASSET_READINESS_TIMEOUT_KEY,
+                        CampaignConstants.DEFAULT_ASSET_READINESS_TIMEOUT_MILLIS);
     }
 
     /**
@@ -0,0 +1,205 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.Log;
+import com.adobe.marketing.mobile.services.NamedCollection;
+import com.adobe.marketing.mobile.util.StringUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Drops message tracking hits which were already queued recently.
+ *
+ * <p>A tracking hit is identified by its broadlog id, delivery id and action. The same hit queued
+ * again within {@value CampaignConstants#TRACKING_DUPLICATE_WINDOW_MILLIS} milliseconds, for
+ * example when a notification is opened again or an event is replayed, is suppressed. The most
+ * recent {@value CampaignConstants#TRACKING_RECENT_KEYS_LIMIT} keys are persisted in the Campaign
+ * {@link NamedCollection} so duplicates are also dropped across launches.
+ */
+class CampaignTrackingDeduplicator {
+    private static final String SELF_TAG = "CampaignTrackingDeduplicator";
+    private static final String KEY_SEPARATOR = "/";
+
+    private final NamedCollection campaignNamedCollection;
+    private final Object recentKeysMutex = new Object();
+    private Map<String, Long> recentKeys;
+    private long suppressedCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param campaignNamedCollection {@link NamedCollection} persisting the recent tracking keys,
+     *     may be null
+     */
+    CampaignTrackingDeduplicator(final NamedCollection campaignNamedCollection) {
+        this.campaignNamedCollection = campaignNamedCollection;
+    }
+
+    /**
+     * Returns whether the tracking hit with the given ids duplicates a tracking hit queued within
+     * the duplicate window, and counts it as suppressed if it does.
+     *
+     * @param broadlogId {@link String} containing the message broadlog id
+     * @param deliveryId {@code String} containing the message delivery id
+     * @param action {@code String} containing the message action
+     * @param timestampMillis {@code long} containing the time the hit is queued at in milliseconds
+     * @return {@code boolean} indicating whether the hit should be dropped
+     */
+    boolean isDuplicate(
+            final String broadlogId,
+            final String deliveryId,
+            final String action,
+            final long timestampMillis) {
+        final String key = getKey(broadlogId, deliveryId, action);
+        synchronized (recentKeysMutex) {
+            final Long queuedTimestamp = getRecentKeys().get(key);
+            if (queuedTimestamp != null
+                    && Math.abs(timestampMillis - queuedTimestamp)
+                            < CampaignConstants.TRACKING_DUPLICATE_WINDOW_MILLIS) {
+                suppressedCount++;
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "isDuplicate - Dropping tracking hit (%s) already queued %d ms ago, %d"
+                                + " hit(s) suppressed.",
+                        key,
+                        timestampMillis - queuedTimestamp,
+                        suppressedCount);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Records the tracking hit with the given ids once it was queued.
+     *
+     * @param broadlogId {@link String} containing the message broadlog id
+     * @param deliveryId {@code String} containing the message delivery id
+     * @param action {@code String} containing the message action
+     * @param timestampMillis {@code long} containing the time the hit was queued at in milliseconds
+     */
+    void recordQueued(
+            final String broadlogId,
+            final String deliveryId,
+            final String action,
+            final long timestampMillis) {
+        final String key = getKey(broadlogId, deliveryId, action);
+        synchronized (recentKeysMutex) {
+            final Map<String, Long> keys = getRecentKeys();
+
+            // re-insert so the keys stay ordered by the time they were queued
+            keys.remove(key);
+            keys.put(key, timestampMillis);
+            removeExpiredKeys(keys, timestampMillis);
+            persistRecentKeys(keys);
+        }
+    }
+
+    /**
+     * Returns the number of tracking hits dropped since the extension was registered.
+     *
+     * @return {@code long} containing the number of suppressed hits
+     */
+    long getSuppressedCount() {
+        synchronized (recentKeysMutex) {
+            return suppressedCount;
+        }
+    }
+
+    /** Forgets the recent tracking keys, called when the Campaign data is cleared. */
+    void clear() {
+        synchronized (recentKeysMutex) {
+            recentKeys = new LinkedHashMap<>();
+        }
+    }
+
+    private static String getKey(
+            final String broadlogId, final String deliveryId, final String action) {
+        return broadlogId + KEY_SEPARATOR + deliveryId + KEY_SEPARATOR + action;
+    }
+
+    private Map<String, Long> getRecentKeys() {
+        if (recentKeys != null) {
+            return recentKeys;
+        }
+
+        recentKeys = new LinkedHashMap<>();
+        final String storedKeys =
+                campaignNamedCollection != null
+                        ? campaignNamedCollection.getString(
+                                CampaignConstants
+                                        .CAMPAIGN_NAMED_COLLECTION_RECENT_TRACKING_KEYS_KEY,
+                                null)
+                        : null;
+        if (StringUtils.isNullOrEmpty(storedKeys)) {
+            return recentKeys;
+        }
+
+        try {
+            final JSONObject storedKeysJson = new JSONObject(storedKeys);
+            final List<String> keys = new ArrayList<>();
+            final Map<String, Long> timestamps = new HashMap<>();
+            final Iterator<String> storedKeyIterator = storedKeysJson.keys();
+            while (storedKeyIterator.hasNext()) {
+                final String key = storedKeyIterator.next();
+                keys.add(key);
+                timestamps.put(key, storedKeysJson.getLong(key));
+            }
+
+            // JSON objects are unordered, restore the order the keys were queued in
+            Collections.sort(
+                    keys,
+                    (first, second) -> timestamps.get(first).compareTo(timestamps.get(second)));
+            for (final String key : keys) {
+                recentKeys.put(key, timestamps.get(key));
+            }
+        } catch (final JSONException exception) {
+            Log.debug(
+                    CampaignConstants.LOG_TAG,
+                    SELF_TAG,
+                    "getRecentKeys - Ignoring invalid stored tracking keys (%s).",
+                    exception.getLocalizedMessage());
+        }
+        return recentKeys;
+    }
+
+    private void removeExpiredKeys(final Map<String, Long> keys, final long timestampMillis) {
+        final Iterator<Map.Entry<String, Long>> entries = keys.entrySet().iterator();
+        while (entries.hasNext()) {
+            final Map.Entry<String, Long> entry = entries.next();
+            if (keys.size() > CampaignConstants.TRACKING_RECENT_KEYS_LIMIT
+                    || timestampMillis - entry.getValue()
+                            >= CampaignConstants.TRACKING_DUPLICATE_WINDOW_MILLIS) {
+                entries.remove();
+            }
+        }
+    }
+
+    private void persistRecentKeys(final Map<String, Long> keys) {
+        if (campaignNamedCollection == null) {
+            return;
+        }
+
+        campaignNamedCollection.setString(
+                CampaignConstants.CAMPAIGN_NAMED_COLLECTION_RECENT_TRACKING_KEYS_KEY,
+                new JSONObject(keys).toString());
+    }
+}
@@ -11,14 +11,11 @@
 
 package com.adobe.marketing.mobile.campaign;
 
-import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
 import com.adobe.marketing.mobile.services.Log;
 import com.adobe.marketing.mobile.services.ServiceProvider;
-import com.adobe.marketing.mobile.services.caching.CacheEntry;
-import com.adobe.marketing.mobile.services.caching.CacheExpiry;
 import com.adobe.marketing.mobile.services.caching.CacheResult;
 import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.services.ui.InAppMessage;
@@ -33,10 +30,6 @@ import com.adobe.marketing.mobile.util.DataReader;
 import com.adobe.marketing.mobile.util.DefaultPresentationUtilityProvider;
 import com.adobe.marketing.mobile.util.StreamUtils;
 import com.adobe.marketing.mobile.util.StringUtils;
-import com.adobe.marketing.mobile.util.UrlUtils;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -53,11 +46,6 @@ import java.util.Map;
 class FullScreenMessage extends CampaignMessage {
     private final String SELF_TAG = "FullScreenMessage";
     private static final int FILL_DEVICE_DISPLAY = 100;
-    private final String MESSAGES_CACHE =
-            CampaignConstants.CACHE_BASE_DIR
-                    + File.separator
-                    + CampaignConstants.MESSAGE_CACHE_DIR
-                    + File.separator;
     private final CacheService cacheService;
     private final UIService uiService;
 
@@ -65,6 +53,7 @@ class FullScreenMessage extends CampaignMessage {
     private String htmlContent;
     private String messageId;
     private final List<List<String>> assets = new ArrayList<>();
+    private boolean assetMapCached = false;
 
     /**
      * Constructor.
@@ -195,7 +184,11 @@ class FullScreenMessage extends CampaignMessage {
      * when creating the {@code FullscreenMessage} before invoking the method {@link
      * Presentable<InAppMessage>#show()} to display the fullscreen in-app message.
      *
-     * @see #createCachedResourcesMap()
+     * <p>Messages shown before are served from the {@link CampaignMessageDisplayCache} without
+     * reading the html and assets from the cache. The time since the message rule was triggered is
+     * recorded right before the message is shown.
+     *
+     * @see #createCachedResourcesMap(CampaignMessageDisplayCache, int)
      * @see UIService#create(Presentation, PresentationUtilityProvider)
      */
     @Override
@@ -224,33 +217,41 @@ class FullScreenMessage extends CampaignMessage {
             return;
         }
 
-        final CacheResult cacheResult =
-                cacheService.get(
-                        CampaignConstants.CACHE_BASE_DIR
-                                + File.separator
-                                + CampaignConstants.RULES_CACHE_FOLDER,
+        // the bundle version is read first so content of a replaced rules bundle is not kept
+        final CampaignMessageDisplayCache displayCache = parentModule.getMessageDisplayCache();
+        final int bundleVersion = displayCache != null ? displayCache.getBundleVersion() : 0;
+        htmlContent =
+                displayCache != null ? displayCache.getHtmlContent(messageId, bundleVersion) : null;
+        if (htmlContent == null) {
+            final CacheResult cacheResult =
+                    cacheService.get(parentModule.getRulesCacheName(), html);
+            if (cacheResult == null) {
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "showMessage - Unable to find cached html content for fullscreen message"
+                                + " with ID %s",
+                        messageId);
+                return;
+            }
+            htmlContent = StreamUtils.readAsString(cacheResult.getData());
+
+            if (StringUtils.isNullOrEmpty(htmlContent)) {
+                Log.debug(
+                        CampaignConstants.LOG_TAG,
+                        SELF_TAG,
+                        "showMessage -  No html content in file (%s). File is missing or invalid!",
                         html);
-        if (cacheResult == null) {
-            Log.debug(
-                    CampaignConstants.LOG_TAG,
-                    SELF_TAG,
-                    "showMessage - Unable to find cached html content for fullscreen message with"
-                            + " ID %s",
-                    messageId);
-            return;
-        }
-        htmlContent = StreamUtils.readAsString(cacheResult.getData());
+                return;
+            }
 
-        if (StringUtils.isNullOrEmpty(htmlContent)) {
-            Log.debug(
-                    CampaignConstants.LOG_TAG,
-                    SELF_TAG,
-                    "showMessage -  No html content in file (%s). File is missing or invalid!",
-                    html);
-            return;
+            if (displayCache != null) {
+                displayCache.putHtmlContent(messageId, bundleVersion, htmlContent);
+            }
         }
 
-        final Map<String, String> cachedResourcesMap = createCachedResourcesMap();
+        final Map<String, String> cachedResourcesMap =
+                createCachedResourcesMap(displayCache, bundleVersion);
 
         final FullScreenMessageUiListener fullScreenMessageUiListener =
                 new FullScreenMessageUiListener();
@@ -274,6 +275,10 @@ class FullScreenMessage extends CampaignMessage {
                 uiService.create(
                         new InAppMessage(messageSettings, fullScreenMessageUiListener),
                         new DefaultPresentationUtilityProvider());
+        if (displayCache != null && getTriggerTimestamp() > 0) {
+            displayCache.recordShowLatency(
+                    messageId, System.currentTimeMillis() - getTriggerTimestamp(), assetMapCached);
+        }
         fullscreenMessage.show();
     }
 
@@ -291,20 +296,19 @@ class FullScreenMessage extends CampaignMessage {
      * Returns a {@code Map<String,String>} containing the remote resource URL as key and cached
      * resource path as value for a cached remote resource.
      *
-     * <p>This function uses the {@link CacheService} to find a cached remote file. if a cached file
-     * is found, its added to the {@code Map<String, String>} that will be returned. This functions
-     * returns an empty map in the following cases:
-     *
-     * <ul>
-     *   <li>The Asset List is empty.
-     *   <li>The {@link CacheService} is null.
-     * </ul>
+     * <p>The asset map is built by the {@link CampaignRulesDownloader} once the message assets are
+     * downloaded and kept in the provided {@code displayCache}, so it is only looked up here. If it
+     * is not cached, it is resolved with {@link CampaignMessageAssetResolver}. This functions
+     * returns an empty map if the Asset List is empty.
      *
+     * @param displayCache {@link CampaignMessageDisplayCache} caching the resolved map, may be null
+     * @param bundleVersion {@code int} containing the rules bundle version of this message
      * @return {@code Map<String, String>}
      */
-    @SuppressWarnings("checkstyle:NestedIfDepth")
-    private Map<String, String> createCachedResourcesMap() {
-        // early bail if we don't have assets or if cache service is unavailable
+    private Map<String, String> createCachedResourcesMap(
+            final CampaignMessageDisplayCache displayCache, final int bundleVersion) {
+        assetMapCached = false;
+        // early bail if we don't have assets
         if (assets == null || assets.isEmpty()) {
             Log.debug(
                     CampaignConstants.LOG_TAG,
@@ -315,79 +319,30 @@ class FullScreenMessage extends CampaignMessage {
             return Collections.emptyMap();
         }
 
-        final Map<String, String> cachedImagesMap = new HashMap<>();
-        final Map<String, String> fallbackImagesMap = new HashMap<>();
-        final String cacheName = MESSAGES_CACHE + messageId;
-
-        for (final List<String> currentAssetArray : assets) {
-            if (currentAssetArray.isEmpty()) {
-                continue;
-            }
-
-            final String remoteAssetUrl = currentAssetArray.get(0);
-            final int currentAssetArrayCount = currentAssetArray.size();
-            String assetCacheLocation = null;
-            int currentAssetNumber = 0;
-
-            // loop through our assets to see if we have any of them in cache
-            while (currentAssetNumber < currentAssetArrayCount) {
-                final String currentAsset = currentAssetArray.get(currentAssetNumber);
-                final CacheResult assetValueFile = cacheService.get(cacheName, currentAsset);
-
-                if (assetValueFile != null) {
-                    assetCacheLocation = cacheName;
-                    break;
-                }
-
-                currentAssetNumber++;
+        final CampaignAssetStore assetStore = parentModule.getAssetStore();
+        CampaignMessageDisplayCache.ResolvedAssets resolvedAssets =
+                displayCache != null && assetStore != null
+                        ? displayCache.getResolvedAssets(
+                                messageId, bundleVersion, assetStore.getAssetGeneration())
+                        : null;
+        assetMapCached = resolvedAssets != null;
+        if (resolvedAssets == null) {
+            resolvedAssets =
+                    CampaignMessageAssetResolver.resolve(
+                            cacheService, assetStore, messageId, assets, true);
+
+            // maps using fallbacks are resolved again, their remote assets may be downloaded since
+            if (displayCache != null && assetStore != null && resolvedAssets.isComplete()) {
+                displayCache.putResolvedAssets(messageId, bundleVersion, resolvedAssets);
             }
+        }
 
-            // if the asset cache location is still null then the specified remote url was not
-            // present in the cache.
-            // if a bundled asset is available, use it as a fallback by caching it for use later
-            // when the message is displayed.
-            if (StringUtils.isNullOrEmpty(assetCacheLocation)) {
-                final String bundledFileName = currentAssetArray.get(currentAssetArrayCount - 1);
-                boolean isLocalImage = !UrlUtils.isValidUrl(bundledFileName);
-
-                if (isLocalImage) {
-                    try {
-                        final Context applicationContext =
-                                ServiceProvider.getInstance()
-                                        .getAppContextService()
-                                        .getApplicationContext();
-                        if (applicationContext != null) {
-                            final InputStream bundledFile =
-                                    applicationContext.getAssets().open(bundledFileName);
-                            // if the remote asset url is a non valid url then we have a local asset
-                            // which needs the local file system uri appended
-                            final String finalizedAssetUrl =
-                                    !UrlUtils.isValidUrl(remoteAssetUrl)
-                                            ? CampaignConstants.LOCAL_ASSET_URI + remoteAssetUrl
-                                            : remoteAssetUrl;
-                            cacheService.set(
-                                    cacheName,
-                                    finalizedAssetUrl,
-                                    new CacheEntry(bundledFile, CacheExpiry.never(), null));
-                            fallbackImagesMap.put(finalizedAssetUrl, cacheName);
-                            bundledFile.close();
-                        }
-                    } catch (final IOException exception) {
-                        Log.debug(
-                                CampaignConstants.LOG_TAG,
-                                SELF_TAG,
-                                "createCachedResourcesMap - Exception occurred reading bundled"
-                                        + " asset: %s.",
-                                exception.getMessage());
-                    }
-                }
-            } else {
-                cachedImagesMap.put(remoteAssetUrl, assetCacheLocation);
-            }
+        // keep the shown assets from being evicted before less recently shown ones
+        if (assetStore != null && !resolvedAssets.getStoredAssets().isEmpty()) {
+            assetStore.recordAssetsShown(resolvedAssets.getStoredAssets());
         }
-        cachedImagesMap.putAll(fallbackImagesMap);
 
-        return cachedImagesMap;
+        return new HashMap<>(resolvedAssets.getAssetMap());
     }
 
     /**
@@ -12,7 +12,6 @@
 package com.adobe.marketing.mobile.campaign;
 
 import com.adobe.marketing.mobile.Event;
-import com.adobe.marketing.mobile.internal.util.StringEncoder;
 import com.adobe.marketing.mobile.services.DataEntity;
 import com.adobe.marketing.mobile.services.HttpConnecting;
 import com.adobe.marketing.mobile.services.Log;
@@ -22,11 +21,13 @@ import com.adobe.marketing.mobile.util.MapUtils;
 import com.adobe.marketing.mobile.util.StringUtils;
 import com.adobe.marketing.mobile.util.TimeUtils;
 import java.io.File;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -41,6 +42,12 @@ class Utils {
      * @return {@link CampaignHit} created from the {@code DataEntity}
      */
     static CampaignHit campaignHitFromDataEntity(final DataEntity dataEntity) {
+        final CampaignHit campaignHit = CampaignHit.decode(dataEntity.getData());
+        if (campaignHit != null) {
+            return campaignHit;
+        }
+
+        // hits queued before the flat encoding was introduced are stored as JSON
         try {
             final JSONObject jsonData = new JSONObject(dataEntity.getData());
             return new CampaignHit(
@@ -58,25 +65,24 @@ class Utils {
     }
 
     /**
-     * Recursively checks and deletes files within the cached assets directory which aren't within
-     * the {@code assetsToRetain} list.
+     * Deletes the message cache directories within the {@code messageCacheDir} which don't belong
+     * to a message in the {@code messageIdsToRetain} list.
      *
-     * @param cacheAsset {@link File} containing the cached assets directory
-     * @param assetsToRetain {@code List<String>} containing assets which should be retained
+     * @param messageCacheDir {@link File} containing the message cache directories
+     * @param messageIdsToRetain {@code Collection<String>} containing the ids of the messages whose
+     *     cache should be retained
      */
-    static void clearCachedAssetsNotInList(
-            final File cacheAsset, final List<String> assetsToRetain) {
-        final File[] filesList = cacheAsset.listFiles();
-        if (cacheAsset.isDirectory() && filesList != null) {
-            for (final File child : filesList) {
-                clearCachedAssetsNotInList(child, assetsToRetain);
-            }
-        } else {
-            for (final String asset : assetsToRetain) {
-                if (!cacheAsset.getName().equals(StringEncoder.sha2hash(asset))
-                        && cacheAsset.exists()) {
-                    cacheAsset.delete();
-                }
+    static void clearCachedMessagesNotInList(
+            final File messageCacheDir, final Collection<String> messageIdsToRetain) {
+        final File[] messageCaches = messageCacheDir.listFiles();
+        if (messageCaches == null) {
+            return;
+        }
+
+        final Set<String> retainedMessageIds = new HashSet<>(messageIdsToRetain);
+        for (final File messageCache : messageCaches) {
+            if (!retainedMessageIds.contains(messageCache.getName())) {
+                cleanDirectory(messageCache);
             }
         }
     }
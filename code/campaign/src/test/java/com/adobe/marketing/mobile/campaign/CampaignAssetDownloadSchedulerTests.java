@@ -0,0 +1,348 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.adobe.marketing.mobile.services.HttpConnecting;
+import com.adobe.marketing.mobile.services.HttpMethod;
+import com.adobe.marketing.mobile.services.NetworkCallback;
+import com.adobe.marketing.mobile.services.NetworkRequest;
+import com.adobe.marketing.mobile.services.Networking;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CampaignAssetDownloadSchedulerTests {
+    @Mock Networking mockNetworkService;
+    @Mock HttpConnecting mockHttpConnection;
+
+    private final List<String> requestedUrls = new ArrayList<>();
+    private final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+    private final List<String> completedUrls = new ArrayList<>();
+    private CampaignAssetDownloadScheduler downloadScheduler;
+
+    @Before
+    public void setup() {
+        // hold every connection until the test completes it
+        doAnswer(
+                        invocation -> {
+                            final NetworkRequest networkRequest = invocation.getArgument(0);
+                            requestedUrls.add(networkRequest.getUrl());
+                            pendingCallbacks.add(invocation.getArgument(1));
+                            return null;
+                        })
+                .when(mockNetworkService)
+                .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+        downloadScheduler = new CampaignAssetDownloadScheduler(mockNetworkService, 2);
+    }
+
+    private void schedule(final String url, final String messageId) {
+        downloadScheduler.schedule(
+                new NetworkRequest(url, HttpMethod.GET, null, null, 5, 5),
+                messageId,
+                connection -> completedUrls.add(url));
+    }
+
+    private void completeNextDownload() {
+        pendingCallbacks.remove(0).call(mockHttpConnection);
+    }
+
+    @Test
+    public void test_schedule_When_ConcurrencyLimitReached_Then_DownloadsQueued() {
+        // test
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message2");
+
+        // verify
+        assertEquals(2, downloadScheduler.getActiveDownloadCount());
+        assertEquals(1, downloadScheduler.getPendingDownloadCount());
+        assertEquals(2, requestedUrls.size());
+
+        // test
+        completeNextDownload();
+
+        // verify queued download started once a download completed
+        assertEquals(2, downloadScheduler.getActiveDownloadCount());
+        assertEquals(0, downloadScheduler.getPendingDownloadCount());
+        assertEquals("https://asset3", requestedUrls.get(2));
+        assertEquals(1, completedUrls.size());
+    }
+
+    @Test
+    public void test_prioritize_When_MessageMatched_Then_MessageAssetsDownloadedFirst() {
+        // setup
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message2");
+        schedule("https://asset4", "message3");
+        schedule("https://asset5", "message3");
+
+        // test
+        downloadScheduler.prioritize("message3");
+        completeNextDownload();
+        completeNextDownload();
+
+        // verify
+        assertEquals("https://asset4", requestedUrls.get(2));
+        assertEquals("https://asset5", requestedUrls.get(3));
+        assertEquals(1, downloadScheduler.getPendingDownloadCount());
+    }
+
+    @Test
+    public void test_schedule_When_MessagePreviouslyMatched_Then_NewDownloadPrioritized() {
+        // setup
+        downloadScheduler.prioritize("message2");
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message1");
+
+        // test
+        schedule("https://asset4", "message2");
+        completeNextDownload();
+
+        // verify
+        assertEquals("https://asset4", requestedUrls.get(2));
+    }
+
+    @Test
+    public void test_setMaxConcurrentDownloads_When_LimitRaised_Then_QueuedDownloadsStarted() {
+        // setup
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message1");
+
+        // test
+        downloadScheduler.setMaxConcurrentDownloads(3);
+
+        // verify
+        assertEquals(3, downloadScheduler.getActiveDownloadCount());
+        assertEquals(0, downloadScheduler.getPendingDownloadCount());
+    }
+
+    @Test
+    public void test_schedule_When_DownloadCompletesSynchronously_Then_AllDownloadsCompleted() {
+        // setup
+        doAnswer(
+                        invocation -> {
+                            final NetworkCallback callback = invocation.getArgument(1);
+                            callback.call(mockHttpConnection);
+                            return null;
+                        })
+                .when(mockNetworkService)
+                .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+        downloadScheduler.setMaxConcurrentDownloads(1);
+
+        // test
+        for (int i = 0; i < 100; i++) {
+            schedule("https://asset" + i, "message1");
+        }
+
+        // verify
+        assertEquals(100, completedUrls.size());
+        assertEquals(0, downloadScheduler.getActiveDownloadCount());
+        assertEquals(0, downloadScheduler.getPendingDownloadCount());
+    }
+
+    @Test
+    public void test_getRecentDownloadMetrics_When_DownloadCompleted_Then_MetricsRecorded() {
+        // setup
+        schedule("https://asset1", "message1");
+
+        // test
+        completeNextDownload();
+
+        // verify
+        final List<CampaignAssetDownloadScheduler.AssetDownloadMetrics> metrics =
+                downloadScheduler.getRecentDownloadMetrics();
+        assertEquals(1, metrics.size());
+        assertEquals("https://asset1", metrics.get(0).getUrl());
+        assertEquals("message1", metrics.get(0).getMessageId());
+        assertEquals(true, metrics.get(0).getQueueTimeMillis() >= 0);
+        assertEquals(true, metrics.get(0).getTransferTimeMillis() >= 0);
+    }
+
+    @Test
+    public void test_isDownloadPending_When_DownloadCompleted_Then_ListenerNotified() {
+        // setup
+        final List<String> notifiedUrls = new ArrayList<>();
+        downloadScheduler.setDownloadListener(notifiedUrls::add);
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message1");
+
+        // verify queued and in flight downloads are pending
+        assertEquals(true, downloadScheduler.isDownloadPending("https://asset1"));
+        assertEquals(true, downloadScheduler.isDownloadPending("https://asset3"));
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertEquals(false, downloadScheduler.isDownloadPending("https://asset1"));
+        assertEquals(true, downloadScheduler.isDownloadPending("https://asset3"));
+        assertEquals(1, notifiedUrls.size());
+        assertEquals("https://asset1", notifiedUrls.get(0));
+    }
+
+    @Test
+    public void test_schedule_When_UrlAlreadyInFlight_Then_SingleDownloadStarted() {
+        // setup
+        schedule("https://asset1", "message1");
+
+        // test
+        final boolean scheduled =
+                downloadScheduler.schedule(
+                        new NetworkRequest("https://asset1", HttpMethod.GET, null, null, 5, 5),
+                        "message2",
+                        connection -> completedUrls.add("https://asset1"));
+
+        // verify
+        assertFalse(scheduled);
+        assertEquals(1, requestedUrls.size());
+        assertEquals(1, downloadScheduler.getActiveDownloadCount());
+        assertEquals(0, downloadScheduler.getPendingDownloadCount());
+
+        // test
+        completeNextDownload();
+
+        // verify the url can be downloaded again once the download completed
+        assertEquals(1, completedUrls.size());
+        assertFalse(downloadScheduler.isDownloadPending("https://asset1"));
+        schedule("https://asset1", "message2");
+        assertEquals(2, requestedUrls.size());
+    }
+
+    @Test
+    public void test_prioritize_When_QueuedUrlSharedByMatchedMessage_Then_DownloadedFirst() {
+        // setup
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message1");
+        schedule("https://asset4", "message1");
+        schedule("https://asset4", "message2");
+
+        // test
+        downloadScheduler.prioritize("message2");
+        completeNextDownload();
+
+        // verify
+        assertEquals("https://asset4", requestedUrls.get(2));
+        assertEquals(1, downloadScheduler.getPendingDownloadCount());
+    }
+
+    @Test
+    public void
+            test_retainMatchTimestamps_When_MessageNoLongerLoaded_Then_NewDownloadNotPrioritized() {
+        // setup
+        downloadScheduler.prioritize("message2");
+        downloadScheduler.retainMatchTimestamps(Collections.singletonList("message1"));
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message1");
+
+        // test
+        schedule("https://asset4", "message2");
+        completeNextDownload();
+
+        // verify
+        assertEquals("https://asset3", requestedUrls.get(2));
+    }
+
+    @Test
+    public void test_schedule_When_ConnectAsyncThrows_Then_SlotReleasedAndDownloadsStarted() {
+        // setup
+        doAnswer(
+                        invocation -> {
+                            final NetworkRequest networkRequest = invocation.getArgument(0);
+                            requestedUrls.add(networkRequest.getUrl());
+                            if (networkRequest.getUrl().equals("https://asset1")) {
+                                throw new IllegalStateException("network unavailable");
+                            }
+                            pendingCallbacks.add(invocation.getArgument(1));
+                            return null;
+                        })
+                .when(mockNetworkService)
+                .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+
+        // test
+        schedule("https://asset1", "message1");
+
+        // verify
+        assertEquals(Collections.singletonList("https://asset1"), completedUrls);
+        assertEquals(0, downloadScheduler.getActiveDownloadCount());
+        assertFalse(downloadScheduler.isDownloadPending("https://asset1"));
+
+        // test
+        schedule("https://asset2", "message1");
+
+        // verify
+        assertEquals("https://asset2", requestedUrls.get(1));
+        assertEquals(1, downloadScheduler.getActiveDownloadCount());
+    }
+
+    @Test
+    public void test_cancelDownloads_When_DownloadsScheduled_Then_CallbacksNotInvoked() {
+        // setup
+        schedule("https://asset1", "message1");
+        schedule("https://asset2", "message1");
+        schedule("https://asset3", "message2");
+
+        // test
+        downloadScheduler.cancelDownloads();
+        completeNextDownload();
+        completeNextDownload();
+
+        // verify
+        assertTrue(completedUrls.isEmpty());
+        verify(mockHttpConnection, times(2)).close();
+        assertEquals(0, downloadScheduler.getActiveDownloadCount());
+        assertEquals(0, downloadScheduler.getPendingDownloadCount());
+        assertEquals(2, requestedUrls.size());
+        assertFalse(downloadScheduler.isDownloadPending("https://asset3"));
+    }
+
+    @Test
+    public void test_cancelDownloads_When_UrlScheduledAgain_Then_NewDownloadStaysPending() {
+        // setup
+        schedule("https://asset1", "message1");
+        downloadScheduler.cancelDownloads();
+
+        // test
+        schedule("https://asset1", "message1");
+        completeNextDownload();
+
+        // verify
+        assertTrue(downloadScheduler.isDownloadPending("https://asset1"));
+        assertTrue(completedUrls.isEmpty());
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertFalse(downloadScheduler.isDownloadPending("https://asset1"));
+        assertEquals(1, completedUrls.size());
+    }
+}
@@ -0,0 +1,281 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import com.adobe.marketing.mobile.services.HttpConnecting;
+import com.adobe.marketing.mobile.services.HttpMethod;
+import com.adobe.marketing.mobile.services.NetworkCallback;
+import com.adobe.marketing.mobile.services.NetworkRequest;
+import com.adobe.marketing.mobile.services.Networking;
+import com.adobe.marketing.mobile.services.caching.CacheEntry;
+import com.adobe.marketing.mobile.services.caching.CacheExpiry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CampaignAssetReadinessTests {
+    private static final String HERO_ASSET = "https://www.adobe.com/hero.png";
+    private static final String LOGO_ASSET = "https://www.adobe.com/logo.png";
+
+    @Mock Networking mockNetworkService;
+    @Mock HttpConnecting mockHttpConnection;
+
+    private final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+    private final List<Boolean> readinessResults = new ArrayList<>();
+    private FakeCacheService fakeCacheService;
+    private CampaignAssetDownloadScheduler downloadScheduler;
+    private ScheduledExecutorService timeoutExecutor;
+    private CampaignAssetReadiness assetReadiness;
+
+    @Before
+    public void setup() {
+        // hold every connection until the test completes it
+        doAnswer(
+                        invocation -> {
+                            pendingCallbacks.add(invocation.getArgument(1));
+                            return null;
+                        })
+                .when(mockNetworkService)
+                .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+        fakeCacheService = new FakeCacheService();
+        downloadScheduler = new CampaignAssetDownloadScheduler(mockNetworkService, 4);
+        timeoutExecutor = Executors.newSingleThreadScheduledExecutor();
+        assetReadiness =
+                new CampaignAssetReadiness(fakeCacheService, downloadScheduler, timeoutExecutor);
+
+        final Map<String, List<List<String>>> messageAssets = new HashMap<>();
+        messageAssets.put(
+                "message1",
+                Arrays.asList(
+                        Collections.singletonList(HERO_ASSET),
+                        Collections.singletonList(LOGO_ASSET)));
+        messageAssets.put(
+                "message2", Collections.singletonList(Collections.singletonList(LOGO_ASSET)));
+        messageAssets.put(
+                "message3", Collections.singletonList(Arrays.asList(HERO_ASSET, "01.jpeg")));
+        messageAssets.put(
+                "message4", Collections.singletonList(Arrays.asList(HERO_ASSET, LOGO_ASSET)));
+        assetReadiness.setMessageAssets(messageAssets);
+    }
+
+    @After
+    public void teardown() {
+        timeoutExecutor.shutdownNow();
+    }
+
+    private void scheduleDownload(final String assetUrl) {
+        downloadScheduler.schedule(
+                new NetworkRequest(assetUrl, HttpMethod.GET, null, null, 5, 5),
+                "message1",
+                connection ->
+                        fakeCacheService.set(
+                                CampaignAssetStore.ASSET_CACHE,
+                                assetUrl,
+                                new CacheEntry(
+                                        new ByteArrayInputStream(
+                                                "assetData".getBytes(StandardCharsets.UTF_8)),
+                                        CacheExpiry.never(),
+                                        null)));
+    }
+
+    private void completeNextDownload() {
+        pendingCallbacks.remove(0).call(mockHttpConnection);
+    }
+
+    @Test
+    public void test_isMessageReady_When_AssetsDownloaded_Then_MessageReady() {
+        // setup
+        scheduleDownload(HERO_ASSET);
+        scheduleDownload(LOGO_ASSET);
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertEquals(false, assetReadiness.isMessageReady("message1"));
+        assertEquals(false, assetReadiness.isMessageReady("message2"));
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertEquals(true, assetReadiness.isMessageReady("message1"));
+        assertEquals(true, assetReadiness.isMessageReady("message2"));
+        assertEquals(true, assetReadiness.isMessageReady("unknownMessage"));
+    }
+
+    @Test
+    public void test_whenMessageReady_When_ArrayHasBundledFallback_Then_ReadyOnceRemoteCached() {
+        // setup
+        scheduleDownload(HERO_ASSET);
+
+        // test
+        assetReadiness.whenMessageReady("message3", 10000, readinessResults::add);
+
+        // verify
+        assertFalse(assetReadiness.isMessageReady("message3"));
+        assertTrue(assetReadiness.hasPendingDownloads("message3"));
+        assertEquals(0, readinessResults.size());
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertTrue(assetReadiness.isMessageReady("message3"));
+        assertEquals(Collections.singletonList(true), readinessResults);
+    }
+
+    @Test
+    public void test_isMessageReady_When_AlternativeCached_Then_MessageReady() {
+        // setup
+        scheduleDownload(HERO_ASSET);
+        scheduleDownload(LOGO_ASSET);
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertTrue(assetReadiness.isMessageReady("message4"));
+        assertFalse(assetReadiness.hasPendingDownloads("message4"));
+    }
+
+    @Test
+    public void test_whenMessageReady_When_DownloadsPending_Then_CallbackInvokedOnceReady() {
+        // setup
+        scheduleDownload(HERO_ASSET);
+        scheduleDownload(LOGO_ASSET);
+
+        // test
+        assetReadiness.whenMessageReady("message1", 10000, readinessResults::add);
+        completeNextDownload();
+
+        // verify
+        assertEquals(0, readinessResults.size());
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertEquals(Collections.singletonList(true), readinessResults);
+    }
+
+    @Test
+    public void test_whenMessageReady_When_NoDownloadsPending_Then_CallbackInvokedNotReady() {
+        // test
+        assetReadiness.whenMessageReady("message1", 10000, readinessResults::add);
+
+        // verify
+        assertEquals(Collections.singletonList(false), readinessResults);
+    }
+
+    @Test
+    public void test_whenMessageReady_When_TimeoutElapsed_Then_CallbackInvokedOnce()
+            throws Exception {
+        // setup
+        scheduleDownload(LOGO_ASSET);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Boolean> results = Collections.synchronizedList(new ArrayList<>());
+
+        // test
+        assetReadiness.whenMessageReady(
+                "message2",
+                50,
+                ready -> {
+                    results.add(ready);
+                    latch.countDown();
+                });
+
+        // verify
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        completeNextDownload();
+        assertEquals(Collections.singletonList(false), results);
+    }
+
+    @Test
+    public void test_whenMessageReady_When_TimeoutRejected_Then_CallbackInvokedNotReady() {
+        // setup
+        scheduleDownload(LOGO_ASSET);
+        timeoutExecutor.shutdownNow();
+
+        // test
+        assetReadiness.whenMessageReady("message2", 10000, readinessResults::add);
+
+        // verify
+        assertEquals(Collections.singletonList(false), readinessResults);
+        completeNextDownload();
+        assertEquals(Collections.singletonList(false), readinessResults);
+    }
+
+    @Test
+    public void test_recordMessageDisplayed_When_Recorded_Then_CountsUpdated() {
+        // test
+        assetReadiness.recordMessageDisplayed(true);
+        assetReadiness.recordMessageDisplayed(false);
+        assetReadiness.recordMessageDisplayed(false);
+        assetReadiness.recordMessageSkipped();
+
+        // verify
+        assertEquals(1, assetReadiness.getReadyDisplayCount());
+        assertEquals(2, assetReadiness.getColdDisplayCount());
+        assertEquals(1, assetReadiness.getSkippedDisplayCount());
+    }
+
+    @Test
+    public void test_onAssetDownloadCompleted_When_LastDownloadCompleted_Then_ListenerNotified() {
+        // setup
+        final List<String> settledMessageIds = new ArrayList<>();
+        final Map<String, List<List<String>>> messageAssets = new HashMap<>();
+        messageAssets.put(
+                "message1", Collections.singletonList(Arrays.asList(HERO_ASSET, "01.jpeg")));
+        messageAssets.put(
+                "message2", Collections.singletonList(Collections.singletonList(LOGO_ASSET)));
+        assetReadiness.setMessageAssets(messageAssets);
+        assetReadiness.setMessageSettledListener(settledMessageIds::add);
+        scheduleDownload(HERO_ASSET);
+        scheduleDownload(LOGO_ASSET);
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertEquals(Collections.singletonList("message1"), settledMessageIds);
+
+        // test
+        completeNextDownload();
+
+        // verify
+        assertEquals(2, settledMessageIds.size());
+        assertTrue(settledMessageIds.containsAll(Arrays.asList("message1", "message2")));
+    }
+}
@@ -0,0 +1,447 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.adobe.marketing.mobile.services.caching.CacheEntry;
+import com.adobe.marketing.mobile.services.caching.CacheExpiry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class CampaignAssetStoreTests {
+    private static final String SHARED_ASSET = "https://www.adobe.com/logo.png";
+    private static final String HERO_ASSET = "https://www.adobe.com/hero.png";
+    private static final String THIRD_ASSET = "https://www.adobe.com/banner.png";
+    private static final String PARTITION = "campaign/campaignRules";
+    private static final String OTHER_PARTITION = "campaign/campaignRules/partition";
+
+    private FakeCacheService fakeCacheService;
+    private FakeNamedCollection fakeNamedCollection;
+    private CampaignAssetStore assetStore;
+
+    @Before
+    public void setup() {
+        fakeCacheService = new FakeCacheService();
+        fakeNamedCollection = new FakeNamedCollection();
+        assetStore = new CampaignAssetStore(fakeCacheService, fakeNamedCollection);
+        cacheAsset(SHARED_ASSET);
+        cacheAsset(HERO_ASSET);
+    }
+
+    private void cacheAsset(final String assetUrl) {
+        fakeCacheService.set(
+                CampaignAssetStore.ASSET_CACHE,
+                assetUrl,
+                new CacheEntry(
+                        new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)),
+                        CacheExpiry.never(),
+                        null));
+    }
+
+    private static Map<String, List<String>> createMessageAssets(final String... messageAssets) {
+        // alternating message id and comma separated asset urls
+        final Map<String, List<String>> assets = new HashMap<>();
+        for (int i = 0; i < messageAssets.length; i += 2) {
+            assets.put(messageAssets[i], Arrays.asList(messageAssets[i + 1].split(",")));
+        }
+        return assets;
+    }
+
+    private Runnable captureScheduledPersist(final ScheduledExecutorService mockExecutor) {
+        final ArgumentCaptor<Runnable> persistCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockExecutor, times(1))
+                .schedule(persistCaptor.capture(), anyLong(), any(TimeUnit.class));
+        return persistCaptor.getValue();
+    }
+
+    @Test
+    public void test_updateReferences_When_AssetSharedByMessages_Then_ReferenceCounted() {
+        // test
+        assetStore.updateReferences(
+                PARTITION,
+                createMessageAssets(
+                        "message1", SHARED_ASSET + "," + HERO_ASSET, "message2", SHARED_ASSET));
+
+        // verify
+        assertEquals(2, assetStore.getReferenceCount(SHARED_ASSET));
+        assertEquals(1, assetStore.getReferenceCount(HERO_ASSET));
+        assertEquals(0, assetStore.getReferenceCount("https://www.adobe.com/unknown.png"));
+    }
+
+    @Test
+    public void test_updateReferences_When_MessageRemoved_Then_SharedAssetKept() {
+        // setup
+        assetStore.updateReferences(
+                PARTITION,
+                createMessageAssets(
+                        "message1", SHARED_ASSET + "," + HERO_ASSET, "message2", SHARED_ASSET));
+
+        // test
+        assetStore.updateReferences(PARTITION, createMessageAssets("message2", SHARED_ASSET));
+
+        // verify
+        assertEquals(1, assetStore.getReferenceCount(SHARED_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertEquals(0, assetStore.getReferenceCount(HERO_ASSET));
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+    }
+
+    @Test
+    public void test_updateReferences_When_StoreRecreated_Then_PersistedReferencesUsed() {
+        // setup
+        assetStore.updateReferences(
+                PARTITION,
+                createMessageAssets(
+                        "message1", SHARED_ASSET + "," + HERO_ASSET, "message2", SHARED_ASSET));
+        final CampaignAssetStore restartedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection);
+
+        // test
+        assertEquals(2, restartedAssetStore.getReferenceCount(SHARED_ASSET));
+        restartedAssetStore.updateReferences(
+                PARTITION, createMessageAssets("message1", SHARED_ASSET));
+
+        // verify
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+    }
+
+    @Test
+    public void test_updateReferences_When_OtherPartitionRetained_Then_PartitionAssetsKept() {
+        // setup
+        assetStore.updateReferences(
+                PARTITION, createMessageAssets("message1", SHARED_ASSET + "," + HERO_ASSET));
+
+        // test
+        assetStore.updateReferences(OTHER_PARTITION, createMessageAssets("message2", THIRD_ASSET));
+
+        // verify
+        assertEquals(1, assetStore.getReferenceCount(HERO_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+        assertEquals(1, assetStore.getReferenceCount(THIRD_ASSET));
+    }
+
+    @Test
+    public void test_removePartition_When_PartitionEvicted_Then_OnlyItsAssetsRemoved() {
+        // setup
+        final String messageCache = CampaignAssetStore.MESSAGE_CACHE + "/message1";
+        fakeCacheService.set(
+                messageCache,
+                "bundledAsset",
+                new CacheEntry(
+                        new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)),
+                        CacheExpiry.never(),
+                        null));
+        assetStore.updateReferences(
+                PARTITION, createMessageAssets("message1", SHARED_ASSET + "," + HERO_ASSET));
+        assetStore.updateReferences(OTHER_PARTITION, createMessageAssets("message2", SHARED_ASSET));
+        assetStore.recordMessageAssetCached("message1", "bundledAsset", 10);
+        assetStore.recordAssetCached(SHARED_ASSET, 100);
+        assetStore.recordAssetCached(HERO_ASSET, 100);
+
+        // test
+        assetStore.removePartition(PARTITION);
+
+        // verify
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNull(fakeCacheService.get(messageCache, "bundledAsset"));
+        assertEquals(1, assetStore.getReferenceCount(SHARED_ASSET));
+        assertEquals(100, assetStore.getCacheUsageBytes());
+        assertEquals(
+                Collections.singleton("message2"),
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection)
+                        .getReferencedMessageIds());
+    }
+
+    @Test
+    public void test_updateReferences_When_LegacyReferencesStored_Then_LegacyReferencesReplaced() {
+        // setup
+        fakeNamedCollection.setString(
+                CampaignConstants.CAMPAIGN_NAMED_COLLECTION_ASSET_REFERENCES_KEY,
+                "{\"" + SHARED_ASSET + "\":[\"message1\"],\"" + HERO_ASSET + "\":[\"message1\"]}");
+        final CampaignAssetStore restartedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection);
+
+        // test
+        assertEquals(1, restartedAssetStore.getReferenceCount(HERO_ASSET));
+        restartedAssetStore.updateReferences(
+                PARTITION, createMessageAssets("message1", SHARED_ASSET));
+
+        // verify
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+    }
+
+    @Test
+    public void test_recordAssetCached_When_BudgetExceeded_Then_LeastRecentlyShownAssetEvicted() {
+        // setup
+        cacheAsset(THIRD_ASSET);
+        assetStore.setMaxCacheBytes(250);
+        assetStore.recordAssetCached(SHARED_ASSET, 100);
+        assetStore.recordAssetCached(HERO_ASSET, 100);
+        assetStore.recordAssetsShown(Collections.singletonList(SHARED_ASSET));
+
+        // test
+        assetStore.recordAssetCached(THIRD_ASSET, 100);
+
+        // verify
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, THIRD_ASSET));
+        assertEquals(200, assetStore.getCacheUsageBytes());
+        assertEquals(1, assetStore.getEvictionCount());
+        assertEquals(1, assetStore.getAssetGeneration());
+    }
+
+    @Test
+    public void test_recordAssetCached_When_BudgetExceeded_Then_ReferencedAssetEvicted() {
+        // setup
+        cacheAsset(THIRD_ASSET);
+        assetStore.updateReferences(
+                PARTITION,
+                createMessageAssets(
+                        "message1", SHARED_ASSET + "," + HERO_ASSET, "message2", THIRD_ASSET));
+        assetStore.setMaxCacheBytes(250);
+        assetStore.recordAssetCached(SHARED_ASSET, 100);
+        assetStore.recordAssetCached(HERO_ASSET, 100);
+
+        // test
+        assetStore.recordAssetCached(THIRD_ASSET, 100);
+
+        // verify
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+        assertEquals(1, assetStore.getReferenceCount(SHARED_ASSET));
+        assertEquals(200, assetStore.getCacheUsageBytes());
+        assertEquals(1, assetStore.getEvictionCount());
+    }
+
+    @Test
+    public void test_recordMessageAssetCached_When_BudgetExceeded_Then_MessageCacheCounted() {
+        // setup
+        assetStore.setMaxCacheBytes(250);
+        assetStore.recordAssetCached(SHARED_ASSET, 100);
+        assetStore.recordAssetCached(HERO_ASSET, 100);
+
+        // test
+        assetStore.recordMessageAssetCached("message1", "bundledAsset", 100);
+
+        // verify
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+        assertEquals(200, assetStore.getCacheUsageBytes());
+        assertEquals(
+                200,
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection).getCacheUsageBytes());
+    }
+
+    @Test
+    public void test_setMaxCacheBytes_When_BudgetLowered_Then_AssetsEvicted() {
+        // setup
+        assetStore.recordAssetCached(SHARED_ASSET, 100);
+        assetStore.recordAssetCached(HERO_ASSET, 100);
+
+        // test
+        assetStore.setMaxCacheBytes(100);
+
+        // verify
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+        assertEquals(100, assetStore.getCacheUsageBytes());
+        assertEquals(1, assetStore.getEvictionCount());
+    }
+
+    @Test
+    public void test_recordAssetsShown_When_StoreRecreated_Then_AccessOrderRestored()
+            throws Exception {
+        // setup
+        assetStore.recordAssetCached(SHARED_ASSET, 100);
+        assetStore.recordAssetCached(HERO_ASSET, 100);
+        Thread.sleep(5);
+        assetStore.recordAssetsShown(Collections.singletonList(SHARED_ASSET));
+        final CampaignAssetStore restartedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection);
+
+        // test
+        assertEquals(200, restartedAssetStore.getCacheUsageBytes());
+        restartedAssetStore.setMaxCacheBytes(100);
+
+        // verify
+        assertNotNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, SHARED_ASSET));
+        assertNull(fakeCacheService.get(CampaignAssetStore.ASSET_CACHE, HERO_ASSET));
+    }
+
+    @Test
+    public void test_updateReferences_When_AssetUnreferenced_Then_UsageReleased() {
+        // setup
+        assetStore.updateReferences(
+                PARTITION, createMessageAssets("message1", SHARED_ASSET + "," + HERO_ASSET));
+        assetStore.recordAssetCached(SHARED_ASSET, 100);
+        assetStore.recordAssetCached(HERO_ASSET, 100);
+
+        // test
+        assetStore.updateReferences(PARTITION, createMessageAssets("message1", SHARED_ASSET));
+
+        // verify
+        assertEquals(100, assetStore.getCacheUsageBytes());
+        assertEquals(0, assetStore.getEvictionCount());
+    }
+
+    @Test
+    public void test_clearUnreferencedMessageCaches_When_MessageRemoved_Then_MessageCacheCleared() {
+        // setup
+        final String messageCache = CampaignAssetStore.MESSAGE_CACHE + "/message1";
+        fakeCacheService.set(
+                messageCache,
+                "bundledAsset",
+                new CacheEntry(
+                        new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)),
+                        CacheExpiry.never(),
+                        null));
+        assetStore.recordMessageAssetCached("message1", "bundledAsset", 10);
+        assetStore.recordMessageAssetCached("message2", "otherBundledAsset", 10);
+
+        // test
+        assetStore.updateReferences(
+                PARTITION, Collections.singletonMap("message2", Collections.emptyList()));
+        assetStore.clearUnreferencedMessageCaches();
+
+        // verify
+        assertNull(fakeCacheService.get(messageCache, "bundledAsset"));
+        assertEquals(
+                "{\"message2\":{\"otherBundledAsset\":10}}",
+                fakeNamedCollection.getString(
+                        CampaignConstants.CAMPAIGN_NAMED_COLLECTION_MESSAGE_CACHE_MANIFEST_KEY,
+                        null));
+    }
+
+    @Test
+    public void
+            test_clearUnreferencedMessageCaches_When_StoreRecreated_Then_PersistedManifestUsed() {
+        // setup
+        final String messageCache = CampaignAssetStore.MESSAGE_CACHE + "/message1";
+        fakeCacheService.set(
+                messageCache,
+                "bundledAsset",
+                new CacheEntry(
+                        new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)),
+                        CacheExpiry.never(),
+                        null));
+        assetStore.recordMessageAssetCached("message1", "bundledAsset", 10);
+        final CampaignAssetStore restartedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection);
+
+        // test
+        restartedAssetStore.clearUnreferencedMessageCaches();
+
+        // verify
+        assertNull(fakeCacheService.get(messageCache, "bundledAsset"));
+    }
+
+    @Test
+    public void
+            test_clearUnreferencedMessageCaches_When_MessageRemoved_Then_BundledFallbackDigestCleared() {
+        // setup
+        assetStore.recordBundledFallbacksCached("message1", "digest1");
+        assetStore.recordBundledFallbacksCached("message2", "digest2");
+        final CampaignAssetStore restartedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection);
+
+        // test
+        assertTrue(restartedAssetStore.hasBundledFallbacks("message1", "digest1"));
+        assertFalse(restartedAssetStore.hasBundledFallbacks("message1", "updatedDigest"));
+        restartedAssetStore.updateReferences(
+                PARTITION, Collections.singletonMap("message2", Collections.emptyList()));
+        restartedAssetStore.clearUnreferencedMessageCaches();
+
+        // verify
+        assertFalse(restartedAssetStore.hasBundledFallbacks("message1", "digest1"));
+        assertTrue(restartedAssetStore.hasBundledFallbacks("message2", "digest2"));
+        assertEquals(
+                "{\"message2\":\"digest2\"}",
+                fakeNamedCollection.getString(
+                        CampaignConstants.CAMPAIGN_NAMED_COLLECTION_BUNDLED_FALLBACK_DIGESTS_KEY,
+                        null));
+    }
+
+    @Test
+    public void test_recordAssetCached_When_PersistBatched_Then_ChangesWrittenOnce() {
+        // setup
+        final ScheduledExecutorService mockExecutor = mock(ScheduledExecutorService.class);
+        final CampaignAssetStore batchedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection, mockExecutor);
+
+        // test
+        batchedAssetStore.updateReferences(
+                PARTITION, createMessageAssets("message1", SHARED_ASSET + "," + HERO_ASSET));
+        batchedAssetStore.recordAssetCached(SHARED_ASSET, 100);
+        batchedAssetStore.recordAssetCached(HERO_ASSET, 100);
+        batchedAssetStore.recordAssetsShown(Collections.singletonList(SHARED_ASSET));
+
+        // verify
+        final Runnable persist = captureScheduledPersist(mockExecutor);
+        assertEquals(
+                0,
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection).getCacheUsageBytes());
+        persist.run();
+        final CampaignAssetStore restartedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection);
+        assertEquals(200, restartedAssetStore.getCacheUsageBytes());
+        assertEquals(1, restartedAssetStore.getReferenceCount(HERO_ASSET));
+    }
+
+    @Test
+    public void test_clear_When_ChangesPending_Then_ClearedDataNotRestored() {
+        // setup
+        final ScheduledExecutorService mockExecutor = mock(ScheduledExecutorService.class);
+        final CampaignAssetStore batchedAssetStore =
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection, mockExecutor);
+        batchedAssetStore.updateReferences(
+                PARTITION, createMessageAssets("message1", SHARED_ASSET));
+        batchedAssetStore.recordAssetCached(SHARED_ASSET, 100);
+        final Runnable persist = captureScheduledPersist(mockExecutor);
+
+        // test
+        batchedAssetStore.clear();
+        fakeNamedCollection.removeAll();
+        persist.run();
+
+        // verify
+        assertEquals(0, batchedAssetStore.getReferenceCount(SHARED_ASSET));
+        assertEquals(0, batchedAssetStore.getCacheUsageBytes());
+        assertEquals(
+                0,
+                new CampaignAssetStore(fakeCacheService, fakeNamedCollection)
+                        .getReferenceCount(SHARED_ASSET));
+    }
+}
@@ -22,6 +22,7 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -324,7 +325,7 @@ public class CampaignExtensionTests {
         // test
         campaignExtension.onRegistered();
         // verify
-        verify(mockExtensionApi, times(7))
+        verify(mockExtensionApi, times(8))
                 .registerEventListener(anyString(), anyString(), any(ExtensionEventListener.class));
     }
 
@@ -543,6 +544,51 @@ public class CampaignExtensionTests {
                 });
     }
 
+    @Test
+    public void test_handleWildcardEvents_when_eventCannotMatchRules_then_eventSkipped() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final CampaignRulesEventIndex rulesEventIndex =
+                            CampaignRulesEventIndex.fromJsonString(
+                                    "{\"version\":1,\"rules\":[{\"condition\":{\"type\":\"matcher\","
+                                            + "\"definition\":{\"key\":\"action\",\"matcher\":\"eq\","
+                                            + "\"values\":[\"purchase\"]}},\"consequences\":[]}]}");
+                    when(mockCampaignRulesDownloader.getRulesEventIndex())
+                            .thenReturn(rulesEventIndex);
+
+                    Event matchingEvent =
+                            new Event.Builder(
+                                            "Track event",
+                                            EventType.GENERIC_TRACK,
+                                            EventSource.REQUEST_CONTENT)
+                                    .setEventData(
+                                            new HashMap<String, Object>() {
+                                                {
+                                                    put("action", "purchase");
+                                                }
+                                            })
+                                    .build();
+                    Event unrelatedEvent =
+                            new Event.Builder(
+                                            "Lifecycle event",
+                                            EventType.LIFECYCLE,
+                                            EventSource.RESPONSE_CONTENT)
+                                    .setEventData(null)
+                                    .build();
+
+                    // test
+                    campaignExtension.handleWildcardEvents(matchingEvent);
+                    campaignExtension.handleWildcardEvents(unrelatedEvent);
+
+                    // verify
+                    verify(mockRulesEngine, times(1)).processEvent(matchingEvent);
+                    verify(mockRulesEngine, times(0)).processEvent(unrelatedEvent);
+                    assertEquals(1, campaignExtension.getEvaluatedEventCount());
+                    assertEquals(1, campaignExtension.getSkippedEventCount());
+                });
+    }
+
     // =================================================================================================================
     // void handleRuleEngineResponseEvents(Event event)
     // =================================================================================================================
@@ -707,6 +753,140 @@ public class CampaignExtensionTests {
         }
     }
 
+    @Test
+    public void
+            test_handleRuleEngineResponseEvents_when_assetsNotReadyAndSkipPolicy_then_shouldNotShowMessage() {
+        // setup
+        final CampaignAssetReadiness mockAssetReadiness =
+                Mockito.mock(CampaignAssetReadiness.class);
+        when(mockCampaignRulesDownloader.getAssetReadiness()).thenReturn(mockAssetReadiness);
+        when(mockAssetReadiness.isMessageReady("testId")).thenReturn(false);
+        when(mockCampaignMessage.shouldDownloadAssets()).thenReturn(true);
+        when(mockCampaignState.getAssetReadinessPolicy())
+                .thenReturn(CampaignConstants.ASSET_READINESS_POLICY_SKIP);
+        try (MockedStatic<CampaignMessage> campaignMessageMockedStatic =
+                Mockito.mockStatic(CampaignMessage.class)) {
+            campaignMessageMockedStatic
+                    .when(() -> CampaignMessage.createMessageObject(any(), any()))
+                    .thenReturn(mockCampaignMessage);
+            setupServiceProviderMockAndRunTest(
+                    () -> {
+                        Map<String, Object> detail = new HashMap<>();
+                        detail.put("template", "fullscreen");
+                        detail.put("html", "happy_test.html");
+                        Map<String, Object> triggeredConsequence = new HashMap<>();
+                        triggeredConsequence.put("id", "testId");
+                        triggeredConsequence.put("type", "iam");
+                        triggeredConsequence.put("detail", detail);
+                        Map<String, Object> ruleConsequenceMap = new HashMap<>();
+                        ruleConsequenceMap.put("triggeredconsequence", triggeredConsequence);
+
+                        Event testEvent =
+                                new Event.Builder(
+                                                "Test event",
+                                                EventType.RULES_ENGINE,
+                                                EventSource.RESPONSE_CONTENT)
+                                        .setEventData(ruleConsequenceMap)
+                                        .build();
+
+                        // test
+                        campaignExtension.handleRuleEngineResponseEvents(testEvent);
+
+                        // verify
+                        verify(mockCampaignMessage, times(0)).showMessage();
+                        verify(mockAssetReadiness, times(1)).recordMessageSkipped();
+                    });
+        }
+    }
+
+    @Test
+    public void
+            test_handleRuleEngineResponseEvents_when_assetsNotReadyAndWaitPolicy_then_shouldShowMessageFromDispatchedEvent() {
+        // setup
+        final CampaignAssetReadiness mockAssetReadiness =
+                Mockito.mock(CampaignAssetReadiness.class);
+        when(mockCampaignRulesDownloader.getAssetReadiness()).thenReturn(mockAssetReadiness);
+        when(mockAssetReadiness.isMessageReady("testId")).thenReturn(false);
+        doAnswer(
+                        invocation -> {
+                            final CampaignAssetReadiness.ReadinessCallback callback =
+                                    invocation.getArgument(2);
+                            callback.call(true);
+                            return null;
+                        })
+                .when(mockAssetReadiness)
+                .whenMessageReady(eq("testId"), anyLong(), any());
+        when(mockCampaignMessage.shouldDownloadAssets()).thenReturn(true);
+        when(mockCampaignState.getAssetReadinessPolicy())
+                .thenReturn(CampaignConstants.ASSET_READINESS_POLICY_WAIT);
+        try (MockedStatic<CampaignMessage> campaignMessageMockedStatic =
+                Mockito.mockStatic(CampaignMessage.class)) {
+            campaignMessageMockedStatic
+                    .when(() -> CampaignMessage.createMessageObject(any(), any()))
+                    .thenReturn(mockCampaignMessage);
+            setupServiceProviderMockAndRunTest(
+                    () -> {
+                        Map<String, Object> detail = new HashMap<>();
+                        detail.put("template", "fullscreen");
+                        detail.put("html", "happy_test.html");
+                        Map<String, Object> triggeredConsequence = new HashMap<>();
+                        triggeredConsequence.put("id", "testId");
+                        triggeredConsequence.put("type", "iam");
+                        triggeredConsequence.put("detail", detail);
+                        Map<String, Object> ruleConsequenceMap = new HashMap<>();
+                        ruleConsequenceMap.put("triggeredconsequence", triggeredConsequence);
+
+                        Event testEvent =
+                                new Event.Builder(
+                                                "Test event",
+                                                EventType.RULES_ENGINE,
+                                                EventSource.RESPONSE_CONTENT)
+                                        .setEventData(ruleConsequenceMap)
+                                        .build();
+
+                        // test
+                        campaignExtension.handleRuleEngineResponseEvents(testEvent);
+
+                        // verify
+                        verify(mockCampaignMessage, times(0)).showMessage();
+                        final ArgumentCaptor<Event> eventCaptor =
+                                ArgumentCaptor.forClass(Event.class);
+                        verify(mockExtensionApi, times(1)).dispatch(eventCaptor.capture());
+                        final Event assetsReadyEvent = eventCaptor.getValue();
+                        assertEquals(EventType.CAMPAIGN, assetsReadyEvent.getType());
+                        assertEquals(
+                                CampaignConstants.EVENT_SOURCE_MESSAGE_ASSETS_READY,
+                                assetsReadyEvent.getSource());
+                        assertFalse(assetsReadyEvent.getEventData().containsValue("testId"));
+
+                        // test
+                        final Map<String, Object> spoofedData = new HashMap<>();
+                        spoofedData.put(
+                                CampaignConstants.EventDataKeys.Campaign.ASSETS_READY_WAIT_ID,
+                                "testId");
+                        campaignExtension.handleMessageAssetsReadyEvent(
+                                new Event.Builder(
+                                                "Spoofed event",
+                                                EventType.CAMPAIGN,
+                                                CampaignConstants.EVENT_SOURCE_MESSAGE_ASSETS_READY)
+                                        .setEventData(spoofedData)
+                                        .build());
+
+                        // verify
+                        verify(mockCampaignMessage, times(0)).showMessage();
+
+                        // test
+                        when(mockAssetReadiness.isMessageReady("testId")).thenReturn(true);
+                        campaignExtension.handleMessageAssetsReadyEvent(assetsReadyEvent);
+                        campaignExtension.handleMessageAssetsReadyEvent(assetsReadyEvent);
+
+                        // verify
+                        verify(mockCampaignMessage, times(1)).showMessage();
+                        verify(mockAssetReadiness, times(1)).recordMessageDisplayed(true);
+                    });
+        }
+    }
+
     @Test
     public void
             test_handleRuleEngineResponseEvents_when_nullDetailsPresentInConsequence_then_shouldNotShowMessage() {
@@ -974,7 +1154,9 @@ public class CampaignExtensionTests {
             // verify
             String encodedLinkageFields = campaignExtension.getLinkageFields();
             assertEquals(expectedBase64EncodedLinkageFields, encodedLinkageFields);
-            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(1));
+            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(0));
+            verify(mockCampaignRulesDownloader, times(1))
+                    .activateRulesPartition(eq(encodedLinkageFields), eq(false));
             verify(mockCampaignRulesDownloader, times(1))
                     .loadRulesFromUrl(eq(expectedRulesDownloadUrl), eq(encodedLinkageFields));
         }
@@ -1040,13 +1222,44 @@ public class CampaignExtensionTests {
             // verify
             String linkageFields = campaignExtension.getLinkageFields();
             assertEquals("", linkageFields);
-            verify(mockRulesEngine, times(1)).replaceRules(any(List.class));
-            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(1));
+            verify(mockRulesEngine, times(0)).replaceRules(any(List.class));
+            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(0));
+            verify(mockCampaignRulesDownloader, times(1)).activateRulesPartition(eq(""), eq(true));
             verify(mockCampaignRulesDownloader, times(1))
                     .loadRulesFromUrl(eq(expectedRulesDownloadUrl), eq(""));
         }
     }
 
+    @Test
+    public void test_handleResetLinkageFields_when_genericRulesCached_then_cachedRulesKept() {
+        // setup
+        CampaignState campaignState = new CampaignState();
+        campaignState.setState(getConfigurationEventData(new HashMap<>()), getIdentityEventData());
+        campaignExtension =
+                new CampaignExtension(
+                        mockExtensionApi,
+                        mockPersistentHitQueue,
+                        mockDataStoreService,
+                        mockRulesEngine,
+                        campaignState,
+                        mockCacheService,
+                        mockCampaignRulesDownloader);
+
+        Event testEvent =
+                new Event.Builder("Test event", EventType.CAMPAIGN, EventSource.REQUEST_RESET)
+                        .build();
+
+        // test
+        campaignExtension.handleLinkageFieldsEvent(testEvent);
+
+        // verify unregistering uncached rules is left to the rules downloader
+        assertEquals("", campaignExtension.getLinkageFields());
+        verify(mockCampaignRulesDownloader, times(1)).activateRulesPartition(eq(""), eq(true));
+        verify(mockRulesEngine, times(0)).replaceRules(any(List.class));
+        verify(mockCampaignRulesDownloader, times(1))
+                .loadRulesFromUrl(eq(expectedRulesDownloadUrl), eq(""));
+    }
+
     @Test
     public void test_handleResetLinkageFields_when_linkageFieldsSetPreviously() {
         // setup
@@ -1099,8 +1312,11 @@ public class CampaignExtensionTests {
             // verify linkage fields reset
             String linkageFieldsString = campaignExtension.getLinkageFields();
             assertEquals("", linkageFieldsString);
-            verify(mockRulesEngine, times(1)).replaceRules(any(List.class));
-            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(2));
+            verify(mockRulesEngine, times(0)).replaceRules(any(List.class));
+            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(0));
+            verify(mockCampaignRulesDownloader, times(1))
+                    .activateRulesPartition(eq(encodedLinkageFields), eq(false));
+            verify(mockCampaignRulesDownloader, times(1)).activateRulesPartition(eq(""), eq(true));
             verify(mockCampaignRulesDownloader, times(1))
                     .loadRulesFromUrl(eq(expectedRulesDownloadUrl), eq(""));
         }
@@ -1168,16 +1384,54 @@ public class CampaignExtensionTests {
         // verify
         verify(mockPersistentHitQueue, times(1))
                 .handlePrivacyChange(eq(MobilePrivacyStatus.OPT_IN));
+        verify(mockCampaignRulesDownloader, times(1)).loadCachedRulesAsync();
         verify(mockCampaignRulesDownloader, times(1))
                 .loadRulesFromUrl(eq(expectedRulesDownloadUrl), eq(null));
     }
 
+    @Test
+    public void
+            test_processConfiguration_When_MultipleConfigurationEvents_Then_CachedRulesLoadedOnce() {
+        // setup
+        CampaignState campaignState = new CampaignState();
+        campaignState.setState(getConfigurationEventData(new HashMap<>()), getIdentityEventData());
+        campaignExtension =
+                new CampaignExtension(
+                        mockExtensionApi,
+                        mockPersistentHitQueue,
+                        mockDataStoreService,
+                        mockRulesEngine,
+                        campaignState,
+                        mockCacheService,
+                        mockCampaignRulesDownloader);
+
+        HashMap<String, Object> configData = new HashMap<>();
+        configData.put(
+                CampaignConstants.EventDataKeys.Configuration.GLOBAL_CONFIG_PRIVACY, "optedin");
+
+        Event testEvent =
+                new Event.Builder(
+                                "Test event", EventType.CONFIGURATION, EventSource.RESPONSE_CONTENT)
+                        .setEventData(configData)
+                        .build();
+
+        // test
+        campaignExtension.processConfigurationResponse(testEvent);
+        campaignExtension.processConfigurationResponse(testEvent);
+
+        // verify
+        verify(mockCampaignRulesDownloader, times(1)).loadCachedRulesAsync();
+        verify(mockCampaignRulesDownloader, times(0)).loadCachedRules();
+    }
+
     @Test
     public void test_processConfiguration_When_PrivacyOptOut() {
         // setup
         try (MockedStatic<Utils> utilsMockedStatic = Mockito.mockStatic(Utils.class)) {
             when(mockDataStoreService.getNamedCollection(anyString()))
                     .thenReturn(mockNamedCollection);
+            final CampaignAssetStore mockAssetStore = Mockito.mock(CampaignAssetStore.class);
+            when(mockCampaignRulesDownloader.getAssetStore()).thenReturn(mockAssetStore);
             CampaignState campaignState = new CampaignState();
             HashMap<String, Object> configData = new HashMap<>();
             configData.put(
@@ -1210,8 +1464,12 @@ public class CampaignExtensionTests {
                     .handlePrivacyChange(eq(MobilePrivacyStatus.OPT_OUT));
             String linkageFields = campaignExtension.getLinkageFields();
             assertEquals("", linkageFields);
+            verify(mockCampaignRulesDownloader, times(1)).cancelCachedRulesLoad();
             verify(mockRulesEngine, times(1)).replaceRules(eq(null));
-            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(1));
+            verify(mockCampaignRulesDownloader, times(1)).cancelAssetDownloads();
+            // rules, assets, partial assets and message caches
+            utilsMockedStatic.verify(() -> Utils.cleanDirectory(any(File.class)), times(4));
+            verify(mockAssetStore, times(1)).clear();
             verify(mockNamedCollection, times(1)).removeAll();
         }
     }
@@ -1300,6 +1558,74 @@ public class CampaignExtensionTests {
         assertEquals(url, campaignHit.url);
     }
 
+    @Test
+    public void
+            test_processMessageInformation_when_sameTrackingHitQueued_then_shouldDropDuplicate() {
+        // setup
+        CampaignState campaignState = new CampaignState();
+        campaignState.setState(getConfigurationEventData(new HashMap<>()), getIdentityEventData());
+        campaignExtension =
+                new CampaignExtension(
+                        mockExtensionApi,
+                        mockPersistentHitQueue,
+                        mockDataStoreService,
+                        mockRulesEngine,
+                        campaignState,
+                        mockCacheService,
+                        mockCampaignRulesDownloader);
+
+        Event testEvent =
+                new Event.Builder("Test event", EventType.GENERIC_DATA, EventSource.OS)
+                        .setEventData(getMessageTrackEventData("h2347", "bb65", "2"))
+                        .build();
+        Event otherActionEvent =
+                new Event.Builder("Test event", EventType.GENERIC_DATA, EventSource.OS)
+                        .setEventData(getMessageTrackEventData("h2347", "bb65", "1"))
+                        .build();
+
+        when(mockPersistentHitQueue.queue(any(DataEntity.class))).thenReturn(true);
+
+        // test
+        campaignExtension.processMessageInformation(testEvent);
+        campaignExtension.processMessageInformation(testEvent);
+        campaignExtension.processMessageInformation(otherActionEvent);
+
+        // verify
+        verify(mockPersistentHitQueue, times(2)).queue(any(DataEntity.class));
+        assertEquals(1, campaignExtension.getSuppressedTrackingHitCount());
+    }
+
+    @Test
+    public void
+            test_processMessageInformation_when_trackingHitNotQueued_then_shouldNotDropNextHit() {
+        // setup
+        CampaignState campaignState = new CampaignState();
+        campaignState.setState(getConfigurationEventData(new HashMap<>()), getIdentityEventData());
+        campaignExtension =
+                new CampaignExtension(
+                        mockExtensionApi,
+                        mockPersistentHitQueue,
+                        mockDataStoreService,
+                        mockRulesEngine,
+                        campaignState,
+                        mockCacheService,
+                        mockCampaignRulesDownloader);
+
+        Event testEvent =
+                new Event.Builder("Test event", EventType.GENERIC_DATA, EventSource.OS)
+                        .setEventData(getMessageTrackEventData("h2347", "bb65", "2"))
+                        .build();
+        when(mockPersistentHitQueue.queue(any(DataEntity.class))).thenReturn(false, true);
+
+        // test
+        campaignExtension.processMessageInformation(testEvent);
+        campaignExtension.processMessageInformation(testEvent);
+
+        // verify
+        verify(mockPersistentHitQueue, times(2)).queue(any(DataEntity.class));
+        assertEquals(0, campaignExtension.getSuppressedTrackingHitCount());
+    }
+
     @Test
     public void test_processMessageInformation_when_noEventData_then_shouldNotProcessRequest() {
         // setup
@@ -2252,6 +2578,25 @@ public class CampaignExtensionTests {
                 });
     }
 
+    // =================================================================================================================
+    // void clearAssetCacheDirectories()
+    // =================================================================================================================
+    @Test
+    public void test_clearAssetCacheDirectories_happy() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    try (MockedStatic<Utils> utilsMockedStatic = Mockito.mockStatic(Utils.class)) {
+                        // test
+                        campaignExtension.clearAssetCacheDirectories();
+
+                        // verify
+                        utilsMockedStatic.verify(
+                                () -> Utils.cleanDirectory(any(File.class)), times(3));
+                    }
+                });
+    }
+
     // =================================================================================================================
     // Test function dispatchMessageEvent, which gets called on Generic data OS events.
     // =================================================================================================================
@@ -13,11 +13,43 @@ package com.adobe.marketing.mobile.campaign;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import com.adobe.marketing.mobile.services.DataEntity;
 import com.adobe.marketing.mobile.services.HttpMethod;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONObject;
 import org.junit.Test;
 
 public class CampaignHitTests {
+    private static final String REGISTRATION_URL =
+            "https://campaign.com/rest/head/mobileAppV5/pkey/subscriptions/ecid";
+    private static final int BENCHMARK_ROUND_TRIPS = 2000;
+
+    // builds a registration payload with the characters JSON has to escape and the separator used
+    // by the flat encoding
+    private static String createRegistrationPayload(final int fieldCount) {
+        final Map<String, String> profileData = new HashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            profileData.put("field" + i, "value:" + i + " \"quoted\" \\path\n\u00e9\u4e2d\u6587");
+        }
+        profileData.put(CampaignConstants.CAMPAIGN_PUSH_PLATFORM, "gcm");
+        profileData.put(CampaignConstants.EXPERIENCE_CLOUD_ID, "ecid");
+        return new JSONObject(profileData).toString();
+    }
+
+    private static long measureRoundTrips(final CampaignHit campaignHit, final boolean flat) {
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ROUND_TRIPS; i++) {
+            final DataEntity dataEntity =
+                    new DataEntity(flat ? campaignHit.encode() : campaignHit.toString());
+            final CampaignHit decodedHit = Utils.campaignHitFromDataEntity(dataEntity);
+            assertEquals(campaignHit.payload.length(), decodedHit.payload.length());
+        }
+        return System.nanoTime() - startTime;
+    }
 
     @Test
     public void testCreateCampaignHit_PayloadPresent() {
@@ -39,4 +71,137 @@ public class CampaignHitTests {
         assertEquals("{\"url\":\"url\",\"timeout\":5}", campaignHit.toString());
         assertEquals(HttpMethod.GET, campaignHit.getHttpCommand());
     }
+
+    @Test
+    public void testEncode_Then_DecodeRestoresHit() {
+        // setup
+        CampaignHit campaignHit =
+                new CampaignHit("https://campaign.com/rest?a=1:2", "{\"key\":\"value:1\"}", 5);
+
+        // test
+        String encodedHit = campaignHit.encode();
+        CampaignHit decodedHit = CampaignHit.decode(encodedHit);
+
+        // verify
+        assertEquals("CH1:5:31:https://campaign.com/rest?a=1:2{\"key\":\"value:1\"}", encodedHit);
+        assertNotNull(decodedHit);
+        assertEquals("https://campaign.com/rest?a=1:2", decodedHit.url);
+        assertEquals("{\"key\":\"value:1\"}", decodedHit.payload);
+        assertEquals(5, decodedHit.timeout);
+        assertEquals(HttpMethod.POST, decodedHit.getHttpCommand());
+    }
+
+    @Test
+    public void testEncode_When_PayloadNull_Then_DecodedAsGet() {
+        // test
+        CampaignHit decodedHit = CampaignHit.decode(new CampaignHit("url", null, 5).encode());
+
+        // verify
+        assertNotNull(decodedHit);
+        assertEquals("url", decodedHit.url);
+        assertEquals("", decodedHit.payload);
+        assertEquals(HttpMethod.GET, decodedHit.getHttpCommand());
+    }
+
+    @Test
+    public void testDecode_When_DataInvalid_Then_ReturnsNull() {
+        // verify
+        assertNull(CampaignHit.decode(null));
+        assertNull(CampaignHit.decode("{\"url\":\"url\",\"payload\":\"\",\"timeout\":5}"));
+        assertNull(CampaignHit.decode("CH1:5:"));
+        assertNull(CampaignHit.decode("CH1:5:10:url"));
+        assertNull(CampaignHit.decode("CH1:x:3:url"));
+        assertNull(CampaignHit.decode("CH1:99999999999:3:url"));
+    }
+
+    @Test
+    public void testCampaignHitFromDataEntity_When_QueuedAsJson_Then_HitDecoded() {
+        // setup
+        DataEntity dataEntity = new DataEntity(new CampaignHit("url", "payload", 5).toString());
+
+        // test
+        CampaignHit campaignHit = Utils.campaignHitFromDataEntity(dataEntity);
+
+        // verify
+        assertNotNull(campaignHit);
+        assertEquals("url", campaignHit.url);
+        assertEquals("payload", campaignHit.payload);
+        assertEquals(5, campaignHit.timeout);
+    }
+
+    @Test
+    public void testCampaignHitFromDataEntity_When_FlatEncoded_Then_HitDecoded() {
+        // setup
+        DataEntity dataEntity = new DataEntity(new CampaignHit("url", "payload", 5).encode());
+
+        // test
+        CampaignHit campaignHit = Utils.campaignHitFromDataEntity(dataEntity);
+
+        // verify
+        assertNotNull(campaignHit);
+        assertEquals("url", campaignHit.url);
+        assertEquals("payload", campaignHit.payload);
+        assertEquals(5, campaignHit.timeout);
+    }
+
+    @Test
+    public void
+            testCampaignHitFromDataEntity_When_LargeRegistrationPayloadFlatEncoded_Then_HitRestored() {
+        // setup
+        String payload = createRegistrationPayload(500);
+        DataEntity dataEntity =
+                new DataEntity(new CampaignHit(REGISTRATION_URL, payload, 5).encode());
+
+        // test
+        CampaignHit campaignHit = Utils.campaignHitFromDataEntity(dataEntity);
+
+        // verify
+        assertNotNull(campaignHit);
+        assertEquals(REGISTRATION_URL, campaignHit.url);
+        assertEquals(payload, campaignHit.payload);
+        assertEquals(5, campaignHit.timeout);
+        assertEquals(HttpMethod.POST, campaignHit.getHttpCommand());
+    }
+
+    @Test
+    public void
+            testCampaignHitFromDataEntity_When_LargeRegistrationPayloadQueuedAsJson_Then_HitRestored() {
+        // setup
+        String payload = createRegistrationPayload(500);
+        DataEntity dataEntity =
+                new DataEntity(new CampaignHit(REGISTRATION_URL, payload, 5).toString());
+
+        // test
+        CampaignHit campaignHit = Utils.campaignHitFromDataEntity(dataEntity);
+
+        // verify
+        assertNotNull(campaignHit);
+        assertEquals(REGISTRATION_URL, campaignHit.url);
+        assertEquals(payload, campaignHit.payload);
+        assertEquals(5, campaignHit.timeout);
+    }
+
+    @Test
+    public void testCampaignHitFromDataEntity_Throughput_FlatEncodingFasterThanJson() {
+        // setup
+        CampaignHit campaignHit =
+                new CampaignHit(REGISTRATION_URL, createRegistrationPayload(100), 5);
+        // warm up both paths before measuring
+        measureRoundTrips(campaignHit, true);
+        measureRoundTrips(campaignHit, false);
+
+        // test
+        long flatNanos = measureRoundTrips(campaignHit, true);
+        long jsonNanos = measureRoundTrips(campaignHit, false);
+
+        // verify
+        assertTrue(
+                String.format(
+                        "%d flat round trips took %d us, %d JSON round trips took %d us",
+                        BENCHMARK_ROUND_TRIPS,
+                        flatNanos / 1000,
+                        BENCHMARK_ROUND_TRIPS,
+                        jsonNanos / 1000),
+                flatNanos < jsonNanos);
+    }
 }
@@ -13,16 +13,20 @@ package com.adobe.marketing.mobile.campaign;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.adobe.marketing.mobile.services.DataEntity;
+import com.adobe.marketing.mobile.services.DataQueue;
 import com.adobe.marketing.mobile.services.DataStoring;
 import com.adobe.marketing.mobile.services.HttpConnecting;
 import com.adobe.marketing.mobile.services.NamedCollection;
@@ -30,9 +34,17 @@ import com.adobe.marketing.mobile.services.NetworkCallback;
 import com.adobe.marketing.mobile.services.NetworkRequest;
 import com.adobe.marketing.mobile.services.Networking;
 import com.adobe.marketing.mobile.services.ServiceProvider;
+import java.io.ByteArrayInputStream;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
@@ -41,13 +53,24 @@ import org.mockito.stubbing.Answer;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
 public class CampaignHitsProcessorTests {
-    private final CampaignHitProcessor campaignHitProcessor = new CampaignHitProcessor();
+    private final FakeNamedCollection fakeNamedCollection = new FakeNamedCollection();
+    // always picks the upper bound of the jittered retry interval
+    private final Random maxJitter =
+            new Random() {
+                @Override
+                public int nextInt(final int bound) {
+                    return bound - 1;
+                }
+            };
+    private final CampaignHitProcessor campaignHitProcessor =
+            new CampaignHitProcessor(new CampaignRetryPolicy(fakeNamedCollection, maxJitter));
 
     @Mock Networking mockNetworkService;
     @Mock ServiceProvider mockServiceProvider;
     @Mock HttpConnecting mockHttpConnection;
     @Mock DataStoring mockDataStoreService;
     @Mock NamedCollection mockNamedCollection;
+    @Mock DataQueue mockDataQueue;
 
     private void setupServiceProviderMockAndRunTest(Runnable testRunnable) {
         try (MockedStatic<ServiceProvider> serviceProviderMockedStatic =
@@ -75,7 +98,9 @@ public class CampaignHitsProcessorTests {
         CampaignHit campaignHit = new CampaignHit("https://campaignrequest.com", "payload", 5);
         DataEntity dataEntity = new DataEntity(campaignHit.toString());
         // verify
-        assertEquals(30, campaignHitProcessor.retryInterval(dataEntity));
+        assertEquals(
+                CampaignConstants.HIT_RETRY_BASE_INTERVAL_SECONDS,
+                campaignHitProcessor.retryInterval(dataEntity));
     }
 
     @Test
@@ -406,4 +431,440 @@ public class CampaignHitsProcessorTests {
                             });
                 });
     }
+
+    @Test
+    public void testProcessHit_KeepsConnectionAlive_And_DrainsResponse() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final ByteArrayInputStream responseStream =
+                            new ByteArrayInputStream(
+                                    "{\"response\":\"ok\"}".getBytes(StandardCharsets.UTF_8));
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    when(mockHttpConnection.getInputStream()).thenReturn(responseStream);
+                    final ArgumentCaptor<NetworkRequest> networkRequestCaptor =
+                            ArgumentCaptor.forClass(NetworkRequest.class);
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(
+                                    networkRequestCaptor.capture(), any(NetworkCallback.class));
+                    CampaignHit campaignHit =
+                            new CampaignHit("https://campaignrequest.com", "payload", 5);
+                    DataEntity dataEntity = new DataEntity(campaignHit.toString());
+
+                    // test
+                    campaignHitProcessor.processHit(dataEntity, processingComplete -> {});
+
+                    // verify
+                    assertEquals(
+                            "keep-alive",
+                            networkRequestCaptor
+                                    .getValue()
+                                    .getHeaders()
+                                    .get(CampaignConstants.HTTP_HEADER_KEY_CONNECTION));
+                    assertEquals(0, responseStream.available());
+                    verify(mockHttpConnection, times(1)).close();
+                    assertEquals(1, campaignHitProcessor.getRecentHitLatencies().size());
+                });
+    }
+
+    @Test
+    public void testProcessHit_ClosesConnection_When_RecoverableError() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final ByteArrayInputStream errorStream =
+                            new ByteArrayInputStream(
+                                    "unavailable".getBytes(StandardCharsets.UTF_8));
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_UNAVAILABLE);
+                    when(mockHttpConnection.getErrorStream()).thenReturn(errorStream);
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    CampaignHit campaignHit =
+                            new CampaignHit("https://campaignrequest.com", "payload", 5);
+                    DataEntity dataEntity = new DataEntity(campaignHit.toString());
+
+                    // test
+                    campaignHitProcessor.processHit(
+                            dataEntity,
+                            processingComplete -> {
+                                // verify
+                                assertEquals(false, processingComplete);
+                            });
+
+                    // verify
+                    assertEquals(0, errorStream.available());
+                    verify(mockHttpConnection, times(1)).close();
+                });
+    }
+
+    @Test
+    public void testProcessHit_ReturnsBeforeResponse_And_UsesHitTimeout() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+                    final ArgumentCaptor<NetworkRequest> networkRequestCaptor =
+                            ArgumentCaptor.forClass(NetworkRequest.class);
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                pendingCallbacks.add(invocation.getArgument(1));
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(
+                                    networkRequestCaptor.capture(), any(NetworkCallback.class));
+                    final List<Boolean> results = new ArrayList<>();
+
+                    // test
+                    campaignHitProcessor.processHit(
+                            new DataEntity(
+                                    new CampaignHit("https://campaignrequest.com/1", "payload", 30)
+                                            .toString()),
+                            results::add);
+                    campaignHitProcessor.processHit(
+                            new DataEntity(
+                                    new CampaignHit("https://campaignrequest.com/2", "payload", 30)
+                                            .toString()),
+                            results::add);
+
+                    // verify both hits are in flight and use their own timeout
+                    assertEquals(2, pendingCallbacks.size());
+                    assertEquals(0, results.size());
+                    assertEquals(30, networkRequestCaptor.getValue().getConnectTimeout());
+                    assertEquals(30, networkRequestCaptor.getValue().getReadTimeout());
+
+                    // test
+                    pendingCallbacks.get(1).call(mockHttpConnection);
+                    pendingCallbacks.get(0).call(null);
+
+                    // verify
+                    assertEquals(Arrays.asList(true, false), results);
+                });
+    }
+
+    @Test
+    public void testProcessHit_HonorsRetryAfter_When_TooManyRequests() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(CampaignConstants.HTTP_TOO_MANY_REQUESTS);
+                    when(mockHttpConnection.getResponsePropertyValue(
+                                    CampaignConstants.HTTP_HEADER_RETRY_AFTER))
+                            .thenReturn("120");
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    DataEntity dataEntity =
+                            new DataEntity(
+                                    new CampaignHit("https://campaignrequest.com", "payload", 5)
+                                            .toString());
+                    final List<Boolean> results = new ArrayList<>();
+
+                    // test
+                    campaignHitProcessor.processHit(dataEntity, results::add);
+                    final int retryInterval = campaignHitProcessor.retryInterval(dataEntity);
+
+                    // verify
+                    assertEquals(Collections.singletonList(false), results);
+                    assertTrue(retryInterval > 115 && retryInterval <= 120);
+                    assertEquals(1, campaignHitProcessor.getRetryPolicy().getFailedAttempts());
+                });
+    }
+
+    @Test
+    public void testProcessHit_ResetsBackoff_When_HitSent() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final int[] responseCode = {HttpURLConnection.HTTP_GATEWAY_TIMEOUT};
+                    when(mockHttpConnection.getResponseCode())
+                            .thenAnswer(invocation -> responseCode[0]);
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    DataEntity dataEntity =
+                            new DataEntity(
+                                    new CampaignHit("https://campaignrequest.com", "payload", 5)
+                                            .toString());
+
+                    // test
+                    campaignHitProcessor.processHit(dataEntity, processingComplete -> {});
+                    campaignHitProcessor.retryInterval(dataEntity);
+                    campaignHitProcessor.processHit(dataEntity, processingComplete -> {});
+                    campaignHitProcessor.retryInterval(dataEntity);
+                    responseCode[0] = HttpURLConnection.HTTP_OK;
+                    campaignHitProcessor.processHit(dataEntity, processingComplete -> {});
+
+                    // verify
+                    assertEquals(
+                            Arrays.asList(5, 10),
+                            campaignHitProcessor.getRetryPolicy().getRetrySchedule());
+                    assertEquals(0, campaignHitProcessor.getRetryPolicy().getFailedAttempts());
+                    assertEquals(5, campaignHitProcessor.retryInterval(dataEntity));
+                });
+    }
+
+    private DataEntity createTrackingEntity(final String deliveryId) {
+        return new DataEntity(
+                new CampaignHit("https://campaign.com/r/?id=h1," + deliveryId + ",1", "", 5)
+                        .toString());
+    }
+
+    @Test
+    public void testProcessHit_SendsQueuedTrackingHitsInBurst() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    final List<NetworkRequest> sentRequests = new ArrayList<>();
+                    final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                sentRequests.add(invocation.getArgument(0));
+                                                pendingCallbacks.add(invocation.getArgument(1));
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    final DataEntity headEntity = createTrackingEntity("d1");
+                    final DataEntity secondEntity = createTrackingEntity("d2");
+                    final DataEntity thirdEntity = createTrackingEntity("d3");
+                    final DataEntity registrationEntity =
+                            new DataEntity(
+                                    new CampaignHit("https://campaign.com/rest", "payload", 5)
+                                            .toString());
+                    when(mockDataQueue.peek(anyInt()))
+                            .thenReturn(
+                                    Arrays.asList(
+                                            headEntity,
+                                            secondEntity,
+                                            thirdEntity,
+                                            registrationEntity,
+                                            createTrackingEntity("d4")));
+                    final CampaignHitProcessor burstHitProcessor =
+                            new CampaignHitProcessor(
+                                    new CampaignRetryPolicy(fakeNamedCollection, maxJitter),
+                                    mockDataQueue);
+                    final List<Boolean> results = new ArrayList<>();
+
+                    // test
+                    burstHitProcessor.processHit(headEntity, results::add);
+
+                    // verify hits up to the registration hit are sent together
+                    assertEquals(3, sentRequests.size());
+                    assertEquals(
+                            "https://campaign.com/r/?id=h1,d3,1", sentRequests.get(2).getUrl());
+                    assertEquals(2, burstHitProcessor.getPipelinedHitCount());
+
+                    // test
+                    for (final NetworkCallback callback : pendingCallbacks) {
+                        callback.call(mockHttpConnection);
+                    }
+                    burstHitProcessor.processHit(secondEntity, results::add);
+                    burstHitProcessor.processHit(thirdEntity, results::add);
+
+                    // verify hits sent ahead are not sent again
+                    assertEquals(3, sentRequests.size());
+                    assertEquals(Arrays.asList(true, true, true), results);
+                });
+    }
+
+    @Test
+    public void testProcessHit_SendsBurstHitAgain_When_BurstSendFailed() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                pendingCallbacks.add(invocation.getArgument(1));
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    final DataEntity headEntity = createTrackingEntity("d1");
+                    final DataEntity secondEntity = createTrackingEntity("d2");
+                    when(mockDataQueue.peek(anyInt()))
+                            .thenReturn(Arrays.asList(headEntity, secondEntity));
+                    final CampaignHitProcessor burstHitProcessor =
+                            new CampaignHitProcessor(
+                                    new CampaignRetryPolicy(fakeNamedCollection, maxJitter),
+                                    mockDataQueue);
+                    final List<Boolean> results = new ArrayList<>();
+
+                    // test
+                    burstHitProcessor.processHit(headEntity, results::add);
+                    pendingCallbacks.get(0).call(mockHttpConnection);
+                    burstHitProcessor.processHit(secondEntity, results::add);
+
+                    // verify the queue waits for the hit in flight
+                    assertEquals(Collections.singletonList(true), results);
+
+                    // test
+                    pendingCallbacks.get(1).call(null);
+
+                    // verify the failed hit is sent again on its own
+                    assertEquals(3, pendingCallbacks.size());
+                    assertEquals(0, burstHitProcessor.getRetryPolicy().getFailedAttempts());
+
+                    // test
+                    pendingCallbacks.get(2).call(mockHttpConnection);
+
+                    // verify
+                    assertEquals(Arrays.asList(true, true), results);
+                });
+    }
+
+    private DataEntity createRegistrationEntity(final String pkey, final String ecid) {
+        return new DataEntity(
+                new CampaignHit(
+                                String.format(
+                                        CampaignConstants.CAMPAIGN_REGISTRATION_URL,
+                                        "campaign.com",
+                                        pkey,
+                                        ecid),
+                                "{\"marketingCloudId\":\"" + ecid + "\"}",
+                                5)
+                        .encode());
+    }
+
+    @Test
+    public void testProcessHit_DropsRegistration_When_NewerRegistrationQueued() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final DataEntity headEntity = createRegistrationEntity("pkey", "ecid1");
+                    when(mockDataQueue.peek(anyInt()))
+                            .thenReturn(
+                                    Arrays.asList(
+                                            headEntity,
+                                            createTrackingEntity("d1"),
+                                            createRegistrationEntity("pkey", "ecid2")));
+                    final CampaignHitProcessor queueHitProcessor =
+                            new CampaignHitProcessor(
+                                    new CampaignRetryPolicy(fakeNamedCollection, maxJitter),
+                                    mockDataQueue);
+                    final List<Boolean> results = new ArrayList<>();
+
+                    // test
+                    queueHitProcessor.processHit(headEntity, results::add);
+
+                    // verify
+                    verify(mockNetworkService, never())
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    assertEquals(Collections.singletonList(true), results);
+                    assertEquals(1, queueHitProcessor.getSupersededRegistrationCount());
+                });
+    }
+
+    @Test
+    public void testProcessHit_SendsRegistration_When_NewerRegistrationForOtherProperty() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final DataEntity headEntity = createRegistrationEntity("pkey", "ecid1");
+                    when(mockDataQueue.peek(anyInt()))
+                            .thenReturn(
+                                    Arrays.asList(
+                                            createRegistrationEntity("pkey", "ecid0"),
+                                            headEntity,
+                                            createRegistrationEntity("otherPkey", "ecid2")));
+                    final CampaignHitProcessor queueHitProcessor =
+                            new CampaignHitProcessor(
+                                    new CampaignRetryPolicy(fakeNamedCollection, maxJitter),
+                                    mockDataQueue);
+
+                    // test
+                    queueHitProcessor.processHit(headEntity, processed -> {});
+
+                    // verify
+                    verify(mockNetworkService, times(1))
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    assertEquals(0, queueHitProcessor.getSupersededRegistrationCount());
+                });
+    }
+
+    @Test
+    public void testProcessHit_KeepsBurstResult_When_HeadHitRetried() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final int[] responseCode = {HttpURLConnection.HTTP_OK};
+                    when(mockHttpConnection.getResponseCode())
+                            .thenAnswer(invocation -> responseCode[0]);
+                    final List<NetworkCallback> pendingCallbacks = new ArrayList<>();
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                pendingCallbacks.add(invocation.getArgument(1));
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    final DataEntity headEntity = createTrackingEntity("d1");
+                    final DataEntity secondEntity = createTrackingEntity("d2");
+                    when(mockDataQueue.peek(anyInt()))
+                            .thenReturn(Arrays.asList(headEntity, secondEntity));
+                    final CampaignHitProcessor burstHitProcessor =
+                            new CampaignHitProcessor(
+                                    new CampaignRetryPolicy(fakeNamedCollection, maxJitter),
+                                    mockDataQueue);
+                    final List<Boolean> results = new ArrayList<>();
+
+                    // test
+                    burstHitProcessor.processHit(headEntity, results::add);
+                    pendingCallbacks.get(1).call(mockHttpConnection);
+                    responseCode[0] = HttpURLConnection.HTTP_UNAVAILABLE;
+                    pendingCallbacks.get(0).call(mockHttpConnection);
+                    responseCode[0] = HttpURLConnection.HTTP_OK;
+                    burstHitProcessor.processHit(headEntity, results::add);
+                    pendingCallbacks.get(2).call(mockHttpConnection);
+                    burstHitProcessor.processHit(secondEntity, results::add);
+
+                    // verify the hit sent ahead is not sent again after the head was retried
+                    assertEquals(3, pendingCallbacks.size());
+                    assertEquals(Arrays.asList(false, true, true), results);
+                });
+    }
 }
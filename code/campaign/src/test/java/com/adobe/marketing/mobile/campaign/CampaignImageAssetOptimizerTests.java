@@ -0,0 +1,230 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import com.adobe.marketing.mobile.services.DeviceInforming;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CampaignImageAssetOptimizerTests {
+    private static final String ASSET_URL = "https://www.adobe.com/hero.png";
+    private static final int ASSET_BYTES = 100;
+
+    @Mock DeviceInforming mockDeviceInfoService;
+    @Mock DeviceInforming.DisplayInformation mockDisplayInformation;
+    @Mock Bitmap mockBitmap;
+    @Mock Bitmap mockScaledBitmap;
+
+    private File assetFile;
+    private CampaignImageAssetOptimizer imageAssetOptimizer;
+    private MockedStatic<BitmapFactory> bitmapFactoryMockedStatic;
+    private MockedStatic<Bitmap> bitmapMockedStatic;
+    private MockedConstruction<BitmapFactory.Options> optionsMockedConstruction;
+
+    @Before
+    public void setup() throws Exception {
+        assetFile = new File("imageAsset");
+        writeBytes(assetFile, ASSET_BYTES);
+
+        when(mockDeviceInfoService.getDisplayInformation()).thenReturn(mockDisplayInformation);
+        when(mockDisplayInformation.getWidthPixels()).thenReturn(1080);
+        when(mockDisplayInformation.getHeightPixels()).thenReturn(2400);
+        bitmapFactoryMockedStatic = Mockito.mockStatic(BitmapFactory.class);
+        bitmapMockedStatic = Mockito.mockStatic(Bitmap.class);
+        optionsMockedConstruction = Mockito.mockConstruction(BitmapFactory.Options.class);
+        bitmapMockedStatic
+                .when(
+                        () ->
+                                Bitmap.createScaledBitmap(
+                                        any(Bitmap.class), anyInt(), anyInt(), anyBoolean()))
+                .thenReturn(mockScaledBitmap);
+
+        imageAssetOptimizer = new CampaignImageAssetOptimizer(mockDeviceInfoService);
+        imageAssetOptimizer.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        optionsMockedConstruction.close();
+        bitmapMockedStatic.close();
+        bitmapFactoryMockedStatic.close();
+        assetFile.delete();
+        new File(assetFile.getPath() + ".optimized").delete();
+    }
+
+    private static void writeBytes(final File file, final int length) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(new byte[length]);
+        }
+    }
+
+    private void setupImage(
+            final String mimeType, final int width, final int height, final int encodedBytes) {
+        bitmapFactoryMockedStatic
+                .when(() -> BitmapFactory.decodeFile(anyString(), any(BitmapFactory.Options.class)))
+                .thenAnswer(
+                        invocation -> {
+                            final BitmapFactory.Options options = invocation.getArgument(1);
+                            if (options.inJustDecodeBounds) {
+                                options.outMimeType = mimeType;
+                                options.outWidth = width;
+                                options.outHeight = height;
+                                return null;
+                            }
+                            final int sampleSize = Math.max(1, options.inSampleSize);
+                            when(mockBitmap.getWidth()).thenReturn(width / sampleSize);
+                            when(mockBitmap.getHeight()).thenReturn(height / sampleSize);
+                            return mockBitmap;
+                        });
+        when(mockScaledBitmap.getWidth()).thenReturn(2160);
+        when(mockScaledBitmap.getHeight()).thenReturn(1080);
+        final Answer<Boolean> compressAnswer =
+                invocation -> {
+                    final OutputStream outputStream = invocation.getArgument(2);
+                    outputStream.write(new byte[encodedBytes]);
+                    return true;
+                };
+        when(mockBitmap.compress(any(), anyInt(), any(OutputStream.class)))
+                .thenAnswer(compressAnswer);
+        when(mockScaledBitmap.compress(any(), anyInt(), any(OutputStream.class)))
+                .thenAnswer(compressAnswer);
+    }
+
+    @Test
+    public void test_optimize_When_Disabled_Then_AssetNotDecoded() {
+        // setup
+        imageAssetOptimizer.setEnabled(false);
+
+        // test
+        assertFalse(imageAssetOptimizer.optimize(assetFile, ASSET_URL));
+
+        // verify
+        bitmapFactoryMockedStatic.verify(
+                () -> BitmapFactory.decodeFile(anyString(), any(BitmapFactory.Options.class)),
+                never());
+        assertEquals(ASSET_BYTES, assetFile.length());
+    }
+
+    @Test
+    public void test_optimize_When_ImageLargerThanDisplay_Then_ImageDownscaled() {
+        // setup
+        setupImage("image/png", 8000, 4000, 10);
+
+        // test
+        assertTrue(imageAssetOptimizer.optimize(assetFile, ASSET_URL));
+
+        // verify decoded with a sample size, then scaled to fit the display
+        final List<BitmapFactory.Options> options = optionsMockedConstruction.constructed();
+        assertEquals(2, options.get(1).inSampleSize);
+        bitmapMockedStatic.verify(() -> Bitmap.createScaledBitmap(mockBitmap, 2160, 1080, true));
+        assertEquals(10, assetFile.length());
+
+        final List<CampaignImageAssetOptimizer.ImageOptimizationReport> reports =
+                imageAssetOptimizer.getRecentReports();
+        assertEquals(1, reports.size());
+        assertEquals(ASSET_URL, reports.get(0).getUrl());
+        assertEquals(8000, reports.get(0).getOriginalWidth());
+        assertEquals(4000, reports.get(0).getOriginalHeight());
+        assertEquals(2160, reports.get(0).getOptimizedWidth());
+        assertEquals(1080, reports.get(0).getOptimizedHeight());
+        assertEquals(ASSET_BYTES, reports.get(0).getOriginalBytes());
+        assertEquals(10, reports.get(0).getOptimizedBytes());
+        assertTrue(reports.get(0).getDecodeTimeMillis() >= 0);
+        assertTrue(reports.get(0).getEncodeTimeMillis() >= 0);
+    }
+
+    @Test
+    public void test_optimize_When_ImageFitsDisplay_Then_ImageNotReencoded() {
+        // setup
+        setupImage("image/jpeg", 1000, 500, 10);
+
+        // test
+        assertFalse(imageAssetOptimizer.optimize(assetFile, ASSET_URL));
+
+        // verify the image is only decoded to read its bounds
+        bitmapFactoryMockedStatic.verify(
+                () -> BitmapFactory.decodeFile(anyString(), any(BitmapFactory.Options.class)),
+                times(1));
+        verify(mockBitmap, never()).compress(any(), anyInt(), any(OutputStream.class));
+        assertEquals(ASSET_BYTES, assetFile.length());
+        assertTrue(imageAssetOptimizer.getRecentReports().isEmpty());
+    }
+
+    @Test
+    public void test_optimize_When_EncodedImageLarger_Then_OriginalKept() {
+        // setup
+        setupImage("image/png", 8000, 4000, 200);
+
+        // test
+        assertFalse(imageAssetOptimizer.optimize(assetFile, ASSET_URL));
+
+        // verify
+        assertEquals(ASSET_BYTES, assetFile.length());
+        assertFalse(new File(assetFile.getPath() + ".optimized").exists());
+        assertEquals(
+                ASSET_BYTES, imageAssetOptimizer.getRecentReports().get(0).getOptimizedBytes());
+    }
+
+    @Test
+    public void test_optimize_When_AnimatedGif_Then_AssetNotOptimized() {
+        // setup
+        setupImage("image/gif", 8000, 4000, 10);
+
+        // test
+        assertFalse(imageAssetOptimizer.optimize(assetFile, ASSET_URL));
+
+        // verify
+        assertEquals(ASSET_BYTES, assetFile.length());
+        assertTrue(imageAssetOptimizer.getRecentReports().isEmpty());
+    }
+
+    @Test
+    public void test_optimize_When_AssetNotAnImage_Then_AssetNotOptimized() {
+        // setup
+        setupImage(null, 0, 0, 10);
+
+        // test
+        assertFalse(imageAssetOptimizer.optimize(assetFile, ASSET_URL));
+
+        // verify
+        assertEquals(ASSET_BYTES, assetFile.length());
+        assertTrue(imageAssetOptimizer.getRecentReports().isEmpty());
+    }
+}
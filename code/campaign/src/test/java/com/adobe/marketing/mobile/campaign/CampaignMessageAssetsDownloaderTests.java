@@ -32,10 +32,14 @@ import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.services.ui.UIService;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -52,8 +56,7 @@ public class CampaignMessageAssetsDownloaderTests {
     private CampaignMessageAssetsDownloader campaignMessageAssetsDownloader;
     private ArrayList<String> assets;
     private String fakeMessageId;
-    private String expectedCacheLocation;
-    private String messageCacheDirString;
+    private String assetCacheName;
     private File cacheDir;
     private HashMap<String, String> metadataMap;
     private static final String messageId = "07a1c997-2450-46f0-a454-537906404124";
@@ -87,8 +90,7 @@ public class CampaignMessageAssetsDownloaderTests {
         assets = new ArrayList<>();
         assets.add(assetUrl);
         fakeMessageId = "d38a46f6-4f43-435a-a862-4038c27b90a1";
-        expectedCacheLocation = "cache/aepsdkcache/campaign/messages/" + fakeMessageId;
-        messageCacheDirString = "campaign/messages/" + fakeMessageId;
+        assetCacheName = CampaignAssetStore.ASSET_CACHE;
     }
 
     @After
@@ -171,19 +173,16 @@ public class CampaignMessageAssetsDownloaderTests {
                         // test
                         campaignMessageAssetsDownloader.downloadAssetCollection();
                         // verify
+                        // verify cleanup is left to the asset store
                         campaignUtilsMockedStatic.verify(
-                                () -> Utils.clearCachedAssetsNotInList(any(), any()));
-                        verify(mockCacheService, times(1))
-                                .get(eq(expectedCacheLocation), eq(assetUrl));
+                                () -> Utils.clearCachedMessagesNotInList(any(), any()), times(0));
+                        verify(mockCacheService, times(1)).get(eq(assetCacheName), eq(assetUrl));
                         verify(mockNetworkService, times(1))
                                 .connectAsync(
                                         any(NetworkRequest.class), any(NetworkCallback.class));
                         // verify asset cached
                         verify(mockCacheService, times(1))
-                                .set(
-                                        eq(messageCacheDirString),
-                                        eq(assetUrl),
-                                        any(CacheEntry.class));
+                                .set(eq(assetCacheName), eq(assetUrl), any(CacheEntry.class));
                     }
                 });
     }
@@ -215,27 +214,23 @@ public class CampaignMessageAssetsDownloaderTests {
                         // test
                         campaignMessageAssetsDownloader.downloadAssetCollection();
                         // verify
+                        // verify cleanup is left to the asset store
                         campaignUtilsMockedStatic.verify(
-                                () -> Utils.clearCachedAssetsNotInList(any(), any()));
-                        verify(mockCacheService, times(1))
-                                .get(eq(expectedCacheLocation), eq(assetUrl));
+                                () -> Utils.clearCachedMessagesNotInList(any(), any()), times(0));
+                        verify(mockCacheService, times(1)).get(eq(assetCacheName), eq(assetUrl));
                         verify(mockNetworkService, times(1))
                                 .connectAsync(
                                         any(NetworkRequest.class), any(NetworkCallback.class));
                         // verify asset not cached
                         verify(mockCacheService, times(0))
-                                .set(
-                                        eq(messageCacheDirString),
-                                        eq(assetUrl),
-                                        any(CacheEntry.class));
+                                .set(eq(assetCacheName), eq(assetUrl), any(CacheEntry.class));
                     }
                 });
     }
 
     @Test
-    public void
-            testDownloadAssetCollection_when_assetInCacheIsNotForActiveMessage_then_cachedAssetIsDeleted()
-                    throws Exception {
+    public void testDownloadAssetCollection_when_assetInMessageCache_then_cachedAssetIsNotDeleted()
+            throws Exception {
         // setup
         final File existingCacheDir =
                 new File(
@@ -268,14 +263,14 @@ public class CampaignMessageAssetsDownloaderTests {
                     // test
                     campaignMessageAssetsDownloader.downloadAssetCollection();
                     // verify
-                    verify(mockCacheService, times(1)).get(eq(expectedCacheLocation), eq(assetUrl));
+                    verify(mockCacheService, times(1)).get(eq(assetCacheName), eq(assetUrl));
                     verify(mockNetworkService, times(1))
                             .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
                     // verify new asset cached
                     verify(mockCacheService, times(1))
-                            .set(eq(messageCacheDirString), eq(assetUrl), any(CacheEntry.class));
-                    // verify non matching cached asset deleted
-                    assertEquals(false, existingCachedFile.exists());
+                            .set(eq(assetCacheName), eq(assetUrl), any(CacheEntry.class));
+                    // verify message cache is left to the asset store and rules downloader
+                    assertEquals(true, existingCachedFile.exists());
                 });
     }
 
@@ -302,20 +297,84 @@ public class CampaignMessageAssetsDownloaderTests {
                         // test
                         campaignMessageAssetsDownloader.downloadAssetCollection();
                         // verify
+                        // verify cleanup is left to the asset store
                         campaignUtilsMockedStatic.verify(
-                                () -> Utils.clearCachedAssetsNotInList(any(), any()));
-                        verify(mockCacheService, times(1))
-                                .get(eq(expectedCacheLocation), eq(assetUrl));
+                                () -> Utils.clearCachedMessagesNotInList(any(), any()), times(0));
+                        verify(mockCacheService, times(1)).get(eq(assetCacheName), eq(assetUrl));
                         verify(mockNetworkService, times(1))
                                 .connectAsync(
                                         any(NetworkRequest.class), any(NetworkCallback.class));
                         // verify asset not cached
                         verify(mockCacheService, times(0))
-                                .set(
-                                        eq(messageCacheDirString),
-                                        eq(assetUrl),
-                                        any(CacheEntry.class));
+                                .set(eq(assetCacheName), eq(assetUrl), any(CacheEntry.class));
                     }
                 });
     }
+
+    @Test
+    public void testDownloadAssetCollection_when_partialAssetExists_then_downloadResumed()
+            throws Exception {
+        // setup
+        final File partialAssetDir = new File("cache/aepsdkcache/campaign/partialAssets");
+        partialAssetDir.mkdirs();
+        final CampaignPartialAsset partialAsset =
+                new CampaignPartialAsset(partialAssetDir, assetUrl);
+        final HttpConnecting interruptedConnection = Mockito.mock(HttpConnecting.class);
+        when(interruptedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(interruptedConnection.getResponsePropertyValue(CampaignConstants.HTTP_HEADER_ETAG))
+                .thenReturn("\"a1b2c3\"");
+        when(interruptedConnection.getInputStream())
+                .thenReturn(
+                        new InputStream() {
+                            private boolean isFirstByteRead = false;
+
+                            @Override
+                            public int read() throws IOException {
+                                // connection drops after the first byte
+                                if (isFirstByteRead) {
+                                    throw new IOException("connection reset");
+                                }
+                                isFirstByteRead = true;
+                                return 'a';
+                            }
+                        });
+        partialAsset.write(interruptedConnection);
+
+        final List<NetworkRequest> networkRequests = new ArrayList<>();
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_PARTIAL);
+                    when(mockHttpConnection.getResponsePropertyValue(
+                                    CampaignConstants.HTTP_HEADER_CONTENT_RANGE))
+                            .thenReturn("bytes 1-8/9");
+                    when(mockHttpConnection.getInputStream())
+                            .thenReturn(
+                                    new ByteArrayInputStream(
+                                            "ssetData".getBytes(StandardCharsets.UTF_8)));
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                networkRequests.add(invocation.getArgument(0));
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+
+                    // test
+                    campaignMessageAssetsDownloader.downloadAssetCollection();
+                    // verify remaining bytes requested
+                    assertEquals(1, networkRequests.size());
+                    final Map<String, String> headers = networkRequests.get(0).getHeaders();
+                    assertEquals("bytes=1-", headers.get(CampaignConstants.HTTP_HEADER_RANGE));
+                    assertEquals("\"a1b2c3\"", headers.get(CampaignConstants.HTTP_HEADER_IF_RANGE));
+                    // verify completed asset cached and partial asset discarded
+                    verify(mockCacheService, times(1))
+                            .set(eq(assetCacheName), eq(assetUrl), any(CacheEntry.class));
+                    assertEquals(0, partialAsset.getDownloadedBytes());
+                });
+    }
 }
@@ -0,0 +1,178 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CampaignMessageDisplayCacheTests {
+    private static final String ASSET_URL = "https://www.adobe.com/hero.png";
+
+    private CampaignMessageDisplayCache displayCache;
+
+    @Before
+    public void setup() {
+        displayCache = new CampaignMessageDisplayCache(2);
+    }
+
+    private static CampaignMessageDisplayCache.ResolvedAssets createResolvedAssets(
+            final long assetGeneration) {
+        return new CampaignMessageDisplayCache.ResolvedAssets(
+                Collections.singletonMap(ASSET_URL, CampaignAssetStore.ASSET_CACHE),
+                Collections.singletonList(ASSET_URL),
+                assetGeneration,
+                true);
+    }
+
+    @Test
+    public void test_getHtmlContent_When_ContentCached_Then_ContentReturned() {
+        // setup
+        final int bundleVersion = displayCache.getBundleVersion();
+        displayCache.putHtmlContent("message1", bundleVersion, "<html></html>");
+
+        // test
+        final String htmlContent = displayCache.getHtmlContent("message1", bundleVersion);
+
+        // verify
+        assertEquals("<html></html>", htmlContent);
+        assertNull(displayCache.getHtmlContent("message2", bundleVersion));
+        assertEquals(1, displayCache.getHitCount());
+        assertEquals(1, displayCache.getMissCount());
+    }
+
+    @Test
+    public void test_invalidate_When_NewBundleRegistered_Then_EntriesDropped() {
+        // setup
+        final int bundleVersion = displayCache.getBundleVersion();
+        displayCache.putHtmlContent("message1", bundleVersion, "<html></html>");
+
+        // test
+        displayCache.invalidate();
+        displayCache.putHtmlContent("message2", bundleVersion, "<html></html>");
+
+        // verify content read from the previous bundle is not cached
+        assertNull(displayCache.getHtmlContent("message1", displayCache.getBundleVersion()));
+        assertNull(displayCache.getHtmlContent("message2", displayCache.getBundleVersion()));
+    }
+
+    @Test
+    public void test_putHtmlContent_When_MaxEntriesReached_Then_LeastRecentlyUsedDropped() {
+        // setup
+        final int bundleVersion = displayCache.getBundleVersion();
+        displayCache.putHtmlContent("message1", bundleVersion, "<html>1</html>");
+        displayCache.putHtmlContent("message2", bundleVersion, "<html>2</html>");
+        displayCache.getHtmlContent("message1", bundleVersion);
+
+        // test
+        displayCache.putHtmlContent("message3", bundleVersion, "<html>3</html>");
+
+        // verify
+        assertNotNull(displayCache.getHtmlContent("message1", bundleVersion));
+        assertNull(displayCache.getHtmlContent("message2", bundleVersion));
+        assertNotNull(displayCache.getHtmlContent("message3", bundleVersion));
+    }
+
+    @Test
+    public void test_getResolvedAssets_When_AssetRemovedSinceResolved_Then_NullReturned() {
+        // setup
+        final int bundleVersion = displayCache.getBundleVersion();
+        displayCache.putResolvedAssets("message1", bundleVersion, createResolvedAssets(3));
+
+        // test
+        final CampaignMessageDisplayCache.ResolvedAssets resolvedAssets =
+                displayCache.getResolvedAssets("message1", bundleVersion, 3);
+
+        // verify
+        assertNotNull(resolvedAssets);
+        assertEquals(
+                Collections.singletonMap(ASSET_URL, CampaignAssetStore.ASSET_CACHE),
+                resolvedAssets.getAssetMap());
+        assertNull(displayCache.getResolvedAssets("message1", bundleVersion, 4));
+    }
+
+    @Test
+    public void test_putPrecomputedAssets_When_MaxEntriesReached_Then_PrecomputedAssetsKept() {
+        // setup
+        final int bundleVersion = displayCache.getBundleVersion();
+        for (int i = 1; i <= 3; i++) {
+            displayCache.putPrecomputedAssets(
+                    "message" + i, bundleVersion, createResolvedAssets(3));
+        }
+
+        // test
+        displayCache.putHtmlContent("message4", bundleVersion, "<html>4</html>");
+        displayCache.putHtmlContent("message5", bundleVersion, "<html>5</html>");
+
+        // verify precomputed maps and shown messages do not evict each other
+        for (int i = 1; i <= 3; i++) {
+            assertNotNull(displayCache.getResolvedAssets("message" + i, bundleVersion, 3));
+        }
+        assertNotNull(displayCache.getHtmlContent("message4", bundleVersion));
+        assertNotNull(displayCache.getHtmlContent("message5", bundleVersion));
+    }
+
+    @Test
+    public void test_putPrecomputedAssets_When_AssetMapIncomplete_Then_NotKept() {
+        // setup
+        final int bundleVersion = displayCache.getBundleVersion();
+        final CampaignMessageDisplayCache.ResolvedAssets resolvedAssets =
+                new CampaignMessageDisplayCache.ResolvedAssets(
+                        Collections.singletonMap(ASSET_URL, CampaignAssetStore.MESSAGE_CACHE),
+                        Collections.emptyList(),
+                        3,
+                        false);
+
+        // test
+        displayCache.putPrecomputedAssets("message1", bundleVersion, resolvedAssets);
+
+        // verify
+        assertNull(displayCache.getResolvedAssets("message1", bundleVersion, 3));
+    }
+
+    @Test
+    public void test_invalidate_When_NewBundleRegistered_Then_PrecomputedAssetsDropped() {
+        // setup
+        final int bundleVersion = displayCache.getBundleVersion();
+        displayCache.putPrecomputedAssets("message1", bundleVersion, createResolvedAssets(3));
+
+        // test
+        displayCache.invalidate();
+
+        // verify
+        assertNull(displayCache.getResolvedAssets("message1", displayCache.getBundleVersion(), 3));
+    }
+
+    @Test
+    public void test_recordShowLatency_When_LimitReached_Then_OldestLatencyDropped() {
+        // test
+        for (int i = 0; i < 51; i++) {
+            displayCache.recordShowLatency("message" + i, i, i % 2 == 0);
+        }
+
+        // verify
+        final List<CampaignMessageDisplayCache.ShowLatency> showLatencies =
+                displayCache.getRecentShowLatencies();
+        assertEquals(50, showLatencies.size());
+        assertEquals("message1", showLatencies.get(0).getMessageId());
+        assertEquals(1, showLatencies.get(0).getLatencyMillis());
+        assertFalse(showLatencies.get(0).isAssetMapCached());
+        assertTrue(showLatencies.get(49).isAssetMapCached());
+    }
+}
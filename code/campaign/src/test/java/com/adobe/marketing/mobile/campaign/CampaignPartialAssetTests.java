@@ -0,0 +1,265 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.adobe.marketing.mobile.services.HttpConnecting;
+import com.adobe.marketing.mobile.util.StreamUtils;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CampaignPartialAssetTests {
+    private static final String ASSET_URL = "https://www.adobe.com/logo.png";
+    private static final String ETAG = "\"a1b2c3\"";
+
+    @Mock HttpConnecting mockHttpConnection;
+
+    private File partialAssetDir;
+    private CampaignPartialAsset partialAsset;
+
+    @Before
+    public void setup() {
+        partialAssetDir = new File("partialAssets");
+        partialAsset = new CampaignPartialAsset(partialAssetDir, ASSET_URL);
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = partialAssetDir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        partialAssetDir.delete();
+    }
+
+    private static InputStream interruptedStream(final String data) {
+        // returns the data and then fails as if the connection dropped
+        final byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        return new InputStream() {
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (position == bytes.length) {
+                    throw new IOException("connection reset");
+                }
+                return bytes[position++];
+            }
+        };
+    }
+
+    private void interruptDownload() {
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getResponsePropertyValue(CampaignConstants.HTTP_HEADER_ETAG))
+                .thenReturn(ETAG);
+        when(mockHttpConnection.getInputStream()).thenReturn(interruptedStream("asset"));
+        assertFalse(partialAsset.write(mockHttpConnection));
+    }
+
+    private String readAsset() throws IOException {
+        try (InputStream inputStream = partialAsset.open()) {
+            return StreamUtils.readAsString(inputStream);
+        }
+    }
+
+    @Test
+    public void test_write_When_DownloadCompleted_Then_AssetReadable() throws Exception {
+        // setup
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream("assetData".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        assertTrue(partialAsset.write(mockHttpConnection));
+
+        // verify
+        assertEquals("assetData", readAsset());
+        assertTrue(partialAsset.getResumeHeaders().isEmpty());
+    }
+
+    @Test
+    public void test_getResumeHeaders_When_DownloadInterrupted_Then_RangeRequested() {
+        // test
+        interruptDownload();
+
+        // verify
+        final Map<String, String> headers = partialAsset.getResumeHeaders();
+        assertEquals(5, partialAsset.getDownloadedBytes());
+        assertEquals("bytes=5-", headers.get(CampaignConstants.HTTP_HEADER_RANGE));
+        assertEquals(ETAG, headers.get(CampaignConstants.HTTP_HEADER_IF_RANGE));
+    }
+
+    @Test
+    public void test_getResumeHeaders_When_WeakETag_Then_LastModifiedUsed() {
+        // setup
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getResponsePropertyValue(CampaignConstants.HTTP_HEADER_ETAG))
+                .thenReturn("W/" + ETAG);
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_LAST_MODIFIED))
+                .thenReturn("Wed, 21 Oct 2015 07:28:00 GMT");
+        when(mockHttpConnection.getInputStream()).thenReturn(interruptedStream("asset"));
+
+        // test
+        partialAsset.write(mockHttpConnection);
+
+        // verify
+        assertEquals(
+                "Wed, 21 Oct 2015 07:28:00 GMT",
+                partialAsset.getResumeHeaders().get(CampaignConstants.HTTP_HEADER_IF_RANGE));
+    }
+
+    @Test
+    public void test_write_When_PartialContentResumesDownload_Then_DataAppended() throws Exception {
+        // setup
+        interruptDownload();
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_PARTIAL);
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_CONTENT_RANGE))
+                .thenReturn("bytes 5-8/9");
+        when(mockHttpConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream("Data".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        assertTrue(partialAsset.write(mockHttpConnection));
+
+        // verify
+        assertEquals("assetData", readAsset());
+    }
+
+    @Test
+    public void test_write_When_ContentRangeMismatch_Then_PartialAssetDiscarded() {
+        // setup
+        interruptDownload();
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_PARTIAL);
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_CONTENT_RANGE))
+                .thenReturn("bytes 2-8/9");
+
+        // test
+        assertFalse(partialAsset.write(mockHttpConnection));
+
+        // verify
+        assertEquals(0, partialAsset.getDownloadedBytes());
+        assertTrue(partialAsset.getResumeHeaders().isEmpty());
+    }
+
+    @Test
+    public void test_write_When_FullResponseAfterInterruption_Then_PartialAssetReplaced()
+            throws Exception {
+        // setup
+        interruptDownload();
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream("newAsset".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        assertTrue(partialAsset.write(mockHttpConnection));
+
+        // verify
+        assertEquals("newAsset", readAsset());
+    }
+
+    @Test
+    public void test_write_When_BodyShorterThanContentLength_Then_DownloadNotCompleted() {
+        // setup
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getResponsePropertyValue(CampaignConstants.HTTP_HEADER_ETAG))
+                .thenReturn(ETAG);
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_CONTENT_LENGTH))
+                .thenReturn("9");
+        when(mockHttpConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream("asset".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        assertFalse(partialAsset.write(mockHttpConnection));
+
+        // verify the truncated download is kept to be resumed
+        assertEquals(5, partialAsset.getDownloadedBytes());
+        assertEquals(
+                "bytes=5-",
+                partialAsset.getResumeHeaders().get(CampaignConstants.HTTP_HEADER_RANGE));
+    }
+
+    @Test
+    public void test_write_When_ResumedBodyShorterThanCompleteLength_Then_DownloadNotCompleted() {
+        // setup
+        interruptDownload();
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_PARTIAL);
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_CONTENT_RANGE))
+                .thenReturn("bytes 5-8/9");
+        when(mockHttpConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream("Da".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        assertFalse(partialAsset.write(mockHttpConnection));
+
+        // verify
+        assertEquals(7, partialAsset.getDownloadedBytes());
+    }
+
+    @Test
+    public void test_write_When_BodyLongerThanCompleteLength_Then_PartialAssetDiscarded() {
+        // setup
+        interruptDownload();
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_PARTIAL);
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_CONTENT_RANGE))
+                .thenReturn("bytes 5-8/9");
+        when(mockHttpConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream("DataData".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        assertFalse(partialAsset.write(mockHttpConnection));
+
+        // verify
+        assertEquals(0, partialAsset.getDownloadedBytes());
+    }
+
+    @Test
+    public void test_write_When_CompleteLengthUnknown_Then_DownloadCompleted() throws Exception {
+        // setup
+        interruptDownload();
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_PARTIAL);
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_CONTENT_RANGE))
+                .thenReturn("bytes 5-8/*");
+        when(mockHttpConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream("Data".getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        assertTrue(partialAsset.write(mockHttpConnection));
+
+        // verify
+        assertEquals("assetData", readAsset());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CampaignRetryPolicyTests {
+    private FakeNamedCollection fakeNamedCollection;
+    private CampaignRetryPolicy retryPolicy;
+
+    // always picks the upper bound of the jittered retry interval
+    private final Random maxJitter =
+            new Random() {
+                @Override
+                public int nextInt(final int bound) {
+                    return bound - 1;
+                }
+            };
+
+    @Before
+    public void setup() {
+        fakeNamedCollection = new FakeNamedCollection();
+        retryPolicy = new CampaignRetryPolicy(fakeNamedCollection, maxJitter);
+    }
+
+    @Test
+    public void test_nextRetryIntervalSeconds_When_AttemptsFail_Then_IntervalGrowsUpToCap() {
+        // test
+        for (int i = 0; i < 10; i++) {
+            retryPolicy.recordFailure(-1);
+            retryPolicy.nextRetryIntervalSeconds();
+        }
+
+        // verify
+        assertEquals(
+                Arrays.asList(5, 10, 20, 40, 80, 160, 320, 600, 600, 600),
+                retryPolicy.getRetrySchedule());
+    }
+
+    @Test
+    public void test_nextRetryIntervalSeconds_When_Jittered_Then_IntervalWithinBounds() {
+        // setup
+        final CampaignRetryPolicy jitteredPolicy =
+                new CampaignRetryPolicy(fakeNamedCollection, new Random(42));
+
+        for (int i = 0; i < 50; i++) {
+            // test
+            jitteredPolicy.recordFailure(-1);
+            final int retryInterval = jitteredPolicy.nextRetryIntervalSeconds();
+
+            // verify
+            assertTrue(retryInterval >= CampaignConstants.HIT_RETRY_MIN_INTERVAL_SECONDS);
+            assertTrue(retryInterval <= CampaignConstants.HIT_RETRY_MAX_INTERVAL_SECONDS);
+        }
+    }
+
+    @Test
+    public void test_recordFailure_When_PolicyRecreated_Then_RetryStateRestored() {
+        // setup
+        retryPolicy.recordFailure(-1);
+        retryPolicy.recordFailure(-1);
+        retryPolicy.recordFailure(300);
+
+        // test
+        final CampaignRetryPolicy restoredPolicy =
+                new CampaignRetryPolicy(fakeNamedCollection, maxJitter);
+
+        // verify
+        assertEquals(3, restoredPolicy.getFailedAttempts());
+        final int retryInterval = restoredPolicy.nextRetryIntervalSeconds();
+        assertTrue(retryInterval > 295 && retryInterval <= 300);
+    }
+
+    @Test
+    public void test_recordSuccess_When_AttemptsFailed_Then_BackoffReset() {
+        // setup
+        retryPolicy.recordFailure(-1);
+        retryPolicy.recordFailure(-1);
+
+        // test
+        retryPolicy.recordSuccess();
+
+        // verify
+        assertEquals(0, retryPolicy.getFailedAttempts());
+        assertEquals(5, retryPolicy.nextRetryIntervalSeconds());
+        assertEquals(
+                0, new CampaignRetryPolicy(fakeNamedCollection, maxJitter).getFailedAttempts());
+    }
+
+    @Test
+    public void test_clear_When_AttemptsFailed_Then_RetryStateForgotten() {
+        // setup
+        retryPolicy.recordFailure(-1);
+        retryPolicy.nextRetryIntervalSeconds();
+        retryPolicy.recordFailure(-1);
+
+        // test
+        retryPolicy.clear();
+
+        // verify
+        assertEquals(0, retryPolicy.getFailedAttempts());
+        assertTrue(retryPolicy.getRetrySchedule().isEmpty());
+        assertEquals(5, retryPolicy.nextRetryIntervalSeconds());
+    }
+
+    @Test
+    public void test_parseRetryAfter() {
+        // setup
+        final long currentTimeMillis = 1_700_000_000_000L;
+        final SimpleDateFormat dateFormat =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final String retryDate = dateFormat.format(new Date(currentTimeMillis + 90_000));
+
+        // verify
+        assertEquals(120, CampaignRetryPolicy.parseRetryAfter("120", currentTimeMillis));
+        assertEquals(90, CampaignRetryPolicy.parseRetryAfter(retryDate, currentTimeMillis));
+        assertEquals(-1, CampaignRetryPolicy.parseRetryAfter("soon", currentTimeMillis));
+        assertEquals(-1, CampaignRetryPolicy.parseRetryAfter("-5", currentTimeMillis));
+        assertEquals(-1, CampaignRetryPolicy.parseRetryAfter(null, currentTimeMillis));
+    }
+}
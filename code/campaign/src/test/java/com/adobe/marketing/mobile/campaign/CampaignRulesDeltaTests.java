@@ -0,0 +1,153 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class CampaignRulesDeltaTests {
+
+    private static JSONObject createRule(final String messageId, final String htmlFile)
+            throws JSONException {
+        final JSONObject detail = new JSONObject();
+        detail.put("template", "fullscreen");
+        detail.put("html", htmlFile);
+        final JSONObject consequence = new JSONObject();
+        consequence.put("id", messageId);
+        consequence.put("type", "iam");
+        consequence.put("detail", detail);
+        final JSONObject rule = new JSONObject();
+        rule.put("condition", new JSONObject());
+        rule.put("consequences", new JSONArray().put(consequence));
+        return rule;
+    }
+
+    private static String createRulesJson(final JSONObject... rules) throws JSONException {
+        final JSONObject rulesJson = new JSONObject();
+        rulesJson.put("version", 1);
+        rulesJson.put("rules", new JSONArray(Arrays.asList(rules)));
+        return rulesJson.toString();
+    }
+
+    private static List<String> getMessageIds(final String rulesJsonString) throws JSONException {
+        final List<String> messageIds = new ArrayList<>();
+        final JSONArray rules = new JSONObject(rulesJsonString).getJSONArray("rules");
+        for (int i = 0; i < rules.length(); i++) {
+            messageIds.add(
+                    rules.getJSONObject(i)
+                            .getJSONArray("consequences")
+                            .getJSONObject(0)
+                            .getString("id"));
+        }
+        return messageIds;
+    }
+
+    @Test
+    public void test_fromJsonString_When_InvalidJson_Then_ReturnsNull() {
+        assertNull(CampaignRulesDelta.fromJsonString("not json"));
+        assertNull(CampaignRulesDelta.fromJsonString(null));
+    }
+
+    @Test
+    public void test_fromJsonString_When_ValidJson_Then_ReturnsUpdatedAndRemovedMessageIds()
+            throws JSONException {
+        // setup
+        final JSONObject deltaJson = new JSONObject();
+        deltaJson.put("version", 1);
+        deltaJson.put(
+                "rules",
+                new JSONArray().put(createRule("2", "2.html")).put(createRule("4", "4.html")));
+        deltaJson.put("removed", new JSONArray().put("3"));
+
+        // test
+        final CampaignRulesDelta rulesDelta =
+                CampaignRulesDelta.fromJsonString(deltaJson.toString());
+
+        // verify
+        assertNotNull(rulesDelta);
+        assertEquals(new HashSet<>(Arrays.asList("2", "4")), rulesDelta.getUpdatedMessageIds());
+        assertEquals(new HashSet<>(Arrays.asList("3")), rulesDelta.getRemovedMessageIds());
+    }
+
+    @Test
+    public void test_apply_When_MessagesAddedChangedAndRemoved_Then_RulesPatched()
+            throws JSONException {
+        // setup
+        final String cachedRules =
+                createRulesJson(
+                        createRule("1", "1.html"),
+                        createRule("2", "2.html"),
+                        createRule("3", "3.html"));
+        final JSONObject deltaJson = new JSONObject();
+        deltaJson.put(
+                "rules",
+                new JSONArray().put(createRule("2", "2-v2.html")).put(createRule("4", "4.html")));
+        deltaJson.put("removed", new JSONArray().put("3"));
+        final CampaignRulesDelta rulesDelta =
+                CampaignRulesDelta.fromJsonString(deltaJson.toString());
+        final Set<String> obsoleteFiles = new HashSet<>();
+
+        // test
+        final JSONObject patchedRules = rulesDelta.apply(cachedRules, obsoleteFiles);
+
+        // verify
+        assertNotNull(patchedRules);
+        assertEquals(Arrays.asList("1", "2", "4"), getMessageIds(patchedRules.toString()));
+        assertEquals(1, patchedRules.getInt("version"));
+        assertEquals(new HashSet<>(Arrays.asList("2.html", "3.html")), obsoleteFiles);
+    }
+
+    @Test
+    public void test_apply_When_HtmlFileStillReferenced_Then_HtmlFileNotObsolete()
+            throws JSONException {
+        // setup
+        final String cachedRules =
+                createRulesJson(createRule("1", "shared.html"), createRule("2", "shared.html"));
+        final JSONObject deltaJson = new JSONObject();
+        deltaJson.put("removed", new JSONArray().put("2"));
+        final CampaignRulesDelta rulesDelta =
+                CampaignRulesDelta.fromJsonString(deltaJson.toString());
+        final Set<String> obsoleteFiles = new HashSet<>();
+
+        // test
+        final JSONObject patchedRules = rulesDelta.apply(cachedRules, obsoleteFiles);
+
+        // verify
+        assertEquals(Arrays.asList("1"), getMessageIds(patchedRules.toString()));
+        assertTrue(obsoleteFiles.isEmpty());
+    }
+
+    @Test
+    public void test_apply_When_CachedRulesInvalid_Then_ReturnsNull() throws JSONException {
+        // setup
+        final JSONObject deltaJson = new JSONObject();
+        deltaJson.put("rules", new JSONArray().put(createRule("1", "1.html")));
+        final CampaignRulesDelta rulesDelta =
+                CampaignRulesDelta.fromJsonString(deltaJson.toString());
+
+        // test
+        assertNull(rulesDelta.apply("{}", new HashSet<>()));
+        assertNull(rulesDelta.apply(null, new HashSet<>()));
+    }
+}
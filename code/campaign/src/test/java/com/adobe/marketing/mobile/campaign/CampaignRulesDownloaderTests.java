@@ -17,14 +17,19 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.Context;
+import android.content.res.AssetManager;
 import com.adobe.marketing.mobile.ExtensionApi;
+import com.adobe.marketing.mobile.internal.util.StringEncoder;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRule;
 import com.adobe.marketing.mobile.launch.rulesengine.LaunchRulesEngine;
 import com.adobe.marketing.mobile.launch.rulesengine.RuleConsequence;
+import com.adobe.marketing.mobile.services.AppContextService;
 import com.adobe.marketing.mobile.services.DeviceInforming;
 import com.adobe.marketing.mobile.services.HttpConnecting;
 import com.adobe.marketing.mobile.services.NetworkCallback;
@@ -32,17 +37,34 @@ import com.adobe.marketing.mobile.services.NetworkRequest;
 import com.adobe.marketing.mobile.services.Networking;
 import com.adobe.marketing.mobile.services.ServiceProvider;
 import com.adobe.marketing.mobile.services.caching.CacheEntry;
+import com.adobe.marketing.mobile.services.caching.CacheExpiry;
 import com.adobe.marketing.mobile.services.caching.CacheResult;
 import com.adobe.marketing.mobile.services.caching.CacheService;
 import com.adobe.marketing.mobile.services.ui.UIService;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -91,9 +113,11 @@ public class CampaignRulesDownloaderTests {
     @Mock UIService mockUIService;
     @Mock CacheService mockCacheService;
     @Mock CacheResult mockCacheResult;
+    @Mock CacheResult mockRulesJsonCacheResult;
     @Mock DeviceInforming mockDeviceInfoService;
     @Mock Networking mockNetworkService;
     @Mock HttpConnecting mockHttpConnection;
+    @Mock HttpConnecting mockDeltaHttpConnection;
     @Mock LaunchRule mockLaunchRule;
     @Mock RuleConsequence mockRuleConsequence;
 
@@ -163,6 +187,81 @@ public class CampaignRulesDownloaderTests {
         file.delete(); // delete file or empty directory
     }
 
+    private static byte[] createZip(final Map<String, byte[]> entries) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+                zipOutputStream.write(entry.getValue());
+                zipOutputStream.closeEntry();
+            }
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static boolean getResult(final Future<Boolean> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException | InterruptedException e) {
+            fail(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sets up the mocked network service as a rules server which responds with {@code deltaBundle}
+     * when a bundle version is sent in the request and with {@code fullBundle} otherwise.
+     */
+    private void setupStandInRulesServer(
+            final List<NetworkRequest> networkRequests,
+            final byte[] fullBundle,
+            final byte[] deltaBundle) {
+        when(mockHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockHttpConnection.getInputStream())
+                .thenAnswer(invocation -> new ByteArrayInputStream(fullBundle));
+        when(mockHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_BUNDLE_VERSION))
+                .thenReturn("1");
+        when(mockDeltaHttpConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(mockDeltaHttpConnection.getInputStream())
+                .thenAnswer(invocation -> new ByteArrayInputStream(deltaBundle));
+        when(mockDeltaHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_BUNDLE_VERSION))
+                .thenReturn("2");
+        when(mockDeltaHttpConnection.getResponsePropertyValue(
+                        CampaignConstants.HTTP_HEADER_BUNDLE_TYPE))
+                .thenReturn(CampaignConstants.RULES_BUNDLE_TYPE_DELTA);
+        doAnswer(
+                        (Answer<Void>)
+                                invocation -> {
+                                    final NetworkRequest networkRequest = invocation.getArgument(0);
+                                    networkRequests.add(networkRequest);
+                                    NetworkCallback callback = invocation.getArgument(1);
+                                    callback.call(
+                                            networkRequest
+                                                            .getHeaders()
+                                                            .containsKey(
+                                                                    CampaignConstants
+                                                                            .HTTP_HEADER_BUNDLE_VERSION)
+                                                    ? mockDeltaHttpConnection
+                                                    : mockHttpConnection);
+                                    return null;
+                                })
+                .when(mockNetworkService)
+                .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+    }
+
+    private static byte[] readResource(final File file) {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            fail(e.getMessage());
+            return null;
+        }
+    }
+
     private void setupServiceProviderMockAndRunTest(
             boolean networkServiceNull, Runnable testRunnable) {
         cacheDir = new File("cache");
@@ -305,8 +404,9 @@ public class CampaignRulesDownloaderTests {
                                                     + CampaignConstants.RULES_CACHE_FOLDER),
                                     eq("rules.json"),
                                     any(CacheEntry.class));
-                    // verify rules json is retrieved to be loaded into the rules engine
-                    verify(mockCacheService, times(1))
+                    // verify rules json is not read back from the cache to be loaded into the
+                    // rules engine
+                    verify(mockCacheService, times(0))
                             .get(
                                     eq(
                                             CampaignConstants.CACHE_BASE_DIR
@@ -389,8 +489,9 @@ public class CampaignRulesDownloaderTests {
                                                     + CampaignConstants.RULES_CACHE_FOLDER),
                                     eq("rules.json"),
                                     any(CacheEntry.class));
-                    // verify rules json is retrieved to be loaded into the rules engine
-                    verify(mockCacheService, times(1))
+                    // verify rules json is not read back from the cache to be loaded into the
+                    // rules engine
+                    verify(mockCacheService, times(0))
                             .get(
                                     eq(
                                             CampaignConstants.CACHE_BASE_DIR
@@ -464,8 +565,9 @@ public class CampaignRulesDownloaderTests {
                                                     + CampaignConstants.RULES_CACHE_FOLDER),
                                     eq("rules.json"),
                                     any(CacheEntry.class));
-                    // verify rules json is retrieved to be loaded into the rules engine
-                    verify(mockCacheService, times(1))
+                    // verify rules json is not read back from the cache to be loaded into the
+                    // rules engine
+                    verify(mockCacheService, times(0))
                             .get(
                                     eq(
                                             CampaignConstants.CACHE_BASE_DIR
@@ -489,16 +591,12 @@ public class CampaignRulesDownloaderTests {
         // setup
         ArgumentCaptor<NetworkRequest> networkRequestArgumentCaptor =
                 ArgumentCaptor.forClass(NetworkRequest.class);
-        // setup cached rules zip
-        when(mockCacheService.get(
-                        eq(
-                                CampaignConstants.CACHE_BASE_DIR
-                                        + File.separator
-                                        + CampaignConstants.RULES_CACHE_FOLDER),
-                        eq(CampaignConstants.ZIP_HANDLE)))
-                .thenReturn(mockCacheResult);
         // setup encoded linkage fields string
         String linkageFields = "dXNlck5hbWU6dGVzdFVzZXI="; // userName:testUser
+        // setup cached rules zip in the rules cache partition for the linkage fields
+        final String partitionRulesCache = CampaignRulesDownloader.getRulesCacheName(linkageFields);
+        when(mockCacheService.get(eq(partitionRulesCache), eq(CampaignConstants.ZIP_HANDLE)))
+                .thenReturn(mockCacheResult);
 
         setupServiceProviderMockAndRunTest(
                 false,
@@ -541,22 +639,14 @@ public class CampaignRulesDownloaderTests {
                     assertEquals(
                             linkageFields,
                             headers.get(CampaignConstants.LINKAGE_FIELD_NETWORK_HEADER));
-                    // verify extracted rules json is cached
-                    verify(mockCacheService, times(1))
-                            .set(
-                                    eq(
-                                            CampaignConstants.CACHE_BASE_DIR
-                                                    + File.separator
-                                                    + CampaignConstants.RULES_CACHE_FOLDER),
-                                    eq("rules.json"),
-                                    any(CacheEntry.class));
-                    // verify rules json is retrieved to be loaded into the rules engine
+                    // verify extracted rules json is cached in the rules cache partition
                     verify(mockCacheService, times(1))
+                            .set(eq(partitionRulesCache), eq("rules.json"), any(CacheEntry.class));
+                    // verify rules json is not read back from the cache to be loaded into the
+                    // rules engine
+                    verify(mockCacheService, times(0))
                             .get(
-                                    eq(
-                                            CampaignConstants.CACHE_BASE_DIR
-                                                    + File.separator
-                                                    + CampaignConstants.RULES_CACHE_FOLDER),
+                                    eq(partitionRulesCache),
                                     eq(CampaignConstants.RULES_JSON_FILE_NAME));
                     // verify rules remote url added to named collection
                     assertEquals(
@@ -757,78 +847,1517 @@ public class CampaignRulesDownloaderTests {
                 });
     }
 
-    // =================================================================================================================
-    //  void cacheRemoteAssets(final List<LaunchRule> campaignRules)
-    // =================================================================================================================
     @Test
-    public void test_cacheRemoteAssets_When_campaignRulesAreEmpty_Then_AssetsNotDownloaded() {
+    public void test_loadRulesFromUrl_When_ZipContainsMessageFiles_Then_EntriesStreamedIntoCache() {
         // setup
-        try (MockedConstruction mockConstruction =
-                mockConstruction(CampaignMessageAssetsDownloader.class)) {
-            setupServiceProviderMockAndRunTest(
-                    false,
-                    () -> {
-                        List<LaunchRule> campaignRules = new ArrayList<>();
+        ArgumentCaptor<CacheEntry> cacheEntryArgumentCaptor =
+                ArgumentCaptor.forClass(CacheEntry.class);
+        final byte[] htmlContent = "<html>test</html>".getBytes(StandardCharsets.UTF_8);
+        final Map<String, byte[]> cachedFiles = new HashMap<>();
 
-                        // test
-                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    final byte[] rulesJsonContent = readResource(ruleJsonFile);
+                    final Map<String, byte[]> zipEntries = new LinkedHashMap<>();
+                    zipEntries.put("rules.json", rulesJsonContent);
+                    zipEntries.put("assets/happy_test.html", htmlContent);
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    when(mockHttpConnection.getInputStream())
+                            .thenReturn(new ByteArrayInputStream(createZip(zipEntries)));
+                    when(mockHttpConnection.getResponsePropertyValue(
+                                    CampaignConstants.HTTP_HEADER_ETAG))
+                            .thenReturn(ETAG);
+                    // consume each cached entry like the cache service would
+                    doAnswer(
+                                    invocation -> {
+                                        final InputStream data =
+                                                ((CacheEntry) invocation.getArgument(2)).getData();
+                                        final ByteArrayOutputStream cachedData =
+                                                new ByteArrayOutputStream();
+                                        int b;
+                                        while ((b = data.read()) != -1) {
+                                            cachedData.write(b);
+                                        }
+                                        cachedFiles.put(
+                                                invocation.getArgument(1),
+                                                cachedData.toByteArray());
+                                        return true;
+                                    })
+                            .when(mockCacheService)
+                            .set(anyString(), anyString(), any(CacheEntry.class));
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
 
-                        // verify no CampaignMessageAssetsDownloader instance instantiated
-                        assertEquals(0, mockConstruction.constructed().size());
-                    });
-        }
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+
+                    // verify each zip entry is cached using the entry file name
+                    verify(mockCacheService, times(1))
+                            .set(
+                                    eq(
+                                            CampaignConstants.CACHE_BASE_DIR
+                                                    + File.separator
+                                                    + CampaignConstants.RULES_CACHE_FOLDER),
+                                    eq("rules.json"),
+                                    any(CacheEntry.class));
+                    verify(mockCacheService, times(1))
+                            .set(
+                                    eq(
+                                            CampaignConstants.CACHE_BASE_DIR
+                                                    + File.separator
+                                                    + CampaignConstants.RULES_CACHE_FOLDER),
+                                    eq("happy_test.html"),
+                                    any(CacheEntry.class));
+                    // verify zip handle is cached with the response metadata
+                    verify(mockCacheService, times(1))
+                            .set(
+                                    eq(
+                                            CampaignConstants.CACHE_BASE_DIR
+                                                    + File.separator
+                                                    + CampaignConstants.RULES_CACHE_FOLDER),
+                                    eq(CampaignConstants.ZIP_HANDLE),
+                                    cacheEntryArgumentCaptor.capture());
+                    assertEquals(
+                            ETAG,
+                            cacheEntryArgumentCaptor
+                                    .getValue()
+                                    .getMetadata()
+                                    .get(CampaignConstants.HTTP_HEADER_ETAG));
+                    // verify rules json is cached minified and no rules snapshot is cached
+                    final byte[] minifiedRulesJson;
+                    try {
+                        minifiedRulesJson =
+                                new JSONObject(new String(rulesJsonContent, StandardCharsets.UTF_8))
+                                        .toString()
+                                        .getBytes(StandardCharsets.UTF_8);
+                    } catch (JSONException e) {
+                        fail(e.getMessage());
+                        return;
+                    }
+                    assertArrayEquals(minifiedRulesJson, cachedFiles.get("rules.json"));
+                    assertTrue(minifiedRulesJson.length < rulesJsonContent.length);
+                    assertFalse(
+                            cachedFiles.containsKey(CampaignConstants.RULES_SNAPSHOT_FILE_NAME));
+                    // verify no temporary files are created in the cache directory
+                    assertFalse(new File(cacheDir, "campaign_temp").exists());
+                    // verify bytes written contains the size of each cached entry
+                    assertEquals(
+                            minifiedRulesJson.length + htmlContent.length,
+                            campaignRulesDownloader.getLastBundleBytesWritten());
+                    // verify rules loaded into the rules engine
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                });
     }
 
     @Test
-    public void test_cacheRemoteAssets_When_campaignRulesValid_Then_AssetsDownloaded() {
+    public void test_loadRulesFromUrl_When_ZipMissingRulesJson_Then_NoRulesLoaded() {
         // setup
-        try (MockedConstruction mockConstruction =
-                mockConstruction(CampaignMessageAssetsDownloader.class)) {
-            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
-            ruleConsequenceList.add(mockRuleConsequence);
-            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+        final Map<String, byte[]> zipEntries = new LinkedHashMap<>();
+        zipEntries.put("happy_test.html", "<html>test</html>".getBytes(StandardCharsets.UTF_8));
 
-            setupServiceProviderMockAndRunTest(
-                    false,
-                    () -> {
-                        List<LaunchRule> campaignRules = new ArrayList<>();
-                        campaignRules.add(mockLaunchRule);
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    when(mockHttpConnection.getInputStream())
+                            .thenReturn(new ByteArrayInputStream(createZip(zipEntries)));
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
 
-                        // test
-                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
 
-                        // verify
-                        CampaignMessageAssetsDownloader mockCampaignMessageAssetsDownloader =
-                                (CampaignMessageAssetsDownloader)
-                                        mockConstruction.constructed().get(0);
-                        verify(mockCampaignMessageAssetsDownloader, times(1))
-                                .downloadAssetCollection();
-                    });
-        }
+                    // verify zip handle is not cached
+                    verify(mockCacheService, times(0))
+                            .set(
+                                    eq(
+                                            CampaignConstants.CACHE_BASE_DIR
+                                                    + File.separator
+                                                    + CampaignConstants.RULES_CACHE_FOLDER),
+                                    eq(CampaignConstants.ZIP_HANDLE),
+                                    any(CacheEntry.class));
+                    // verify rules remote url not added to named collection
+                    assertEquals(
+                            "",
+                            fakeNamedCollection.getString(
+                                    CampaignConstants.CAMPAIGN_NAMED_COLLECTION_REMOTES_URL_KEY,
+                                    ""));
+                    // verify no rules loaded into the rules engine
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+                });
     }
 
     @Test
-    public void test_cacheRemoteAssets_When_campaignRuleAssetsEmpty_Then_AssetsNotDownloaded() {
+    public void test_loadRulesFromUrl_When_BundleExtractionFails_Then_CachedBundleNotLoaded() {
         // setup
-        detailMap.put("remoteAssets", new ArrayList<>());
-        when(mockRuleConsequence.getDetail()).thenReturn(detailMap);
-        try (MockedConstruction mockConstruction =
-                mockConstruction(CampaignMessageAssetsDownloader.class)) {
-            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
-            ruleConsequenceList.add(mockRuleConsequence);
-            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+        final FakeCacheService fakeCacheService = new FakeCacheService();
+        final String rulesCache =
+                CampaignConstants.CACHE_BASE_DIR
+                        + File.separator
+                        + CampaignConstants.RULES_CACHE_FOLDER;
+        // previously cached complete rules bundle
+        fakeCacheService.set(
+                rulesCache,
+                CampaignConstants.ZIP_HANDLE,
+                new CacheEntry(
+                        new ByteArrayInputStream(new byte[0]),
+                        CacheExpiry.never(),
+                        new HashMap<>()));
+        fakeCacheService.set(
+                rulesCache,
+                CampaignConstants.RULES_JSON_FILE_NAME,
+                new CacheEntry(
+                        new ByteArrayInputStream(readResource(ruleJsonFile)),
+                        CacheExpiry.never(),
+                        null));
+        final Map<String, byte[]> zipEntries = new LinkedHashMap<>();
+        zipEntries.put("happy_test.html", "<html>test</html>".getBytes(StandardCharsets.UTF_8));
 
-            setupServiceProviderMockAndRunTest(
-                    false,
-                    () -> {
-                        List<LaunchRule> campaignRules = new ArrayList<>();
-                        campaignRules.add(mockLaunchRule);
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    when(mockHttpConnection.getInputStream())
+                            .thenReturn(new ByteArrayInputStream(createZip(zipEntries)));
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
 
-                        // test
-                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
 
-                        // verify no CampaignMessageAssetsDownloader instance instantiated
-                        assertEquals(0, mockConstruction.constructed().size());
+                    // verify the partially replaced bundle is no longer marked as complete
+                    assertNotNull(fakeCacheService.getStoredData(rulesCache, "happy_test.html"));
+                    assertNull(
+                            fakeCacheService.getStoredData(
+                                    rulesCache, CampaignConstants.ZIP_HANDLE));
+                    // verify the partially replaced bundle is not loaded on the next launch
+                    assertFalse(campaignRulesDownloader.loadCachedRules());
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+                });
+    }
+
+    @Test
+    public void test_loadRulesFromUrl_When_DeltaBundleServed_Then_CachedRulesPatched()
+            throws JSONException {
+        // setup
+        final FakeCacheService fakeCacheService = new FakeCacheService();
+        final String rulesCache =
+                CampaignConstants.CACHE_BASE_DIR
+                        + File.separator
+                        + CampaignConstants.RULES_CACHE_FOLDER;
+        final List<NetworkRequest> networkRequests = new ArrayList<>();
+        // full bundle containing two messages
+        final String rulesJsonString =
+                new String(readResource(ruleJsonFile), StandardCharsets.UTF_8);
+        final JSONArray rules = new JSONObject(rulesJsonString).getJSONArray("rules");
+        final Map<String, byte[]> fullBundleEntries = new LinkedHashMap<>();
+        fullBundleEntries.put("rules.json", rulesJsonString.getBytes(StandardCharsets.UTF_8));
+        fullBundleEntries.put(
+                "happy_test.html", readResource(TestUtils.getResource("happy_test.html")));
+        final byte[] fullBundle = createZip(fullBundleEntries);
+        // delta bundle changing the second message and removing the first message
+        final JSONObject changedRule = new JSONObject(rules.getJSONObject(1).toString());
+        changedRule
+                .getJSONArray("consequences")
+                .getJSONObject(0)
+                .getJSONObject("detail")
+                .put("title", "Updated title");
+        final String removedMessageId =
+                rules.getJSONObject(0)
+                        .getJSONArray("consequences")
+                        .getJSONObject(0)
+                        .getString("id");
+        final JSONObject deltaJson = new JSONObject();
+        deltaJson.put("version", 1);
+        deltaJson.put("rules", new JSONArray().put(changedRule));
+        deltaJson.put("removed", new JSONArray().put(removedMessageId));
+        final Map<String, byte[]> deltaBundleEntries = new LinkedHashMap<>();
+        deltaBundleEntries.put("delta.json", deltaJson.toString().getBytes(StandardCharsets.UTF_8));
+        final byte[] deltaBundle = createZip(deltaBundleEntries);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+                    setupStandInRulesServer(networkRequests, fullBundle, deltaBundle);
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+                    final long fullBundleBytesWritten =
+                            campaignRulesDownloader.getLastBundleBytesWritten();
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+                    final long deltaBundleBytesWritten =
+                            campaignRulesDownloader.getLastBundleBytesWritten();
+
+                    // verify the cached bundle version is sent once a bundle is cached
+                    assertEquals(2, networkRequests.size());
+                    assertNull(
+                            networkRequests
+                                    .get(0)
+                                    .getHeaders()
+                                    .get(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION));
+                    assertEquals(
+                            "1",
+                            networkRequests
+                                    .get(1)
+                                    .getHeaders()
+                                    .get(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION));
+                    // verify the delta bundle writes less data than the full bundle
+                    assertTrue(deltaBundleBytesWritten < fullBundleBytesWritten);
+                    // verify the cached rules are patched
+                    try {
+                        final JSONArray patchedRules =
+                                new JSONObject(
+                                                new String(
+                                                        fakeCacheService.getStoredData(
+                                                                rulesCache,
+                                                                CampaignConstants
+                                                                        .RULES_JSON_FILE_NAME),
+                                                        StandardCharsets.UTF_8))
+                                        .getJSONArray("rules");
+                        assertEquals(1, patchedRules.length());
+                        assertEquals(
+                                "Updated title",
+                                patchedRules
+                                        .getJSONObject(0)
+                                        .getJSONArray("consequences")
+                                        .getJSONObject(0)
+                                        .getJSONObject("detail")
+                                        .getString("title"));
+                    } catch (JSONException e) {
+                        fail(e.getMessage());
+                    }
+                    // verify the new bundle version and the delta bundle digest are cached
+                    final Map<String, String> cachedMetadata =
+                            fakeCacheService
+                                    .get(rulesCache, CampaignConstants.ZIP_HANDLE)
+                                    .getMetadata();
+                    assertEquals(
+                            "2", cachedMetadata.get(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION));
+                    assertNotNull(cachedMetadata.get(CampaignConstants.RULES_BUNDLE_DIGEST_KEY));
+                    // verify rules loaded into the rules engine for both bundles
+                    verify(mockRulesEngine, times(2)).replaceRules(any());
+                });
+    }
+
+    @Test
+    public void test_loadRulesFromUrl_When_DeltaBundleCannotBeApplied_Then_FullBundleRequested()
+            throws JSONException {
+        // setup
+        final FakeCacheService fakeCacheService = new FakeCacheService();
+        final String rulesCache =
+                CampaignConstants.CACHE_BASE_DIR
+                        + File.separator
+                        + CampaignConstants.RULES_CACHE_FOLDER;
+        final List<NetworkRequest> networkRequests = new ArrayList<>();
+        final Map<String, byte[]> fullBundleEntries = new LinkedHashMap<>();
+        fullBundleEntries.put("rules.json", readResource(ruleJsonFile));
+        final byte[] fullBundle = createZip(fullBundleEntries);
+        final Map<String, byte[]> deltaBundleEntries = new LinkedHashMap<>();
+        deltaBundleEntries.put(
+                "delta.json",
+                new JSONObject()
+                        .put("version", 1)
+                        .put("removed", new JSONArray().put("11956458"))
+                        .toString()
+                        .getBytes(StandardCharsets.UTF_8));
+        final byte[] deltaBundle = createZip(deltaBundleEntries);
+        // cached bundle version without cached rules
+        final Map<String, String> cachedMetadata = new HashMap<>();
+        cachedMetadata.put(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION, "1");
+        fakeCacheService.set(
+                rulesCache,
+                CampaignConstants.ZIP_HANDLE,
+                new CacheEntry(
+                        new ByteArrayInputStream(new byte[0]),
+                        CacheExpiry.never(),
+                        cachedMetadata));
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+                    setupStandInRulesServer(networkRequests, fullBundle, deltaBundle);
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+
+                    // verify the full bundle is requested after the delta bundle
+                    assertEquals(2, networkRequests.size());
+                    assertEquals(
+                            "1",
+                            networkRequests
+                                    .get(0)
+                                    .getHeaders()
+                                    .get(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION));
+                    assertNull(
+                            networkRequests
+                                    .get(1)
+                                    .getHeaders()
+                                    .get(CampaignConstants.HTTP_HEADER_BUNDLE_VERSION));
+                    assertNotNull(
+                            fakeCacheService.getStoredData(
+                                    rulesCache, CampaignConstants.RULES_JSON_FILE_NAME));
+                    // verify only the full bundle rules are loaded into the rules engine
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                });
+    }
+
+    @Test
+    public void
+            test_loadRulesFromUrl_When_IdenticalBundleDownloaded_Then_RulesNotRegisteredAgain() {
+        // setup
+        final FakeCacheService fakeCacheService = spy(new FakeCacheService());
+        final String rulesCache =
+                CampaignConstants.CACHE_BASE_DIR
+                        + File.separator
+                        + CampaignConstants.RULES_CACHE_FOLDER;
+        final Map<String, byte[]> bundleEntries = new LinkedHashMap<>();
+        bundleEntries.put("rules.json", readResource(ruleJsonFile));
+        final byte[] bundle = createZip(bundleEntries);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    when(mockHttpConnection.getInputStream())
+                            .thenAnswer(invocation -> new ByteArrayInputStream(bundle));
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+
+                    // verify bundle digest is cached
+                    assertNotNull(
+                            fakeCacheService
+                                    .get(rulesCache, CampaignConstants.ZIP_HANDLE)
+                                    .getMetadata()
+                                    .get(CampaignConstants.RULES_BUNDLE_DIGEST_KEY));
+                    // verify the identical bundle does not replace the cached files
+                    verify(fakeCacheService, times(1))
+                            .remove(eq(rulesCache), eq(CampaignConstants.ZIP_HANDLE));
+                    verify(fakeCacheService, times(1))
+                            .set(
+                                    eq(rulesCache),
+                                    eq(CampaignConstants.RULES_JSON_FILE_NAME),
+                                    any(CacheEntry.class));
+                    assertNotNull(
+                            fakeCacheService.getStoredData(
+                                    rulesCache, CampaignConstants.RULES_JSON_FILE_NAME));
+                    assertEquals(0, campaignRulesDownloader.getLastBundleBytesWritten());
+                    // verify rules loaded into the rules engine only once
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                    assertEquals(1, campaignRulesDownloader.getUnchangedBundleCount());
+
+                    // test identical bundle downloaded before any rules are registered
+                    final CampaignRulesDownloader newCampaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+                    newCampaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+
+                    // verify rules loaded into the rules engine from the kept cached files
+                    verify(mockRulesEngine, times(2)).replaceRules(any());
+                    assertEquals(0, newCampaignRulesDownloader.getUnchangedBundleCount());
+                    verify(fakeCacheService, times(1))
+                            .set(
+                                    eq(rulesCache),
+                                    eq(CampaignConstants.RULES_JSON_FILE_NAME),
+                                    any(CacheEntry.class));
+
+                    // test identical bundle downloaded after a cached rules load was cancelled
+                    final CampaignRulesDownloader cancelledCampaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+                    cancelledCampaignRulesDownloader.cancelCachedRulesLoad();
+                    cancelledCampaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+
+                    // verify rules loaded into the rules engine
+                    verify(mockRulesEngine, times(3)).replaceRules(any());
+                    assertEquals(0, cancelledCampaignRulesDownloader.getUnchangedBundleCount());
+                });
+    }
+
+    @Test
+    public void test_loadRulesFromUrl_When_SameRequestInFlight_Then_RequestsCoalesced() {
+        // setup
+        final ArgumentCaptor<NetworkCallback> networkCallbackArgumentCaptor =
+                ArgumentCaptor.forClass(NetworkCallback.class);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    try {
+                        when(mockHttpConnection.getInputStream())
+                                .thenReturn(new FileInputStream(zipFile));
+                    } catch (FileNotFoundException e) {
+                        fail(e.getMessage());
+                    }
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, "linkageFields");
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, "linkageFields");
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, "linkageFields");
+
+                    // verify single network request
+                    verify(mockNetworkService, times(1))
+                            .connectAsync(
+                                    any(NetworkRequest.class),
+                                    networkCallbackArgumentCaptor.capture());
+                    assertEquals(2, campaignRulesDownloader.getCoalescedDownloadCount());
+
+                    // test download completes
+                    networkCallbackArgumentCaptor.getValue().call(mockHttpConnection);
+
+                    // verify rules loaded into the rules engine
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+
+                    // test same request after download completes
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, "linkageFields");
+
+                    // verify new network request
+                    verify(mockNetworkService, times(2))
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    assertEquals(2, campaignRulesDownloader.getCoalescedDownloadCount());
+                });
+    }
+
+    @Test
+    public void
+            test_loadRulesFromUrl_When_LinkageFieldsChangeWhileInFlight_Then_SupersededDiscarded() {
+        // setup
+        final ArgumentCaptor<NetworkCallback> networkCallbackArgumentCaptor =
+                ArgumentCaptor.forClass(NetworkCallback.class);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    try {
+                        when(mockHttpConnection.getInputStream())
+                                .thenReturn(new FileInputStream(zipFile));
+                    } catch (FileNotFoundException e) {
+                        fail(e.getMessage());
+                    }
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+
+                    // test
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, "linkageFields");
+
+                    // verify a network request for each linkage fields value
+                    verify(mockNetworkService, times(2))
+                            .connectAsync(
+                                    any(NetworkRequest.class),
+                                    networkCallbackArgumentCaptor.capture());
+                    assertEquals(0, campaignRulesDownloader.getCoalescedDownloadCount());
+
+                    // test superseded download completes
+                    networkCallbackArgumentCaptor.getAllValues().get(0).call(mockHttpConnection);
+
+                    // verify superseded rules are discarded
+                    verify(mockHttpConnection, times(0)).getInputStream();
+                    verify(mockHttpConnection, times(1)).close();
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+
+                    // test latest download completes
+                    networkCallbackArgumentCaptor.getAllValues().get(1).call(mockHttpConnection);
+
+                    // verify latest rules loaded into the rules engine
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                    assertEquals(
+                            rulesUrl,
+                            fakeNamedCollection.getString(
+                                    CampaignConstants.CAMPAIGN_NAMED_COLLECTION_REMOTES_URL_KEY,
+                                    ""));
+                });
+    }
+
+    // =================================================================================================================
+    //  boolean loadCachedRules()
+    // =================================================================================================================
+    @Test
+    public void test_loadCachedRules_When_NoCachedRulesBundle_Then_NoRulesLoaded() {
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    // test
+                    assertFalse(campaignRulesDownloader.loadCachedRules());
+
+                    // verify
+                    verify(mockCacheService, times(0))
+                            .get(
+                                    eq(
+                                            CampaignConstants.CACHE_BASE_DIR
+                                                    + File.separator
+                                                    + CampaignConstants.RULES_CACHE_FOLDER),
+                                    eq(CampaignConstants.RULES_JSON_FILE_NAME));
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+                });
+    }
+
+    @Test
+    public void test_loadCachedRules_When_RulesBundleCached_Then_RulesJsonReadOnce() {
+        // setup
+        when(mockCacheService.get(
+                        eq(
+                                CampaignConstants.CACHE_BASE_DIR
+                                        + File.separator
+                                        + CampaignConstants.RULES_CACHE_FOLDER),
+                        eq(CampaignConstants.ZIP_HANDLE)))
+                .thenReturn(mockCacheResult);
+        when(mockCacheService.get(
+                        eq(
+                                CampaignConstants.CACHE_BASE_DIR
+                                        + File.separator
+                                        + CampaignConstants.RULES_CACHE_FOLDER),
+                        eq(CampaignConstants.RULES_JSON_FILE_NAME)))
+                .thenReturn(mockRulesJsonCacheResult);
+        when(mockRulesJsonCacheResult.getData())
+                .thenReturn(new ByteArrayInputStream(readResource(ruleJsonFile)));
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    // test
+                    assertTrue(campaignRulesDownloader.loadCachedRules());
+
+                    // verify rules json is read once and nothing is cached
+                    verify(mockCacheService, times(1))
+                            .get(
+                                    eq(
+                                            CampaignConstants.CACHE_BASE_DIR
+                                                    + File.separator
+                                                    + CampaignConstants.RULES_CACHE_FOLDER),
+                                    eq(CampaignConstants.RULES_JSON_FILE_NAME));
+                    verify(mockCacheService, times(0))
+                            .set(anyString(), anyString(), any(CacheEntry.class));
+                    // verify rules loaded into the rules engine
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                    // verify rules event index built from the loaded rules
+                    assertNotNull(campaignRulesDownloader.getRulesEventIndex());
+                });
+    }
+
+    // =================================================================================================================
+    //  Future<Boolean> loadCachedRulesAsync()
+    // =================================================================================================================
+    @Test
+    public void test_loadCachedRulesAsync_When_CachedRulesPresent_Then_RulesLoadedOnExecutor() {
+        // setup
+        final List<Runnable> pendingTasks = new ArrayList<>();
+        when(mockCacheService.get(
+                        eq(
+                                CampaignConstants.CACHE_BASE_DIR
+                                        + File.separator
+                                        + CampaignConstants.RULES_CACHE_FOLDER),
+                        eq(CampaignConstants.ZIP_HANDLE)))
+                .thenReturn(mockCacheResult);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    mockCacheService,
+                                    pendingTasks::add);
+
+                    // test
+                    final Future<Boolean> result = campaignRulesDownloader.loadCachedRulesAsync();
+
+                    // verify nothing is loaded on the calling thread
+                    verify(mockCacheService, times(0)).get(anyString(), anyString());
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+                    assertEquals(-1, campaignRulesDownloader.getRulesLiveDurationMillis());
+
+                    // run the cached rules task
+                    assertEquals(1, pendingTasks.size());
+                    pendingTasks.get(0).run();
+
+                    // verify rules loaded into the rules engine
+                    assertTrue(getResult(result));
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                    assertTrue(campaignRulesDownloader.getRulesLiveDurationMillis() >= 0);
+                });
+    }
+
+    @Test
+    public void
+            test_loadCachedRulesAsync_When_RulesDownloadedWhileLoading_Then_CachedRulesNotLoaded() {
+        // setup
+        final List<Runnable> pendingTasks = new ArrayList<>();
+        when(mockCacheService.get(
+                        eq(
+                                CampaignConstants.CACHE_BASE_DIR
+                                        + File.separator
+                                        + CampaignConstants.RULES_CACHE_FOLDER),
+                        eq(CampaignConstants.ZIP_HANDLE)))
+                .thenReturn(mockCacheResult);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    mockCacheService,
+                                    pendingTasks::add);
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    try {
+                        when(mockHttpConnection.getInputStream())
+                                .thenReturn(new FileInputStream(zipFile));
+                    } catch (FileNotFoundException e) {
+                        fail(e.getMessage());
+                    }
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+
+                    // test
+                    final Future<Boolean> result = campaignRulesDownloader.loadCachedRulesAsync();
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, null);
+                    pendingTasks.get(0).run();
+
+                    // verify only the downloaded rules are loaded into the rules engine
+                    assertFalse(getResult(result));
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                    assertTrue(campaignRulesDownloader.getRulesLiveDurationMillis() >= 0);
+                });
+    }
+
+    @Test
+    public void
+            test_loadCachedRulesAsync_When_RulesDownloadedWhileRegistering_Then_AssetsSyncedOnce() {
+        // setup
+        final List<Runnable> pendingTasks = new ArrayList<>();
+        when(mockCacheService.get(
+                        eq(
+                                CampaignConstants.CACHE_BASE_DIR
+                                        + File.separator
+                                        + CampaignConstants.RULES_CACHE_FOLDER),
+                        eq(CampaignConstants.ZIP_HANDLE)))
+                .thenReturn(mockCacheResult);
+
+        try (MockedConstruction<CampaignAssetStore> mockedAssetStore =
+                mockConstruction(CampaignAssetStore.class)) {
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        campaignRulesDownloader =
+                                new CampaignRulesDownloader(
+                                        mockExtensionApi,
+                                        mockRulesEngine,
+                                        fakeNamedCollection,
+                                        mockCacheService,
+                                        pendingTasks::add);
+                        when(mockHttpConnection.getResponseCode())
+                                .thenReturn(HttpURLConnection.HTTP_OK);
+                        try {
+                            when(mockHttpConnection.getInputStream())
+                                    .thenReturn(new FileInputStream(zipFile));
+                        } catch (FileNotFoundException e) {
+                            fail(e.getMessage());
+                        }
+                        doAnswer(
+                                        (Answer<Void>)
+                                                invocation -> {
+                                                    NetworkCallback callback =
+                                                            invocation.getArgument(1);
+                                                    callback.call(mockHttpConnection);
+                                                    return null;
+                                                })
+                                .when(mockNetworkService)
+                                .connectAsync(
+                                        any(NetworkRequest.class), any(NetworkCallback.class));
+                        String rulesUrl =
+                                "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+                        // downloaded rules are registered right after the cached rules
+                        final boolean[] downloaded = {false};
+                        doAnswer(
+                                        invocation -> {
+                                            if (!downloaded[0]) {
+                                                downloaded[0] = true;
+                                                campaignRulesDownloader.loadRulesFromUrl(
+                                                        rulesUrl, null);
+                                            }
+                                            return null;
+                                        })
+                                .when(mockRulesEngine)
+                                .replaceRules(any());
+
+                        // test
+                        campaignRulesDownloader.loadCachedRulesAsync();
+                        pendingTasks.get(0).run();
+
+                        // verify the assets are only synced for the downloaded rules
+                        verify(mockRulesEngine, times(2)).replaceRules(any());
+                        verify(campaignRulesDownloader.getAssetStore(), times(1))
+                                .updateReferences(anyString(), any());
+                    });
+        }
+    }
+
+    @Test
+    public void
+            test_loadCachedRulesAsync_When_CachedRulesLoadCancelled_Then_CachedRulesNotLoaded() {
+        // setup
+        final List<Runnable> pendingTasks = new ArrayList<>();
+        when(mockCacheService.get(
+                        eq(
+                                CampaignConstants.CACHE_BASE_DIR
+                                        + File.separator
+                                        + CampaignConstants.RULES_CACHE_FOLDER),
+                        eq(CampaignConstants.ZIP_HANDLE)))
+                .thenReturn(mockCacheResult);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    mockCacheService,
+                                    pendingTasks::add);
+
+                    // test
+                    final Future<Boolean> result = campaignRulesDownloader.loadCachedRulesAsync();
+                    campaignRulesDownloader.cancelCachedRulesLoad();
+                    pendingTasks.get(0).run();
+
+                    // verify no rules loaded into the rules engine
+                    assertFalse(getResult(result));
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+                    assertEquals(-1, campaignRulesDownloader.getRulesLiveDurationMillis());
+                });
+    }
+
+    // =================================================================================================================
+    //  Future<Boolean> activateRulesPartition(final String linkageFields, final boolean
+    // unregisterWhenUncached)
+    // =================================================================================================================
+    @Test
+    public void test_activateRulesPartition_When_PartitionCached_Then_CachedRulesRegistered() {
+        // setup
+        ArgumentCaptor<NetworkRequest> networkRequestArgumentCaptor =
+                ArgumentCaptor.forClass(NetworkRequest.class);
+        final FakeCacheService fakeCacheService = new FakeCacheService();
+        final String linkageFields = "eyJrZXkxIjoidmFsdWUxIn0=";
+        final String partitionRulesCache = CampaignRulesDownloader.getRulesCacheName(linkageFields);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+                    when(mockHttpConnection.getResponseCode())
+                            .thenReturn(HttpURLConnection.HTTP_OK);
+                    when(mockHttpConnection.getInputStream())
+                            .thenAnswer(invocation -> new FileInputStream(zipFile));
+                    when(mockHttpConnection.getResponsePropertyValue(
+                                    CampaignConstants.HTTP_HEADER_ETAG))
+                            .thenReturn(ETAG);
+                    doAnswer(
+                                    (Answer<Void>)
+                                            invocation -> {
+                                                NetworkCallback callback =
+                                                        invocation.getArgument(1);
+                                                callback.call(mockHttpConnection);
+                                                return null;
+                                            })
+                            .when(mockNetworkService)
+                            .connectAsync(any(NetworkRequest.class), any(NetworkCallback.class));
+                    String rulesUrl =
+                            "https://mcias-va7.cloud.adobe.io/mcias/mcias.campaign-demo.adobe.com/PR146b40abd1be4a0ab224c16cbdc04bff/37922783516695133647566171476397216484/rules.zip";
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, linkageFields);
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, "");
+
+                    // verify personalized rules are cached in their own partition
+                    assertNotNull(
+                            fakeCacheService.getStoredData(
+                                    partitionRulesCache, CampaignConstants.RULES_JSON_FILE_NAME));
+                    assertEquals(
+                            CampaignConstants.CACHE_BASE_DIR
+                                    + File.separator
+                                    + CampaignConstants.RULES_CACHE_FOLDER,
+                            campaignRulesDownloader.getRegisteredRulesCache());
+
+                    // test
+                    final boolean registered =
+                            getResult(
+                                    campaignRulesDownloader.activateRulesPartition(
+                                            linkageFields, false));
+
+                    // verify cached personalized rules loaded into the rules engine
+                    assertTrue(registered);
+                    verify(mockRulesEngine, times(3)).replaceRules(any());
+                    assertEquals(
+                            partitionRulesCache, campaignRulesDownloader.getRegisteredRulesCache());
+
+                    // test revalidation of the personalized rules
+                    campaignRulesDownloader.loadRulesFromUrl(rulesUrl, linkageFields);
+
+                    // verify conditional request sent for the personalized rules
+                    verify(mockNetworkService, times(3))
+                            .connectAsync(
+                                    networkRequestArgumentCaptor.capture(),
+                                    any(NetworkCallback.class));
+                    assertEquals(
+                            ETAG,
+                            networkRequestArgumentCaptor
+                                    .getValue()
+                                    .getHeaders()
+                                    .get(CampaignConstants.HTTP_HEADER_IF_NONE_MATCH));
+                    // verify identical personalized rules are not registered again
+                    verify(mockRulesEngine, times(3)).replaceRules(any());
+                    assertEquals(1, campaignRulesDownloader.getUnchangedBundleCount());
+                });
+    }
+
+    @Test
+    public void test_activateRulesPartition_When_PartitionNotCached_Then_NoRulesRegistered() {
+        // setup
+        final FakeCacheService fakeCacheService = new FakeCacheService();
+        final String linkageFields = "eyJrZXkxIjoidmFsdWUxIn0=";
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+
+                    // test
+                    final boolean registered =
+                            getResult(
+                                    campaignRulesDownloader.activateRulesPartition(
+                                            linkageFields, false));
+
+                    // verify
+                    assertFalse(registered);
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+                    assertEquals(
+                            "[\"" + StringEncoder.sha2hash(linkageFields) + "\"]",
+                            fakeNamedCollection.getString(
+                                    CampaignConstants
+                                            .CAMPAIGN_NAMED_COLLECTION_RULES_PARTITIONS_KEY,
+                                    ""));
+                });
+    }
+
+    @Test
+    public void
+            test_activateRulesPartition_When_PartitionNotCachedAndUnregisterRequested_Then_RulesUnregistered() {
+        // setup
+        final FakeCacheService fakeCacheService = new FakeCacheService();
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService);
+
+                    // test
+                    final boolean registered =
+                            getResult(campaignRulesDownloader.activateRulesPartition("", true));
+
+                    // verify previously registered rules are removed from the rules engine
+                    assertFalse(registered);
+                    verify(mockRulesEngine, times(1)).replaceRules(eq(new ArrayList<>()));
+                });
+    }
+
+    @Test
+    public void test_activateRulesPartition_When_Called_Then_CachedRulesNotLoadedOnCallerThread() {
+        // setup
+        final List<Runnable> pendingTasks = new ArrayList<>();
+        when(mockCacheService.get(
+                        eq(
+                                CampaignConstants.CACHE_BASE_DIR
+                                        + File.separator
+                                        + CampaignConstants.RULES_CACHE_FOLDER),
+                        eq(CampaignConstants.ZIP_HANDLE)))
+                .thenReturn(mockCacheResult);
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    mockCacheService,
+                                    pendingTasks::add);
+
+                    // test
+                    final Future<Boolean> result =
+                            campaignRulesDownloader.activateRulesPartition("", true);
+
+                    // verify cached rules are not read on the calling thread
+                    assertFalse(result.isDone());
+                    assertEquals(1, pendingTasks.size());
+                    verify(mockCacheService, times(0)).get(anyString(), anyString());
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+                });
+    }
+
+    @Test
+    public void
+            test_activateRulesPartition_When_NewerActivationQueued_Then_StaleActivationSkipped() {
+        // setup
+        final List<Runnable> pendingTasks = new ArrayList<>();
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    mockCacheService,
+                                    pendingTasks::add);
+
+                    // test
+                    final Future<Boolean> staleResult =
+                            campaignRulesDownloader.activateRulesPartition("", true);
+                    final Future<Boolean> result =
+                            campaignRulesDownloader.activateRulesPartition("", true);
+                    pendingTasks.get(0).run();
+
+                    // verify the stale activation neither reads the cache nor unregisters rules
+                    assertFalse(getResult(staleResult));
+                    verify(mockCacheService, times(0)).get(anyString(), anyString());
+                    verify(mockRulesEngine, times(0)).replaceRules(any());
+
+                    // test
+                    pendingTasks.get(1).run();
+
+                    // verify the latest activation unregisters the uncached rules
+                    assertFalse(getResult(result));
+                    verify(mockRulesEngine, times(1)).replaceRules(any());
+                });
+    }
+
+    @Test
+    public void
+            test_activateRulesPartition_When_PartitionLimitExceeded_Then_LeastRecentlyUsedRemoved() {
+        // setup
+        final FakeCacheService fakeCacheService = new FakeCacheService();
+        final List<Runnable> pendingTasks = new ArrayList<>();
+
+        setupServiceProviderMockAndRunTest(
+                false,
+                () -> {
+                    campaignRulesDownloader =
+                            new CampaignRulesDownloader(
+                                    mockExtensionApi,
+                                    mockRulesEngine,
+                                    fakeNamedCollection,
+                                    fakeCacheService,
+                                    pendingTasks::add);
+                    final List<File> partitionDirs = new ArrayList<>();
+                    for (final String linkageFields : Arrays.asList("a", "b", "c", "d")) {
+                        final File partitionDir =
+                                new File(
+                                        cacheDir,
+                                        CampaignConstants.AEPSDK_CACHE_BASE_DIR
+                                                + File.separator
+                                                + CampaignRulesDownloader.getRulesCacheName(
+                                                        linkageFields));
+                        partitionDir.mkdirs();
+                        partitionDirs.add(partitionDir);
+                    }
+                    final CampaignAssetStore assetStore = campaignRulesDownloader.getAssetStore();
+                    assetStore.updateReferences(
+                            CampaignRulesDownloader.getRulesCacheName("a"),
+                            Collections.singletonMap(
+                                    "message1", Collections.singletonList("https://asset-a")));
+                    assetStore.updateReferences(
+                            CampaignRulesDownloader.getRulesCacheName("b"),
+                            Collections.singletonMap(
+                                    "message2", Collections.singletonList("https://asset-b")));
+
+                    // test
+                    campaignRulesDownloader.activateRulesPartition("a", false);
+                    campaignRulesDownloader.activateRulesPartition("b", false);
+                    campaignRulesDownloader.activateRulesPartition("c", false);
+                    campaignRulesDownloader.activateRulesPartition("a", false);
+                    campaignRulesDownloader.activateRulesPartition("d", false);
+                    for (final Runnable pendingTask : pendingTasks) {
+                        pendingTask.run();
+                    }
+
+                    // verify least recently used partition removed
+                    assertTrue(partitionDirs.get(0).exists());
+                    assertFalse(partitionDirs.get(1).exists());
+                    assertTrue(partitionDirs.get(2).exists());
+                    assertTrue(partitionDirs.get(3).exists());
+                    assertEquals(1, assetStore.getReferenceCount("https://asset-a"));
+                    assertEquals(0, assetStore.getReferenceCount("https://asset-b"));
+                    assertEquals(
+                            "[\""
+                                    + StringEncoder.sha2hash("d")
+                                    + "\",\""
+                                    + StringEncoder.sha2hash("a")
+                                    + "\",\""
+                                    + StringEncoder.sha2hash("c")
+                                    + "\"]",
+                            fakeNamedCollection.getString(
+                                    CampaignConstants
+                                            .CAMPAIGN_NAMED_COLLECTION_RULES_PARTITIONS_KEY,
+                                    ""));
+                });
+    }
+
+    // =================================================================================================================
+    //  void cacheRemoteAssets(final List<LaunchRule> campaignRules)
+    // =================================================================================================================
+    @Test
+    public void test_cacheRemoteAssets_When_campaignRulesAreEmpty_Then_AssetsNotDownloaded() {
+        // setup
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify no CampaignMessageAssetsDownloader instance instantiated
+                        assertEquals(0, mockConstruction.constructed().size());
+                    });
+        }
+    }
+
+    @Test
+    public void test_cacheRemoteAssets_When_campaignRulesValid_Then_AssetsDownloaded() {
+        // setup
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify
+                        CampaignMessageAssetsDownloader mockCampaignMessageAssetsDownloader =
+                                (CampaignMessageAssetsDownloader)
+                                        mockConstruction.constructed().get(0);
+                        verify(mockCampaignMessageAssetsDownloader, times(1))
+                                .downloadAssetCollection();
+                    });
+        }
+    }
+
+    @Test
+    public void test_cacheRemoteAssets_When_campaignRuleAssetsEmpty_Then_AssetsNotDownloaded() {
+        // setup
+        detailMap.put("remoteAssets", new ArrayList<>());
+        when(mockRuleConsequence.getDetail()).thenReturn(detailMap);
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify no CampaignMessageAssetsDownloader instance instantiated
+                        assertEquals(0, mockConstruction.constructed().size());
+                    });
+        }
+    }
+
+    @Test
+    public void test_cacheRemoteAssets_When_AssetSharedByMessages_Then_AssetDownloadedOnce() {
+        // setup
+        final List<List<String>> sharedRemoteAssets = new ArrayList<>();
+        sharedRemoteAssets.add(remoteAssetOne);
+        final Map<String, Object> sharedDetailMap = new HashMap<>(detailMap);
+        sharedDetailMap.put("remoteAssets", sharedRemoteAssets);
+        final RuleConsequence sharedAssetConsequence = Mockito.mock(RuleConsequence.class);
+        when(sharedAssetConsequence.getDetail()).thenReturn(sharedDetailMap);
+        when(sharedAssetConsequence.getId()).thenReturn("sharedAssetMessageId");
+        when(sharedAssetConsequence.getType())
+                .thenReturn(CampaignConstants.MESSAGE_CONSEQUENCE_MESSAGE_TYPE);
+        final List<List<String>> downloadedAssets = new ArrayList<>();
+        try (MockedConstruction mockConstruction =
+                mockConstruction(
+                        CampaignMessageAssetsDownloader.class,
+                        (mock, context) ->
+                                downloadedAssets.add((List<String>) context.arguments().get(0)))) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            ruleConsequenceList.add(sharedAssetConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify shared assets only downloaded for the first message
+                        assertEquals(1, mockConstruction.constructed().size());
+                        assertEquals(5, downloadedAssets.get(0).size());
+                        // verify shared assets referenced by both messages
+                        final CampaignAssetStore assetStore =
+                                campaignRulesDownloader.getAssetStore();
+                        assertEquals(2, assetStore.getReferenceCount("http://asset1-url00.jpeg"));
+                        assertEquals(1, assetStore.getReferenceCount("http://asset2-url10.jpeg"));
+                    });
+        }
+    }
+
+    @Test
+    public void test_cacheRemoteAssets_When_MessageNoLongerLoaded_Then_MessageCacheRemoved()
+            throws Exception {
+        // setup
+        final File messageCacheDir = new File("cache/aepsdkcache/campaign/messages");
+        final File loadedMessageFile = new File(messageCacheDir, messageId + "/bundledAsset");
+        final File staleMessageFile = new File(messageCacheDir, "staleMessageId/bundledAsset");
+        loadedMessageFile.getParentFile().mkdirs();
+        staleMessageFile.getParentFile().mkdirs();
+        loadedMessageFile.createNewFile();
+        staleMessageFile.createNewFile();
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+                        final CampaignAssetStore assetStore =
+                                campaignRulesDownloader.getAssetStore();
+                        assetStore.recordMessageAssetCached("removedMessageId", "bundledAsset", 10);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify message caches written before the manifest swept once
+                        assertTrue(loadedMessageFile.exists());
+                        assertFalse(staleMessageFile.getParentFile().exists());
+                        assertFalse(assetStore.hasUntrackedMessageCaches());
+                        // verify message caches in the manifest removed
+                        verify(mockCacheService, times(1))
+                                .remove(
+                                        eq(CampaignAssetStore.MESSAGE_CACHE + "/removedMessageId"),
+                                        eq("bundledAsset"));
+                    });
+        }
+    }
+
+    @Test
+    public void test_cacheRemoteAssets_When_RulesRegisteredAgain_Then_BundledFallbackCachedOnce()
+            throws Exception {
+        // setup
+        final AppContextService mockAppContextService = Mockito.mock(AppContextService.class);
+        final Context mockContext = Mockito.mock(Context.class);
+        final AssetManager mockAssetManager = Mockito.mock(AssetManager.class);
+        when(mockServiceProvider.getAppContextService()).thenReturn(mockAppContextService);
+        when(mockAppContextService.getApplicationContext()).thenReturn(mockContext);
+        when(mockContext.getAssets()).thenReturn(mockAssetManager);
+        when(mockAssetManager.open("01.jpeg"))
+                .thenAnswer(
+                        invocation ->
+                                new ByteArrayInputStream(
+                                        "bundledAsset".getBytes(StandardCharsets.UTF_8)));
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify bundled fallback cached once under its remote url
+                        verify(mockCacheService, times(1))
+                                .set(
+                                        eq(CampaignAssetStore.MESSAGE_CACHE + "/" + messageId),
+                                        eq("http://asset1-url00.jpeg"),
+                                        any(CacheEntry.class));
+                        assertTrue(
+                                campaignRulesDownloader
+                                        .getAssetStore()
+                                        .isMessageAssetCached(
+                                                messageId, "http://asset1-url00.jpeg"));
+                    });
+        }
+        verify(mockAssetManager, times(1)).open("01.jpeg");
+    }
+
+    @Test
+    public void test_cacheRemoteAssets_When_AssetsCached_Then_AssetMapBuiltBeforeShow() {
+        // setup
+        when(mockCacheService.get(CampaignAssetStore.ASSET_CACHE, "http://asset1-url00.jpeg"))
+                .thenReturn(mockCacheResult);
+        when(mockCacheService.get(CampaignAssetStore.ASSET_CACHE, "http://asset2-url10.jpeg"))
+                .thenReturn(mockCacheResult);
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify
+                        final CampaignMessageDisplayCache displayCache =
+                                campaignRulesDownloader.getMessageDisplayCache();
+                        final CampaignMessageDisplayCache.ResolvedAssets resolvedAssets =
+                                displayCache.getResolvedAssets(
+                                        messageId,
+                                        displayCache.getBundleVersion(),
+                                        campaignRulesDownloader
+                                                .getAssetStore()
+                                                .getAssetGeneration());
+                        assertNotNull(resolvedAssets);
+                        assertTrue(resolvedAssets.isComplete());
+                        final Map<String, String> expectedAssetMap = new HashMap<>();
+                        expectedAssetMap.put(
+                                "http://asset1-url00.jpeg", CampaignAssetStore.ASSET_CACHE);
+                        expectedAssetMap.put(
+                                "http://asset2-url10.jpeg", CampaignAssetStore.ASSET_CACHE);
+                        assertEquals(expectedAssetMap, resolvedAssets.getAssetMap());
+                    });
+        }
+    }
+
+    @Test
+    public void test_cacheRemoteAssets_When_BundledFallbackUsed_Then_AssetMapNotBuiltBeforeShow() {
+        // setup
+        when(mockCacheService.get(
+                        CampaignAssetStore.MESSAGE_CACHE + File.separator + messageId,
+                        CampaignBundledFallbacks.getCacheKey("http://asset1-url00.jpeg")))
+                .thenReturn(mockCacheResult);
+        when(mockCacheService.get(CampaignAssetStore.ASSET_CACHE, "http://asset2-url10.jpeg"))
+                .thenReturn(mockCacheResult);
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify the asset map is resolved again when the message is shown
+                        final CampaignMessageDisplayCache displayCache =
+                                campaignRulesDownloader.getMessageDisplayCache();
+                        assertNull(
+                                displayCache.getResolvedAssets(
+                                        messageId,
+                                        displayCache.getBundleVersion(),
+                                        campaignRulesDownloader
+                                                .getAssetStore()
+                                                .getAssetGeneration()));
+                    });
+        }
+    }
+
+    @Test
+    public void
+            test_cacheRemoteAssets_When_AlternativeAssetDownloaded_Then_BundledFallbackNotUsed() {
+        // setup
+        when(mockCacheService.get(
+                        CampaignAssetStore.MESSAGE_CACHE + File.separator + messageId,
+                        CampaignBundledFallbacks.getCacheKey("http://asset1-url00.jpeg")))
+                .thenReturn(mockCacheResult);
+        when(mockCacheService.get(CampaignAssetStore.ASSET_CACHE, "http://asset1-url01.jpeg"))
+                .thenReturn(mockCacheResult);
+        when(mockCacheService.get(CampaignAssetStore.ASSET_CACHE, "http://asset2-url10.jpeg"))
+                .thenReturn(mockCacheResult);
+        try (MockedConstruction mockConstruction =
+                mockConstruction(CampaignMessageAssetsDownloader.class)) {
+            List<RuleConsequence> ruleConsequenceList = new ArrayList<>();
+            ruleConsequenceList.add(mockRuleConsequence);
+            when(mockLaunchRule.getConsequenceList()).thenReturn(ruleConsequenceList);
+
+            setupServiceProviderMockAndRunTest(
+                    false,
+                    () -> {
+                        List<LaunchRule> campaignRules = new ArrayList<>();
+                        campaignRules.add(mockLaunchRule);
+
+                        // test
+                        campaignRulesDownloader.cacheRemoteAssets(campaignRules);
+
+                        // verify the downloaded alternative is used instead of the fallback
+                        final CampaignMessageDisplayCache displayCache =
+                                campaignRulesDownloader.getMessageDisplayCache();
+                        final CampaignMessageDisplayCache.ResolvedAssets resolvedAssets =
+                                displayCache.getResolvedAssets(
+                                        messageId,
+                                        displayCache.getBundleVersion(),
+                                        campaignRulesDownloader
+                                                .getAssetStore()
+                                                .getAssetGeneration());
+                        assertNotNull(resolvedAssets);
+                        assertEquals(
+                                CampaignAssetStore.ASSET_CACHE,
+                                resolvedAssets.getAssetMap().get("http://asset1-url00.jpeg"));
+                        assertTrue(
+                                resolvedAssets
+                                        .getStoredAssets()
+                                        .contains("http://asset1-url01.jpeg"));
                     });
         }
     }
@@ -0,0 +1,239 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.adobe.marketing.mobile.Event;
+import com.adobe.marketing.mobile.EventSource;
+import com.adobe.marketing.mobile.EventType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class CampaignRulesEventIndexTests {
+
+    private static JSONObject createMatcher(
+            final String key, final String matcher, final Object... values) throws JSONException {
+        final JSONObject definition = new JSONObject();
+        definition.put("key", key);
+        definition.put("matcher", matcher);
+        definition.put("values", new JSONArray(Arrays.asList(values)));
+        final JSONObject condition = new JSONObject();
+        condition.put("type", "matcher");
+        condition.put("definition", definition);
+        return condition;
+    }
+
+    private static JSONObject createGroup(final String logic, final JSONObject... conditions)
+            throws JSONException {
+        final JSONObject definition = new JSONObject();
+        definition.put("logic", logic);
+        definition.put("conditions", new JSONArray(Arrays.asList(conditions)));
+        final JSONObject condition = new JSONObject();
+        condition.put("type", "group");
+        condition.put("definition", definition);
+        return condition;
+    }
+
+    private static String createRulesJson(final JSONObject... conditions) throws JSONException {
+        final JSONArray rules = new JSONArray();
+        for (final JSONObject condition : conditions) {
+            final JSONObject rule = new JSONObject();
+            rule.put("condition", condition);
+            rule.put("consequences", new JSONArray());
+            rules.put(rule);
+        }
+        final JSONObject rulesJson = new JSONObject();
+        rulesJson.put("version", 1);
+        rulesJson.put("rules", rules);
+        return rulesJson.toString();
+    }
+
+    private static Event createEvent(
+            final String type, final String source, final Map<String, Object> eventData) {
+        return new Event.Builder("Test event", type, source).setEventData(eventData).build();
+    }
+
+    private static Event createTrackEvent(final String key, final Object value) {
+        final Map<String, Object> eventData = new HashMap<>();
+        eventData.put(key, value);
+        return createEvent(EventType.GENERIC_TRACK, EventSource.REQUEST_CONTENT, eventData);
+    }
+
+    @Test
+    public void test_fromJsonString_When_InvalidJson_Then_ReturnsNull() {
+        assertNull(CampaignRulesEventIndex.fromJsonString("not json"));
+        assertNull(CampaignRulesEventIndex.fromJsonString(null));
+    }
+
+    @Test
+    public void test_fromJsonString_When_ValidJson_Then_ReferencedKeysIndexed()
+            throws JSONException {
+        // test
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJsonString(
+                        createRulesJson(
+                                createGroup(
+                                        "and",
+                                        createMatcher("~type", "eq", EventType.GENERIC_TRACK),
+                                        createMatcher("~source", "eq", EventSource.REQUEST_CONTENT),
+                                        createMatcher("action", "eq", "purchase"),
+                                        createMatcher("~timestampu", "ge", 1557126000))));
+
+        // verify
+        assertNotNull(rulesEventIndex);
+        assertEquals(
+                Collections.singleton(EventType.GENERIC_TRACK.toLowerCase()),
+                rulesEventIndex.getEventTypes());
+        assertEquals(
+                Collections.singleton(EventSource.REQUEST_CONTENT.toLowerCase()),
+                rulesEventIndex.getEventSources());
+        assertEquals(new HashSet<>(Arrays.asList("action")), rulesEventIndex.getDataKeys());
+    }
+
+    @Test
+    public void test_fromJson_When_ValidJson_Then_ReferencedKeysIndexed() throws JSONException {
+        // test
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJson(
+                        new JSONObject(
+                                createRulesJson(
+                                        createMatcher("~type", "eq", EventType.GENERIC_TRACK),
+                                        createMatcher("action", "ex"))));
+
+        // verify
+        assertNotNull(rulesEventIndex);
+        assertEquals(
+                Collections.singleton(EventType.GENERIC_TRACK.toLowerCase()),
+                rulesEventIndex.getEventTypes());
+        assertEquals(Collections.singleton("action"), rulesEventIndex.getDataKeys());
+    }
+
+    @Test
+    public void test_fromJson_When_RulesMissing_Then_ReturnsNull() throws JSONException {
+        assertNull(CampaignRulesEventIndex.fromJson(new JSONObject("{\"version\":1}")));
+        assertNull(CampaignRulesEventIndex.fromJson(null));
+    }
+
+    @Test
+    public void test_mayMatch_When_DataKeyMissing_Then_ReturnsFalse() throws JSONException {
+        // setup
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJsonString(
+                        createRulesJson(
+                                createGroup(
+                                        "and",
+                                        createMatcher("action", "eq", "purchase"),
+                                        createMatcher("~timestampu", "ge", 1557126000))));
+
+        // test
+        assertTrue(rulesEventIndex.mayMatch(createTrackEvent("action", "purchase")));
+        assertFalse(rulesEventIndex.mayMatch(createTrackEvent("state", "home")));
+        assertFalse(
+                rulesEventIndex.mayMatch(
+                        createEvent(EventType.LIFECYCLE, EventSource.RESPONSE_CONTENT, null)));
+    }
+
+    @Test
+    public void test_mayMatch_When_EventTypeDoesNotMatch_Then_ReturnsFalse() throws JSONException {
+        // setup
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJsonString(
+                        createRulesJson(
+                                createGroup(
+                                        "and",
+                                        createMatcher("~type", "eq", EventType.LIFECYCLE),
+                                        createMatcher(
+                                                "~source", "eq", EventSource.RESPONSE_CONTENT))));
+
+        // test
+        assertTrue(
+                rulesEventIndex.mayMatch(
+                        createEvent(EventType.LIFECYCLE, EventSource.RESPONSE_CONTENT, null)));
+        assertFalse(
+                rulesEventIndex.mayMatch(
+                        createEvent(EventType.LIFECYCLE, EventSource.REQUEST_CONTENT, null)));
+        assertFalse(rulesEventIndex.mayMatch(createTrackEvent("action", "purchase")));
+    }
+
+    @Test
+    public void test_mayMatch_When_FlattenedDataKey_Then_TopLevelKeyMatched() throws JSONException {
+        // setup
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJsonString(
+                        createRulesJson(createMatcher("contextdata.launches", "gt", 2)));
+
+        // test
+        assertTrue(rulesEventIndex.mayMatch(createTrackEvent("contextdata", new HashMap<>())));
+        assertTrue(rulesEventIndex.mayMatch(createTrackEvent("contextdata.launches", 3)));
+        assertFalse(rulesEventIndex.mayMatch(createTrackEvent("launches", 3)));
+    }
+
+    @Test
+    public void test_mayMatch_When_OrGroup_Then_AnyConditionMatched() throws JSONException {
+        // setup
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJsonString(
+                        createRulesJson(
+                                createGroup(
+                                        "or",
+                                        createMatcher("action", "eq", "purchase"),
+                                        createMatcher("state", "eq", "home"))));
+
+        // test
+        assertTrue(rulesEventIndex.mayMatch(createTrackEvent("action", "purchase")));
+        assertTrue(rulesEventIndex.mayMatch(createTrackEvent("state", "home")));
+        assertFalse(rulesEventIndex.mayMatch(createTrackEvent("other", "value")));
+    }
+
+    @Test
+    public void test_mayMatch_When_ConditionNotIndexable_Then_ReturnsTrue() throws JSONException {
+        // setup
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJsonString(
+                        createRulesJson(
+                                createGroup(
+                                        "or",
+                                        createMatcher("action", "eq", "purchase"),
+                                        createMatcher("state", "ne", "home"))));
+
+        // test
+        assertTrue(rulesEventIndex.mayMatch(createTrackEvent("other", "value")));
+        assertTrue(
+                rulesEventIndex.mayMatch(
+                        createEvent(EventType.LIFECYCLE, EventSource.RESPONSE_CONTENT, null)));
+    }
+
+    @Test
+    public void test_mayMatch_When_RulesEngineResetEvent_Then_ReturnsTrue() throws JSONException {
+        // setup
+        final CampaignRulesEventIndex rulesEventIndex =
+                CampaignRulesEventIndex.fromJsonString(createRulesJson());
+
+        // test
+        assertFalse(rulesEventIndex.mayMatch(createTrackEvent("action", "purchase")));
+        assertTrue(
+                rulesEventIndex.mayMatch(
+                        createEvent(EventType.RULES_ENGINE, EventSource.REQUEST_RESET, null)));
+    }
+}
@@ -46,6 +46,22 @@ public class CampaignStateTests {
         configData.put(
                 CampaignConstants.EventDataKeys.Configuration.CAMPAIGN_REGISTRATION_PAUSED_KEY,
                 true);
+        configData.put(
+                CampaignConstants.EventDataKeys.Configuration
+                        .CAMPAIGN_ASSET_DOWNLOAD_CONCURRENCY_KEY,
+                2);
+        configData.put(
+                CampaignConstants.EventDataKeys.Configuration.CAMPAIGN_OPTIMIZE_IMAGE_ASSETS_KEY,
+                true);
+        configData.put(
+                CampaignConstants.EventDataKeys.Configuration.CAMPAIGN_ASSET_CACHE_MAX_BYTES_KEY,
+                1024L);
+        configData.put(
+                CampaignConstants.EventDataKeys.Configuration.CAMPAIGN_ASSET_READINESS_POLICY_KEY,
+                CampaignConstants.ASSET_READINESS_POLICY_WAIT);
+        configData.put(
+                CampaignConstants.EventDataKeys.Configuration.CAMPAIGN_ASSET_READINESS_TIMEOUT_KEY,
+                500L);
         final SharedStateResult sharedStateResult =
                 new SharedStateResult(SharedStateStatus.SET, configData);
 
@@ -76,6 +92,13 @@ public class CampaignStateTests {
         assertEquals(MobilePrivacyStatus.OPT_IN, campaignState.getMobilePrivacyStatus());
         assertEquals(30, campaignState.getCampaignRegistrationDelay());
         assertEquals(true, campaignState.getCampaignRegistrationPaused());
+        assertEquals(2, campaignState.getAssetDownloadConcurrency());
+        assertEquals(true, campaignState.getOptimizeImageAssets());
+        assertEquals(1024L, campaignState.getAssetCacheMaxBytes());
+        assertEquals(
+                CampaignConstants.ASSET_READINESS_POLICY_WAIT,
+                campaignState.getAssetReadinessPolicy());
+        assertEquals(500L, campaignState.getAssetReadinessTimeoutMillis());
     }
 
     @Test
@@ -103,6 +126,19 @@ public class CampaignStateTests {
                 CampaignConstants.DEFAULT_REGISTRATION_DELAY_DAYS,
                 campaignState.getCampaignRegistrationDelay());
         assertEquals(false, campaignState.getCampaignRegistrationPaused());
+        assertEquals(
+                CampaignConstants.DEFAULT_ASSET_DOWNLOAD_CONCURRENCY,
+                campaignState.getAssetDownloadConcurrency());
+        assertEquals(false, campaignState.getOptimizeImageAssets());
+        assertEquals(
+                CampaignConstants.DEFAULT_ASSET_CACHE_MAX_BYTES,
+                campaignState.getAssetCacheMaxBytes());
+        assertEquals(
+                CampaignConstants.ASSET_READINESS_POLICY_FALLBACK,
+                campaignState.getAssetReadinessPolicy());
+        assertEquals(
+                CampaignConstants.DEFAULT_ASSET_READINESS_TIMEOUT_MILLIS,
+                campaignState.getAssetReadinessTimeoutMillis());
     }
 
     @Test
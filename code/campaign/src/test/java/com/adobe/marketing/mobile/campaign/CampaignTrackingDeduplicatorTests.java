@@ -0,0 +1,123 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CampaignTrackingDeduplicatorTests {
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+
+    private FakeNamedCollection fakeNamedCollection;
+    private CampaignTrackingDeduplicator trackingDeduplicator;
+
+    @Before
+    public void setup() {
+        fakeNamedCollection = new FakeNamedCollection();
+        trackingDeduplicator = new CampaignTrackingDeduplicator(fakeNamedCollection);
+    }
+
+    @Test
+    public void test_isDuplicate_When_SameHitWithinWindow_Then_Suppressed() {
+        // setup
+        trackingDeduplicator.recordQueued("h2347", "bb65", "2", TIMESTAMP);
+
+        // test
+        assertTrue(trackingDeduplicator.isDuplicate("h2347", "bb65", "2", TIMESTAMP + 1000));
+        assertTrue(trackingDeduplicator.isDuplicate("h2347", "bb65", "2", TIMESTAMP - 1000));
+
+        // verify
+        assertEquals(2, trackingDeduplicator.getSuppressedCount());
+    }
+
+    @Test
+    public void test_isDuplicate_When_DifferentAction_Then_NotSuppressed() {
+        // setup
+        trackingDeduplicator.recordQueued("h2347", "bb65", "1", TIMESTAMP);
+
+        // test
+        assertFalse(trackingDeduplicator.isDuplicate("h2347", "bb65", "2", TIMESTAMP));
+        assertFalse(trackingDeduplicator.isDuplicate("h2348", "bb65", "2", TIMESTAMP));
+
+        // verify
+        assertEquals(0, trackingDeduplicator.getSuppressedCount());
+    }
+
+    @Test
+    public void test_isDuplicate_When_WindowElapsed_Then_NotSuppressed() {
+        // setup
+        trackingDeduplicator.recordQueued("h2347", "bb65", "2", TIMESTAMP);
+
+        // verify
+        assertFalse(
+                trackingDeduplicator.isDuplicate(
+                        "h2347",
+                        "bb65",
+                        "2",
+                        TIMESTAMP + CampaignConstants.TRACKING_DUPLICATE_WINDOW_MILLIS));
+    }
+
+    @Test
+    public void test_isDuplicate_When_DeduplicatorRecreated_Then_RecentKeysRestored() {
+        // setup
+        trackingDeduplicator.recordQueued("h2347", "bb65", "2", TIMESTAMP);
+
+        // test
+        final CampaignTrackingDeduplicator restoredDeduplicator =
+                new CampaignTrackingDeduplicator(fakeNamedCollection);
+
+        // verify
+        assertTrue(restoredDeduplicator.isDuplicate("h2347", "bb65", "2", TIMESTAMP + 1000));
+    }
+
+    @Test
+    public void test_isDuplicate_When_LimitReached_Then_OldestKeyDropped() {
+        // setup
+        for (int i = 0; i <= CampaignConstants.TRACKING_RECENT_KEYS_LIMIT; i++) {
+            trackingDeduplicator.recordQueued("h" + i, "bb65", "2", TIMESTAMP + i);
+        }
+
+        // test
+        final CampaignTrackingDeduplicator restoredDeduplicator =
+                new CampaignTrackingDeduplicator(fakeNamedCollection);
+
+        // verify
+        assertTrue(restoredDeduplicator.isDuplicate("h1", "bb65", "2", TIMESTAMP + 1000));
+        assertFalse(restoredDeduplicator.isDuplicate("h0", "bb65", "2", TIMESTAMP + 1000));
+    }
+
+    @Test
+    public void test_clear_Then_HitNotSuppressed() {
+        // setup
+        trackingDeduplicator.recordQueued("h2347", "bb65", "2", TIMESTAMP);
+
+        // test
+        trackingDeduplicator.clear();
+
+        // verify
+        assertFalse(trackingDeduplicator.isDuplicate("h2347", "bb65", "2", TIMESTAMP + 1000));
+    }
+
+    @Test
+    public void test_isDuplicate_When_HitNotRecorded_Then_NotSuppressed() {
+        // test
+        assertFalse(trackingDeduplicator.isDuplicate("h2347", "bb65", "2", TIMESTAMP));
+
+        // verify
+        assertFalse(trackingDeduplicator.isDuplicate("h2347", "bb65", "2", TIMESTAMP + 1000));
+        assertEquals(0, trackingDeduplicator.getSuppressedCount());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+  Copyright 2022 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.campaign;
+
+import com.adobe.marketing.mobile.services.caching.CacheEntry;
+import com.adobe.marketing.mobile.services.caching.CacheExpiry;
+import com.adobe.marketing.mobile.services.caching.CacheResult;
+import com.adobe.marketing.mobile.services.caching.CacheService;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+public class FakeCacheService implements CacheService {
+    private final Map<String, byte[]> storedData = new HashMap<>();
+    private final Map<String, Map<String, String>> storedMetadata = new HashMap<>();
+
+    @Override
+    public boolean set(String cacheName, String key, CacheEntry value) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = value.getData()) {
+            final byte[] buffer = new byte[1024];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        storedData.put(cacheName + "/" + key, outputStream.toByteArray());
+        storedMetadata.put(cacheName + "/" + key, value.getMetadata());
+        return true;
+    }
+
+    @Override
+    public CacheResult get(String cacheName, String key) {
+        final byte[] data = storedData.get(cacheName + "/" + key);
+        if (data == null) {
+            return null;
+        }
+        final Map<String, String> metadata = storedMetadata.get(cacheName + "/" + key);
+        return new CacheResult() {
+            @Override
+            public InputStream getData() {
+                return new ByteArrayInputStream(data);
+            }
+
+            @Override
+            public CacheExpiry getExpiry() {
+                return CacheExpiry.never();
+            }
+
+            @Override
+            public Map<String, String> getMetadata() {
+                return metadata;
+            }
+        };
+    }
+
+    @Override
+    public boolean remove(String cacheName, String key) {
+        storedMetadata.remove(cacheName + "/" + key);
+        return storedData.remove(cacheName + "/" + key) != null;
+    }
+
+    public byte[] getStoredData(String cacheName, String key) {
+        return storedData.get(cacheName + "/" + key);
+    }
+}
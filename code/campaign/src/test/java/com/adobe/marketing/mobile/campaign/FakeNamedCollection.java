@@ -73,13 +73,12 @@ public class FakeNamedCollection implements NamedCollection {
 
     @Override
     public void setBoolean(String s, boolean b) {
-        // not implemented
+        storedValues.put(s, b);
     }
 
     @Override
     public boolean getBoolean(String s, boolean b) {
-        // not implemented
-        return false;
+        return (storedValues.get(s)) != null ? (boolean) storedValues.get(s) : b;
     }
 
     @Override
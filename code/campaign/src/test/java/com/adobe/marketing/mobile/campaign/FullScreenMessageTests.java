@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -135,6 +136,11 @@ public class FullScreenMessageTests {
             when(mockServiceProvider.getUIService()).thenReturn(mockUIService);
             when(mockServiceProvider.getUriService()).thenReturn(mockUriService);
             when(mockServiceProvider.getCacheService()).thenReturn(mockCacheService);
+            when(mockCampaignExtension.getRulesCacheName())
+                    .thenReturn(
+                            CampaignConstants.CACHE_BASE_DIR
+                                    + File.separator
+                                    + CampaignConstants.RULES_CACHE_FOLDER);
             when(mockCacheService.get(anyString(), eq("happy_test.html")))
                     .thenReturn(mockCacheResult);
             when(mockCacheService.get(anyString(), eq("http://asset1-url00.jpeg")))
@@ -418,6 +424,138 @@ public class FullScreenMessageTests {
         setupServiceProviderMockAndRunTest(
                 () -> {
                     final Map<String, String> expectedMap = new HashMap<>();
+                    expectedMap.put("http://asset1-url00.jpeg", CampaignAssetStore.ASSET_CACHE);
+                    try {
+                        final FullScreenMessage fullScreenMessage =
+                                new FullScreenMessage(
+                                        mockCampaignExtension,
+                                        TestUtils.createRuleConsequence(happyMessageMap));
+                        // test
+                        fullScreenMessage.showMessage();
+                    } catch (CampaignMessageRequiredFieldMissingException exception) {
+                        fail(exception.getMessage());
+                    }
+
+                    // verify
+                    final Map<String, String> actualMap =
+                            inAppMessageArgumentCaptor.getValue().getSettings().getAssetMap();
+                    Assert.assertEquals(expectedMap, actualMap);
+                });
+    }
+
+    @Test
+    public void showMessage_Should_RecordShownAssets_When_AssetsResolvedFromAssetStore() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final CampaignAssetStore mockAssetStore =
+                            Mockito.mock(CampaignAssetStore.class);
+                    Mockito.when(mockCampaignExtension.getAssetStore()).thenReturn(mockAssetStore);
+                    try {
+                        final FullScreenMessage fullScreenMessage =
+                                new FullScreenMessage(
+                                        mockCampaignExtension,
+                                        TestUtils.createRuleConsequence(happyMessageMap));
+                        // test
+                        fullScreenMessage.showMessage();
+                    } catch (CampaignMessageRequiredFieldMissingException exception) {
+                        fail(exception.getMessage());
+                    }
+
+                    // verify
+                    Mockito.verify(mockAssetStore)
+                            .recordAssetsShown(
+                                    Collections.singletonList("http://asset1-url00.jpeg"));
+                });
+    }
+
+    @Test
+    public void showMessage_Should_UseDisplayCache_When_MessageShownAgain() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final CampaignAssetStore mockAssetStore =
+                            Mockito.mock(CampaignAssetStore.class);
+                    final CampaignMessageDisplayCache displayCache =
+                            new CampaignMessageDisplayCache(10);
+                    Mockito.when(mockCampaignExtension.getAssetStore()).thenReturn(mockAssetStore);
+                    Mockito.when(mockCampaignExtension.getMessageDisplayCache())
+                            .thenReturn(displayCache);
+                    try {
+                        final FullScreenMessage fullScreenMessage =
+                                new FullScreenMessage(
+                                        mockCampaignExtension,
+                                        TestUtils.createRuleConsequence(happyMessageMap));
+                        // test
+                        fullScreenMessage.showMessage();
+                        fullScreenMessage.showMessage();
+                    } catch (CampaignMessageRequiredFieldMissingException exception) {
+                        fail(exception.getMessage());
+                    }
+
+                    // verify
+                    verify(mockCacheService, times(1)).get(anyString(), eq("happy_test.html"));
+                    verify(mockCacheService, times(1))
+                            .get(anyString(), eq("http://asset1-url00.jpeg"));
+                    verify(mockAssetStore, times(2))
+                            .recordAssetsShown(
+                                    Collections.singletonList("http://asset1-url00.jpeg"));
+                    final Map<String, String> expectedMap = new HashMap<>();
+                    expectedMap.put("http://asset1-url00.jpeg", CampaignAssetStore.ASSET_CACHE);
+                    Assert.assertEquals(
+                            expectedMap,
+                            inAppMessageArgumentCaptor.getValue().getSettings().getAssetMap());
+                    Assert.assertEquals(2, displayCache.getHitCount());
+                });
+    }
+
+    @Test
+    public void showMessage_Should_RecordShowLatency_When_TriggerTimestampSet() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final CampaignAssetStore mockAssetStore =
+                            Mockito.mock(CampaignAssetStore.class);
+                    final CampaignMessageDisplayCache displayCache =
+                            new CampaignMessageDisplayCache(10);
+                    Mockito.when(mockCampaignExtension.getAssetStore()).thenReturn(mockAssetStore);
+                    Mockito.when(mockCampaignExtension.getMessageDisplayCache())
+                            .thenReturn(displayCache);
+                    try {
+                        final FullScreenMessage fullScreenMessage =
+                                new FullScreenMessage(
+                                        mockCampaignExtension,
+                                        TestUtils.createRuleConsequence(happyMessageMap));
+                        fullScreenMessage.setTriggerTimestamp(System.currentTimeMillis());
+                        // test
+                        fullScreenMessage.showMessage();
+                        fullScreenMessage.showMessage();
+                    } catch (CampaignMessageRequiredFieldMissingException exception) {
+                        fail(exception.getMessage());
+                    }
+
+                    // verify
+                    final List<CampaignMessageDisplayCache.ShowLatency> showLatencies =
+                            displayCache.getRecentShowLatencies();
+                    Assert.assertEquals(2, showLatencies.size());
+                    Assert.assertFalse(showLatencies.get(0).isAssetMapCached());
+                    Assert.assertTrue(showLatencies.get(1).isAssetMapCached());
+                    Assert.assertTrue(showLatencies.get(1).getLatencyMillis() >= 0);
+                });
+    }
+
+    @Test
+    public void showMessage_Should_ResolveAssetFromMessageCache_When_AssetNotInAssetStore() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    // simulate asset only present in the message cache
+                    Mockito.when(
+                                    mockCacheService.get(
+                                            eq(CampaignAssetStore.ASSET_CACHE),
+                                            eq("http://asset1-url00.jpeg")))
+                            .thenReturn(null);
+                    final Map<String, String> expectedMap = new HashMap<>();
                     expectedMap.put(
                             "http://asset1-url00.jpeg",
                             "campaign/messages/07a1c997-2450-46f0-a454-537906404124");
@@ -475,6 +613,42 @@ public class FullScreenMessageTests {
                 });
     }
 
+    @Test
+    public void showMessage_ShouldRecordBundledAssetInManifest_When_BundledAssetCached() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    final CampaignAssetStore mockAssetStore =
+                            Mockito.mock(CampaignAssetStore.class);
+                    Mockito.when(mockCampaignExtension.getAssetStore()).thenReturn(mockAssetStore);
+                    // simulate remote asset failed to be cached
+                    Mockito.when(mockCacheService.get(anyString(), eq("http://asset1-url00.jpeg")))
+                            .thenReturn(null);
+                    Mockito.when(
+                                    mockCacheService.set(
+                                            anyString(), anyString(), any(CacheEntry.class)))
+                            .thenReturn(true);
+
+                    try {
+                        final FullScreenMessage fullScreenMessage =
+                                new FullScreenMessage(
+                                        mockCampaignExtension,
+                                        TestUtils.createRuleConsequence(happyMessageMap));
+                        // test
+                        fullScreenMessage.showMessage();
+                    } catch (CampaignMessageRequiredFieldMissingException exception) {
+                        fail(exception.getMessage());
+                    }
+
+                    // verify
+                    verify(mockAssetStore, times(1))
+                            .recordMessageAssetCached(
+                                    eq("07a1c997-2450-46f0-a454-537906404124"),
+                                    eq("http://asset1-url00.jpeg"),
+                                    anyLong());
+                });
+    }
+
     @Test
     public void
             showMessage_ShouldNotCacheBundledAssets_When_RemoteAssetWasCachedAndLocalAssetPresentInConsequenceDetails() {
@@ -550,6 +724,50 @@ public class FullScreenMessageTests {
                 });
     }
 
+    @Test
+    public void showMessage_ShouldNotReadBundledAssets_When_BundledAssetAlreadyCached() {
+        // setup
+        setupServiceProviderMockAndRunTest(
+                () -> {
+                    // create remote asset map containing bundled image only, already cached when
+                    // the rules were registered
+                    remoteAssets = new ArrayList<>();
+                    remoteAssets.add("fallback.jpeg");
+                    happyRemoteAssets = new ArrayList<>();
+                    happyRemoteAssets.add(remoteAssets);
+                    happyDetailMap.put("remoteAssets", happyRemoteAssets);
+                    happyMessageMap.put("detail", happyDetailMap);
+                    Mockito.when(
+                                    mockCacheService.get(
+                                            eq(MESSAGES_CACHE + messageId),
+                                            eq("file:///android_asset/fallback.jpeg")))
+                            .thenReturn(mockCacheResult);
+                    final Map<String, String> expectedMap = new HashMap<>();
+                    expectedMap.put(
+                            "file:///android_asset/fallback.jpeg",
+                            "campaign/messages/07a1c997-2450-46f0-a454-537906404124");
+
+                    try {
+                        final FullScreenMessage fullScreenMessage =
+                                new FullScreenMessage(
+                                        mockCampaignExtension,
+                                        TestUtils.createRuleConsequence(happyMessageMap));
+                        // test
+                        fullScreenMessage.showMessage();
+                    } catch (CampaignMessageRequiredFieldMissingException exception) {
+                        fail(exception.getMessage());
+                    }
+
+                    // verify
+                    verify(mockCacheService, times(0))
+                            .set(anyString(), anyString(), any(CacheEntry.class));
+                    verifyNoInteractions(mockAssetManager);
+                    final Map<String, String> actualMap =
+                            inAppMessageArgumentCaptor.getValue().getSettings().getAssetMap();
+                    Assert.assertEquals(expectedMap, actualMap);
+                });
+    }
+
     @Test
     public void
             showMessage_ShouldNotCacheBundledAssets_When_OnlyRemoteAssetPresentInConsequenceDetails() {